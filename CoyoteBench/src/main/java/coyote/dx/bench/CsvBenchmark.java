@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import coyote.commons.csv.CSVParser;
+import coyote.commons.csv.CSVReader;
+import coyote.commons.csv.CSVScanner;
+import coyote.dataframe.DataFrame;
+import coyote.dx.writer.CsvWriter;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+
+
+/**
+ * Parsing CSV lines with the CSVParser and formatting frames with the
+ * CsvWriter.
+ *
+ * <p>{@code readLines} is the line-oriented path (BufferedReader.readLine
+ * and CSVParser.parseLine) for comparison with the buffer-oriented CSVReader
+ * ({@code read}) and CSVScanner ({@code scan}) over the same text.</p>
+ *
+ * <p>Scores are the time to process the whole set of lines (or frames).</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBenchmark {
+
+  @Param({"1000"})
+  public int records;
+
+  private String[] lines;
+  private String text;
+  private List<DataFrame> frames;
+  private CSVParser parser;
+  private CsvWriter writer;
+
+
+
+
+  @Setup(Level.Trial)
+  public void setup() throws ConfigurationException {
+    lines = Data.csvLines(records);
+    StringBuilder b = new StringBuilder();
+    for (int x = 0; x < lines.length; x++) {
+      b.append(lines[x]).append("\r\n");
+    }
+    text = b.toString();
+    frames = Data.records(records);
+    parser = new CSVParser();
+    writer = new CsvWriter();
+    writer.setConfiguration(new Config());
+    writer.setPrintwriter(new PrintWriter(new Data.Discard()));
+    writer.open(Data.context());
+  }
+
+
+
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    writer.close();
+  }
+
+
+
+
+  @Benchmark
+  public void parse(Blackhole blackhole) throws ParseException {
+    for (int x = 0; x < lines.length; x++) {
+      blackhole.consume(parser.parseLine(lines[x]));
+    }
+  }
+
+
+
+
+  @Benchmark
+  public void readLines(Blackhole blackhole) throws IOException, ParseException {
+    BufferedReader reader = new BufferedReader(new StringReader(text));
+    CSVParser lineParser = new CSVParser();
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      blackhole.consume(lineParser.parseLine(line));
+    }
+  }
+
+
+
+
+  @Benchmark
+  public void read(Blackhole blackhole) throws IOException, ParseException {
+    CSVReader reader = new CSVReader(new StringReader(text));
+    for (String[] values = reader.readNext(); values != null; values = reader.readNext()) {
+      blackhole.consume(values);
+    }
+  }
+
+
+
+
+  @Benchmark
+  public void scan(Blackhole blackhole) throws IOException, ParseException {
+    CSVScanner scanner = new CSVScanner(new StringReader(text));
+    for (int count = scanner.next(); count >= 0; count = scanner.next()) {
+      for (int x = 0; x < count; x++) {
+        blackhole.consume(scanner.get(x));
+      }
+    }
+  }
+
+
+
+
+  @Benchmark
+  public void write() {
+    for (int x = 0; x < frames.size(); x++) {
+      writer.write(frames.get(x));
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import coyote.commons.template.SymbolTable;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransformContext;
+
+
+/**
+ * Deterministic sample data shared by the benchmarks.
+ *
+ * <p>All the benchmarks work with the same record shape so the results of
+ * the different stages can be compared with each other.</p>
+ */
+final class Data {
+
+  private static final String[] NAMES = {"Alice", "Bob", "Carol", "Dave", "Eve", "Frank", "Grace", "Heidi"};
+  private static final String[] CITIES = {"Raleigh", "Durham", "Cary, NC", "Chapel \"Hill\"", "Apex"};
+
+  private Data() {}
+
+
+
+
+  /**
+   * @param index the number of the record
+   *
+   * @return a sample record with a mix of field types
+   */
+  static DataFrame record(int index) {
+    DataFrame retval = new DataFrame();
+    retval.set("Id", index);
+    retval.set("Name", NAMES[index % NAMES.length]);
+    retval.set("City", CITIES[index % CITIES.length]);
+    retval.set("Active", index % 3 != 0);
+    retval.set("Amount", index * 1.25D);
+    retval.set("Count", (long)index * 7);
+    retval.set("Created", new Date(1500000000000L + index * 60000L));
+    retval.set("Timestamp", "2017-11-02T10:21:32.076-0400");
+    retval.set("Notes", "Line " + index + " of the sample data");
+    return retval;
+  }
+
+
+
+
+  /**
+   * @param count the number of records
+   *
+   * @return a list of sample records
+   */
+  static List<DataFrame> records(int count) {
+    List<DataFrame> retval = new ArrayList<DataFrame>(count);
+    for (int x = 0; x < count; x++) {
+      retval.add(record(x));
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @param count the number of lines
+   *
+   * @return lines of CSV text, including quoted separators and quotes
+   */
+  static String[] csvLines(int count) {
+    String[] retval = new String[count];
+    for (int x = 0; x < count; x++) {
+      retval[x] = x + "," + NAMES[x % NAMES.length] + ",\"" + CITIES[x % CITIES.length].replace("\"", "\"\"") + "\"," + (x % 3 != 0) + "," + (x * 1.25D) + "," + (x * 7L) + ",2017-11-02T10:21:32.076-0400,Line " + x + " of the sample data";
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return a transform context like the one the engine creates for a job
+   */
+  static TransformContext context() {
+    TransformContext retval = new TransformContext();
+    retval.setSymbols(new SymbolTable());
+    return retval;
+  }
+
+
+
+
+  /**
+   * A writer which throws away everything written to it so benchmarks of
+   * the frame writers measure formatting rather than I/O.
+   */
+  static final class Discard extends Writer {
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {}
+
+
+
+
+    @Override
+    public void write(String str, int off, int len) {}
+
+
+
+
+    @Override
+    public void flush() {}
+
+
+
+
+    @Override
+    public void close() {}
+  }
+
+}
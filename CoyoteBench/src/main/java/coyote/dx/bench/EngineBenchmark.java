@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import coyote.dx.TransformEngine;
+import coyote.dx.TransformEngineFactory;
+
+
+/**
+ * The full engine loop: a StaticReader generating frames, a filter, a
+ * validator, a few transforms, the default mapper and a NullWriter.
+ *
+ * <p>The score is the time to run the job to completion, including the
+ * opening and closing of the components. The {@code mode} parameter selects
+ * the serial loop, batch processing or the worker pool.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+  private static final String JOB = "{" //
+      + "\"Name\":\"EngineBenchmark\",%s" //
+      + "\"Reader\":{\"class\":\"StaticReader\",\"limit\":%d,\"fields\":{\"Id\":42,\"Name\":\"Bob\",\"City\":\"Cary, NC\",\"Active\":true,\"Amount\":52.5,\"Timestamp\":\"2017-11-02T10:21:32.076-0400\"}}," //
+      + "\"Filter\":{\"Reject\":{\"condition\":\"equals(Working.Name,\\\"Eve\\\")\"}}," //
+      + "\"Validate\":{\"NotEmpty\":{\"field\":\"Name\"}}," //
+      + "\"Transform\":{" //
+      + "\"Set\":{\"field\":\"terminator\",\"condition\":\"islast\",\"value\":\"2\",\"default\":\"1\"}," //
+      + "\"Counter\":{\"field\":\"RecordNumber\"}," //
+      + "\"Split\":{\"field\":\"Timestamp\",\"delimiter\":\"T\"}" //
+      + "}," //
+      + "\"Writer\":{\"class\":\"NullWriter\"}" //
+      + "}";
+
+  @Param({"serial", "batch", "workers"})
+  public String mode;
+
+  @Param({"10000"})
+  public int records;
+
+  private String config;
+
+
+
+
+  @Setup(Level.Trial)
+  public void setup() {
+    String options = "";
+    if ("batch".equals(mode)) {
+      options = "\"batch\":100,";
+    } else if ("workers".equals(mode)) {
+      options = "\"Workers\":4,";
+    }
+    config = String.format(JOB, options, records);
+  }
+
+
+
+
+  @Benchmark
+  public long run() throws IOException {
+    TransformEngine engine = TransformEngineFactory.getInstance(config);
+    try {
+      engine.run();
+      return engine.getContext().getRow();
+    } finally {
+      engine.close();
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.eval.Evaluator;
+
+
+/**
+ * Evaluation of the conditions components use to decide if they should
+ * process a frame.
+ *
+ * <p>Each score is the time to evaluate one expression against the current
+ * transaction, which is what every conditional filter, transform, validator
+ * and writer pays for each frame.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+  @Param({"islast", //
+      "! islast && equals(Working.Name,\"Bob\")", //
+      "islast || equals(Working.City,\"Apex\") || match(Working.Notes,\"^Line.*\")", //
+      "checkField(Working.Id, LT, 500) && checkField(Working.Amount, GT, 10)", //
+      "contextError && equals(currentRow,0)"})
+  public String expression;
+
+  private Evaluator evaluator;
+
+
+
+
+  @Setup(Level.Trial)
+  public void setup() {
+    TransformContext context = Data.context();
+    context.setRow(42);
+    TransactionContext txn = new TransactionContext(context);
+    txn.setSourceFrame(Data.record(42));
+    txn.setWorkingFrame(Data.record(42));
+    context.setTransaction(txn);
+    evaluator = new Evaluator(context);
+  }
+
+
+
+
+  @Benchmark
+  public boolean evaluate() {
+    return evaluator.evaluateBoolean(expression);
+  }
+
+}
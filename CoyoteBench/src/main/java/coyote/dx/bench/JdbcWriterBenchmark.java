@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.ConfigTag;
+import coyote.dx.context.TransformContext;
+import coyote.dx.writer.JdbcWriter;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+
+
+/**
+ * Inserting frames into an in-memory H2 database with the JdbcWriter.
+ *
+ * <p>The score is the time to open the writer, insert all the records and
+ * close the writer (which flushes any partial batch). The table is emptied
+ * after each iteration so every iteration inserts into a table of the same
+ * size.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcWriterBenchmark {
+
+  private static final String URL = "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+  private static final String TABLE = "BENCH";
+
+  @Param({"0", "100"})
+  public int batch;
+
+  @Param({"1000"})
+  public int records;
+
+  private List<DataFrame> frames;
+  private TransformContext context;
+  private Connection connection;
+
+
+
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    frames = Data.records(records);
+    context = Data.context();
+
+    // keeps the in-memory database alive and lets us empty the table
+    connection = DriverManager.getConnection(URL, "sa", "");
+  }
+
+
+
+
+  @TearDown(Level.Iteration)
+  public void truncate() throws SQLException {
+    Statement statement = connection.createStatement();
+    try {
+      statement.execute("TRUNCATE TABLE " + TABLE);
+    } catch (SQLException e) {
+      // table not created yet
+    } finally {
+      statement.close();
+    }
+  }
+
+
+
+
+  @TearDown(Level.Trial)
+  public void teardown() throws SQLException {
+    Statement statement = connection.createStatement();
+    try {
+      statement.execute("DROP TABLE IF EXISTS " + TABLE);
+    } finally {
+      statement.close();
+      connection.close();
+    }
+  }
+
+
+
+
+  @Benchmark
+  public void write() throws ConfigurationException, IOException {
+    JdbcWriter writer = open();
+    try {
+      for (int x = 0; x < frames.size(); x++) {
+        writer.write(frames.get(x));
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+
+
+
+  @Benchmark
+  public void writeBatch() throws ConfigurationException, IOException {
+    JdbcWriter writer = open();
+    try {
+      writer.writeBatch(frames);
+    } finally {
+      writer.close();
+    }
+  }
+
+
+
+
+  private JdbcWriter open() throws ConfigurationException {
+    Config config = new Config();
+    config.put(ConfigTag.TARGET, URL);
+    config.put(ConfigTag.DRIVER, "org.h2.Driver");
+    config.put(ConfigTag.USERNAME, "sa");
+    config.put(ConfigTag.PASSWORD, "");
+    config.put(ConfigTag.SCHEMA, "PUBLIC");
+    config.put(ConfigTag.TABLE, TABLE);
+    config.put(ConfigTag.AUTO_CREATE, true);
+    config.put(ConfigTag.BATCH, batch);
+
+    // the writer adds its settings to the configuration so each needs its own
+    JdbcWriter retval = new JdbcWriter();
+    retval.setConfiguration(config);
+    retval.open(context);
+    return retval;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.ConfigTag;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.mapper.DefaultFrameMapper;
+import coyote.dx.mapper.MappingException;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+
+
+/**
+ * Mapping the working frame to the target frame with the DefaultFrameMapper,
+ * either by cloning the whole frame or through a field map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+  @Param({"clone", "fields"})
+  public String mapping;
+
+  private DefaultFrameMapper mapper;
+  private TransactionContext txn;
+
+
+
+
+  @Setup(Level.Trial)
+  public void setup() throws ConfigurationException {
+    Config config = new Config();
+    if ("fields".equals(mapping)) {
+      config.put(ConfigTag.FIELDS, new DataFrame().set("Id", "ID").set("Name", "NAME").set("City", "CITY").set("Amount", "AMOUNT").set("Missing", "MISSING"));
+    }
+    mapper = new DefaultFrameMapper();
+    mapper.setConfiguration(config);
+    mapper.open(Data.context());
+    txn = new TransactionContext(mapper.getContext());
+    txn.setWorkingFrame(Data.record(42));
+  }
+
+
+
+
+  @Benchmark
+  public DataFrame map() throws MappingException {
+    txn.setTargetFrame(null);
+    mapper.process(txn);
+    return txn.getTargetFrame();
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import coyote.commons.FileUtil;
+import coyote.dataframe.DataFrame;
+import coyote.dataframe.marshal.JSONMarshaler;
+import coyote.dataframe.marshal.XMLMarshaler;
+import coyote.dx.ConfigTag;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.reader.JsonReader;
+import coyote.dx.reader.MarshalingFrameReader;
+import coyote.dx.reader.XmlReader;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+
+
+/**
+ * Loading JSON and XML documents through the MarshalingFrameReader and
+ * marshaling single frames to and from text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshalingBenchmark {
+
+  @Param({"json", "xml"})
+  public String format;
+
+  @Param({"1000"})
+  public int records;
+
+  private File source;
+  private DataFrame frame;
+  private String text;
+  private TransformContext context;
+  private MarshalingFrameReader reader;
+
+
+
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, ConfigurationException {
+    boolean json = "json".equals(format);
+    List<DataFrame> frames = Data.records(records);
+    StringBuilder b = new StringBuilder();
+    for (DataFrame record : frames) {
+      b.append(json ? JSONMarshaler.marshal(record) : XMLMarshaler.marshal(record));
+      b.append('\n');
+    }
+    source = File.createTempFile("bench", "." + format);
+    FileUtil.stringToFile(b.toString(), source.getAbsolutePath());
+
+    frame = frames.get(0);
+    text = json ? JSONMarshaler.marshal(frame) : XMLMarshaler.marshal(frame);
+    context = Data.context();
+    reader = json ? new JsonReader() : new XmlReader();
+    reader.setConfiguration(new Config(new DataFrame().set(ConfigTag.SOURCE, source.getAbsolutePath())));
+  }
+
+
+
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    source.delete();
+  }
+
+
+
+
+  /**
+   * Load the document and read every frame, as the engine does.
+   */
+  @Benchmark
+  public void read(Blackhole blackhole) {
+    reader.open(context);
+    TransactionContext txn = new TransactionContext(context);
+    while (!reader.eof()) {
+      blackhole.consume(reader.read(txn));
+    }
+  }
+
+
+
+
+  @Benchmark
+  public Object marshal() {
+    return "json".equals(format) ? JSONMarshaler.marshal(frame) : XMLMarshaler.marshal(frame);
+  }
+
+
+
+
+  @Benchmark
+  public Object unmarshal() {
+    return "json".equals(format) ? JSONMarshaler.marshal(text) : XMLMarshaler.marshal(text);
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.bench;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import coyote.dataframe.DataFrame;
+import coyote.dataframe.marshal.JSONMarshaler;
+import coyote.dx.FrameTransform;
+import coyote.dx.TransformException;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.transform.AbstractFrameTransform;
+import coyote.loader.cfg.Config;
+
+
+/**
+ * Each of the built-in field transforms applied to a copy of a sample frame.
+ *
+ * <p>The configurations are those shown in the documentation of each
+ * transform. The score includes cloning the frame since transforms modify
+ * the frame they are given.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+
+  private static final Map<String, String> CONFIGS = new HashMap<String, String>();
+  static {
+    CONFIGS.put("Append", "{\"field\":\"Notes\",\"value\":\" (appended)\"}");
+    CONFIGS.put("Boolean", "{\"field\":\"Active\"}");
+    CONFIGS.put("Copy", "{\"field\":\"NameCopy\",\"source\":\"Name\"}");
+    CONFIGS.put("Counter", "{\"field\":\"RecordNumber\",\"start\":1}");
+    CONFIGS.put("Date", "{\"field\":\"Count\",\"format\":\"seconds\"}");
+    CONFIGS.put("Format", "{\"field\":\"Created\",\"format\":\"yyyy-MM-dd\"}");
+    CONFIGS.put("Guid", "{\"field\":\"Guid\"}");
+    CONFIGS.put("KeepOnly", "{\"field\":\"Name\"}");
+    CONFIGS.put("Multiply", "{\"field\":\"Amount\",\"factor\":\"100\"}");
+    CONFIGS.put("Numeric", "{\"field\":\"Count\",\"format\":\"nowMilliseconds\"}");
+    CONFIGS.put("Remove", "{\"field\":\"Notes\"}");
+    CONFIGS.put("Rename", "{\"field\":\"Label\",\"source\":\"Name\"}");
+    CONFIGS.put("Replace", "{\"field\":\"Notes\",\"target\":\"sample\",\"value\":\"example\"}");
+    CONFIGS.put("Set", "{\"field\":\"terminator\",\"condition\":\"islast\",\"value\":\"2\",\"default\":\"1\"}");
+    CONFIGS.put("Split", "{\"field\":\"Timestamp\",\"delimiter\":\"T\"}");
+    CONFIGS.put("Subtract", "{\"field\":\"Profit\",\"minuend\":\"Amount\",\"subtrahend\":\"3.50\"}");
+    CONFIGS.put("Text", "{\"field\":\"Created\",\"format\":\"yyyy-MM-dd\"}");
+    CONFIGS.put("Timestamp", "{\"field\":\"Received\"}");
+  }
+
+  @Param({"Append", "Boolean", "Copy", "Counter", "Date", "Format", "Guid", "KeepOnly", "Multiply", "Numeric", "Remove", "Rename", "Replace", "Set", "Split", "Subtract", "Text", "Timestamp"})
+  public String transform;
+
+  private FrameTransform transformer;
+  private DataFrame frame;
+
+
+
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    TransformContext context = Data.context();
+    frame = Data.record(42);
+    TransactionContext txn = new TransactionContext(context);
+    txn.setSourceFrame(frame);
+    txn.setWorkingFrame(frame);
+    context.setTransaction(txn);
+
+    List<DataFrame> cfg = JSONMarshaler.marshal(CONFIGS.get(transform));
+    transformer = (FrameTransform)Class.forName(AbstractFrameTransform.class.getPackage().getName() + "." + transform).newInstance();
+    transformer.setConfiguration(new Config(cfg.get(0)));
+    transformer.open(context);
+  }
+
+
+
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    transformer.close();
+  }
+
+
+
+
+  @Benchmark
+  public DataFrame process() throws TransformException {
+    return transformer.process((DataFrame)frame.clone());
+  }
+
+}
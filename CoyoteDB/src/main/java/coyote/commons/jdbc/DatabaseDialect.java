@@ -7,8 +7,10 @@
  */
 package coyote.commons.jdbc;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import coyote.commons.StringUtil;
@@ -55,6 +57,7 @@ public class DatabaseDialect {
   public static final String NULLABLE = "nullable";
   // Database Technologies supported
   public static final String ORACLE = "Oracle";
+  public static final String POSTGRESQL = "PostgreSQL";
   public static final String PRIMARY_KEY = "primary_key";
   public static final String SYS_ID_SYM = "sysid";
   // The symbols we expect to find in the symbol table
@@ -400,6 +403,157 @@ public class DatabaseDialect {
 
 
 
+  /**
+   * Get the keyword which starts a recursive common table expression for a
+   * particular database product.
+   *
+   * @param database the name of the database product (e.g. Oracle)
+   *
+   * @return "WITH RECURSIVE" or "WITH", or null if recursive queries are not
+   *         supported for the database
+   */
+  public static String getRecursiveWith(final String database) {
+    if (H2.equalsIgnoreCase(database) || POSTGRESQL.equalsIgnoreCase(database)) {
+      return "WITH RECURSIVE";
+    } else if (ORACLE.equalsIgnoreCase(database) || MSQL.equalsIgnoreCase(database)) {
+      return "WITH";
+    }
+    return null;
+  }
+
+
+
+
+  /**
+   * Generate a parameterized statement which inserts a row or, if a row with
+   * the same key values already exists, updates it.
+   *
+   * <p>H2 uses {@code MERGE ... KEY}, Oracle and SQL Server use
+   * {@code MERGE ... USING}, PostgreSQL uses {@code INSERT ... ON CONFLICT}
+   * and MySQL uses {@code INSERT ... ON DUPLICATE KEY UPDATE}. PostgreSQL and
+   * MySQL require a unique index or primary key on the key columns.</p>
+   *
+   * <p>The statement has one parameter for each column, in the order of the
+   * given column list.</p>
+   *
+   * @param database the name of the database product (e.g. Oracle)
+   * @param schema the name of the schema containing the table
+   * @param table the name of the table
+   * @param columns the names of the columns to set
+   * @param keys the names of the columns identifying the row, each of which must also be in the columns
+   *
+   * @return the upsert statement or null if the database is not supported
+   */
+  public static String getUpsert(final String database, final String schema, final String table, final List<String> columns, final List<String> keys) {
+    final String target = StringUtil.isNotBlank(schema) ? schema + "." + table : table;
+    final StringBuilder names = new StringBuilder();
+    final StringBuilder params = new StringBuilder();
+    for (final String column : columns) {
+      if (names.length() > 0) {
+        names.append(", ");
+        params.append(", ");
+      }
+      names.append(column);
+      params.append('?');
+    }
+
+    final StringBuilder b = new StringBuilder();
+    if (H2.equalsIgnoreCase(database)) {
+      b.append("MERGE INTO ").append(target).append(" (").append(names).append(") KEY (");
+      b.append(join(keys, "", "")).append(") VALUES (").append(params).append(")");
+
+    } else if (ORACLE.equalsIgnoreCase(database) || MSQL.equalsIgnoreCase(database)) {
+      final boolean oracle = ORACLE.equalsIgnoreCase(database);
+      b.append("MERGE INTO ").append(target).append(" t USING (SELECT ");
+      for (int x = 0; x < columns.size(); x++) {
+        b.append(x > 0 ? ", ? AS " : "? AS ").append(columns.get(x));
+      }
+      b.append(oracle ? " FROM DUAL) s ON (" : ") s ON (");
+      for (int x = 0; x < keys.size(); x++) {
+        b.append(x > 0 ? " AND t." : "t.").append(keys.get(x)).append(" = s.").append(keys.get(x));
+      }
+      b.append(")");
+      final String updates = join(nonKeys(columns, keys), "t.", "s.");
+      if (updates.length() > 0) {
+        b.append(" WHEN MATCHED THEN UPDATE SET ").append(updates);
+      }
+      b.append(" WHEN NOT MATCHED THEN INSERT (").append(names).append(") VALUES (");
+      for (int x = 0; x < columns.size(); x++) {
+        b.append(x > 0 ? ", s." : "s.").append(columns.get(x));
+      }
+      b.append(oracle ? ")" : ");");
+
+    } else if (POSTGRESQL.equalsIgnoreCase(database)) {
+      b.append("INSERT INTO ").append(target).append(" (").append(names).append(") VALUES (").append(params);
+      b.append(") ON CONFLICT (").append(join(keys, "", "")).append(")");
+      final String updates = join(nonKeys(columns, keys), "", "EXCLUDED.");
+      b.append(updates.length() > 0 ? " DO UPDATE SET " + updates : " DO NOTHING");
+
+    } else if (MYSQL.equalsIgnoreCase(database)) {
+      b.append("INSERT INTO ").append(target).append(" (").append(names).append(") VALUES (").append(params).append(")");
+      final List<String> updates = nonKeys(columns, keys);
+      // updating a key to itself makes the statement a no-op for existing rows
+      if (updates.isEmpty()) {
+        updates.add(keys.get(0));
+      }
+      b.append(" ON DUPLICATE KEY UPDATE ");
+      for (int x = 0; x < updates.size(); x++) {
+        b.append(x > 0 ? ", " : "").append(updates.get(x)).append(" = VALUES(").append(updates.get(x)).append(")");
+      }
+
+    } else {
+      return null;
+    }
+    return b.toString();
+  }
+
+
+
+
+  /**
+   * @return the columns which are not keys
+   */
+  private static List<String> nonKeys(final List<String> columns, final List<String> keys) {
+    final List<String> retval = new ArrayList<String>();
+    for (final String column : columns) {
+      boolean key = false;
+      for (final String name : keys) {
+        if (name.equalsIgnoreCase(column)) {
+          key = true;
+          break;
+        }
+      }
+      if (!key) {
+        retval.add(column);
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Join the names as {@code name} or, if a value prefix is given, as
+   * {@code prefix+name = valuePrefix+name}.
+   */
+  private static String join(final List<String> names, final String prefix, final String valuePrefix) {
+    final StringBuilder b = new StringBuilder();
+    for (final String name : names) {
+      if (b.length() > 0) {
+        b.append(", ");
+      }
+      b.append(prefix).append(name);
+      if (valuePrefix.length() > 0) {
+        b.append(" = ").append(valuePrefix).append(name);
+      }
+    }
+    return b.toString();
+  }
+
+
+
+
   /**
    * Retrieve the syntax for a command for a particular database product.
    *
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.commons.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import coyote.commons.template.SymbolTable;
+import coyote.loader.log.Log;
+
+
+/**
+ * A cache of prepared statements and resolved SQL text for one connection.
+ *
+ * <p>Components which execute the same SQL many times (e.g. an insert for
+ * every field or record) get their statements from the cache of their
+ * connection instead of preparing them each time. The least recently used
+ * statements are closed when the cache is full.</p>
+ *
+ * <p>Caches are kept for the physical connection, so components which
+ * borrow the same connection from a pool share its statements. Whatever
+ * closes the physical connection should call {@link #close(Connection)}
+ * first to close its statements; caches of connections found closed are
+ * discarded.</p>
+ *
+ * <p>Cached statements must not be closed by the caller and, like the
+ * connection itself, must not be used by more than one thread at a time.</p>
+ */
+public class StatementCache {
+
+  /** The maximum number of prepared statements kept for each connection. */
+  public static final int DEFAULT_SIZE = 64;
+
+  /** The maximum number of resolved SQL templates kept for each connection. */
+  private static final int TEXT_SIZE = 256;
+
+  private static final Map<Connection, StatementCache> CACHES = new IdentityHashMap<Connection, StatementCache>();
+
+  private final Connection connection;
+
+  private final Map<String, PreparedStatement> statements;
+
+  private final Map<String, String> text;
+
+
+
+
+  private StatementCache(final Connection connection, final int size) {
+    this.connection = connection;
+    statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+
+
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+        if (size() > size) {
+          DatabaseUtil.closeQuietly(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+    text = new LinkedHashMap<String, String>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+
+
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+        return size() > TEXT_SIZE;
+      }
+    };
+  }
+
+
+
+
+  /**
+   * Get the statement cache for the given connection, creating it if
+   * necessary.
+   *
+   * @param conn the connection, which may be a pooled connection
+   *
+   * @return the cache for the physical connection
+   */
+  public static StatementCache getCache(final Connection conn) {
+    final Connection physical = unwrap(conn);
+    synchronized (CACHES) {
+      StatementCache retval = CACHES.get(physical);
+      if (retval == null) {
+        discardClosed();
+        retval = new StatementCache(physical, DEFAULT_SIZE);
+        CACHES.put(physical, retval);
+      }
+      return retval;
+    }
+  }
+
+
+
+
+  /**
+   * Close all the cached statements of the given connection and discard its
+   * cache.
+   *
+   * <p>This should be called before the connection is closed.</p>
+   *
+   * @param conn the connection being closed
+   */
+  public static void close(final Connection conn) {
+    if (conn != null) {
+      StatementCache cache;
+      synchronized (CACHES) {
+        cache = CACHES.remove(unwrap(conn));
+      }
+      if (cache != null) {
+        cache.clear();
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Get a prepared statement for the given SQL, preparing it if it is not
+   * already cached.
+   *
+   * <p>The parameters and batch of a cached statement are cleared before it
+   * is returned.</p>
+   *
+   * @param sql the SQL to prepare
+   *
+   * @return the prepared statement, which the caller must not close
+   *
+   * @throws SQLException if the statement could not be prepared
+   */
+  public synchronized PreparedStatement prepare(final String sql) throws SQLException {
+    PreparedStatement retval = statements.get(sql);
+    if (retval != null) {
+      if (!retval.isClosed()) {
+        retval.clearParameters();
+        retval.clearBatch();
+        return retval;
+      }
+      statements.remove(sql);
+    }
+    retval = connection.prepareStatement(sql);
+    statements.put(sql, retval);
+    return retval;
+  }
+
+
+
+
+  /**
+   * Retrieve the SQL for a command for a particular database product,
+   * resolving the template only the first time it is requested with the
+   * same symbols.
+   *
+   * @param database The database product being used
+   * @param command the command to retrieve
+   * @param symbols symbols to be used in resolving template variables
+   *
+   * @return the SQL or null if the database is not supported or the command
+   *         is not recognized.
+   *
+   * @see DatabaseDialect#getSQL(String, String, SymbolTable)
+   */
+  public synchronized String getSQL(final String database, final String command, final SymbolTable symbols) {
+    final String key = database + ":" + command + ":" + symbols;
+    String retval = text.get(key);
+    if (retval == null) {
+      retval = DatabaseDialect.getSQL(database, command, symbols);
+      if (retval != null) {
+        text.put(key, retval);
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the number of cached statements
+   */
+  public synchronized int size() {
+    return statements.size();
+  }
+
+
+
+
+  /**
+   * Close and remove all the cached statements.
+   */
+  public synchronized void clear() {
+    for (final PreparedStatement statement : statements.values()) {
+      DatabaseUtil.closeQuietly(statement);
+    }
+    statements.clear();
+    text.clear();
+  }
+
+
+
+
+  /**
+   * Remove the caches of connections which have been closed.
+   */
+  private static void discardClosed() {
+    final List<StatementCache> closed = new ArrayList<StatementCache>();
+    for (final Iterator<Map.Entry<Connection, StatementCache>> it = CACHES.entrySet().iterator(); it.hasNext();) {
+      final Map.Entry<Connection, StatementCache> entry = it.next();
+      try {
+        if (entry.getKey().isClosed()) {
+          closed.add(entry.getValue());
+          it.remove();
+        }
+      } catch (final SQLException e) {
+        closed.add(entry.getValue());
+        it.remove();
+      }
+    }
+    for (final StatementCache cache : closed) {
+      cache.clear();
+    }
+  }
+
+
+
+
+  /**
+   * @return the physical connection behind a pooled connection, or the
+   *         connection itself
+   */
+  private static Connection unwrap(final Connection conn) {
+    try {
+      if (conn.isWrapperFor(Connection.class)) {
+        final Connection retval = conn.unwrap(Connection.class);
+        if (retval != null) {
+          return retval;
+        }
+      }
+    } catch (final SQLException e) {
+      Log.debug("Could not unwrap connection: " + e.getMessage());
+    } catch (final AbstractMethodError e) {
+      // pre-JDBC 4 driver
+    }
+    return conn;
+  }
+
+}
@@ -11,6 +11,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.UUID;
@@ -21,6 +22,7 @@ import coyote.commons.jdbc.ColumnDefinition;
 import coyote.commons.jdbc.ColumnType;
 import coyote.commons.jdbc.DatabaseDialect;
 import coyote.commons.jdbc.DatabaseUtil;
+import coyote.commons.jdbc.StatementCache;
 import coyote.commons.jdbc.TableDefinition;
 import coyote.commons.template.SymbolTable;
 import coyote.dataframe.DataField;
@@ -110,7 +112,8 @@ public class DatabaseContext extends PersistentContext {
     }
 
     upsertFields(connection, TABLE_NAME, frame);
-    
+
+    StatementCache.close(connection);
     DatabaseUtil.closeQuietly(connection);
     // connection = null; //should probably null this out since it is closed
 
@@ -193,36 +196,6 @@ public class DatabaseContext extends PersistentContext {
 
 
 
-  @SuppressWarnings("unchecked")
-  private void insertField(final DataField field, final SymbolTable sqlsymbols) {
-    sqlsymbols.put(DatabaseDialect.FIELD_NAMES_SYM, "SysId, Job, Name, Value, Type, CreatedBy, CreatedOn, ModifiedBy, ModifiedOn");
-    sqlsymbols.put(DatabaseDialect.FIELD_VALUES_SYM, "?, ?, ?, ?, ?, ?, ?, ?, ?");
-    final String sql = DatabaseDialect.getSQL(databaseProduct, DatabaseDialect.INSERT, sqlsymbols);
-    if (sql != null) {
-      try {
-        final PreparedStatement preparedStatement = connection.prepareStatement(sql);
-        preparedStatement.setString(1, UUID.randomUUID().toString());
-        preparedStatement.setString(2, getEngine().getName());
-        preparedStatement.setString(3, field.getName());
-        preparedStatement.setString(4, field.getStringValue());
-        preparedStatement.setInt(5, field.getType());
-        preparedStatement.setString(6, identity);
-        preparedStatement.setTimestamp(7, new java.sql.Timestamp(new Date().getTime()));
-        preparedStatement.setString(8, identity);
-        preparedStatement.setTimestamp(9, new java.sql.Timestamp(new Date().getTime()));
-        preparedStatement.executeUpdate();
-      } catch (final SQLException e) {
-        Log.fatal(ExceptionUtil.toString(e));
-        Log.debug(ExceptionUtil.stackTrace(e));
-      }
-    } else {
-      Log.error("Cannot support " + databaseProduct + " database product");
-    }
-  }
-
-
-
-
   private boolean isAutoCreate() {
     return configuration.getBoolean(ConfigTag.AUTO_CREATE);
   }
@@ -327,18 +300,55 @@ public class DatabaseContext extends PersistentContext {
 
 
 
+  /**
+   * Persist the fields of the given frame, updating the records of existing
+   * fields whose values have changed and inserting records for new fields.
+   *
+   * <p>All the updates are sent as one batch and all the inserts as another,
+   * in one transaction, so the context is saved in a few round trips no
+   * matter how many fields it has.
+   */
   @SuppressWarnings("unchecked")
   private void upsertFields(final Connection conn, final String tableName, final DataFrame frame) {
+    if (conn == null) {
+      return;
+    }
+
     final SymbolTable sqlsymbols = new SymbolTable();
     sqlsymbols.put(DatabaseDialect.DB_SCHEMA_SYM, SCHEMA_NAME);
-    sqlsymbols.put(DatabaseDialect.TABLE_NAME_SYM, TABLE_NAME);
+    sqlsymbols.put(DatabaseDialect.TABLE_NAME_SYM, tableName);
+    sqlsymbols.put(DatabaseDialect.FIELD_NAMES_SYM, "SysId, Job, Name, Value, Type, CreatedBy, CreatedOn, ModifiedBy, ModifiedOn");
+    sqlsymbols.put(DatabaseDialect.FIELD_VALUES_SYM, "?, ?, ?, ?, ?, ?, ?, ?, ?");
 
-    String sql = null;
+    final StatementCache cache = StatementCache.getCache(conn);
+    final String insertSql = cache.getSQL(databaseProduct, DatabaseDialect.INSERT, sqlsymbols);
+    if (insertSql == null) {
+      Log.error("Cannot support " + databaseProduct + " database product");
+      return;
+    }
+    // the sysid is a parameter so one statement serves all the updates
+    final String updateSql = "UPDATE " + SCHEMA_NAME + "." + tableName + " SET Value=?, Type=?, ModifiedBy=?, ModifiedOn=? WHERE SysId=?";
+
+    final Timestamp now = new Timestamp(System.currentTimeMillis());
+    int updates = 0;
+    int inserts = 0;
+    Boolean autoCommit = null;
+    try {
+      autoCommit = conn.getAutoCommit();
+      conn.setAutoCommit(false);
+      final PreparedStatement update = cache.prepare(updateSql);
+      final PreparedStatement insert = cache.prepare(insertSql);
+
+      for (final DataField field : frame.getFields()) {
+        final DataFrame existingFrame = (existingFields != null) ? existingFields.getFrameByColumnValue("Name", field.getName()) : null;
+        DataField sysIdField = null;
+        if (existingFrame != null) {
+          sysIdField = existingFrame.getFieldIgnoreCase("SysId");
+          if (sysIdField == null) {
+            Log.error("Existing field does not contain a sysid: " + existingFrame.toString());
+          }
+        }
 
-    for (final DataField field : frame.getFields()) {
-      final DataFrame existingFrame = existingFields.getFrameByColumnValue("Name", field.getName());
-      if (existingFrame != null) {
-        final DataField sysIdField = existingFrame.getFieldIgnoreCase("SysId");
         if (sysIdField != null) {
           String existingValue = null;
           final DataField valueField = existingFrame.getFieldIgnoreCase("Value");
@@ -346,39 +356,59 @@ public class DatabaseContext extends PersistentContext {
             existingValue = valueField.getStringValue();
           }
           // Only update if the value is different
-          if (!field.getStringValue().equals(existingValue)) {
-            Log.debug("Field:" + field.getName() + " was '" + existingValue + "' and now is '" + field.getStringValue() + "'");
-
-            sqlsymbols.put(DatabaseDialect.FIELD_MAP_SYM, "Value=?, Type=?, ModifiedBy=?, ModifiedOn=?");
-            sqlsymbols.put(DatabaseDialect.SYS_ID_SYM, sysIdField.getStringValue());
-            sql = DatabaseDialect.getSQL(databaseProduct, DatabaseDialect.UPDATE, sqlsymbols);
-
-            if (sql != null) {
-              try {
-                final PreparedStatement preparedStatement = conn.prepareStatement(sql);
-                if (field.getType() == DataField.DATE) {
-                  preparedStatement.setString(1, new SimpleDateFormat(CDX.DEFAULT_DATETIME_FORMAT).format((Date)field.getObjectValue()));
-                } else {
-                  preparedStatement.setString(1, field.getStringValue());
-                }
-                preparedStatement.setInt(2, field.getType());
-                preparedStatement.setString(3, identity);
-                preparedStatement.setTimestamp(4, new java.sql.Timestamp(new Date().getTime()));
-                preparedStatement.executeUpdate();
-              } catch (final SQLException e) {
-                Log.fatal(ExceptionUtil.toString(e));
-              }
+          final String value = field.getStringValue();
+          if ((value == null) ? existingValue != null : !value.equals(existingValue)) {
+            Log.debug("Field:" + field.getName() + " was '" + existingValue + "' and now is '" + value + "'");
+            if (field.getType() == DataField.DATE && field.getObjectValue() != null) {
+              update.setString(1, new SimpleDateFormat(CDX.DEFAULT_DATETIME_FORMAT).format((Date)field.getObjectValue()));
             } else {
-              Log.error("Cannot support " + databaseProduct + " database product");
+              update.setString(1, value);
             }
-
+            update.setInt(2, field.getType());
+            update.setString(3, identity);
+            update.setTimestamp(4, now);
+            update.setString(5, sysIdField.getStringValue());
+            update.addBatch();
+            updates++;
           }
         } else {
-          Log.error("Existing field does not contain a sysid: " + existingFrame.toString());
-          insertField(field, sqlsymbols);
+          insert.setString(1, UUID.randomUUID().toString());
+          insert.setString(2, getEngine().getName());
+          insert.setString(3, field.getName());
+          insert.setString(4, field.getStringValue());
+          insert.setInt(5, field.getType());
+          insert.setString(6, identity);
+          insert.setTimestamp(7, now);
+          insert.setString(8, identity);
+          insert.setTimestamp(9, now);
+          insert.addBatch();
+          inserts++;
+        }
+      }
+
+      if (updates > 0) {
+        update.executeBatch();
+      }
+      if (inserts > 0) {
+        insert.executeBatch();
+      }
+      conn.commit();
+      Log.debug("Context saved: " + updates + " fields updated, " + inserts + " fields inserted");
+    } catch (final SQLException e) {
+      Log.fatal(ExceptionUtil.toString(e));
+      Log.debug(ExceptionUtil.stackTrace(e));
+      try {
+        conn.rollback();
+      } catch (final SQLException e1) {
+        Log.warn("Could not roll-back context changes: " + e1.getMessage());
+      }
+    } finally {
+      if (autoCommit != null) {
+        try {
+          conn.setAutoCommit(autoCommit);
+        } catch (final SQLException e) {
+          Log.warn("Could not restore auto-commit: " + e.getMessage());
         }
-      } else {
-        insertField(field, sqlsymbols);
       }
     }
   }
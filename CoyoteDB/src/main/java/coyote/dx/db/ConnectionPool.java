@@ -0,0 +1,678 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.db;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import coyote.commons.StringUtil;
+import coyote.commons.jdbc.StatementCache;
+import coyote.dx.metric.Gauge;
+import coyote.dx.metric.Histogram;
+import coyote.dx.metric.MetricRegistry;
+import coyote.loader.log.Log;
+
+
+/**
+ * A pool of connections to one database, shared by name across all the jobs
+ * in a runtime.
+ *
+ * <p>Connections handed out by the pool are proxies; closing one returns the
+ * physical connection to the pool instead of closing it. Physical connections
+ * are closed when they have been idle longer than the idle timeout (while
+ * the pool is larger than its minimum size), when they are older than the
+ * maximum lifetime or when they fail validation.</p>
+ *
+ * <p>Callers wait up to the wait timeout for a connection when all the
+ * connections are in use and the pool is at its maximum size. The number of
+ * active and idle connections, the number of waiting callers and the time
+ * taken to acquire connections are published in the default metric
+ * registry, labeled with the name of the pool.</p>
+ */
+public class ConnectionPool implements Closeable {
+
+  public static final String ACTIVE = "coyote_db_pool_active";
+  public static final String IDLE = "coyote_db_pool_idle";
+  public static final String WAITERS = "coyote_db_pool_waiters";
+  public static final String ACQUIRE_LATENCY = "coyote_db_pool_acquire_seconds";
+
+  /** The default minimum number of connections kept open. */
+  public static final int DEFAULT_MIN_SIZE = 0;
+
+  /** The default maximum number of connections. */
+  public static final int DEFAULT_MAX_SIZE = 10;
+
+  /** The default time a connection may be idle before it is closed: 10 minutes. */
+  public static final long DEFAULT_IDLE_TIMEOUT = 10 * 60 * 1000L;
+
+  /** The default maximum age of a connection: 30 minutes. */
+  public static final long DEFAULT_MAX_LIFETIME = 30 * 60 * 1000L;
+
+  /** The default time to wait for a connection: 30 seconds. */
+  public static final long DEFAULT_WAIT_TIMEOUT = 30 * 1000L;
+
+  /** Connections used more recently than this are not validated on checkout. */
+  private static final long VALIDATION_BYPASS = 500;
+
+  /** Seconds to wait for a connection to validate. */
+  private static final int VALIDATION_TIMEOUT = 5;
+
+  private static final String POOL = "pool";
+
+  private static final Map<String, ConnectionPool> POOLS = new HashMap<String, ConnectionPool>();
+
+  private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread retval = new Thread(runnable, "ConnectionPoolEvictor");
+      retval.setDaemon(true);
+      return retval;
+    }
+  });
+
+  private final String name;
+  private final Database database;
+  private final int minSize;
+  private final int maxSize;
+  private final long idleTimeout;
+  private final long maxLifetime;
+  private final long waitTimeout;
+  private final String validationQuery;
+
+  /** Idle connections, most recently used first. */
+  private final Deque<Entry> idle = new ArrayDeque<Entry>();
+
+  /** The number of physical connections, open or being opened. */
+  private int total = 0;
+  private int active = 0;
+  private int waiters = 0;
+  private volatile boolean closed = false;
+
+  private final Histogram acquireLatency;
+  private final ScheduledFuture<?> eviction;
+
+
+
+
+  /**
+   * Create a pool.
+   *
+   * <p>Most callers should use {@link #getPool(String, Database, int, int, long, long, long, String)}
+   * so pools are shared by name.</p>
+   *
+   * @param name the name of the pool, used in logs and metrics
+   * @param database the definition of the database to which connections are made
+   * @param minSize the number of connections to keep open, even when idle
+   * @param maxSize the maximum number of connections
+   * @param idleTimeout milliseconds a connection may be idle before it is closed
+   * @param maxLifetime milliseconds after which a connection is replaced, 0 for no limit
+   * @param waitTimeout milliseconds to wait for a connection when all are in use
+   * @param validationQuery the query used to test connections, null to use {@code Connection.isValid()}
+   */
+  public ConnectionPool(String name, Database database, int minSize, int maxSize, long idleTimeout, long maxLifetime, long waitTimeout, String validationQuery) {
+    this.name = name;
+    this.database = database;
+    this.maxSize = Math.max(1, maxSize);
+    this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+    this.idleTimeout = idleTimeout;
+    this.maxLifetime = maxLifetime;
+    this.waitTimeout = Math.max(0, waitTimeout);
+    this.validationQuery = StringUtil.isNotBlank(validationQuery) ? validationQuery : null;
+
+    MetricRegistry registry = MetricRegistry.getDefault();
+    acquireLatency = registry.histogram(ACQUIRE_LATENCY, "Time taken to acquire a connection from the pool", POOL, name);
+    registry.gauge(ACTIVE, "Connections in use", new Gauge() {
+      @Override
+      public double getValue() {
+        return getActive();
+      }
+    }, POOL, name);
+    registry.gauge(IDLE, "Connections waiting in the pool", new Gauge() {
+      @Override
+      public double getValue() {
+        return getIdle();
+      }
+    }, POOL, name);
+    registry.gauge(WAITERS, "Callers waiting for a connection", new Gauge() {
+      @Override
+      public double getValue() {
+        return getWaiters();
+      }
+    }, POOL, name);
+
+    long period = Math.max(1000, Math.min(30000, idleTimeout > 0 ? idleTimeout / 2 : 30000));
+    eviction = EVICTOR.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        evict();
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+
+
+
+  /**
+   * Get the pool with the given name, creating it if it does not exist.
+   *
+   * <p>If a pool with the name exists but connects to a different target or
+   * as a different user, it is closed and replaced.</p>
+   *
+   * @see #ConnectionPool(String, Database, int, int, long, long, long, String)
+   */
+  public static ConnectionPool getPool(String name, Database database, int minSize, int maxSize, long idleTimeout, long maxLifetime, long waitTimeout, String validationQuery) {
+    ConnectionPool retired = null;
+    ConnectionPool retval;
+    synchronized (POOLS) {
+      retval = POOLS.get(name);
+      if (retval != null && !retval.closed && same(retval.database.getTarget(), database.getTarget()) && same(retval.database.getUserName(), database.getUserName())) {
+        return retval;
+      }
+      retired = retval;
+      retval = new ConnectionPool(name, database, minSize, maxSize, idleTimeout, maxLifetime, waitTimeout, validationQuery);
+      POOLS.put(name, retval);
+    }
+    if (retired != null) {
+      Log.info("Replacing connection pool '" + name + "' as its database has changed");
+      retired.retire();
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @param name the name of the pool
+   *
+   * @return the pool with the given name or null if there is no such pool
+   */
+  public static ConnectionPool getPool(String name) {
+    synchronized (POOLS) {
+      return POOLS.get(name);
+    }
+  }
+
+
+
+
+  /**
+   * Close all the pools, typically when the runtime is shutting down.
+   */
+  public static void closeAll() {
+    List<ConnectionPool> pools;
+    synchronized (POOLS) {
+      pools = new ArrayList<ConnectionPool>(POOLS.values());
+      POOLS.clear();
+    }
+    for (ConnectionPool pool : pools) {
+      pool.retire();
+    }
+  }
+
+
+
+
+  private static boolean same(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+
+
+
+  /**
+   * Get a connection from the pool.
+   *
+   * <p>Closing the returned connection returns it to the pool.</p>
+   *
+   * @return a connection or null if one could not be created or none became
+   *         available before the wait timeout expired
+   */
+  public Connection getConnection() {
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(waitTimeout);
+    try {
+      while (true) {
+        Entry entry = null;
+        boolean create = false;
+        synchronized (this) {
+          while (!closed && idle.isEmpty() && total >= maxSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              Log.error("Timed out waiting " + waitTimeout + "ms for a connection from pool '" + name + "' (" + active + " active)");
+              return null;
+            }
+            waiters++;
+            try {
+              TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return null;
+            } finally {
+              waiters--;
+            }
+          }
+          if (closed) {
+            Log.error("Connection pool '" + name + "' is closed");
+            return null;
+          }
+          if (!idle.isEmpty()) {
+            entry = idle.pollFirst();
+          } else {
+            total++;
+            create = true;
+          }
+          active++;
+        }
+
+        if (create) {
+          entry = open();
+          if (entry == null) {
+            synchronized (this) {
+              total--;
+              active--;
+              notifyAll();
+            }
+            return null;
+          }
+          return entry.lease();
+        }
+
+        if (isUsable(entry)) {
+          return entry.lease();
+        }
+
+        // discard the connection and try again
+        discard(entry);
+        synchronized (this) {
+          active--;
+        }
+      }
+    } finally {
+      acquireLatency.recordSince(start);
+    }
+  }
+
+
+
+
+  /**
+   * @return the name of the pool
+   */
+  public String getName() {
+    return name;
+  }
+
+
+
+
+  /**
+   * @return the number of connections in use
+   */
+  public synchronized int getActive() {
+    return active;
+  }
+
+
+
+
+  /**
+   * @return the number of connections waiting in the pool
+   */
+  public synchronized int getIdle() {
+    return idle.size();
+  }
+
+
+
+
+  /**
+   * @return the number of callers waiting for a connection
+   */
+  public synchronized int getWaiters() {
+    return waiters;
+  }
+
+
+
+
+  /**
+   * @return the number of physical connections, in use or idle
+   */
+  public synchronized int getSize() {
+    return total;
+  }
+
+
+
+
+  /**
+   * @return the histogram of the time taken to acquire connections
+   */
+  public Histogram getAcquireLatency() {
+    return acquireLatency;
+  }
+
+
+
+
+  /**
+   * Close the pool and all its idle connections; connections in use are
+   * closed when they are returned.
+   *
+   * <p>Named pools are removed from the shared registry.</p>
+   */
+  @Override
+  public void close() {
+    synchronized (POOLS) {
+      if (POOLS.get(name) == this) {
+        POOLS.remove(name);
+      }
+    }
+    retire();
+  }
+
+
+
+
+  private void retire() {
+    List<Entry> discarded;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      discarded = new ArrayList<Entry>(idle);
+      idle.clear();
+      notifyAll();
+    }
+    eviction.cancel(false);
+    for (Entry entry : discarded) {
+      discard(entry);
+    }
+    MetricRegistry registry = MetricRegistry.getDefault();
+    registry.remove(ACTIVE, POOL, name);
+    registry.remove(IDLE, POOL, name);
+    registry.remove(WAITERS, POOL, name);
+  }
+
+
+
+
+  /**
+   * Close idle connections which have expired and open connections to bring
+   * the pool up to its minimum size.
+   */
+  void evict() {
+    List<Entry> expired = new ArrayList<Entry>();
+    int needed;
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      // least recently used are at the end
+      Iterator<Entry> it = idle.descendingIterator();
+      while (it.hasNext()) {
+        Entry entry = it.next();
+        boolean stale = idleTimeout > 0 && now - entry.lastUsed > idleTimeout && total - expired.size() > minSize;
+        if (stale || entry.isExpired(now)) {
+          it.remove();
+          expired.add(entry);
+        }
+      }
+      total -= expired.size();
+      needed = minSize - total;
+      if (needed > 0) {
+        total += needed;
+      }
+    }
+
+    for (Entry entry : expired) {
+      closePhysical(entry);
+    }
+
+    for (int x = 0; x < needed; x++) {
+      Entry entry = open();
+      synchronized (this) {
+        if (entry != null && !closed) {
+          idle.addLast(entry);
+        } else {
+          total--;
+          if (entry != null) {
+            closePhysical(entry);
+          }
+        }
+        notifyAll();
+      }
+    }
+  }
+
+
+
+
+  private Entry open() {
+    Connection connection = database.createConnection();
+    if (connection == null) {
+      return null;
+    }
+    Log.debug("Opened connection to " + database.getTarget() + " for pool '" + name + "'");
+    return new Entry(connection);
+  }
+
+
+
+
+  /**
+   * Check an idle connection before handing it out.
+   */
+  private boolean isUsable(Entry entry) {
+    long now = System.currentTimeMillis();
+    if (entry.isExpired(now)) {
+      return false;
+    }
+    if (now - entry.lastUsed < VALIDATION_BYPASS) {
+      return true;
+    }
+    try {
+      if (validationQuery == null) {
+        return entry.connection.isValid(VALIDATION_TIMEOUT);
+      }
+      Statement statement = entry.connection.createStatement();
+      try {
+        statement.setQueryTimeout(VALIDATION_TIMEOUT);
+        statement.execute(validationQuery);
+      } finally {
+        statement.close();
+      }
+      return true;
+    } catch (SQLException e) {
+      Log.debug("Connection in pool '" + name + "' failed validation: " + e.getMessage());
+      return false;
+    }
+  }
+
+
+
+
+  /**
+   * Return a connection to the pool.
+   */
+  private void release(Entry entry) {
+    boolean keep = !closed && !entry.isExpired(System.currentTimeMillis());
+    if (keep) {
+      try {
+        if (entry.connection.isClosed()) {
+          keep = false;
+        } else if (!entry.connection.getAutoCommit()) {
+          entry.connection.rollback();
+          entry.connection.setAutoCommit(true);
+        }
+      } catch (SQLException e) {
+        keep = false;
+      }
+    }
+
+    synchronized (this) {
+      active--;
+      if (keep && !closed) {
+        entry.lastUsed = System.currentTimeMillis();
+        idle.addFirst(entry);
+        notifyAll();
+        return;
+      }
+    }
+    discard(entry);
+  }
+
+
+
+
+  private void discard(Entry entry) {
+    closePhysical(entry);
+    synchronized (this) {
+      total--;
+      notifyAll();
+    }
+  }
+
+
+
+
+  private void closePhysical(Entry entry) {
+    StatementCache.close(entry.connection);
+    try {
+      entry.connection.close();
+    } catch (SQLException ignore) {
+      // nothing to do
+    }
+  }
+
+
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public synchronized String toString() {
+    return "ConnectionPool: " + name + " active=" + active + " idle=" + idle.size() + " waiters=" + waiters + " max=" + maxSize;
+  }
+
+
+
+
+  /**
+   * A physical connection and its history.
+   */
+  private class Entry {
+    final Connection connection;
+    final long created = System.currentTimeMillis();
+    volatile long lastUsed = created;
+
+
+
+
+    Entry(Connection connection) {
+      this.connection = connection;
+    }
+
+
+
+
+    boolean isExpired(long now) {
+      return maxLifetime > 0 && now - created > maxLifetime;
+    }
+
+
+
+
+    /**
+     * @return a proxy which returns this entry to the pool when closed
+     */
+    Connection lease() {
+      return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new Lease(this));
+    }
+  }
+
+
+
+
+  /**
+   * Passes calls to the physical connection until the connection is closed,
+   * at which time the connection is returned to the pool.
+   */
+  private class Lease implements InvocationHandler {
+    private Entry entry;
+
+
+
+
+    Lease(Entry entry) {
+      this.entry = entry;
+    }
+
+
+
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String methodName = method.getName();
+      Entry current;
+      synchronized (this) {
+        current = entry;
+        if ("close".equals(methodName)) {
+          entry = null;
+        }
+      }
+
+      if ("close".equals(methodName)) {
+        if (current != null) {
+          release(current);
+        }
+        return null;
+      } else if ("isClosed".equals(methodName)) {
+        return current == null;
+      } else if ("equals".equals(methodName)) {
+        return proxy == args[0];
+      } else if ("hashCode".equals(methodName)) {
+        return System.identityHashCode(proxy);
+      } else if ("toString".equals(methodName)) {
+        return "Pooled connection (" + name + ")" + (current == null ? " closed" : "");
+      }
+
+      if (current == null) {
+        throw new SQLException("Connection is closed");
+      }
+      try {
+        return method.invoke(current.connection, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+}
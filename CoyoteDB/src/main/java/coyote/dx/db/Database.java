@@ -16,6 +16,7 @@ import coyote.commons.CipherUtil;
 import coyote.commons.ExceptionUtil;
 import coyote.commons.StringUtil;
 import coyote.commons.jdbc.DriverDelegate;
+import coyote.commons.jdbc.StatementCache;
 import coyote.dataframe.DataFrameException;
 import coyote.dx.AbstractConfigurableComponent;
 import coyote.dx.ConfigTag;
@@ -101,7 +102,7 @@ public class Database extends AbstractConfigurableComponent implements Configura
    * 
    * @return the connection to the database or null if there were problems
    */
-  private synchronized Connection createConnection() {
+  synchronized Connection createConnection() {
     Connection retval = null;
 
     try {
@@ -256,6 +257,7 @@ public class Database extends AbstractConfigurableComponent implements Configura
   public void close() throws IOException {
     for (Connection connection : connections) {
       if (connection != null) {
+        StatementCache.close(connection);
         try {
           connection.close();
         } catch (SQLException ignore) {}
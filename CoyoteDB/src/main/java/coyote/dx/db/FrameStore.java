@@ -11,10 +11,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import coyote.commons.ExceptionUtil;
 import coyote.commons.GUID;
@@ -23,6 +29,7 @@ import coyote.commons.jdbc.ColumnDefinition;
 import coyote.commons.jdbc.ColumnType;
 import coyote.commons.jdbc.DatabaseDialect;
 import coyote.commons.jdbc.DatabaseUtil;
+import coyote.commons.jdbc.StatementCache;
 import coyote.commons.jdbc.TableDefinition;
 import coyote.commons.template.SymbolTable;
 import coyote.dataframe.DataField;
@@ -43,12 +50,14 @@ import coyote.loader.log.Log;
  * field, that sysid represents the root data frame.
  * 
  * <p>This class uses FieldSlots to hold the field data for later assembley 
- * into frames or creation of batch insert or update commands. This 
- * intermediate format allows for recursive SQL calls over the same 
- * connection but outside the result set. This also allows the system to 
- * create batches of insert and update commands in contrast with creating a 
- * command for each field. One batch insert can create the entire frame at 
- * once. The same is true for updates and deletions. 
+ * into frames or creation of batch insert or update commands. A whole tree 
+ * of frames is read with one recursive query (or one query per level where 
+ * recursive queries are not supported) and assembled from the slots. This 
+ * also allows the system to create batches of insert and update commands in 
+ * contrast with creating a command for each field. One batch insert can 
+ * create the entire frame at once. The same is true for updates and 
+ * deletions. Each operation has a bulk variant which handles many frames in 
+ * the same queries and batches.
  */
 public abstract class FrameStore {
 
@@ -67,6 +76,12 @@ public abstract class FrameStore {
   // Size of the batch of inserts and updates to send at once
   private static final int BATCH_SIZE = 250;
 
+  // Number of identifiers in each IN list, short lists are padded so the same
+  // statement can be used for every query
+  private static final int IN_LIST_SIZE = 50;
+
+  private static final String COLUMNS = SYSID + ", " + PARENT + ", " + SEQUENCE + ", " + ACTIVE + ", " + NAME + ", " + TYPE + ", " + VALUE;
+
 
 
 
@@ -80,12 +95,22 @@ public abstract class FrameStore {
 
 
 
+  /**
+   * @return a new system identifier for a frame or field
+   */
+  public static String newSysId() {
+    return GUID.randomSecureGUID().toString();
+  }
+
+
+
+
   /**
    * Store the given data frame in the database.
    * 
    * <p>This performs a batch insert of all the fields in the given frame and 
-   * its children. If there are too many fields in the frame, multiple batches 
-   * will be executed.
+   * its children in one transaction. If there are too many fields in the 
+   * frame, multiple batches will be executed.
    * 
    * @param frame the frame to store in the database
    * @param conn the JDBC connection to the database
@@ -95,77 +120,67 @@ public abstract class FrameStore {
    * @param dialect the database product being used, if null, the connection 
    *        metadata will be queried
    * 
-   * @return the system identifier of the new frame
+   * @return the system identifier of the new frame or null if it could not 
+   *         be stored
    */
-  @SuppressWarnings("unchecked")
   public static String create(DataFrame frame, Connection conn, String entity, String schema, String table, String dialect) {
-    String retval = GUID.randomSecureGUID().toString();
+    String retval = newSysId();
     Log.info("Creating Frame Id:" + retval);
+    Map<String, DataFrame> frames = new LinkedHashMap<String, DataFrame>();
+    frames.put(retval, frame);
+    return createAll(frames, conn, entity, schema, table, dialect) ? retval : null;
+  }
+
+
+
+
+  /**
+   * Store all the given data frames in the database with one batch insert in
+   * one transaction.
+   * 
+   * @param frames the frames to store mapped by the system identifiers to 
+   *        store them under, see {@link #newSysId()}
+   * @param conn the JDBC connection to the database
+   * @param entity the entity creating the dataframes
+   * @param schema the schema in the database where the data is stored
+   * @param table the table in the schema where the data is stored
+   * @param dialect the database product being used, if null, the connection 
+   *        metadata will be queried
+   * 
+   * @return true if all the frames were stored, false if none were
+   */
+  @SuppressWarnings("unchecked")
+  public static boolean createAll(Map<String, DataFrame> frames, Connection conn, String entity, String schema, String table, String dialect) {
+    if (conn == null) {
+      return false;
+    }
     String databaseProduct = dialect;
     if (StringUtil.isBlank(databaseProduct)) {
       databaseProduct = DatabaseUtil.getProduct(conn);
     }
 
-    List<FieldSlot> slots = getSlots(frame, retval);
-
     final SymbolTable sqlsymbols = new SymbolTable();
     sqlsymbols.put(DatabaseDialect.DB_SCHEMA_SYM, schema);
     sqlsymbols.put(DatabaseDialect.TABLE_NAME_SYM, table);
     sqlsymbols.put(DatabaseDialect.FIELD_NAMES_SYM, SYSID + ", " + ACTIVE + ", " + PARENT + ", " + SEQUENCE + ", " + NAME + ", " + VALUE + ", " + TYPE + ", " + CREATED_BY + ", " + CREATED_ON + ", " + MODIFIED_BY + ", " + MODIFIED_ON);
     sqlsymbols.put(DatabaseDialect.FIELD_VALUES_SYM, "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?");
-    final String sql = DatabaseDialect.getSQL(databaseProduct, DatabaseDialect.INSERT, sqlsymbols);
-    if (sql != null) {
-      PreparedStatement preparedStatement = null;
-      try {
-        conn.setAutoCommit(false);
-        preparedStatement = conn.prepareStatement(sql);
-        int count = 0;
-        for (FieldSlot slot : slots) {
-          preparedStatement.setString(1, slot.getSysId());
-          preparedStatement.setBoolean(2, slot.isActive());
-          preparedStatement.setString(3, slot.getParent());
-          preparedStatement.setInt(4, slot.getSequence());
-          preparedStatement.setString(5, slot.getName());
-          preparedStatement.setString(6, slot.getValue());
-          preparedStatement.setShort(7, slot.getType());
-          preparedStatement.setString(8, entity);
-          preparedStatement.setTimestamp(9, new java.sql.Timestamp(new Date().getTime()));
-          preparedStatement.setString(10, entity);
-          preparedStatement.setTimestamp(11, new java.sql.Timestamp(new Date().getTime()));
-          preparedStatement.addBatch();
-
-          count++;
-          if (count % BATCH_SIZE == 0) {
-            int[] result = preparedStatement.executeBatch();
-            conn.commit();
-            Log.debug("Commited a batch of " + result.length+" rows");
-            count = 0;
-          }
-        }
-
-        if (count > 0) {
-          int[] result = preparedStatement.executeBatch();
-          Log.debug("Commited batch of " + result.length+" rows");
-          conn.commit();
-        }
+    final String sql = StatementCache.getCache(conn).getSQL(databaseProduct, DatabaseDialect.INSERT, sqlsymbols);
+    if (sql == null) {
+      Log.error("Cannot support " + databaseProduct + " database product");
+      return false;
+    }
 
-      } catch (final SQLException e) {
-        Log.fatal(ExceptionUtil.toString(e));
-        Log.debug(ExceptionUtil.stackTrace(e));
-        try {
-          conn.rollback();
-        } catch (SQLException e1) {
-          Log.warn("Could not roll-back inserts: " + e1.getMessage());
-        }
-      } finally {
-        if (preparedStatement != null)
-          DatabaseUtil.closeQuietly(preparedStatement);
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    List<Object[]> inserts = new ArrayList<Object[]>();
+    for (Map.Entry<String, DataFrame> entry : frames.entrySet()) {
+      for (FieldSlot slot : getSlots(entry.getValue(), entry.getKey())) {
+        inserts.add(insertRow(slot, entity, now));
       }
-    } else {
-      Log.error("Cannot support " + databaseProduct + " database product");
     }
 
-    return retval;
+    Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+    batches.put(sql, inserts);
+    return execute(batches, conn);
   }
 
 
@@ -174,13 +189,6 @@ public abstract class FrameStore {
   /**
    * Retrieve a dataframe from the database with the given system identifier.
    * 
-   * <p>This is a naive recursion into the database for 2 reasons, the varing 
-   * capabilities of different databases make comming up with a good recursive 
-   * SQL statement difficult and the type of data used in the framework tends 
-   * not to be hierarchical so the number of times this will become a 
-   * performance issues should be very small. For these reasons this method
-   * performs multiple select calls to build the frame hierarchy. 
-   * 
    * @param sysid the system identifier of the frame to retrieve
    * @param conn the JDBC connection to the database
    * @param entity the entity reading the dataframe
@@ -190,39 +198,107 @@ public abstract class FrameStore {
    *        metadata will be queried
    * 
    * @return the dataframe with that system identifier or null if not found
+   * 
+   * @see #readAll(Collection, Connection, String, String, String, String)
    */
   public static DataFrame read(String sysid, Connection conn, String entity, String schema, String table, String dialect) {
-    DataFrame retval = null;
-    String query = "SELECT * FROM " + schema + "." + table + " WHERE parent = '" + sysid + "' ORDER BY " + SEQUENCE + " ASC";
-    ResultSet result = null;
-    List<FieldSlot> slots = new ArrayList<FieldSlot>();
+    return readAll(Collections.singletonList(sysid), conn, entity, schema, table, dialect).get(sysid);
+  }
 
-    Log.debug(String.format("Executing query: '%s'", query));
 
-    if (conn != null) {
-      try {
-        Statement statement = conn.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
-        result = statement.executeQuery(query);
 
-        if (result != null) {
-          try {
-            while (result.next()) {
-              slots.add(new FieldSlot(result.getString(SYSID), result.getString(PARENT), result.getInt(SEQUENCE), result.getBoolean(ACTIVE), result.getString(NAME), result.getShort(TYPE), result.getString(VALUE)));
-            }
-          } catch (Exception e) {
-            e.printStackTrace();
-          }
+
+  /**
+   * Retrieve the dataframes with the given system identifiers.
+   * 
+   * <p>The fields of all the frames, including those of nested frames, are 
+   * retrieved with a single recursive query if the database supports it. 
+   * Otherwise one query is made for each level of nesting, retrieving the 
+   * fields of all the frames at that level at once. The frames are then 
+   * assembled from the retrieved fields.
+   * 
+   * @param sysids the system identifiers of the frames to retrieve
+   * @param conn the JDBC connection to the database
+   * @param entity the entity reading the dataframes
+   * @param schema the schema in the database where the data is stored
+   * @param table the table in the schema where the data is stored
+   * @param dialect the database product being used, if null, the connection 
+   *        metadata will be queried
+   * 
+   * @return the frames which were found mapped by their system identifiers, 
+   *         in the order they were requested. Never null.
+   */
+  public static Map<String, DataFrame> readAll(Collection<String> sysids, Connection conn, String entity, String schema, String table, String dialect) {
+    Map<String, DataFrame> retval = new LinkedHashMap<String, DataFrame>();
+    if (conn != null && sysids.size() > 0) {
+      Map<String, List<FieldSlot>> tree = readTree(sysids, conn, schema, table, dialect);
+      for (String sysid : sysids) {
+        if (tree.containsKey(sysid)) {
+          retval.put(sysid, assembleFrame(sysid, tree));
         }
-      } catch (SQLException e) {
-        String emsg = String.format("Error querying database: '%s' - query = '%s'", e.getMessage().trim(), query);
-        Log.error(emsg);
       }
     }
+    return retval;
+  }
+
+
 
-    if (slots.size() > 0) {
-      retval = assembleFrame(slots, conn, entity, schema, table, dialect);
+
+  /**
+   * Read the active fields of the frames with the given system identifiers
+   * and all their nested frames.
+   * 
+   * @return the field slots mapped by the system identifier of their parent,
+   *         each list in sequence order
+   */
+  private static Map<String, List<FieldSlot>> readTree(Collection<String> sysids, Connection conn, String schema, String table, String dialect) {
+    Map<String, List<FieldSlot>> retval = new HashMap<String, List<FieldSlot>>();
+    String databaseProduct = dialect;
+    if (StringUtil.isBlank(databaseProduct)) {
+      databaseProduct = DatabaseUtil.getProduct(conn);
     }
 
+    String with = DatabaseDialect.getRecursiveWith(databaseProduct);
+    if (with != null) {
+      StringBuilder b = new StringBuilder(with);
+      b.append(" tree (").append(COLUMNS).append(") AS (SELECT ").append(COLUMNS);
+      b.append(" FROM ").append(schema).append('.').append(table);
+      b.append(" WHERE ").append(PARENT).append(" IN (").append(parameters()).append(") AND ").append(ACTIVE).append(" = ?");
+      b.append(" UNION ALL SELECT c.").append(COLUMNS.replace(", ", ", c."));
+      b.append(" FROM ").append(schema).append('.').append(table).append(" c INNER JOIN tree p ON c.").append(PARENT).append(" = p.").append(SYSID);
+      b.append(" WHERE c.").append(ACTIVE).append(" = ?) SELECT ").append(COLUMNS).append(" FROM tree ORDER BY ").append(SEQUENCE);
+      String query = b.toString();
+
+      try {
+        PreparedStatement statement = StatementCache.getCache(conn).prepare(query);
+        List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(sysids));
+        for (int x = 0; x < ids.size(); x += IN_LIST_SIZE) {
+          bindIdentifiers(statement, ids.subList(x, Math.min(x + IN_LIST_SIZE, ids.size())));
+          statement.setBoolean(IN_LIST_SIZE + 2, true);
+          readSlots(statement, retval);
+        }
+        return retval;
+      } catch (SQLException e) {
+        Log.debug(String.format("Recursive query failed, reading one level at a time: '%s' - query = '%s'", e.getMessage().trim(), query));
+        retval.clear();
+      }
+    }
+
+    String query = "SELECT " + COLUMNS + " FROM " + schema + "." + table + " WHERE " + PARENT + " IN (" + parameters() + ") AND " + ACTIVE + " = ? ORDER BY " + SEQUENCE;
+    try {
+      PreparedStatement statement = StatementCache.getCache(conn).prepare(query);
+      List<String> level = new ArrayList<String>(new LinkedHashSet<String>(sysids));
+      while (level.size() > 0) {
+        List<String> next = new ArrayList<String>();
+        for (int x = 0; x < level.size(); x += IN_LIST_SIZE) {
+          bindIdentifiers(statement, level.subList(x, Math.min(x + IN_LIST_SIZE, level.size())));
+          next.addAll(readSlots(statement, retval));
+        }
+        level = next;
+      }
+    } catch (SQLException e) {
+      Log.error(String.format("Error querying database: '%s' - query = '%s'", e.getMessage().trim(), query));
+    }
     return retval;
   }
 
@@ -230,32 +306,84 @@ public abstract class FrameStore {
 
 
   /**
-   * Assemble the given list of field slots into a data frame.
+   * @return the parameter markers for an IN list
+   */
+  private static String parameters() {
+    StringBuilder b = new StringBuilder("?");
+    for (int x = 1; x < IN_LIST_SIZE; x++) {
+      b.append(", ?");
+    }
+    return b.toString();
+  }
+
+
+
+
+  /**
+   * Bind the given identifiers to the IN list of the statement, repeating 
+   * the last one to fill the list, and set the active flag after it.
+   */
+  private static void bindIdentifiers(PreparedStatement statement, List<String> ids) throws SQLException {
+    for (int x = 0; x < IN_LIST_SIZE; x++) {
+      statement.setString(x + 1, ids.get(Math.min(x, ids.size() - 1)));
+    }
+    statement.setBoolean(IN_LIST_SIZE + 1, true);
+  }
+
+
+
+
+  /**
+   * Execute the query and add the slots it returns to the tree.
    * 
-   * <p>With the exception of {@code slots}, all the arguments are used when
-   * calling {@link #read(String, Connection, String, String, String, String)}
-   * to retrieve a filed that itself contains other fields (i.e. a DataFrame).
+   * @return the system identifiers of the slots holding frames
+   */
+  private static List<String> readSlots(PreparedStatement statement, Map<String, List<FieldSlot>> tree) throws SQLException {
+    List<String> retval = new ArrayList<String>();
+    ResultSet result = null;
+    try {
+      result = statement.executeQuery();
+      while (result.next()) {
+        FieldSlot slot = new FieldSlot(result.getString(1), result.getString(2), result.getInt(3), result.getBoolean(4), result.getString(5), result.getShort(6), result.getString(7));
+        List<FieldSlot> siblings = tree.get(slot.getParent());
+        if (siblings == null) {
+          siblings = new ArrayList<FieldSlot>();
+          tree.put(slot.getParent(), siblings);
+        }
+        siblings.add(slot);
+        if (slot.getType() == DataField.FRAMETYPE) {
+          retval.add(slot.getSysId());
+        }
+      }
+    } finally {
+      DatabaseUtil.closeQuietly(result);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Assemble the field slots of the given parent into a data frame.
    * 
-   * @param slots the list of filed slots representing the fields in the frame
-   * @param sysid the system identifier of the frame to retrieve
-   * @param conn the JDBC connection to the database
-   * @param entity the entity reading the dataframe
-   * @param schema the schema in the database where the data is stored
-   * @param table the table in the schema where the data is stored
-   * @param dialect the database product being used, if null, the connection 
-   *        metadata will be queried
+   * @param parent the system identifier of the frame to assemble
+   * @param tree the field slots mapped by the system identifier of their 
+   *        parent
    *
    * @return a data frame comprised of the data from the field slots 
    */
-  private static DataFrame assembleFrame(List<FieldSlot> slots, Connection conn, String entity, String schema, String table, String dialect) {
+  private static DataFrame assembleFrame(String parent, Map<String, List<FieldSlot>> tree) {
     DataFrame retval = new DataFrame();
-    for (FieldSlot slot : slots) {
-      if (slot.getType() == DataField.FRAMETYPE) {
-        DataFrame childframe = read(slot.getSysId(), conn, entity, schema, table, dialect);
-        retval.add(slot.getName(), childframe);
-      } else {
-        final Object contextValue = DataField.parse(slot.getValue(), slot.getType());
-        retval.add(slot.getName(), contextValue);
+    List<FieldSlot> slots = tree.get(parent);
+    if (slots != null) {
+      for (FieldSlot slot : slots) {
+        if (slot.getType() == DataField.FRAMETYPE) {
+          retval.add(slot.getName(), assembleFrame(slot.getSysId(), tree));
+        } else {
+          final Object contextValue = DataField.parse(slot.getValue(), slot.getType());
+          retval.add(slot.getName(), contextValue);
+        }
       }
     }
     return retval;
@@ -275,11 +403,140 @@ public abstract class FrameStore {
    * @param table the table in the schema where the data is stored
    * 
    * @return true if the update was successful, false if the update failed
+   * 
+   * @see #updateAll(Map, Connection, String, String, String, String)
    */
   public static boolean update(String sysid, DataFrame frame, Connection conn, String entity, String schema, String table) {
-    boolean retval = false;
+    Map<String, DataFrame> frames = new LinkedHashMap<String, DataFrame>();
+    frames.put(sysid, frame);
+    return updateAll(frames, conn, entity, schema, table, null);
+  }
 
-    return retval;
+
+
+
+  /**
+   * Update the data frames with the given identifiers so they match the 
+   * given data frames.
+   * 
+   * <p>The stored fields are read with one query and compared to the given 
+   * frames by position and name. Changed values are updated, new fields are 
+   * inserted and fields which no longer exist are marked inactive, all in 
+   * batches executed in one transaction. Frames which do not exist are 
+   * created.
+   * 
+   * @param frames the end state of the frames mapped by their system 
+   *        identifiers
+   * @param conn the JDBC connection to the database
+   * @param entity the entity updating the dataframes
+   * @param schema the schema in the database where the data is stored
+   * @param table the table in the schema where the data is stored
+   * @param dialect the database product being used, if null, the connection 
+   *        metadata will be queried
+   * 
+   * @return true if all the updates were successful, false if none were made
+   */
+  @SuppressWarnings("unchecked")
+  public static boolean updateAll(Map<String, DataFrame> frames, Connection conn, String entity, String schema, String table, String dialect) {
+    if (conn == null) {
+      return false;
+    }
+    String databaseProduct = dialect;
+    if (StringUtil.isBlank(databaseProduct)) {
+      databaseProduct = DatabaseUtil.getProduct(conn);
+    }
+
+    final SymbolTable sqlsymbols = new SymbolTable();
+    sqlsymbols.put(DatabaseDialect.DB_SCHEMA_SYM, schema);
+    sqlsymbols.put(DatabaseDialect.TABLE_NAME_SYM, table);
+    sqlsymbols.put(DatabaseDialect.FIELD_NAMES_SYM, SYSID + ", " + ACTIVE + ", " + PARENT + ", " + SEQUENCE + ", " + NAME + ", " + VALUE + ", " + TYPE + ", " + CREATED_BY + ", " + CREATED_ON + ", " + MODIFIED_BY + ", " + MODIFIED_ON);
+    sqlsymbols.put(DatabaseDialect.FIELD_VALUES_SYM, "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?");
+    final String insertSql = StatementCache.getCache(conn).getSQL(databaseProduct, DatabaseDialect.INSERT, sqlsymbols);
+    if (insertSql == null) {
+      Log.error("Cannot support " + databaseProduct + " database product");
+      return false;
+    }
+
+    Map<String, List<FieldSlot>> tree = readTree(frames.keySet(), conn, schema, table, databaseProduct);
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    List<Object[]> inserts = new ArrayList<Object[]>();
+    List<Object[]> updates = new ArrayList<Object[]>();
+    List<Object[]> deletes = new ArrayList<Object[]>();
+    for (Map.Entry<String, DataFrame> entry : frames.entrySet()) {
+      compare(entry.getValue(), entry.getKey(), tree, entity, now, inserts, updates, deletes);
+    }
+
+    Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+    batches.put(insertSql, inserts);
+    batches.put(getUpdateSql(schema, table), updates);
+    batches.put(getDeactivateSql(schema, table), deletes);
+    return execute(batches, conn);
+  }
+
+
+
+
+  /**
+   * Compare the given frame to the stored fields of its parent, adding the 
+   * rows needed to make the stored fields match the frame.
+   */
+  private static void compare(DataFrame frame, String parent, Map<String, List<FieldSlot>> tree, String entity, Timestamp now, List<Object[]> inserts, List<Object[]> updates, List<Object[]> deletes) {
+    Map<Integer, FieldSlot> stored = new HashMap<Integer, FieldSlot>();
+    List<FieldSlot> slots = tree.get(parent);
+    if (slots != null) {
+      for (FieldSlot slot : slots) {
+        stored.put(slot.getSequence(), slot);
+      }
+    }
+
+    int seq = 0;
+    if (frame != null) {
+      for (DataField field : frame.getFields()) {
+        FieldSlot slot = stored.remove(seq);
+        if (slot == null || !same(slot.getName(), field.getName()) || (slot.getType() == DataField.FRAMETYPE) != field.isFrame()) {
+          if (slot != null) {
+            deactivate(slot, tree, entity, now, deletes);
+          }
+          List<FieldSlot> added = new ArrayList<FieldSlot>();
+          addSlots(field, parent, seq, added);
+          for (FieldSlot newSlot : added) {
+            inserts.add(insertRow(newSlot, entity, now));
+          }
+        } else if (field.isFrame()) {
+          compare((DataFrame)field.getObjectValue(), slot.getSysId(), tree, entity, now, inserts, updates, deletes);
+        } else if (slot.getType() != field.getType() || !same(slot.getValue(), field.getStringValue())) {
+          updates.add(new Object[]{field.getStringValue(), field.getType(), entity, now, slot.getSysId()});
+        }
+        seq++;
+      }
+    }
+
+    for (FieldSlot slot : stored.values()) {
+      deactivate(slot, tree, entity, now, deletes);
+    }
+  }
+
+
+
+
+  private static boolean same(String value, String other) {
+    return (value == null) ? other == null : value.equals(other);
+  }
+
+
+
+
+  /**
+   * Add the rows marking the given slot and all its children inactive.
+   */
+  private static void deactivate(FieldSlot slot, Map<String, List<FieldSlot>> tree, String entity, Timestamp now, List<Object[]> deletes) {
+    deletes.add(new Object[]{false, entity, now, slot.getSysId()});
+    List<FieldSlot> children = tree.get(slot.getSysId());
+    if (children != null) {
+      for (FieldSlot child : children) {
+        deactivate(child, tree, entity, now, deletes);
+      }
+    }
   }
 
 
@@ -299,10 +556,149 @@ public abstract class FrameStore {
    * @param table the table in the schema where the data is stored
    * 
    * @return true if the delete was successful, false if the deletion failed
+   * 
+   * @see #deleteAll(Collection, Connection, String, String, String, String)
    */
   public static boolean delete(String sysid, Connection conn, String entity, String schema, String table) {
+    return deleteAll(Collections.singletonList(sysid), conn, entity, schema, table, null);
+  }
+
+
+
+
+  /**
+   * Delete the data frames with the given identifiers by marking all their 
+   * fields, and the fields of their nested frames, inactive in one batch.
+   * 
+   * @param sysids the system identifiers of the data frames to delete
+   * @param conn the JDBC connection to the database
+   * @param entity the entity deleting the dataframes
+   * @param schema the schema in the database where the data is stored
+   * @param table the table in the schema where the data is stored
+   * @param dialect the database product being used, if null, the connection 
+   *        metadata will be queried
+   * 
+   * @return true if the delete was successful, false if the deletion failed
+   */
+  public static boolean deleteAll(Collection<String> sysids, Connection conn, String entity, String schema, String table, String dialect) {
+    if (conn == null) {
+      return false;
+    }
+    Map<String, List<FieldSlot>> tree = readTree(sysids, conn, schema, table, dialect);
+    Timestamp now = new Timestamp(System.currentTimeMillis());
+    List<Object[]> deletes = new ArrayList<Object[]>();
+    for (List<FieldSlot> slots : tree.values()) {
+      for (FieldSlot slot : slots) {
+        deletes.add(new Object[]{false, entity, now, slot.getSysId()});
+      }
+    }
+
+    Map<String, List<Object[]>> batches = new LinkedHashMap<String, List<Object[]>>();
+    batches.put(getDeactivateSql(schema, table), deletes);
+    return execute(batches, conn);
+  }
+
+
+
+
+  private static String getUpdateSql(String schema, String table) {
+    return "UPDATE " + schema + "." + table + " SET " + VALUE + " = ?, " + TYPE + " = ?, " + MODIFIED_BY + " = ?, " + MODIFIED_ON + " = ? WHERE " + SYSID + " = ?";
+  }
+
+
+
+
+  private static String getDeactivateSql(String schema, String table) {
+    return "UPDATE " + schema + "." + table + " SET " + ACTIVE + " = ?, " + MODIFIED_BY + " = ?, " + MODIFIED_ON + " = ? WHERE " + SYSID + " = ?";
+  }
+
+
+
+
+  /**
+   * @return the parameters of the insert statement for the given slot
+   */
+  private static Object[] insertRow(FieldSlot slot, String entity, Timestamp now) {
+    return new Object[]{slot.getSysId(), slot.isActive(), slot.getParent(), slot.getSequence(), slot.getName(), slot.getValue(), slot.getType(), entity, now, entity, now};
+  }
+
+
+
+
+  /**
+   * Execute each statement with its rows of parameters as a batch, all in 
+   * one transaction.
+   * 
+   * <p>If the connection is in auto-commit mode, auto-commit is turned off 
+   * while the batches are executed and the transaction is committed or 
+   * rolled back here. Otherwise the caller owns the transaction and is left 
+   * to commit or roll it back.
+   * 
+   * @param batches the rows of parameters mapped by the SQL to execute
+   * @param conn the JDBC connection to the database
+   * 
+   * @return true if all the statements were executed, false if any failed 
+   *         (and the transaction was rolled back if it was ours)
+   */
+  private static boolean execute(Map<String, List<Object[]>> batches, Connection conn) {
     boolean retval = false;
+    if (conn == null) {
+      return retval;
+    }
 
+    boolean autoCommit = false;
+    try {
+      autoCommit = conn.getAutoCommit();
+      if (autoCommit) {
+        conn.setAutoCommit(false);
+      }
+      for (Map.Entry<String, List<Object[]>> batch : batches.entrySet()) {
+        if (batch.getValue().isEmpty()) {
+          continue;
+        }
+        PreparedStatement preparedStatement = StatementCache.getCache(conn).prepare(batch.getKey());
+        int count = 0;
+        for (Object[] row : batch.getValue()) {
+          for (int x = 0; x < row.length; x++) {
+            if (row[x] == null) {
+              preparedStatement.setNull(x + 1, Types.VARCHAR);
+            } else {
+              preparedStatement.setObject(x + 1, row[x]);
+            }
+          }
+          preparedStatement.addBatch();
+          if (++count % BATCH_SIZE == 0) {
+            preparedStatement.executeBatch();
+          }
+        }
+        if (count % BATCH_SIZE != 0) {
+          preparedStatement.executeBatch();
+        }
+        Log.debug("Executed a batch of " + count + " rows");
+      }
+      if (autoCommit) {
+        conn.commit();
+      }
+      retval = true;
+    } catch (final SQLException e) {
+      Log.fatal(ExceptionUtil.toString(e));
+      Log.debug(ExceptionUtil.stackTrace(e));
+      if (autoCommit) {
+        try {
+          conn.rollback();
+        } catch (SQLException e1) {
+          Log.warn("Could not roll-back changes: " + e1.getMessage());
+        }
+      }
+    } finally {
+      if (autoCommit) {
+        try {
+          conn.setAutoCommit(true);
+        } catch (SQLException e) {
+          Log.warn("Could not restore auto-commit: " + e.getMessage());
+        }
+      }
+    }
     return retval;
   }
 
@@ -330,13 +726,7 @@ public abstract class FrameStore {
     List<FieldSlot> retval = new ArrayList<FieldSlot>();
     int seq = 0;
     for (DataField field : frame.getFields()) {
-      String sysid = GUID.randomSecureGUID().toString();
-      if (field.isFrame()) {
-        retval.add(new FieldSlot(sysid, parent, seq++, true, field.getName(), field.getType(), null));
-        retval.addAll(getSlots((DataFrame)field.getObjectValue(), sysid));
-      } else {
-        retval.add(new FieldSlot(sysid, parent, seq++, true, field.getName(), field.getType(), field.getStringValue()));
-      }
+      addSlots(field, parent, seq++, retval);
     }
     return retval;
   }
@@ -344,6 +734,25 @@ public abstract class FrameStore {
 
 
 
+  /**
+   * Add the slot for the given field, and the slots of its fields if it is a 
+   * frame, to the given list.
+   */
+  private static void addSlots(DataField field, String parent, int seq, List<FieldSlot> slots) {
+    String sysid = newSysId();
+    if (field.isFrame()) {
+      slots.add(new FieldSlot(sysid, parent, seq, true, field.getName(), field.getType(), null));
+      if (field.getObjectValue() != null) {
+        slots.addAll(getSlots((DataFrame)field.getObjectValue(), sysid));
+      }
+    } else {
+      slots.add(new FieldSlot(sysid, parent, seq, true, field.getName(), field.getType(), field.getStringValue()));
+    }
+  }
+
+
+
+
   /**
    * Get a table definition for storing data frame fields in a table.
    * 
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.db;
+
+import java.sql.Connection;
+
+import coyote.commons.StringUtil;
+import coyote.dx.ConfigTag;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+import coyote.loader.log.Log;
+
+
+/**
+ * A database fixture which hands out connections from a connection pool.
+ *
+ * <p>The pool is shared by name, so every job in a service which defines a
+ * fixture with the same name (and database) uses the same pool instead of
+ * opening its own connections each time it runs. Components return their
+ * connections to the pool by closing them.
+ *
+ * <p>The fixture is configured with the DatabaseFixture task:
+ * <pre>"DatabaseFixture": {
+ *   "class": "PooledDatabaseFixture", "name": "Orders",
+ *   "target": "jdbc:h2:./orders", "driver": "org.h2.Driver",
+ *   "username": "sa", "password": "",
+ *   "MinSize": 2, "MaxSize": 20, "IdleTimeout": 600000,
+ *   "MaxLifetime": 1800000, "WaitTimeout": 30000,
+ *   "Validation": "SELECT 1"
+ * }</pre>
+ * <p>Times are in milliseconds. Components then use the fixture by name, for
+ * example {@code "source": "Orders"} in a JdbcReader.
+ */
+public class PooledDatabaseFixture implements DatabaseFixture {
+
+  /** Minimum number of connections kept open. */
+  public static final String MIN_SIZE = "MinSize";
+
+  /** Maximum number of connections. */
+  public static final String MAX_SIZE = "MaxSize";
+
+  /** Milliseconds a connection may be idle before it is closed. */
+  public static final String IDLE_TIMEOUT = "IdleTimeout";
+
+  /** Milliseconds after which a connection is replaced. */
+  public static final String MAX_LIFETIME = "MaxLifetime";
+
+  /** Milliseconds to wait for a connection when all are in use. */
+  public static final String WAIT_TIMEOUT = "WaitTimeout";
+
+  /** Query used to check connections before they are handed out. */
+  public static final String VALIDATION = "Validation";
+
+  private Database database = new Database();
+  private ConnectionPool pool = null;
+
+
+
+
+  /**
+   * @see coyote.dx.db.DatabaseConnector#getConnection()
+   */
+  @Override
+  public Connection getConnection() {
+    if (pool == null) {
+      Log.error("Pooled database fixture is not configured");
+      return null;
+    }
+    return pool.getConnection();
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.db.DatabaseConnector#isPooled()
+   */
+  @Override
+  public boolean isPooled() {
+    return true;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.db.DatabaseFixture#setConfiguration(coyote.loader.cfg.Config)
+   */
+  @Override
+  public void setConfiguration(Config cfg) throws ConfigurationException {
+    database = new Database();
+    database.setConfiguration(cfg);
+
+    String name = cfg.getString(ConfigTag.NAME);
+    if (StringUtil.isBlank(name)) {
+      name = database.getTarget();
+    }
+    if (StringUtil.isBlank(name)) {
+      throw new ConfigurationException("Pooled database fixture requires a name or target");
+    }
+
+    int minSize = (int)getLong(cfg, MIN_SIZE, ConnectionPool.DEFAULT_MIN_SIZE);
+    int maxSize = (int)getLong(cfg, MAX_SIZE, ConnectionPool.DEFAULT_MAX_SIZE);
+    if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+      throw new ConfigurationException("Invalid pool size, min:" + minSize + " max:" + maxSize);
+    }
+
+    pool = ConnectionPool.getPool(name, database, minSize, maxSize, getLong(cfg, IDLE_TIMEOUT, ConnectionPool.DEFAULT_IDLE_TIMEOUT), getLong(cfg, MAX_LIFETIME, ConnectionPool.DEFAULT_MAX_LIFETIME), getLong(cfg, WAIT_TIMEOUT, ConnectionPool.DEFAULT_WAIT_TIMEOUT), cfg.getString(VALIDATION));
+    Log.debug("Using connection pool " + pool);
+  }
+
+
+
+
+  private static long getLong(Config cfg, String tag, long defaultValue) throws ConfigurationException {
+    String value = cfg.getString(tag);
+    if (StringUtil.isBlank(value)) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new ConfigurationException("Invalid " + tag + " value: '" + value + "'");
+    }
+  }
+
+
+
+
+  /**
+   * @return the pool providing the connections, null if not configured
+   */
+  public ConnectionPool getPool() {
+    return pool;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.db.DatabaseConnector#getUserName()
+   */
+  @Override
+  public String getUserName() {
+    return database.getUserName();
+  }
+
+}
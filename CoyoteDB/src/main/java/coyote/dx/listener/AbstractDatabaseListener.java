@@ -12,6 +12,9 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import coyote.commons.CipherUtil;
 import coyote.commons.StringUtil;
@@ -21,10 +24,13 @@ import coyote.commons.jdbc.DatabaseUtil;
 import coyote.commons.jdbc.TableDefinition;
 import coyote.commons.template.SymbolTable;
 import coyote.commons.template.Template;
+import coyote.dataframe.DataField;
+import coyote.dataframe.DataFrame;
 import coyote.dataframe.DataFrameException;
 import coyote.dx.CDX;
 import coyote.dx.ConfigTag;
 import coyote.dx.context.ContextListener;
+import coyote.dx.context.OperationalContext;
 import coyote.dx.context.TransactionContext;
 import coyote.dx.context.TransformContext;
 import coyote.dx.db.Database;
@@ -39,6 +45,11 @@ import coyote.loader.log.LogMsg;
 
 /**
  * This is a base class for any listener which needs to work with a database.
+ * 
+ * <p>Listeners which modify records can collect them and write them to the 
+ * database in one batch when the configured {@code batch} size is reached 
+ * and at the end of the job, instead of making a round trip for each 
+ * record.
  */
 public abstract class AbstractDatabaseListener extends AbstractListener implements ContextListener {
 
@@ -155,6 +166,9 @@ public abstract class AbstractDatabaseListener extends AbstractListener implemen
    */
   @Override
   public void close() throws IOException {
+    if (initialized) {
+      flush();
+    }
     if (database != null) {
       database.close();
     }
@@ -609,6 +623,101 @@ public abstract class AbstractDatabaseListener extends AbstractListener implemen
 
 
 
+  /**
+   * Write any collected records at the end of the job.
+   * 
+   * @see coyote.dx.listener.AbstractListener#onEnd(coyote.dx.context.OperationalContext)
+   */
+  @Override
+  public void onEnd(OperationalContext context) {
+    if (context instanceof TransformContext && initialized) {
+      flush();
+    }
+  }
+
+
+
+
+  /**
+   * Write any records collected for a batch to the database.
+   * 
+   * <p>Listeners which collect records should override this method.
+   */
+  protected void flush() {
+    // nothing collected by default
+  }
+
+
+
+
+  /**
+   * @return the number of records to collect before writing them in one 
+   *         batch, 1 or less to write each record as it is processed.
+   */
+  protected int getBatchSize() {
+    return getInteger(ConfigTag.BATCH);
+  }
+
+
+
+
+  /**
+   * Return the given connection to the pool if the connector pools 
+   * connections, otherwise keep it open for later use by this component.
+   * 
+   * @param conn the connection obtained from the connector
+   */
+  protected void release(Connection conn) {
+    if (conn != null && getConnector().isPooled()) {
+      try {
+        // closing a pooled connection returns it to the pool
+        conn.close();
+      } catch (SQLException e) {
+        Log.warn(this.getClass().getName() + " experienced problems closing the database connection: " + e.getMessage());
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Get the system identifiers in the SysId field of the given frame.
+   * 
+   * <p>The field may hold a single identifier or an array of them, allowing 
+   * many records to be handled in one round trip.
+   * 
+   * @param frame the frame containing the SysId field
+   * 
+   * @return the system identifiers, empty if there is no SysId field
+   */
+  protected List<String> getSysIds(DataFrame frame) {
+    List<String> retval = new ArrayList<String>();
+    if (frame != null && frame.containsIgnoreCase(FrameStore.SYSID)) {
+      DataField field = frame.getFieldIgnoreCase(FrameStore.SYSID);
+      Object value = field.getObjectValue();
+      if (value instanceof Object[]) {
+        for (Object id : (Object[])value) {
+          if (id != null) {
+            retval.add(id.toString());
+          }
+        }
+      } else if (value instanceof Collection) {
+        for (Object id : (Collection<?>)value) {
+          if (id != null) {
+            retval.add(id.toString());
+          }
+        }
+      } else if (value != null) {
+        retval.add(field.getStringValue());
+      }
+    }
+    return retval;
+  }
+
+
+
+
   /**
    * @param context the transaction context on which to operate
    */
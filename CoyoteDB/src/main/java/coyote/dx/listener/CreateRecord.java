@@ -8,7 +8,8 @@
 package coyote.dx.listener;
 
 import java.sql.Connection;
-import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import coyote.dataframe.DataFrame;
 import coyote.dx.ConfigTag;
@@ -28,9 +29,10 @@ import coyote.loader.log.Log;
  * <p>Using a listener instead of a Writer allows for more finer control of 
  * the operation. For example, records can be created when it is known the 
  * record does not exist by either a lookup of a field value or state of the 
- * context. Compare this to a Writer which will only perform upserts. The 
- * trade-off is that there is no batching of transactions, each insert is 
- * separate from the others.
+ * context. Compare this to a Writer which will only perform upserts. By 
+ * default each insert is separate from the others; if a {@code batch} size 
+ * is configured, records are given their identifiers immediately but are 
+ * inserted together once the batch is full and at the end of the job.
  * 
  * <p>Transforms can be used to perform lookups and alter the state of the 
  * working frame to enable conditions for the listener to be run.
@@ -42,26 +44,53 @@ import coyote.loader.log.Log;
  */
 public class CreateRecord extends AbstractDatabaseListener implements ContextListener {
 
+  /** Records waiting to be inserted mapped by their system identifiers. */
+  private final Map<String, DataFrame> pending = new LinkedHashMap<String, DataFrame>();
+
+
+
+
   /**
    * @see coyote.dx.listener.AbstractDatabaseListener#execute(coyote.dx.context.TransactionContext)
    */
   @Override
   public void execute(TransactionContext cntxt) {
     Log.info("Create Record Listener handling target frame of " + cntxt.getTargetFrame());
-    Connection conn = getConnector().getConnection();
-    
-    String guid = FrameStore.create(cntxt.getTargetFrame(), conn, getIdentity(), determineSchema(), getTable(), getDatabaseProduct());
-    
-    cntxt.setProcessingResult(new DataFrame().set(ConfigTag.ID, guid));
 
-    if (getConnector().isPooled()) {
-      try {
-        conn.close();
-      } catch (SQLException e) {
-        Log.warn(this.getClass().getName() + " experienced problems closing the database connection: " + e.getMessage());
+    if (getBatchSize() > 1) {
+      String guid = FrameStore.newSysId();
+      pending.put(guid, cntxt.getTargetFrame());
+      cntxt.setProcessingResult(new DataFrame().set(ConfigTag.ID, guid));
+      if (pending.size() >= getBatchSize()) {
+        flush();
       }
+    } else {
+      Connection conn = getConnector().getConnection();
+      String guid = FrameStore.create(cntxt.getTargetFrame(), conn, getIdentity(), determineSchema(), getTable(), getDatabaseProduct());
+      if (guid == null) {
+        Log.error("Could not create record for " + cntxt.getTargetFrame());
+      }
+      cntxt.setProcessingResult(new DataFrame().set(ConfigTag.ID, guid));
+      release(conn);
     }
+  }
+
 
+
+
+  /**
+   * @see coyote.dx.listener.AbstractDatabaseListener#flush()
+   */
+  @Override
+  protected void flush() {
+    if (pending.size() > 0) {
+      Connection conn = getConnector().getConnection();
+      if (!FrameStore.createAll(pending, conn, getIdentity(), determineSchema(), getTable(), getDatabaseProduct())) {
+        Log.error("Could not create a batch of " + pending.size() + " records");
+      }
+      pending.clear();
+      release(conn);
+    }
   }
 
 }
@@ -8,10 +8,12 @@
 package coyote.dx.listener;
 
 import java.sql.Connection;
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import coyote.dx.context.ContextListener;
 import coyote.dx.context.TransactionContext;
+import coyote.dx.db.FrameStore;
 import coyote.loader.log.Log;
 
 
@@ -21,34 +23,63 @@ import coyote.loader.log.Log;
  * <p>Using a listener instead of a Writer allows for more finer control of 
  * the operation.
  * 
- * <p>Transforms can be used to generate the appropriate key values.
+ * <p>Transforms can be used to generate the appropriate key values. The 
+ * SysId field may hold an array of identifiers to delete many records in 
+ * one round trip, and if a {@code batch} size is configured, identifiers 
+ * are collected and deleted together once the batch is full and at the end 
+ * of the job.
  * 
  * <p>This listener operates at the end of the transaction context, giving all 
  * other components a chance to process the working frame.
  */
 public class DeleteRecord extends AbstractDatabaseListener implements ContextListener {
 
+  /** System identifiers of the records waiting to be deleted. */
+  private final List<String> pending = new ArrayList<String>();
+
+
+
+
   @Override
   public void execute(TransactionContext cntxt) {
     Log.info("Delete Record Listener handling target frame of " + cntxt.getTargetFrame());
-    Connection conn = getConnector().getConnection();
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
     // Deletes are simply a matter of flagging the record as in-active.
     // The idea is that in-active records will be purged at a later date.
     // This gives the system the ability to maintain historical context
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+    List<String> sysids = getSysIds(cntxt.getTargetFrame());
+    if (sysids.isEmpty()) {
+      Log.error("No system identifier of the record to delete");
+      return;
+    }
 
-    // if the connector pools connections, it is safe to close the connection
-    // otherwise, we should keep it open for later use by this component.
-    if (getConnector().isPooled()) {
-      try {
-        // closing a pooled connection returns it to the pool
-        conn.close();
-      } catch (SQLException e) {
-        Log.warn(this.getClass().getName() + " experienced problems closing the database connection: " + e.getMessage());
-      }
+    pending.addAll(sysids);
+    if (pending.size() >= getBatchSize()) {
+      flush();
     }
+  }
+
 
+
+
+  /**
+   * @see coyote.dx.listener.AbstractDatabaseListener#flush()
+   */
+  @Override
+  protected void flush() {
+    if (pending.size() > 0) {
+      Connection conn = getConnector().getConnection();
+      if (!FrameStore.deleteAll(pending, conn, getIdentity(), determineSchema(), getTable(), getDatabaseProduct())) {
+        Log.error("Could not delete a batch of " + pending.size() + " records");
+      }
+      pending.clear();
+
+      // if the connector pools connections, it is safe to close the connection
+      // otherwise, we should keep it open for later use by this component.
+      release(conn);
+    }
   }
+
 }
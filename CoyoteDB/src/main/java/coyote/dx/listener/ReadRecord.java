@@ -8,7 +8,9 @@
 package coyote.dx.listener;
 
 import java.sql.Connection;
-import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import coyote.dataframe.DataFrame;
 import coyote.dx.context.ContextListener;
@@ -25,6 +27,10 @@ import coyote.loader.log.Log;
  * 
  * <p>Transforms can be used to generate the appropriate key values.
  * 
+ * <p>If the SysId field holds an array of identifiers, all the records are 
+ * read in one round trip and the result is a frame containing each record 
+ * found, named by its identifier.
+ * 
  * <p>This listener operates at the end of the transaction context, giving all 
  * other components a chance to process the working frame.
  */
@@ -41,12 +47,25 @@ public class ReadRecord extends AbstractDatabaseListener implements ContextListe
     DataFrame frame = cntxt.getTargetFrame();
     if (frame != null) {
       if (frame.containsIgnoreCase(FrameStore.SYSID)) {
-        String sysid = frame.getFieldIgnoreCase(FrameStore.SYSID).getStringValue();
-
-        DataFrame result = FrameStore.read(sysid, connection, getIdentity(), determineSchema(), getTable(), getDatabaseProduct());
+        Object value = frame.getFieldIgnoreCase(FrameStore.SYSID).getObjectValue();
+        List<String> sysids = getSysIds(frame);
+        Map<String, DataFrame> results = FrameStore.readAll(sysids, connection, getIdentity(), determineSchema(), getTable(), getDatabaseProduct());
 
-        if (result == null) {
-          Log.warn("No results for frame with a SysId of '" + sysid + "'");
+        DataFrame result = null;
+        if (!(value instanceof Object[]) && !(value instanceof Collection)) {
+          String sysid = sysids.isEmpty() ? null : sysids.get(0);
+          result = results.get(sysid);
+          if (result == null) {
+            Log.warn("No results for frame with a SysId of '" + sysid + "'");
+          }
+        } else {
+          result = new DataFrame();
+          for (Map.Entry<String, DataFrame> entry : results.entrySet()) {
+            result.add(entry.getKey(), entry.getValue());
+          }
+          if (results.size() < sysids.size()) {
+            Log.warn("Found " + results.size() + " of " + sysids.size() + " frames with the requested SysIds");
+          }
         }
         cntxt.setProcessingResult(result);
       }
@@ -56,15 +75,7 @@ public class ReadRecord extends AbstractDatabaseListener implements ContextListe
 
     // if the connector pools connections, it is safe to close the connection
     // otherwise, we should keep it open for later use by this component.
-    if (getConnector().isPooled()) {
-      try {
-        // closing a pooled connection returns it to the pool
-        connection.close();
-      } catch (SQLException e) {
-        Log.warn(this.getClass().getName() + " experienced problems closing the database connection: " + e.getMessage());
-      }
-    }
-
+    release(connection);
   }
 
 }
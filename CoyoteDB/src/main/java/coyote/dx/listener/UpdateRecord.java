@@ -7,12 +7,17 @@
  */
 package coyote.dx.listener;
 
-import coyote.dx.CDX;
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import coyote.dataframe.DataField;
+import coyote.dataframe.DataFrame;
 import coyote.dx.context.ContextListener;
-import coyote.dx.context.OperationalContext;
 import coyote.dx.context.TransactionContext;
+import coyote.dx.db.FrameStore;
 import coyote.loader.log.Log;
-import coyote.loader.log.LogMsg;
 
 
 /**
@@ -27,47 +32,68 @@ import coyote.loader.log.LogMsg;
  * <p>Transforms can be used to perform lookups and alter the state of the 
  * working frame to enable conditions for the listener to be run.
  * 
- * <p>This listener operates at the end of the transaction context, giving all 
- * other components a chance to process the working frame and the mapper to 
- * generate a properly formatted record for updating in the database.
+ * <p>The record with the SysId of the target frame is updated to match the 
+ * rest of the target frame. If a {@code batch} size is configured, records 
+ * are collected and updated together once the batch is full and at the end 
+ * of the job.
+ * 
+ * <p>This listener operates after the working frame is mapped to the target 
+ * frame, giving all other components a chance to process the working frame 
+ * and the mapper to generate a properly formatted record for updating in the 
+ * database.
  */
 public class UpdateRecord extends AbstractDatabaseListener implements ContextListener {
 
+  /** Records waiting to be updated mapped by their system identifiers. */
+  private final Map<String, DataFrame> pending = new LinkedHashMap<String, DataFrame>();
+
+
+
+
   /**
-   * @see coyote.dx.listener.AbstractListener#onEnd(coyote.dx.context.OperationalContext)
+   * @see coyote.dx.listener.AbstractDatabaseListener#execute(coyote.dx.context.TransactionContext)
    */
   @Override
-  public void onEnd(OperationalContext context) {
-    if (context instanceof TransactionContext) {
-      TransactionContext cntxt = (TransactionContext)context;
-      if (isEnabled()) {
-        if (getCondition() != null) {
-          try {
-            if (evaluator.evaluateBoolean(getCondition())) {
-              performCreate(cntxt);
-            } else {
-              if (Log.isLogging(Log.DEBUG_EVENTS)) {
-                Log.debug(LogMsg.createMsg(CDX.MSG, "Listener.boolean_evaluation_false", getCondition()));
-              }
-            }
-          } catch (final IllegalArgumentException e) {
-            Log.error(LogMsg.createMsg(CDX.MSG, "Listener.boolean_evaluation_error", getCondition(), e.getMessage()));
-          }
-        } else {
-          performCreate(cntxt);
-        }
+  public void execute(TransactionContext cntxt) {
+    Log.info("Update Record Listener handling target frame of " + cntxt.getTargetFrame());
+
+    DataFrame frame = cntxt.getTargetFrame();
+    List<String> sysids = getSysIds(frame);
+    if (sysids.size() != 1) {
+      Log.error("Target frame must contain the system identifier of the record to update");
+      return;
+    }
+
+    // the identifier is not part of the stored record
+    DataFrame record = new DataFrame();
+    for (DataField field : frame.getFields()) {
+      if (!FrameStore.SYSID.equalsIgnoreCase(field.getName())) {
+        record.add(field.getName(), field.getObjectValue());
       }
     }
+
+    pending.put(sysids.get(0), record);
+    if (pending.size() >= getBatchSize()) {
+      flush();
+    }
   }
 
 
 
 
   /**
-   * @param cntxt
+   * @see coyote.dx.listener.AbstractDatabaseListener#flush()
    */
-  private void performCreate(TransactionContext cntxt) {
-    Log.info("Update Record Listener handling target frame of " + cntxt.getTargetFrame());
+  @Override
+  protected void flush() {
+    if (pending.size() > 0) {
+      Connection conn = getConnector().getConnection();
+      if (!FrameStore.updateAll(pending, conn, getIdentity(), determineSchema(), getTable(), getDatabaseProduct())) {
+        Log.error("Could not update a batch of " + pending.size() + " records");
+      }
+      pending.clear();
+      release(conn);
+    }
   }
 
 }
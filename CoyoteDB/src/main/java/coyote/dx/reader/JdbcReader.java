@@ -8,17 +8,27 @@
 package coyote.dx.reader;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import coyote.commons.StringUtil;
 import coyote.commons.jdbc.DatabaseDialect;
 import coyote.commons.jdbc.DatabaseUtil;
 import coyote.commons.template.Template;
 import coyote.dataframe.DataFrame;
+import coyote.dx.BatchReader;
 import coyote.dx.CDB;
 import coyote.dx.CDX;
 import coyote.dx.ConfigTag;
@@ -35,8 +45,39 @@ import coyote.loader.log.LogMsg;
 
 /**
  * This is a frame reader which uses a JDBC result set to create frames.
+ * 
+ * <p>The query is run with a forward-only, read-only cursor so drivers can 
+ * stream the results instead of holding the entire result set in memory. 
+ * The number of rows fetched from the database in each round trip is set 
+ * with {@code FetchSize}, defaulting to 1000.
+ * 
+ * <p>Large extracts can be split into partitions which are read in parallel 
+ * on separate connections:
+ * <pre>"Reader": { "class": "JdbcReader", "source": "Orders", 
+ *   "query": "SELECT * FROM orders", 
+ *   "PartitionKey": "order_id", "Partitions": 4 }</pre>
+ * <p>The range of the key (a numeric or date column in the results of the 
+ * query) is split into equal parts, each of which is queried on its own 
+ * connection. Rows with a null key are read with the first partition. Rows 
+ * from the partitions are interleaved, so any ordering in the query is not 
+ * preserved across partitions.
  */
-public class JdbcReader extends AbstractFrameReader {
+public class JdbcReader extends AbstractFrameReader implements BatchReader {
+
+  /** Number of rows to fetch from the database in each round trip. */
+  public static final String FETCH_SIZE = "FetchSize";
+
+  /** Number of partitions to read in parallel. */
+  public static final String PARTITIONS = "Partitions";
+
+  /** The numeric or date column on which to partition the query. */
+  public static final String PARTITION_KEY = "PartitionKey";
+
+  /** The default fetch size. */
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
+  /** Marks the end of a partition in the queue. */
+  private static final DataFrame END_OF_PARTITION = new DataFrame();
 
   /** The thing we use to get connections to the database */
   private DatabaseConnector connector = null;
@@ -47,8 +88,24 @@ public class JdbcReader extends AbstractFrameReader {
   private ResultSet result = null;
   private Statement statement = null;
   private volatile boolean EOF = true;
-  private ResultSetMetaData rsmd = null;
   private int columnCount = 0;
+  private String[] columnNames = new String[0];
+  private int[] columnTypes = new int[0];
+
+  /** The frame for the next row, read ahead to detect the last frame */
+  private DataFrame nextFrame = null;
+
+  /** The partitions being read in parallel, null when reading serially */
+  private List<Partition> partitions = null;
+
+  /** Rows read by the partitions, waiting to be read */
+  private BlockingQueue<DataFrame> queue = null;
+
+  /** The number of partitions still running */
+  private int running = 0;
+
+  /** The first partition to fail, null if none have */
+  private volatile Partition failed = null;
 
 
 
@@ -135,14 +192,19 @@ public class JdbcReader extends AbstractFrameReader {
         Log.debug(LogMsg.createMsg(CDX.MSG, "Component.using_query", this.getClass().getSimpleName(), query));
 
         try {
-          statement = connection.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
-          result = statement.executeQuery(query);
-          rsmd = result.getMetaData();
-          columnCount = rsmd.getColumnCount();
-
-          if (result.isBeforeFirst()) {
-            EOF = false;
+          int fetchSize = getFetchSize();
+          String key = getString(PARTITION_KEY);
+          int count = getInteger(PARTITIONS);
+          if (StringUtil.isNotBlank(key) && count > 1 && getConnector() != null) {
+            openPartitions(query, key, count, fetchSize);
+          } else {
+            statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            result = statement.executeQuery(query);
+            describe(result.getMetaData());
           }
+          nextFrame = fetch();
+          EOF = nextFrame == null;
         } catch (SQLException e) {
           String msg = LogMsg.createMsg(CDB.MSG, "Component.error_quering_database", getClass().getSimpleName(), e.getMessage().trim(), query).toString();
           context.setError(msg);
@@ -167,41 +229,302 @@ public class JdbcReader extends AbstractFrameReader {
    */
   @Override
   public DataFrame read(TransactionContext context) {
-    DataFrame retval = null;
+    DataFrame retval = nextFrame;
+    if (retval != null) {
+      nextFrame = fetch();
+      if (nextFrame == null) {
+        EOF = true;
+        context.setLastFrame(true);
+      }
+    } else {
+      EOF = true;
+    }
+    return retval;
+  }
+
+
 
+
+  /**
+   * Read up to the given number of rows from the result set.
+   * 
+   * @see coyote.dx.BatchReader#readBatch(coyote.dx.context.TransactionContext, int)
+   */
+  @Override
+  public List<DataFrame> readBatch(TransactionContext context, int size) {
+    List<DataFrame> retval = new ArrayList<DataFrame>(size);
+    while (nextFrame != null && retval.size() < size) {
+      retval.add(nextFrame);
+      nextFrame = fetch();
+    }
+    if (nextFrame == null) {
+      EOF = true;
+      if (retval.size() > 0) {
+        context.setLastFrame(true);
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Get the frame for the next row, from the result set or the partitions.
+   * 
+   * @return the next frame or null if there are no more rows
+   */
+  private DataFrame fetch() {
+    if (partitions != null) {
+      return take();
+    }
+    DataFrame retval = null;
     if (result != null) {
       try {
         if (result.next()) {
-          retval = new DataFrame();
+          retval = createFrame(result);
+        }
+      } catch (SQLException e) {
+        String msg = LogMsg.createMsg(CDB.MSG, "Component.error_quering_database", getClass().getSimpleName(), e.getMessage().trim(), getString(ConfigTag.QUERY)).toString();
+        Log.error(msg);
+        getContext().setError(msg);
+      }
+    }
+    return retval;
+  }
 
-          if (result.isLast()) {
-            EOF = true;
-            context.setLastFrame(true);
-          }
 
-          for (int i = 1; i <= columnCount; i++) {
-            retval.add(rsmd.getColumnName(i), DatabaseDialect.resolveValue(result.getObject(i), rsmd.getColumnType(i)));
-          }
 
-          context.setLastFrame(result.isLast());
-        } else {
-          Log.error("Read past EOF");
-          EOF = true;
+
+  /**
+   * Record the names and types of the columns so they are not retrieved from 
+   * the metadata for every row.
+   * 
+   * @param rsmd the metadata of the result set
+   * 
+   * @throws SQLException if the metadata could not be read
+   */
+  private void describe(ResultSetMetaData rsmd) throws SQLException {
+    columnCount = rsmd.getColumnCount();
+    columnNames = new String[columnCount];
+    columnTypes = new int[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      columnNames[i] = rsmd.getColumnName(i + 1);
+      columnTypes[i] = rsmd.getColumnType(i + 1);
+    }
+  }
+
+
+
+
+  /**
+   * Create a frame from the values of the current row of the result set.
+   * 
+   * @param rs the result set positioned on the row to read
+   * 
+   * @return a frame with a field for each column
+   * 
+   * @throws SQLException if the row could not be read
+   */
+  private DataFrame createFrame(ResultSet rs) throws SQLException {
+    DataFrame retval = new DataFrame();
+    for (int i = 0; i < columnCount; i++) {
+      retval.add(columnNames[i], DatabaseDialect.resolveValue(rs.getObject(i + 1), columnTypes[i]));
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Split the query on the range of the key and start reading each part on 
+   * its own connection.
+   */
+  private void openPartitions(String query, String key, int count, int fetchSize) throws SQLException {
+    String source = "(" + query + ") cdx_src";
+    Object min = null;
+    Object max = null;
+    statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    ResultSet range = statement.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + source);
+    try {
+      if (range.next()) {
+        min = range.getObject(1);
+        max = range.getObject(2);
+      }
+    } finally {
+      DatabaseUtil.closeQuietly(range);
+      DatabaseUtil.closeQuietly(statement);
+      statement = null;
+    }
+
+    List<Object[]> bounds = split(min, max, count);
+    Log.debug(getClass().getSimpleName() + " reading " + bounds.size() + " partitions of " + key + " from " + min + " to " + max);
+
+    // describe the columns without reading any rows
+    statement = connection.createStatement();
+    result = statement.executeQuery("SELECT * FROM " + source + " WHERE 1=0");
+    describe(result.getMetaData());
+    DatabaseUtil.closeQuietly(result);
+    DatabaseUtil.closeQuietly(statement);
+    result = null;
+    statement = null;
+
+    queue = new ArrayBlockingQueue<DataFrame>(Math.max(fetchSize, 100) * 2);
+    partitions = new ArrayList<Partition>();
+    for (int x = 0; x < bounds.size(); x++) {
+      Object[] bound = bounds.get(x);
+      StringBuilder sql = new StringBuilder("SELECT * FROM ").append(source).append(" WHERE ");
+      if (bound == null) {
+        sql.append(key).append(" IS NULL");
+      } else {
+        sql.append("(").append(key).append(" >= ? AND ").append(key).append(x == bounds.size() - 1 ? " <= ?" : " < ?");
+        if (x == 0) {
+          sql.append(" OR ").append(key).append(" IS NULL");
         }
-      } catch (SQLException e) {
-        e.printStackTrace();
-        EOF = true;
+        sql.append(")");
+      }
+      partitions.add(new Partition(x, sql.toString(), bound, fetchSize));
+    }
+    running = partitions.size();
+    failed = null;
+    for (Partition partition : partitions) {
+      partition.start();
+    }
+  }
+
+
+
+
+  /**
+   * Divide the range between the given values into the given number of 
+   * parts.
+   * 
+   * @return the lower and upper bound of each part, or a single null entry 
+   *         if there are no keys to split
+   */
+  static List<Object[]> split(Object min, Object max, int count) {
+    List<Object[]> retval = new ArrayList<Object[]>();
+    if (min == null || max == null) {
+      retval.add(null);
+      return retval;
+    }
+
+    if (min instanceof Date && max instanceof Date) {
+      long low = ((Date)min).getTime();
+      long high = ((Date)max).getTime();
+      long[] edges = edges(low, high, count);
+      for (int x = 0; x < edges.length - 1; x++) {
+        retval.add(new Object[]{new Timestamp(edges[x]), new Timestamp(edges[x + 1])});
+      }
+    } else if (isIntegral(min) && isIntegral(max)) {
+      long[] edges = edges(((Number)min).longValue(), ((Number)max).longValue(), count);
+      for (int x = 0; x < edges.length - 1; x++) {
+        retval.add(new Object[]{edges[x], edges[x + 1]});
+      }
+    } else if (min instanceof Number && max instanceof Number) {
+      double low = ((Number)min).doubleValue();
+      double step = (((Number)max).doubleValue() - low) / count;
+      for (int x = 0; x < count; x++) {
+        retval.add(new Object[]{low + step * x, x == count - 1 ? ((Number)max).doubleValue() : low + step * (x + 1)});
       }
     } else {
-      EOF = true;
+      throw new IllegalArgumentException("Cannot partition on values of type " + min.getClass().getName());
     }
+    return retval;
+  }
 
+
+
+
+  private static boolean isIntegral(Object value) {
+    if (value instanceof BigDecimal) {
+      return ((BigDecimal)value).scale() <= 0;
+    }
+    return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof BigInteger;
+  }
+
+
+
+
+  /**
+   * @return count + 1 edges from low to high, fewer if the range is smaller than the count
+   */
+  private static long[] edges(long low, long high, int count) {
+    long span = high - low;
+    int parts = (int)Math.max(1, Math.min(count, span + 1));
+    long[] retval = new long[parts + 1];
+    for (int x = 0; x < parts; x++) {
+      retval[x] = low + (long)((double)span * x / parts);
+    }
+    retval[parts] = high;
     return retval;
   }
 
 
 
 
+  /**
+   * Take the next frame from the partitions, waiting for them as needed.
+   * 
+   * <p>When a partition fails, the partitions still running are cancelled 
+   * and the context placed in error without returning the frames already 
+   * queued.
+   */
+  private DataFrame take() {
+    try {
+      while (running > 0 && failed == null) {
+        DataFrame frame = queue.take();
+        if (frame == END_OF_PARTITION) {
+          running--;
+        } else if (failed == null) {
+          return frame;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Partition partition = failed;
+    if (partition != null) {
+      String reason = partition.error.getMessage();
+      reason = (reason != null) ? reason.trim() : partition.error.getClass().getName();
+      String msg = LogMsg.createMsg(CDB.MSG, "Component.error_quering_database", getClass().getSimpleName(), reason, partition.sql).toString();
+      Log.error(msg);
+      getContext().setError(msg);
+      cancelPartitions();
+      running = 0;
+    }
+    return null;
+  }
+
+
+
+
+  /**
+   * Cancel the queries of all the partitions and discard the frames they 
+   * have queued, releasing any partitions blocked on a full queue.
+   */
+  private void cancelPartitions() {
+    for (Partition partition : partitions) {
+      partition.cancel();
+    }
+    queue.clear();
+  }
+
+
+
+
+  private int getFetchSize() {
+    int retval = DEFAULT_FETCH_SIZE;
+    if (getConfiguration().containsIgnoreCase(FETCH_SIZE)) {
+      retval = getInteger(FETCH_SIZE);
+    }
+    return Math.max(0, retval);
+  }
+
+
+
+
   /**
    * @see coyote.dx.FrameReader#eof()
    */
@@ -218,7 +541,20 @@ public class JdbcReader extends AbstractFrameReader {
    */
   @Override
   public void close() throws IOException {
+    if (partitions != null) {
+      cancelPartitions();
+      for (Partition partition : partitions) {
+        try {
+          partition.join(1000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        queue.clear();
+      }
+      partitions = null;
+    }
     DatabaseUtil.closeQuietly(result);
+    DatabaseUtil.closeQuietly(statement);
     DatabaseUtil.closeQuietly(connection);
     super.close();
   }
@@ -260,4 +596,94 @@ public class JdbcReader extends AbstractFrameReader {
     return connection;
   }
 
+
+
+
+  /**
+   * Reads one partition of the query on its own connection, placing the 
+   * frames in the queue.
+   */
+  private class Partition extends Thread {
+    final String sql;
+    private final Object[] bound;
+    private final int fetchSize;
+    private volatile boolean cancelled = false;
+    private volatile PreparedStatement ps = null;
+    volatile Exception error = null;
+
+
+
+
+    Partition(int index, String sql, Object[] bound, int fetchSize) {
+      super(JdbcReader.this.getClass().getSimpleName() + "-partition-" + index);
+      setDaemon(true);
+      this.sql = sql;
+      this.bound = bound;
+      this.fetchSize = fetchSize;
+    }
+
+
+
+
+    @Override
+    public void run() {
+      Connection conn = null;
+      ResultSet rs = null;
+      try {
+        conn = getConnector().getConnection();
+        if (conn == null) {
+          throw new SQLException("Could not connect to " + getSource());
+        }
+        ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        if (bound != null) {
+          ps.setObject(1, bound[0]);
+          ps.setObject(2, bound[1]);
+        }
+        rs = ps.executeQuery();
+        while (!cancelled && rs.next()) {
+          queue.put(createFrame(rs));
+        }
+      } catch (SQLException | RuntimeException e) {
+        if (!cancelled) {
+          error = e;
+          synchronized (JdbcReader.this) {
+            if (failed == null) {
+              failed = this;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        // cancelled
+      } finally {
+        DatabaseUtil.closeQuietly(rs);
+        DatabaseUtil.closeQuietly(ps);
+        DatabaseUtil.closeQuietly(conn);
+        if (!cancelled) {
+          try {
+            queue.put(END_OF_PARTITION);
+          } catch (InterruptedException ignore) {
+            // cancelled
+          }
+        }
+      }
+    }
+
+
+
+
+    void cancel() {
+      cancelled = true;
+      PreparedStatement statement = ps;
+      if (statement != null) {
+        try {
+          statement.cancel();
+        } catch (SQLException ignore) {
+          // the statement may have completed
+        }
+      }
+      interrupt();
+    }
+  }
+
 }
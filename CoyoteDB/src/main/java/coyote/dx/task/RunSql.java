@@ -13,8 +13,12 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 
 import coyote.commons.StringUtil;
+import coyote.commons.jdbc.DatabaseUtil;
+import coyote.commons.jdbc.StatementCache;
 import coyote.commons.template.Template;
 import coyote.dataframe.DataFrameException;
 import coyote.dx.CDX;
@@ -47,12 +51,6 @@ public class RunSql extends AbstractTransformTask implements TransformTask {
   /** The JDBC connection used by this writer to interact with the database */
   private Connection connection;
 
-  /** The number of records we should batch before executing an UPDATE */
-  private int batchsize = 0;
-
-  /** Holds the current state of the command being built. */
-  private final StringBuffer buffer = new StringBuffer();
-
   private BufferedReader bufferedReader = null;
   private int linePointer = 0;
   private boolean hasNext = true;
@@ -68,6 +66,14 @@ public class RunSql extends AbstractTransformTask implements TransformTask {
   @Override
   public void close() throws IOException {
     closeQuietly(bufferedReader);
+    if (connection != null) {
+      // pooled connections keep their statements for the next borrower
+      if (connector == null || !connector.isPooled()) {
+        StatementCache.close(connection);
+      }
+      DatabaseUtil.closeQuietly(connection);
+      connection = null;
+    }
     super.close();
   }
 
@@ -239,15 +245,6 @@ public class RunSql extends AbstractTransformTask implements TransformTask {
       Log.debug(LogMsg.createMsg(CDX.MSG, "Component.using_existing_connection", getClass().getSimpleName()));
     }
 
-    setBatchSize(getInteger(ConfigTag.BATCH));
-    Log.debug(LogMsg.createMsg(CDX.MSG, "Component.using_batch_size", getClass().getSimpleName(), getBatchSize()));
-
-    // validate and cache our batch size
-    if (getBatchSize() < 1) {
-      batchsize = 0;
-    } else {
-      batchsize = getBatchSize();
-    }
   }
 
 
@@ -258,42 +255,57 @@ public class RunSql extends AbstractTransformTask implements TransformTask {
    */
   @Override
   protected void performTask() throws TaskException {
-
-    do {
-      try {
-        String nextLine = getNextLine();
-        if (StringUtil.isNotBlank(nextLine)) {
-          nextLine = nextLine.trim();
-
-          // Handle Multi-line comments /* this is commented out */
-          // Handle EOL comments  -- this is commented out
-          // Use StringParser to parse comments out of the file
-          // SqlReader extends StringParser
-          // parser.getNextCommand()
-
-          int delimiter = nextLine.indexOf(';');
-          if (delimiter >= 0) {
-            buffer.append(' ');
-            buffer.append(nextLine.substring(0, delimiter + 1));
-            processCommand(buffer.toString().trim(), linePointer);
-            buffer.delete(0, buffer.length());
-            buffer.append(nextLine.substring(delimiter + 1));
-          } else {
-            buffer.append(nextLine);
-          }
+    final SqlSplitter splitter = new SqlSplitter();
+    try {
+      String nextLine = getNextLine();
+      while (nextLine != null) {
+        for (final String command : splitter.add(nextLine)) {
+          processCommand(command, linePointer);
         }
-      } catch (final IOException e) {
-        throw new TaskException("read error", e);
+        nextLine = getNextLine();
       }
+    } catch (final IOException e) {
+      throw new TaskException("read error", e);
+    }
+
+    // the last command does not need a terminating semicolon
+    final String command = splitter.finish();
+    if (command != null) {
+      processCommand(command, linePointer - 1);
     }
-    while (hasNext);
   }
 
 
 
 
-  private void processCommand(String command, int index) {
-    System.out.println(index + ":" + command);
+  /**
+   * Execute the command read from the script.
+   *
+   * <p>Commands are prepared through the statement cache of the connection so
+   * scripts which repeat the same command only prepare it once.
+   *
+   * @param sql the command without its terminating semicolon
+   * @param index the line in the script where the command ends
+   *
+   * @throws TaskException if there is no connection or the command failed
+   */
+  private void processCommand(String sql, int index) throws TaskException {
+    if (connection == null) {
+      if (getConnector() != null) {
+        connection = getConnector().getConnection();
+      }
+      if (connection == null) {
+        throw new TaskException("No database connection to run the script");
+      }
+    }
+
+    Log.debug(index + ":" + sql);
+    try {
+      PreparedStatement statement = StatementCache.getCache(connection).prepare(sql);
+      statement.execute();
+    } catch (final SQLException e) {
+      throw new TaskException("Command ending on line " + index + " failed: " + e.getMessage(), e);
+    }
   }
 
 
@@ -303,7 +315,6 @@ public class RunSql extends AbstractTransformTask implements TransformTask {
    * @param value
    */
   public void setBatchSize(final int value) {
-    batchsize = value;
     configuration.put(ConfigTag.BATCH, value);
   }
 
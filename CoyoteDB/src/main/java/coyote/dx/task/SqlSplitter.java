@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Splits the lines of a SQL script into individual statements.
+ *
+ * <p>Statements end with a semicolon and may span several lines or share a
+ * line with other statements. Lines are joined with a line break so words on
+ * adjacent lines remain separate. End of line ({@code --}) and block
+ * comments are removed, and semicolons and comment markers within single or
+ * double quoted strings are treated as part of the string.
+ *
+ * <p>The state of the quotes and comments is carried from one line to the
+ * next, so instances are not thread safe; use one per script.
+ */
+class SqlSplitter {
+
+  private static final char DELIMITER = ';';
+
+  /** The text of the statement being built */
+  private final StringBuilder buffer = new StringBuilder();
+
+  /** The quote character of the string being read, 0 if not in a string */
+  private char quote = 0;
+
+  /** True while reading a block comment */
+  private boolean comment = false;
+
+
+
+
+  /**
+   * Add the next line of the script.
+   *
+   * @param line the line of the script without its line terminator
+   *
+   * @return the statements completed on this line, without their semicolons,
+   *         in the order they appear; never null
+   */
+  List<String> add(final String line) {
+    final List<String> retval = new ArrayList<String>();
+    if (buffer.length() > 0) {
+      buffer.append('\n');
+    }
+
+    final int length = line.length();
+    for (int x = 0; x < length; x++) {
+      final char ch = line.charAt(x);
+      final char next = (x + 1 < length) ? line.charAt(x + 1) : 0;
+
+      if (comment) {
+        if (ch == '*' && next == '/') {
+          comment = false;
+          buffer.append(' ');
+          x++;
+        }
+      } else if (quote != 0) {
+        buffer.append(ch);
+        if (ch == quote) {
+          // a doubled quote is read as leaving then re-entering the string
+          quote = 0;
+        }
+      } else if (ch == '\'' || ch == '"') {
+        quote = ch;
+        buffer.append(ch);
+      } else if (ch == '-' && next == '-') {
+        break; // the rest of the line is a comment
+      } else if (ch == '/' && next == '*') {
+        comment = true;
+        x++;
+      } else if (ch == DELIMITER) {
+        addStatement(retval);
+      } else {
+        buffer.append(ch);
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Complete the script.
+   *
+   * @return the last statement if it was not terminated with a semicolon, or
+   *         null if there is none
+   */
+  String finish() {
+    final List<String> retval = new ArrayList<String>(1);
+    addStatement(retval);
+    quote = 0;
+    comment = false;
+    return retval.isEmpty() ? null : retval.get(0);
+  }
+
+
+
+
+  /**
+   * Move the text in the buffer to the given list if it is not blank.
+   */
+  private void addStatement(final List<String> statements) {
+    final String statement = buffer.toString().trim();
+    buffer.setLength(0);
+    if (statement.length() > 0) {
+      statements.add(statement);
+    }
+  }
+
+}
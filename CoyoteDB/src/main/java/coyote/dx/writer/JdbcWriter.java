@@ -30,7 +30,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import coyote.commons.StringUtil;
 import coyote.commons.Version;
@@ -38,6 +40,7 @@ import coyote.commons.jdbc.ColumnDefinition;
 import coyote.commons.jdbc.ColumnType;
 import coyote.commons.jdbc.DatabaseDialect;
 import coyote.commons.jdbc.DatabaseUtil;
+import coyote.commons.jdbc.StatementCache;
 import coyote.commons.jdbc.TableDefinition;
 import coyote.commons.template.SymbolTable;
 import coyote.commons.template.Template;
@@ -45,6 +48,7 @@ import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.DataFrameException;
 import coyote.dataframe.FrameSet;
+import coyote.dx.BatchWriter;
 import coyote.dx.CDB;
 import coyote.dx.CDX;
 import coyote.dx.ConfigTag;
@@ -71,8 +75,25 @@ import coyote.loader.log.LogMsg;
  * format (DataFrame) is designed to support data types common to many
  * different technologies and therefore dictates what the framework
  * supports.</p>
+ *
+ * <p>For bulk loads, {@value #COMMIT_BATCHES} turns auto-commit off and
+ * commits the transaction after the given number of batches (and when the
+ * writer is closed) instead of after every statement. If the job ends in
+ * error, the uncommitted rows are rolled back.</p>
+ *
+ * <p>{@value #UPSERT_KEY} is a comma-separated list of key columns which
+ * switches the writer from inserting rows to inserting or updating them
+ * using the statement appropriate to the database (MERGE for H2, Oracle and
+ * SQL Server, INSERT ... ON CONFLICT for PostgreSQL and INSERT ... ON
+ * DUPLICATE KEY UPDATE for MySQL).</p>
  */
-public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, ConfigurableComponent {
+public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, BatchWriter, ConfigurableComponent {
+
+  /** Number of batches to write in each transaction. */
+  public static final String COMMIT_BATCHES = "CommitBatches";
+
+  /** Comma-separated list of the columns identifying rows to update. */
+  public static final String UPSERT_KEY = "UpsertKey";
 
   protected static final SymbolTable symbolTable = new SymbolTable();
 
@@ -105,6 +126,21 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
   protected PreparedStatement ps = null;
 
+  /** The columns bound to the prepared statement, in parameter order. */
+  private final List<String> columns = new ArrayList<String>();
+
+  /** The key columns for upserts, empty to insert. */
+  private final List<String> keys = new ArrayList<String>();
+
+  /** The number of batches to write before committing, 0 to not manage transactions. */
+  private int commitBatches = 0;
+
+  /** The number of batches written since the last commit. */
+  private int uncommitted = 0;
+
+  /** The auto-commit setting of the connection before we turned it off. */
+  private Boolean autoCommit = null;
+
 
 
 
@@ -226,22 +262,37 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
     }
 
     if (connection != null) {
-      try {
-        commit();
-      } catch (final SQLException e) {
-        Log.warn(LogMsg.createMsg(CDX.MSG, "Writer.could_not_commit_prior_to_close", e.getMessage()));
+      if (autoCommit != null && getContext() != null && getContext().isInError()) {
+        try {
+          connection.rollback();
+          Log.warn("Rolled back " + uncommitted + " uncommitted batches due to errors");
+        } catch (final SQLException e) {
+          Log.error("Could not roll back uncommitted batches: " + e.getMessage());
+        }
+      } else {
+        try {
+          commit();
+        } catch (final SQLException e) {
+          Log.warn(LogMsg.createMsg(CDX.MSG, "Writer.could_not_commit_prior_to_close", e.getMessage()));
+        }
       }
-    }
+      uncommitted = 0;
 
-    if (ps != null) {
-      try {
-        ps.close();
-        ps = null;
-      } catch (final SQLException e) {
-        Log.error(LogMsg.createMsg(CDX.MSG, "Writer.Could not close prepared statememt: {%s}", e.getMessage()));
+      if (autoCommit != null) {
+        try {
+          connection.setAutoCommit(autoCommit);
+        } catch (final SQLException e) {
+          Log.warn("Could not restore auto-commit: " + e.getMessage());
+        }
+        autoCommit = null;
       }
     }
 
+    // the statement belongs to the cache of the connection
+    ps = null;
+    SQL = null;
+    columns.clear();
+
     if (connection != null) {
       // if it looks like we created the connection ourselves (e.g. we have a
       // configured target) close the connection
@@ -249,6 +300,10 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
         Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.closing_connection", getClass().getSimpleName(), getTarget()));
 
         try {
+          // pooled connections keep their statements for the next borrower
+          if (connector == null || !connector.isPooled()) {
+            StatementCache.close(connection);
+          }
           connection.close();
           connection = null;
         } catch (final SQLException e) {
@@ -272,7 +327,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
 
   /**
-   * @return the insert SQL appropriate for this frameset
+   * @return the insert SQL for the current columns
    */
   private String generateInsertSQL() {
     final StringBuffer c = new StringBuffer("insert into ");
@@ -282,7 +337,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
     c.append('.');
     c.append(getTable());
     c.append(" (");
-    for (final String name : frameset.getColumns()) {
+    for (final String name : columns) {
       c.append(name);
       c.append(", ");
       v.append("?, ");
@@ -672,6 +727,22 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
       batchsize = getBatchSize();
     }
 
+    commitBatches = Math.max(getInteger(COMMIT_BATCHES), 0);
+    if (commitBatches > 0) {
+      Log.debug("Committing every " + commitBatches + " batches");
+    }
+
+    keys.clear();
+    final String keyList = getString(UPSERT_KEY);
+    if (StringUtil.isNotBlank(keyList)) {
+      for (final String key : keyList.split(",")) {
+        if (StringUtil.isNotBlank(key)) {
+          keys.add(key.trim());
+        }
+      }
+      Log.debug("Upserting rows with the key " + keys);
+    }
+
   }
 
 
@@ -774,7 +845,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           getContext().setError("Cannot add byte arrays to table");
           break;
         case DataField.STRING:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "String"));
+          logBinding(field, indx, "String");
           if (field.isNull()) {
             pstmt.setNull(indx, VARCHAR);
           } else {
@@ -782,7 +853,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.S8:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "S8-byte"));
+          logBinding(field, indx, "S8-byte");
           if (field.isNull()) {
             pstmt.setNull(indx, TINYINT);
           } else {
@@ -791,7 +862,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           break;
         case DataField.U8:
         case DataField.S16:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "S16-Short"));
+          logBinding(field, indx, "S16-Short");
           if (field.isNull()) {
             pstmt.setNull(indx, SMALLINT);
           } else {
@@ -800,7 +871,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           break;
         case DataField.U16:
         case DataField.S32:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "S32-Integer"));
+          logBinding(field, indx, "S32-Integer");
           if (field.isNull()) {
             pstmt.setNull(indx, INTEGER);
           } else {
@@ -810,15 +881,15 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
         case DataField.U32:
         case DataField.S64:
         case DataField.U64:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "S64-Long"));
+          logBinding(field, indx, "S64-Long");
           if (field.isNull()) {
             pstmt.setNull(indx, BIGINT);
           } else {
-            pstmt.setLong(indx, (Integer)field.getObjectValue());
+            pstmt.setLong(indx, ((Number)field.getObjectValue()).longValue());
           }
           break;
         case DataField.FLOAT:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "Float"));
+          logBinding(field, indx, "Float");
           if (field.isNull()) {
             pstmt.setNull(indx, FLOAT);
           } else {
@@ -826,7 +897,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.DOUBLE:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "Double"));
+          logBinding(field, indx, "Double");
           if (field.isNull()) {
             pstmt.setNull(indx, DOUBLE);
           } else {
@@ -834,7 +905,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.BOOLEANTYPE:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "Boolean"));
+          logBinding(field, indx, "Boolean");
           if (field.isNull()) {
             pstmt.setNull(indx, BOOLEAN);
           } else {
@@ -842,7 +913,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.DATE:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "Timestamp"));
+          logBinding(field, indx, "Timestamp");
           if (field.isNull()) {
             pstmt.setNull(indx, TIMESTAMP);
           } else {
@@ -851,8 +922,12 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.URI:
-          Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, "String"));
-          pstmt.setString(indx, field.getStringValue());
+          logBinding(field, indx, "String");
+          if (field.isNull()) {
+            pstmt.setNull(indx, VARCHAR);
+          } else {
+            pstmt.setString(indx, field.getStringValue());
+          }
           break;
         case DataField.ARRAY:
           getContext().setError("Cannot add arrays to table field");
@@ -921,22 +996,55 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
 
 
+  /**
+   * Write all the given frames.
+   *
+   * <p>If this writer has no batch size configured, all the frames are
+   * inserted with a single JDBC batch. Otherwise the frames are added to the
+   * current batch which is executed each time it reaches the configured
+   * size.</p>
+   *
+   * @see coyote.dx.BatchWriter#writeBatch(java.util.List)
+   */
+  @Override
+  public void writeBatch(final List<DataFrame> frames) {
+
+    // conditions are evaluated against each frame as it is written
+    if (expression != null) {
+      for (final DataFrame frame : frames) {
+        write(frame);
+      }
+      return;
+    }
+
+    for (final DataFrame frame : frames) {
+      schema.sample(frame);
+      frameset.add(frame);
+      if (batchsize > 1 && frameset.size() >= batchsize) {
+        Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_batch", getClass().getSimpleName(), frameset.size(), batchsize));
+        writeBatch();
+      }
+    }
+
+    if (batchsize <= 1 && frameset.size() > 0) {
+      Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_batch", getClass().getSimpleName(), frameset.size(), frames.size()));
+      writeBatch();
+    }
+  }
+
+
+
+
   private void writeBatch() {
 
-    if (SQL == null) {
+    // prepare the statement the first time and whenever new columns appear
+    if (SQL == null || !columns.containsAll(frameset.getColumns())) {
       // Since this is the first time we have tried to write to the table, make
       // sure the table exists
-      if (checkTable()) {
-        SQL = generateInsertSQL();
-        Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.using_sql", getClass().getSimpleName(), SQL));
-
-        final Connection connection = getConnection();
-        try {
-          ps = connection.prepareStatement(SQL);
-        } catch (final SQLException e) {
-          getContext().setError(LogMsg.createMsg(CDX.MSG, "Writer.preparedstatement_exception", getClass().getSimpleName(), e.getMessage()).toString());
-        }
+      if (tableschema == null && !checkTable()) {
+        return;
       }
+      prepare();
     }
 
     if (isAutoAdjust()) {
@@ -973,41 +1081,35 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
     // if the table check did not generate an error
     if (getContext().isNotInError()) {
-      if (batchsize <= 1) {
+      if (frameset.size() <= 1) {
         final DataFrame frame = frameset.get(0);
-        Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_single_frame", getClass().getSimpleName(), frame.toString()));
-
-        int indx = 1;
-        for (final String name : frameset.getColumns()) {
-          final DataField field = frame.getField(name);
-          setData(ps, indx++, field);
-          if (getContext().isInError()) {
-            break;
-          }
+        if (Log.isLogging(Log.DEBUG_EVENTS)) {
+          Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_single_frame", getClass().getSimpleName(), frame.toString()));
         }
 
-        Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.executing_sql", getClass().getSimpleName(), ps.toString()));
+        bind(frame);
 
-        try {
-          ps.execute();
-        } catch (final SQLException e) {
-          getContext().setError("Could not insert single row: " + e.getMessage());
+        if (getContext().isNotInError()) {
+          if (Log.isLogging(Log.DEBUG_EVENTS)) {
+            Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.executing_sql", getClass().getSimpleName(), ps.toString()));
+          }
+          try {
+            ps.execute();
+          } catch (final SQLException e) {
+            getContext().setError("Could not insert single row: " + e.getMessage());
+          }
         }
 
       } else {
         // Now write a batch
         for (final DataFrame frame : frameset.getRows()) {
-          Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_frame", this.getClass().getSimpleName(), frame));
+          if (Log.isLogging(Log.DEBUG_EVENTS)) {
+            Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_frame", this.getClass().getSimpleName(), frame));
+          }
 
-          int indx = 1;
-          for (final String name : frameset.getColumns()) {
-            final DataField field = frame.getField(name);
-            if ((field != null) && !field.isNull()) {
-              setData(ps, indx++, field);
-            }
-            if (getContext().isInError()) {
-              break;
-            }
+          bind(frame);
+          if (getContext().isInError()) {
+            break;
           }
 
           // add this frame as a record to the batch
@@ -1015,6 +1117,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
             ps.addBatch();
           } catch (final SQLException e) {
             getContext().setError("Could not add the record to the batch: " + e.getMessage());
+            break;
           }
 
         }
@@ -1026,6 +1129,15 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
         }
       }
+
+      if (getContext().isNotInError() && commitBatches > 0 && ++uncommitted >= commitBatches) {
+        try {
+          commit();
+          uncommitted = 0;
+        } catch (final SQLException e) {
+          getContext().setError("Could not commit batches: " + e.getMessage());
+        }
+      }
       frameset.clearRows();
     }
   }
@@ -1033,17 +1145,151 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
 
 
+  /**
+   * Prepare the insert (or upsert) statement for the columns observed so far,
+   * replacing any statement prepared for fewer columns.
+   */
+  private void prepare() {
+    final Connection connection = getConnection();
+    if (connection == null) {
+      return;
+    }
+
+    columns.clear();
+    for (final String name : frameset.getColumns()) {
+      columns.add(name);
+    }
+
+    if (keys.isEmpty()) {
+      SQL = generateInsertSQL();
+    } else {
+      for (final String key : keys) {
+        if (!containsIgnoreCase(columns, key)) {
+          getContext().setError("Upsert key column '" + key + "' is not in the data");
+          return;
+        }
+      }
+      SQL = DatabaseDialect.getUpsert(database, getSchema(), getTable(), columns, keys);
+      if (SQL == null) {
+        getContext().setError("Upserts are not supported for " + database + " databases");
+        return;
+      }
+    }
+    Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.using_sql", getClass().getSimpleName(), SQL));
+
+    try {
+      if (commitBatches > 0 && autoCommit == null) {
+        autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+      }
+      ps = StatementCache.getCache(connection).prepare(SQL);
+    } catch (final SQLException e) {
+      getContext().setError(LogMsg.createMsg(CDX.MSG, "Writer.preparedstatement_exception", getClass().getSimpleName(), e.getMessage()).toString());
+    }
+  }
+
+
+
+
+  /**
+   * Set the values of the given frame into the parameters of the prepared
+   * statement, one per column, setting null for missing fields so the
+   * remaining values stay in their positions.
+   *
+   * @param frame the frame holding the values to set
+   */
+  private void bind(final DataFrame frame) {
+    int indx = 1;
+    for (final String name : columns) {
+      final DataField field = frame.getField(name);
+      if (field == null || field.isNull()) {
+        try {
+          ps.setNull(indx, getSqlType(name));
+        } catch (final SQLException e) {
+          getContext().setError("Could not set null value for '" + name + "': " + e.getMessage());
+        }
+      } else {
+        setData(ps, indx, field);
+      }
+      if (getContext().isInError()) {
+        break;
+      }
+      indx++;
+    }
+  }
+
+
+
+
+  /**
+   * @return the SQL type of the named column in the table, VARCHAR if not known
+   */
+  private int getSqlType(final String name) {
+    final ColumnDefinition column = (tableschema != null) ? tableschema.findColumn(name) : null;
+    if (column != null && column.getType() != null) {
+      switch (column.getType()) {
+        case BOOLEAN:
+          return BOOLEAN;
+        case BYTE:
+          return TINYINT;
+        case SHORT:
+          return SMALLINT;
+        case INT:
+          return INTEGER;
+        case LONG:
+          return BIGINT;
+        case FLOAT:
+          return REAL;
+        case DOUBLE:
+          return DOUBLE;
+        case DATE:
+          return TIMESTAMP;
+        default:
+          break;
+      }
+    }
+    return VARCHAR;
+  }
+
+
+
+
+  private static boolean containsIgnoreCase(final List<String> names, final String name) {
+    for (final String candidate : names) {
+      if (candidate.equalsIgnoreCase(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+
+
+  private void logBinding(final DataField field, final int indx, final String type) {
+    if (Log.isLogging(Log.DEBUG_EVENTS)) {
+      Log.debug(LogMsg.createMsg(CDB.MSG, "Database.saving_field_as", getClass().getSimpleName(), field.getName(), indx, type));
+    }
+  }
+
+
+
+
   /**
    * This is where we actually write the frame.
    *
    * @param frame the frame to be written
    */
   private void writeFrame(final DataFrame frame) {
-    Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_fields", getClass().getSimpleName(), frame.size()));
+    if (Log.isLogging(Log.DEBUG_EVENTS)) {
+      Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_fields", getClass().getSimpleName(), frame.size()));
+    }
     frameset.add(frame);
 
     if (frameset.size() >= batchsize) {
-      Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_batch", getClass().getSimpleName(), frameset.size(), batchsize));
+      if (Log.isLogging(Log.DEBUG_EVENTS)) {
+        Log.debug(LogMsg.createMsg(CDX.MSG, "Writer.writing_batch", getClass().getSimpleName(), frameset.size(), batchsize));
+      }
       writeBatch();
     }
 
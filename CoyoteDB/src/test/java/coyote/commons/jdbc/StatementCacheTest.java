@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.commons.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+
+/**
+ *
+ */
+public class StatementCacheTest {
+  private static final String DB_URL = "jdbc:h2:mem:stmtcache";
+
+
+
+
+  @Test
+  public void reuse() throws SQLException {
+    Connection connection = DriverManager.getConnection(DB_URL, "sa", "");
+    try {
+      StatementCache cache = StatementCache.getCache(connection);
+      assertSame(cache, StatementCache.getCache(connection));
+
+      PreparedStatement first = cache.prepare("SELECT ? FROM DUAL");
+      first.setInt(1, 1);
+      PreparedStatement second = cache.prepare("SELECT ? FROM DUAL");
+      assertSame(first, second);
+      assertEquals(1, cache.size());
+
+      second.setInt(1, 2);
+      ResultSet result = second.executeQuery();
+      assertTrue(result.next());
+      assertEquals(2, result.getInt(1));
+      result.close();
+
+      StatementCache.close(connection);
+      assertTrue(first.isClosed());
+      assertEquals(0, cache.size());
+    } finally {
+      connection.close();
+    }
+  }
+
+
+
+
+  @Test
+  public void eviction() throws SQLException {
+    Connection connection = DriverManager.getConnection(DB_URL, "sa", "");
+    try {
+      StatementCache cache = StatementCache.getCache(connection);
+      PreparedStatement first = cache.prepare("SELECT 0 FROM DUAL");
+      for (int x = 1; x <= StatementCache.DEFAULT_SIZE; x++) {
+        cache.prepare("SELECT " + x + " FROM DUAL");
+      }
+      assertEquals(StatementCache.DEFAULT_SIZE, cache.size());
+
+      // the least recently used statement was closed and is prepared again
+      assertTrue(first.isClosed());
+      assertNotSame(first, cache.prepare("SELECT 0 FROM DUAL"));
+    } finally {
+      StatementCache.close(connection);
+      connection.close();
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.ConfigTag;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+
+
+/**
+ *
+ */
+public class ConnectionPoolTest {
+  private static final String JDBC_DRIVER = "org.h2.Driver";
+  private static final String DB_URL = "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1";
+
+
+
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    ConnectionPool.closeAll();
+  }
+
+
+
+
+  private static PooledDatabaseFixture fixture(String name, int max, long wait) throws ConfigurationException {
+    PooledDatabaseFixture retval = new PooledDatabaseFixture();
+    retval.setConfiguration(new Config(new DataFrame() //
+        .set(ConfigTag.NAME, name) //
+        .set(ConfigTag.DRIVER, JDBC_DRIVER) //
+        .set(ConfigTag.TARGET, DB_URL) //
+        .set(ConfigTag.USERNAME, "sa") //
+        .set(ConfigTag.PASSWORD, "") //
+        .set(PooledDatabaseFixture.MAX_SIZE, max) //
+        .set(PooledDatabaseFixture.WAIT_TIMEOUT, wait) //
+        .set(PooledDatabaseFixture.VALIDATION, "SELECT 1")));
+    return retval;
+  }
+
+
+
+
+  @Test
+  public void reuse() throws ConfigurationException, SQLException {
+    PooledDatabaseFixture fixture = fixture("reuse", 2, 1000);
+    assertTrue(fixture.isPooled());
+    ConnectionPool pool = fixture.getPool();
+
+    Connection connection = fixture.getConnection();
+    assertNotNull(connection);
+    assertEquals(1, pool.getActive());
+    connection.close();
+    assertTrue(connection.isClosed());
+    assertEquals(0, pool.getActive());
+    assertEquals(1, pool.getIdle());
+
+    // the same physical connection is handed out again
+    connection = fixture.getConnection();
+    assertEquals(1, pool.getSize());
+    connection.close();
+    connection.close(); // closing twice must not return it twice
+    assertEquals(1, pool.getIdle());
+  }
+
+
+
+
+  @Test
+  public void sharedByName() throws ConfigurationException {
+    PooledDatabaseFixture first = fixture("shared", 2, 1000);
+    PooledDatabaseFixture second = fixture("shared", 2, 1000);
+    assertSame(first.getPool(), second.getPool());
+    assertSame(first.getPool(), ConnectionPool.getPool("shared"));
+  }
+
+
+
+
+  @Test
+  public void waitTimeout() throws ConfigurationException, SQLException {
+    PooledDatabaseFixture fixture = fixture("timeout", 1, 100);
+    Connection connection = fixture.getConnection();
+    assertNotNull(connection);
+    assertNull(fixture.getConnection());
+    connection.close();
+    connection = fixture.getConnection();
+    assertNotNull(connection);
+    connection.close();
+  }
+
+}
@@ -8,13 +8,21 @@
 package coyote.dx.db;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
+import coyote.commons.jdbc.DatabaseDialect;
 import coyote.dataframe.DataFrame;
 
 
@@ -82,4 +90,82 @@ public class FrameStoreTest {
     // for(FieldSlot slot: slots){ System.out.println(slot.toString()); }
   }
 
+
+
+
+
+  @Test
+  public void storeTree() throws Exception {
+    Class.forName("org.h2.Driver");
+    try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:framestore", "sa", "")) {
+      try (Statement stmt = conn.createStatement()) {
+        stmt.executeUpdate("CREATE SCHEMA test");
+        stmt.executeUpdate(DatabaseDialect.getCreate(DatabaseDialect.H2, FrameStore.getTableSchema("frames", "test")));
+      }
+
+      DataFrame frame = new DataFrame().set("Field1", "Value1").set("Field2", new DataFrame().set("Key1", new DataFrame().set("level", "Three"))).set("Field3", "Value3");
+      String sysid = FrameStore.create(frame, conn, "tester", "test", "frames", null);
+      assertNotNull(sysid);
+
+      DataFrame result = FrameStore.read(sysid, conn, "tester", "test", "frames", null);
+      assertNotNull(result);
+      assertEquals(3, result.getFieldCount());
+      assertEquals("Three", result.getAsFrame("Field2").getAsFrame("Key1").getAsString("level"));
+
+      // many frames in one read, unknown identifiers are skipped
+      String other = FrameStore.create(new DataFrame().set("Name", "Other"), conn, "tester", "test", "frames", null);
+      List<String> sysids = new ArrayList<String>();
+      sysids.add(sysid);
+      sysids.add("unknown");
+      sysids.add(other);
+      Map<String, DataFrame> results = FrameStore.readAll(sysids, conn, "tester", "test", "frames", null);
+      assertEquals(2, results.size());
+      assertEquals("Other", results.get(other).getAsString("Name"));
+
+      // update a value, replace a nested frame and remove a field
+      DataFrame update = new DataFrame().set("Field1", "Changed").set("Field2", "Flat");
+      assertTrue(FrameStore.update(sysid, update, conn, "tester", "test", "frames"));
+      result = FrameStore.read(sysid, conn, "tester", "test", "frames", null);
+      assertEquals(2, result.getFieldCount());
+      assertEquals("Changed", result.getAsString("Field1"));
+      assertEquals("Flat", result.getAsString("Field2"));
+      assertFalse(result.contains("Field3"));
+
+      assertTrue(FrameStore.delete(sysid, conn, "tester", "test", "frames"));
+      assertNull(FrameStore.read(sysid, conn, "tester", "test", "frames", null));
+      assertNotNull(FrameStore.read(other, conn, "tester", "test", "frames", null));
+    }
+  }
+
+
+
+
+  /**
+   * When the caller has turned off auto-commit, the caller owns the 
+   * transaction and the store should neither commit nor roll it back.
+   */
+  @Test
+  public void callerTransaction() throws Exception {
+    Class.forName("org.h2.Driver");
+    try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:framestoretxn", "sa", "")) {
+      try (Statement stmt = conn.createStatement()) {
+        stmt.executeUpdate("CREATE SCHEMA test");
+        stmt.executeUpdate(DatabaseDialect.getCreate(DatabaseDialect.H2, FrameStore.getTableSchema("frames", "test")));
+      }
+
+      conn.setAutoCommit(false);
+      String sysid = FrameStore.create(new DataFrame().set("Name", "Discarded"), conn, "tester", "test", "frames", null);
+      assertNotNull(sysid);
+      assertFalse(conn.getAutoCommit());
+      assertNotNull(FrameStore.read(sysid, conn, "tester", "test", "frames", null));
+      conn.rollback();
+      assertNull(FrameStore.read(sysid, conn, "tester", "test", "frames", null));
+
+      sysid = FrameStore.create(new DataFrame().set("Name", "Kept"), conn, "tester", "test", "frames", null);
+      conn.commit();
+      conn.setAutoCommit(true);
+      assertEquals("Kept", FrameStore.read(sysid, conn, "tester", "test", "frames", null).getAsString("Name"));
+    }
+  }
+
 }
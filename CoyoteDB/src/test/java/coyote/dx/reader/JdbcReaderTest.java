@@ -7,6 +7,7 @@
  */
 package coyote.dx.reader;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -189,4 +190,41 @@ public class JdbcReaderTest {
     }
   }
 
+
+
+
+  @Test
+  public void partitionedRead() throws Exception {
+    DataFrame cfg = new DataFrame() //
+        .set(ConfigTag.SOURCE, DB_URL) //
+        .set(ConfigTag.DRIVER, JDBC_DRIVER) //
+        .set(ConfigTag.USERNAME, USER) //
+        .set(ConfigTag.PASSWORD, PASS) //
+        .set(ConfigTag.QUERY, "select Username, CAST(Visits AS INT) AS VisitCount from " + TABLE) //
+        .set(JdbcReader.PARTITION_KEY, "VisitCount") //
+        .set(JdbcReader.PARTITIONS, 3) //
+        .set(JdbcReader.FETCH_SIZE, 10);
+
+    JdbcReader reader = new JdbcReader();
+    try {
+      reader.setConfiguration(new Config(cfg));
+      TransformContext context = new TransformContext();
+      reader.open(context);
+      assertFalse(context.getErrorMessage(), context.isInError());
+
+      TransactionContext txncontext = new TransactionContext(context);
+      int count = 0;
+      while (!reader.eof()) {
+        if (reader.read(txncontext) != null) {
+          count++;
+        }
+      }
+      assertEquals(50, count);
+      assertTrue(txncontext.isLastFrame());
+      assertFalse(context.isInError());
+    } finally {
+      reader.close();
+    }
+  }
+
 }
@@ -7,10 +7,17 @@
  */
 package coyote.dx.task;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -107,4 +114,51 @@ public class RunSqlTest {
     assertFalse(context.isInError());
   }
 
+
+
+
+  @Test
+  public void script() throws ConfigurationException, SQLException {
+    DataFrame jobFrame = new DataFrame().set(ConfigTag.NAME, "test") //
+        .set(ConfigTag.TASK, // 
+            new DataFrame().set("RunSql",
+                new DataFrame() // 
+                    .set(ConfigTag.SOURCE, "src/test/resources/RunSqlTest2.sql") //
+                    .set(ConfigTag.TARGET, DB_URL) //
+                    .set(ConfigTag.DRIVER, JDBC_SOURCE) //
+                    .set(ConfigTag.USERNAME, USER) //
+                    .set(ConfigTag.PASSWORD, PASS) //
+            ) //
+    );
+
+    Config configuration = new Config();
+    configuration.add(ConfigTag.JOB, jobFrame);
+
+    TestingLoader loader = new TestingLoader();
+    loader.configure(configuration);
+    loader.start(); // run the job
+
+    TransformContext context = loader.getEngine().getContext();
+    assertNotNull(context);
+    assertFalse(context.getErrorMessage(), context.isInError());
+
+    // every statement ran, including the last one without a semicolon
+    Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+    try {
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery("SELECT id, name FROM scripted ORDER BY id");
+      String[] expected = {"one; uno", "two -- dos", "three /* tres */"};
+      for (int x = 0; x < expected.length; x++) {
+        assertTrue(result.next());
+        assertEquals(x + 1, result.getInt(1));
+        assertEquals(expected[x], result.getString(2));
+      }
+      assertFalse(result.next());
+      result.close();
+      statement.close();
+    } finally {
+      connection.close();
+    }
+  }
+
 }
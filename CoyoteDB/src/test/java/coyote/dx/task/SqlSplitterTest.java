@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+/**
+ * 
+ */
+public class SqlSplitterTest {
+
+  @Test
+  public void multiLine() {
+    List<String> statements = split("SELECT a", "  FROM b", "WHERE c = 1;");
+    assertEquals(Arrays.asList("SELECT a\n  FROM b\nWHERE c = 1"), statements);
+  }
+
+
+
+
+  @Test
+  public void multiStatement() {
+    List<String> statements = split("SELECT 1; SELECT 2;SELECT 3;", "SELECT 4");
+    assertEquals(Arrays.asList("SELECT 1", "SELECT 2", "SELECT 3", "SELECT 4"), statements);
+  }
+
+
+
+
+  @Test
+  public void comments() {
+    List<String> statements = split( //
+        "-- create the table", //
+        "CREATE TABLE t (a INT); -- the first statement", //
+        "/* a block comment; over", //
+        "   two lines */ INSERT INTO t /* inline */ VALUES (1);", //
+        "INSERT INTO t VALUES (2) -- no semicolon");
+    assertEquals(Arrays.asList("CREATE TABLE t (a INT)", "INSERT INTO t   VALUES (1)", "INSERT INTO t VALUES (2)"), statements);
+  }
+
+
+
+
+  @Test
+  public void quotes() {
+    List<String> statements = split("INSERT INTO t VALUES ('a;b', 'it''s -- not /* a comment */');", "SELECT \"x;y\" FROM t;");
+    assertEquals(Arrays.asList("INSERT INTO t VALUES ('a;b', 'it''s -- not /* a comment */')", "SELECT \"x;y\" FROM t"), statements);
+  }
+
+
+
+
+  @Test
+  public void empty() {
+    SqlSplitter splitter = new SqlSplitter();
+    assertEquals(0, splitter.add("  ;  ;").size());
+    assertEquals(0, splitter.add("-- nothing but a comment").size());
+    assertNull(splitter.finish());
+  }
+
+
+
+
+  private static List<String> split(String... lines) {
+    List<String> retval = new ArrayList<String>();
+    SqlSplitter splitter = new SqlSplitter();
+    for (String line : lines) {
+      retval.addAll(splitter.add(line));
+    }
+    String last = splitter.finish();
+    if (last != null) {
+      retval.add(last);
+    }
+    return retval;
+  }
+
+}
@@ -7,11 +7,17 @@
  */
 package coyote.dx.writer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -117,6 +123,62 @@ public class JdbcWriterTest {
 
 
 
+  @Test
+  public void upsert() throws ConfigurationException, SQLException {
+    // running twice updates the row written by the first run
+    for (int run = 1; run <= 2; run++) {
+      // Create a Job
+      DataFrame jobFrame = new DataFrame().set(ConfigTag.NAME, "test") //
+          .set(ConfigTag.READER, // 
+              new DataFrame().set(ConfigTag.CLASS, "StaticReader") // 
+                  .set(ConfigTag.FIELDS,
+                      new DataFrame() //
+                          .set("JobId", "EB00C166-9972-4147-9453-735E7EB15C60") //
+                          .set("Delay", 1000 * run) //
+                          .set("Log", true) //
+              ) //
+          ).set(ConfigTag.WRITER, new DataFrame().set(ConfigTag.CLASS, "JdbcWriter") // 
+              .set(ConfigTag.TARGET, DB_URL) //
+              .set(ConfigTag.DRIVER, JDBC_SOURCE) //
+              .set(ConfigTag.USERNAME, USER) //
+              .set(ConfigTag.PASSWORD, PASS) //
+              .set(ConfigTag.SCHEMA, SCHEMA) //
+              .set(ConfigTag.TABLE, "upsertdata") //
+              .set(ConfigTag.AUTO_CREATE, true) //
+              .set(JdbcWriter.COMMIT_BATCHES, 1) //
+              .set(JdbcWriter.UPSERT_KEY, "JobId") //
+      );
+
+      Config configuration = new Config();
+      configuration.add(ConfigTag.JOB, jobFrame);
+
+      TestingLoader loader = new TestingLoader();
+      loader.configure(configuration);
+      loader.start(); // run the job
+
+      TransformContext context = loader.getEngine().getContext();
+      assertNotNull(context);
+      assertFalse(context.isInError());
+    }
+
+    // there is still one row for the key, holding the values of the second run
+    Connection connection = DriverManager.getConnection(DB_URL, USER, PASS);
+    try {
+      Statement statement = connection.createStatement();
+      ResultSet result = statement.executeQuery("SELECT COUNT(*), MAX(Delay) FROM " + SCHEMA + ".upsertdata WHERE JobId = 'EB00C166-9972-4147-9453-735E7EB15C60'");
+      assertTrue(result.next());
+      assertEquals(1, result.getInt(1));
+      assertEquals(2000, result.getInt(2));
+      result.close();
+      statement.close();
+    } finally {
+      connection.close();
+    }
+  }
+
+
+
+
   @Test
   public void fixture() throws ConfigurationException {
     String fixtureName = "Default";
@@ -0,0 +1,12 @@
+-- a script with comments, multi-line and multi-statement lines
+DROP TABLE IF EXISTS scripted;
+CREATE TABLE scripted (
+  id INT PRIMARY KEY, /* the key */
+  name VARCHAR(32)
+);
+
+/* rows with semicolons and comment markers in their values;
+   none of which end a statement */
+INSERT INTO scripted VALUES (1, 'one; uno'); INSERT INTO scripted VALUES (2, 'two -- dos');
+INSERT INTO scripted
+  VALUES (3, 'three /* tres */')
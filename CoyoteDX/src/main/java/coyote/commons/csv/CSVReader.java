@@ -1,6 +1,5 @@
 package coyote.commons.csv;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
@@ -10,15 +9,13 @@ import java.util.List;
 
 
 /**
- * A CSV reader which uses the CSVParser to split lines into fields.
+ * A CSV reader which uses the CSVScanner to split records into fields.
  */
 public class CSVReader implements Closeable {
 
-  private final BufferedReader bufferedReader;
-
   private boolean hasNext = true;
 
-  private final CSVParser csvParser;
+  private final CSVScanner scanner;
 
   private final int lineToSkip;
 
@@ -55,6 +52,19 @@ public class CSVReader implements Closeable {
 
 
 
+  /**
+   * Constructs CSVReader.
+   * 
+   * @param reader the reader to an underlying CSV source.
+   * @param separator the delimiter to use for separating entries, one or more characters (e.g. "||")
+   */
+  public CSVReader( final Reader reader, final String separator ) {
+    this( reader, separator, CSVParser.QUOTE_CHARACTER, CSVParser.ESCAPE_CHARACTER, LINES_TO_SKIP, CSVParser.STRICT_QUOTES, CSVParser.IGNORE_LEADING_WHITESPACE );
+  }
+
+
+
+
   /**
    * Constructs CSVReader.
    * 
@@ -160,8 +170,28 @@ public class CSVReader implements Closeable {
    * @param ignoreLeadingWhiteSpace it true, parser should ignore white space before a quote in a field
    */
   public CSVReader( final Reader reader, final char separator, final char quotechar, final char escape, final int line, final boolean strictQuotes, final boolean ignoreLeadingWhiteSpace ) {
-    this.bufferedReader = new BufferedReader( reader );
-    this.csvParser = new CSVParser( separator, quotechar, escape, strictQuotes, ignoreLeadingWhiteSpace );
+    this( reader, String.valueOf( separator ), quotechar, escape, line, strictQuotes, ignoreLeadingWhiteSpace );
+  }
+
+
+
+
+  /**
+   * Constructs CSVReader.
+   * 
+   * @param reader the reader to an underlying CSV source.
+   * @param separator the delimiter to use for separating entries, one or more characters
+   * @param quotechar the character to use for quoted elements
+   * @param escape the character to use for escaping a separator or quote
+   * @param line the line number to skip for start reading
+   * @param strictQuotes sets if characters outside the quotes are ignored
+   * @param ignoreLeadingWhiteSpace it true, parser should ignore white space before a quote in a field
+   */
+  public CSVReader( final Reader reader, final String separator, final char quotechar, final char escape, final int line, final boolean strictQuotes, final boolean ignoreLeadingWhiteSpace ) {
+    if ( ( separator == null ) || ( separator.length() == 0 ) || ( separator.charAt( 0 ) == CSVParser.NULL_CHARACTER ) ) {
+      throw new UnsupportedOperationException( "The separator character must be defined!" );
+    }
+    this.scanner = new CSVScanner( reader, separator, quotechar, escape, strictQuotes, ignoreLeadingWhiteSpace, CSVScanner.BUFFER_SIZE );
     this.lineToSkip = line;
   }
 
@@ -201,52 +231,15 @@ public class CSVReader implements Closeable {
    * @throws ParseException if the read line could not be parsed
    */
   public String[] readNext() throws IOException, ParseException {
-
-    String[] result = null;
-    do {
-      final String nextLine = getNextLine();
-      if ( !hasNext ) {
-        return result; // should throw if still pending?
-      }
-      final String[] r = csvParser.parseLineMulti( nextLine );
-      if ( r.length > 0 ) {
-        if ( result == null ) {
-          result = r;
-        } else {
-          final String[] t = new String[result.length + r.length];
-          System.arraycopy( result, 0, t, 0, result.length );
-          System.arraycopy( r, 0, t, result.length, r.length );
-          result = t;
-        }
-      }
-    }
-    while ( csvParser.isPending() );
-    return result;
-  }
-
-
-
-
-  /**
-   * Reads the next line from the file.
-   * 
-   * @return the next line from the file without trailing newline
-   * 
-   * @throws IOException if the next line could not be read
-   */
-  private String getNextLine() throws IOException {
     if ( !this.linesSkipped ) {
-      for ( int i = 0; i < lineToSkip; i++ ) {
-        bufferedReader.readLine();
-      }
+      scanner.skipLines( lineToSkip );
       this.linesSkipped = true;
     }
-    final String nextLine = bufferedReader.readLine();
-    if ( nextLine == null ) {
+    if ( scanner.next() < 0 ) {
       hasNext = false;
+      return null;
     }
-
-    return hasNext ? nextLine : null;
+    return scanner.toArray();
   }
 
 
@@ -256,21 +249,10 @@ public class CSVReader implements Closeable {
    * This reads ahead and skips past any CR or LF characters.
    */
   public void consumeEmptyLines() {
-    if ( bufferedReader.markSupported() ) {
-      int character = 0;
-      do {
-        try {
-          bufferedReader.mark( 2 );
-          character = bufferedReader.read();
-          if ( character != 10 && character != 13 ) {
-            bufferedReader.reset();
-            break;
-          }
-        } catch ( IOException e ) {
-          e.printStackTrace();
-        }
-      }
-      while ( character > 0 );
+    try {
+      scanner.skipEmptyLines();
+    } catch ( IOException e ) {
+      // the next read will report the problem
     }
   }
 
@@ -284,7 +266,7 @@ public class CSVReader implements Closeable {
    */
   @Override
   public void close() throws IOException {
-    bufferedReader.close();
+    scanner.close();
   }
 
 
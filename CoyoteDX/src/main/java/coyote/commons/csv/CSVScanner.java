@@ -0,0 +1,465 @@
+package coyote.commons.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+
+
+/**
+ * A CSV tokenizer which parses records directly from a character buffer.
+ *
+ * <p>Unlike the line-oriented CSVParser, the scanner does not read lines
+ * into strings and then split them; it reads large blocks of characters from
+ * the underlying reader and creates each value directly from the buffer.
+ * Values are only copied when they contain escaped quotes. The values of the
+ * current record are held in an array which is reused for each record, so
+ * callers which process values as they go ({@link #next()} and
+ * {@link #get(int)}) allocate nothing but the value strings.</p>
+ *
+ * <p>The separator may be more than one character long (e.g. "||") and
+ * quoted values may contain separators, quotes (doubled or escaped) and line
+ * breaks. A record ends at a LF, CR or CRLF outside of quotes.</p>
+ */
+public class CSVScanner implements Closeable {
+
+  /** The default size of the character buffer. */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int DELIMITER = 0;
+  private static final int END_OF_RECORD = 1;
+  private static final int END_OF_DATA = 2;
+
+  private final Reader reader;
+  private final char[] separator;
+  private final char quotechar;
+  private final char escape;
+  private final boolean strictQuotes;
+  private final boolean ignoreLeadingWhitespace;
+
+  private char[] buffer;
+  private int position = 0;
+  private int limit = 0;
+
+  /** The start of the value being scanned, kept in the buffer on refills. */
+  private int mark = 0;
+
+  private boolean endOfData = false;
+
+  /** Used only for values with escaped characters. */
+  private final StringBuilder scratch = new StringBuilder();
+
+  private String[] values = new String[16];
+  private int count = 0;
+
+  /** The number of records read, used in error messages. */
+  private long records = 0;
+
+
+
+
+  /**
+   * Constructs CSVScanner with the default separator, quote and escape
+   * characters.
+   *
+   * @param reader the reader to an underlying CSV source.
+   */
+  public CSVScanner( final Reader reader ) {
+    this( reader, String.valueOf( CSVParser.SEPARATOR ), CSVParser.QUOTE_CHARACTER, CSVParser.ESCAPE_CHARACTER, CSVParser.STRICT_QUOTES, CSVParser.IGNORE_LEADING_WHITESPACE, BUFFER_SIZE );
+  }
+
+
+
+
+  /**
+   * Constructs CSVScanner.
+   *
+   * @param reader the reader to an underlying CSV source.
+   * @param separator the delimiter to use for separating entries, one or more characters
+   * @param quotechar the character to use for quoted elements
+   * @param escape the character to use for escaping a separator or quote
+   * @param strictQuotes if true, characters outside the quotes are ignored
+   * @param ignoreLeadingWhiteSpace if true, white space in front of a quote in a field is ignored
+   * @param bufferSize the initial size of the character buffer
+   */
+  public CSVScanner( final Reader reader, final String separator, final char quotechar, final char escape, final boolean strictQuotes, final boolean ignoreLeadingWhiteSpace, final int bufferSize ) {
+    if ( ( separator == null ) || ( separator.length() == 0 ) ) {
+      throw new UnsupportedOperationException( "The separator must be defined!" );
+    }
+    if ( ( separator.indexOf( '\r' ) > -1 ) || ( separator.indexOf( '\n' ) > -1 ) ) {
+      throw new UnsupportedOperationException( "The separator cannot contain line breaks!" );
+    }
+    if ( ( quotechar != CSVParser.NULL_CHARACTER ) && ( ( quotechar == escape ) || ( separator.indexOf( quotechar ) > -1 ) ) ) {
+      throw new UnsupportedOperationException( "The separator, quote, and escape characters must be different!" );
+    }
+    if ( ( escape != CSVParser.NULL_CHARACTER ) && ( separator.indexOf( escape ) > -1 ) ) {
+      throw new UnsupportedOperationException( "The separator, quote, and escape characters must be different!" );
+    }
+    this.reader = reader;
+    this.separator = separator.toCharArray();
+    this.quotechar = quotechar;
+    this.escape = escape;
+    this.strictQuotes = strictQuotes;
+    this.ignoreLeadingWhitespace = ignoreLeadingWhiteSpace;
+    this.buffer = new char[Math.max( bufferSize, 16 )];
+  }
+
+
+
+
+  /**
+   * Scan the next record.
+   *
+   * @return the number of values in the record or -1 if there are no more records
+   *
+   * @throws IOException if the data could not be read
+   * @throws ParseException if a quoted value is not terminated
+   */
+  public int next() throws IOException, ParseException {
+    count = 0;
+    mark = position;
+    if ( ( position == limit ) && !fill() ) {
+      return -1;
+    }
+    records++;
+    while ( scanValue() == DELIMITER ) {
+      // keep scanning values
+    }
+    return count;
+  }
+
+
+
+
+  /**
+   * @param index the index of the value in the current record
+   *
+   * @return the value at the given index
+   */
+  public String get( final int index ) {
+    if ( index >= count ) {
+      throw new ArrayIndexOutOfBoundsException( index );
+    }
+    return values[index];
+  }
+
+
+
+
+  /**
+   * @return the number of values in the current record
+   */
+  public int size() {
+    return count;
+  }
+
+
+
+
+  /**
+   * @return a new array containing the values of the current record
+   */
+  public String[] toArray() {
+    final String[] retval = new String[count];
+    System.arraycopy( values, 0, retval, 0, count );
+    return retval;
+  }
+
+
+
+
+  /**
+   * Move past the next number of lines without parsing them.
+   *
+   * @param lines the number of lines to skip
+   *
+   * @throws IOException if the data could not be read
+   */
+  public void skipLines( final int lines ) throws IOException {
+    for ( int i = 0; i < lines; i++ ) {
+      while ( true ) {
+        mark = position;
+        if ( ( position == limit ) && !fill() ) {
+          return;
+        }
+        final char c = buffer[position];
+        if ( ( c == '\r' ) || ( c == '\n' ) ) {
+          consumeLineBreak();
+          break;
+        }
+        position++;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Move past any line breaks so the next record is not an empty one.
+   *
+   * @throws IOException if the data could not be read
+   */
+  public void skipEmptyLines() throws IOException {
+    while ( true ) {
+      mark = position;
+      if ( ( position == limit ) && !fill() ) {
+        return;
+      }
+      final char c = buffer[position];
+      if ( ( c != '\r' ) && ( c != '\n' ) ) {
+        return;
+      }
+      position++;
+    }
+  }
+
+
+
+
+  /**
+   * @return true if all the data has been read
+   *
+   * @throws IOException if the data could not be read
+   */
+  public boolean eof() throws IOException {
+    mark = position;
+    return ( position == limit ) && !fill();
+  }
+
+
+
+
+  /**
+   * Closes the underlying reader.
+   *
+   * @throws IOException if the close fails
+   */
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+
+
+
+  /**
+   * Scan one value into the record, returning what ended it.
+   */
+  private int scanValue() throws IOException, ParseException {
+    mark = position;
+
+    if ( ( quotechar != CSVParser.NULL_CHARACTER ) && ( position < limit || fill() ) ) {
+      // skip whitespace in front of a quote
+      if ( ignoreLeadingWhitespace ) {
+        while ( ( position < limit || fill() ) && isWhitespace( buffer[position] ) ) {
+          position++;
+        }
+        if ( ( position < limit ) && ( buffer[position] == quotechar ) ) {
+          return scanQuoted();
+        }
+        position = mark;
+      } else if ( buffer[position] == quotechar ) {
+        return scanQuoted();
+      }
+    }
+
+    while ( true ) {
+      if ( ( position == limit ) && !fill() ) {
+        add( strictQuotes ? "" : new String( buffer, mark, position - mark ) );
+        return END_OF_DATA;
+      }
+      final char c = buffer[position];
+      if ( ( c == '\n' ) || ( c == '\r' ) ) {
+        add( strictQuotes ? "" : new String( buffer, mark, position - mark ) );
+        consumeLineBreak();
+        return END_OF_RECORD;
+      }
+      if ( ( c == separator[0] ) && isSeparator() ) {
+        add( strictQuotes ? "" : new String( buffer, mark, position - mark ) );
+        position += separator.length;
+        return DELIMITER;
+      }
+      position++;
+    }
+  }
+
+
+
+
+  /**
+   * Scan a quoted value, the current position being on the opening quote.
+   */
+  private int scanQuoted() throws IOException, ParseException {
+    position++;
+    mark = position;
+    boolean copied = false;
+
+    while ( true ) {
+      if ( ( position == limit ) && !fill() ) {
+        throw new ParseException( "Un-terminated quoted field in record " + records, -1 );
+      }
+      final char c = buffer[position];
+      if ( ( c == quotechar ) || ( ( c == escape ) && ( escape != CSVParser.NULL_CHARACTER ) ) ) {
+        // need the next character to tell if this is an escape
+        if ( ( position + 1 == limit ) && !fill() ) {
+          if ( c == quotechar ) {
+            break;
+          }
+          throw new ParseException( "Un-terminated quoted field in record " + records, -1 );
+        }
+        final char n = buffer[position + 1];
+        if ( ( n == quotechar ) || ( ( c == escape ) && ( n == escape ) ) ) {
+          if ( !copied ) {
+            scratch.setLength( 0 );
+            copied = true;
+          }
+          scratch.append( buffer, mark, position - mark ).append( n );
+          position += 2;
+          mark = position;
+          continue;
+        }
+        if ( c == quotechar ) {
+          break;
+        }
+      }
+      position++;
+    }
+
+    String value;
+    if ( copied ) {
+      value = scratch.append( buffer, mark, position - mark ).toString();
+    } else {
+      value = new String( buffer, mark, position - mark );
+    }
+    position++; // closing quote
+
+    // anything between the closing quote and the end of the value
+    mark = position;
+    int retval;
+    while ( true ) {
+      if ( ( position == limit ) && !fill() ) {
+        retval = END_OF_DATA;
+        break;
+      }
+      final char c = buffer[position];
+      if ( ( c == '\n' ) || ( c == '\r' ) ) {
+        retval = END_OF_RECORD;
+        break;
+      }
+      if ( ( c == separator[0] ) && isSeparator() ) {
+        retval = DELIMITER;
+        break;
+      }
+      position++;
+    }
+    if ( !strictQuotes && ( position > mark ) ) {
+      value = value.concat( new String( buffer, mark, position - mark ) );
+    }
+    add( value );
+
+    if ( retval == END_OF_RECORD ) {
+      consumeLineBreak();
+    } else if ( retval == DELIMITER ) {
+      position += separator.length;
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return true if the separator starts at the current position
+   */
+  private boolean isSeparator() throws IOException {
+    if ( separator.length == 1 ) {
+      return true;
+    }
+    while ( position + separator.length > limit ) {
+      if ( !fill() ) {
+        return false;
+      }
+    }
+    for ( int i = 1; i < separator.length; i++ ) {
+      if ( buffer[position + i] != separator[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+
+
+  private boolean isWhitespace( final char c ) {
+    return ( ( c == ' ' ) || ( c == '\t' ) ) && ( c != separator[0] );
+  }
+
+
+
+
+  /**
+   * Move past a LF, CR or CRLF at the current position.
+   */
+  private void consumeLineBreak() throws IOException {
+    final char c = buffer[position++];
+    if ( c == '\r' ) {
+      mark = position;
+      if ( ( position < limit || fill() ) && ( buffer[position] == '\n' ) ) {
+        position++;
+      }
+    }
+  }
+
+
+
+
+  private void add( final String value ) {
+    if ( count == values.length ) {
+      final String[] grown = new String[values.length * 2];
+      System.arraycopy( values, 0, grown, 0, count );
+      values = grown;
+    }
+    values[count++] = value;
+  }
+
+
+
+
+  /**
+   * Read more data into the buffer, keeping everything from the mark.
+   *
+   * @return false if there is no more data
+   */
+  private boolean fill() throws IOException {
+    if ( endOfData ) {
+      return false;
+    }
+
+    // move the current value to the front to make room
+    if ( mark > 0 ) {
+      final int kept = limit - mark;
+      System.arraycopy( buffer, mark, buffer, 0, kept );
+      position -= mark;
+      limit = kept;
+      mark = 0;
+    }
+
+    // values larger than the buffer need a larger buffer
+    if ( limit == buffer.length ) {
+      final char[] grown = new char[buffer.length * 2];
+      System.arraycopy( buffer, 0, grown, 0, limit );
+      buffer = grown;
+    }
+
+    final int read = reader.read( buffer, limit, buffer.length - limit );
+    if ( read < 0 ) {
+      endOfData = true;
+      return false;
+    }
+    limit += read;
+    return true;
+  }
+
+}
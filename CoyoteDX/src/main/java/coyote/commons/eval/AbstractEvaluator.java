@@ -3,9 +3,11 @@ package coyote.commons.eval;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +19,11 @@ import java.util.Map;
  * <p>Some standard evaluators are included in the library, you can define your
  * own by subclassing this class.</p>
  *
+ * <p>Expressions are parsed once and the compiled form cached by the text of
+ * the expression so conditions evaluated for every frame are only parsed the
+ * first time they are seen. Callers can also {@link #compile(String)} an
+ * expression themselves and keep the result.</p>
+ *
  * <p>Please note that this class is not thread safe. Under multi-threaded
  * context you may have to instantiate one instance per thread (for instance
  * using java.lang.ThreadLocal).</p>
@@ -24,6 +31,10 @@ import java.util.Map;
  * @param <T> The type of values handled by the evaluator
  */
 public abstract class AbstractEvaluator<T> {
+
+  /** The number of compiled expressions each evaluator keeps. */
+  private static final int CACHE_SIZE = 128;
+
   private final String argumentSeparator;
   private final Map<String, Constant> constants;
   private final Map<String, BracketPair> expressionBrackets;
@@ -33,6 +44,19 @@ public abstract class AbstractEvaluator<T> {
   private final Map<String, List<Operator>> operators;
   private final Tokenizer tokenizer;
 
+  /** Recently compiled expressions, in least recently used order. */
+  private final Map<String, Expression<T>> cache = new LinkedHashMap<String, Expression<T>>(16, 0.75F, true) {
+    private static final long serialVersionUID = 6203964498357519937L;
+
+
+
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Expression<T>> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
 
 
 
@@ -147,10 +171,99 @@ public abstract class AbstractEvaluator<T> {
    * @see VariableSet
    */
   public T evaluate(final String expression, final Object evaluationContext) {
-    final Deque<T> valueStack = new ArrayDeque<T>(); // values stack
+    return evaluate(getExpression(expression), evaluationContext);
+  }
+
+
+
+
+  /**
+   * Evaluates an expression which has already been compiled.
+   *
+   * <p>This is the fastest way to evaluate an expression many times since
+   * the expression is not parsed again.</p>
+   *
+   * @param expression The compiled expression to evaluate.
+   * @param evaluationContext The context of the evaluation.
+   *
+   * @return the result of the evaluation.
+   *
+   * @throws IllegalArgumentException if the expression was compiled by another evaluator
+   *
+   * @see #compile(String)
+   */
+  @SuppressWarnings("unchecked")
+  public T evaluate(final Expression<T> expression, final Object evaluationContext) {
+    if (expression.getEvaluator() != this) {
+      throw new IllegalArgumentException("Expression '" + expression + "' was compiled by another evaluator");
+    }
+    final Deque<T> values = new ArrayDeque<T>();
+    for (final Expression.Step step : expression.getSteps()) {
+      switch (step.kind) {
+        case Expression.Step.LITERAL:
+          // a constant, a variable name or a literal
+          T value = step.constant == null ? null : evaluate(step.constant, evaluationContext);
+          if ((value == null) && (evaluationContext != null) && (evaluationContext instanceof VariableSet)) {
+            value = ((VariableSet<T>)evaluationContext).get(step.literal);
+          }
+          values.push(value != null ? value : toValue(step.literal, evaluationContext));
+          break;
+        case Expression.Step.OPERATOR:
+          values.push(evaluate(step.operator, getArguments(values, step.argumentCount), evaluationContext));
+          break;
+        case Expression.Step.FUNCTION:
+          values.push(evaluate(step.function, getArguments(values, step.argumentCount), evaluationContext));
+          break;
+        default:
+          values.push(evaluate((Method)step.function, step.arguments.iterator(), step.prepared, evaluationContext));
+          break;
+      }
+    }
+    return values.pop();
+  }
+
+
+
+
+  /**
+   * Compiles the expression into the cache of this evaluator, if it is not
+   * already there, without evaluating it.
+   *
+   * <p>This allows components to check the syntax of their expressions when
+   * they are opened so the first evaluation does not pay for the parsing.</p>
+   *
+   * @param expression The expression to prepare.
+   *
+   * @throws IllegalArgumentException if the expression is not correct.
+   */
+  public void prepare(final String expression) {
+    getExpression(expression);
+  }
+
+
+
+
+  /**
+   * Parses an expression into a form which can be evaluated many times.
+   *
+   * <p>All the syntax checks are performed here so evaluating the returned
+   * expression only fails if the values of its literals, constants or
+   * methods are not valid.</p>
+   *
+   * @param expression The expression to compile.
+   *
+   * @return the compiled expression.
+   *
+   * @throws IllegalArgumentException if the expression is not correct.
+   */
+  public Expression<T> compile(final String expression) {
+    final List<Expression.Step> steps = new ArrayList<Expression.Step>();
     final Deque<Token> operatorStack = new ArrayDeque<Token>(); // operator stack
     final Deque<Integer> previousValuesSize = functions.isEmpty() ? null : new ArrayDeque<Integer>();
 
+    // the size of the value stack when the steps are evaluated
+    int depth = 0;
+
     // break the expression into individual tokens for processing
     final Iterator<String> tokens = tokenize(expression);
     Token previous = null;
@@ -198,7 +311,7 @@ public abstract class AbstractEvaluator<T> {
               throw new IllegalArgumentException("Invalid parenthesis match " + sc.getBrackets().getOpen() + brackets.getClose());
             }
           } else {
-            output(valueStack, sc, evaluationContext);
+            depth = output(steps, depth, sc);
           }
         }
         if (!openBracketFound) {
@@ -209,8 +322,8 @@ public abstract class AbstractEvaluator<T> {
         if (!operatorStack.isEmpty() && operatorStack.peek().isFunction()) {
           // If the token at the top of the stack is a function token, pop it
           // onto the output queue.
-          final int argCount = valueStack.size() - previousValuesSize.pop();
-          doFunction(valueStack, operatorStack.pop().getFunction(), argCount, evaluationContext);
+          final int argCount = depth - previousValuesSize.pop();
+          depth = doFunction(steps, depth, operatorStack.pop().getFunction(), argCount);
         }
 
       } else if (token.isFunctionArgumentSeparator()) {
@@ -231,7 +344,7 @@ public abstract class AbstractEvaluator<T> {
           } else {
             // Until the token at the top of the stack is a left parenthesis,
             // pop operators off the stack onto the output queue.
-            output(valueStack, operatorStack.pop(), evaluationContext);
+            depth = output(steps, depth, operatorStack.pop());
           }
         }
         if (!pe) {
@@ -243,7 +356,7 @@ public abstract class AbstractEvaluator<T> {
       } else if (token.isFunction()) {
         // If the token is a function token, then push it onto the stack.
         operatorStack.push(token);
-        previousValuesSize.push(valueStack.size());
+        previousValuesSize.push(depth);
 
       } else if (token.isMethod()) {
         // here is where we break with convention; we need to consume the next
@@ -272,9 +385,11 @@ public abstract class AbstractEvaluator<T> {
             // If the token is a closed bracket, the arguments are complete
             if (tkn.isCloseBracket()) {
 
-              // call the method with the arguments and place the return value
-              // on the valueStack
-              valueStack.push(evaluate(token.getMethod(), arguments.iterator(), evaluationContext));
+              // the method will be called with the arguments and its return
+              // value placed on the value stack
+              final List<String> args = Collections.unmodifiableList(arguments);
+              steps.add(Expression.Step.method(token.getMethod(), args, prepare(token.getMethod(), args)));
+              depth++;
 
               called = true;
               // return control to the regular mathematics processing
@@ -306,7 +421,7 @@ public abstract class AbstractEvaluator<T> {
           // If 2 operators have equal priority then associativity decides.
           if (sc.isOperator() && ((token.getAssociativity().equals(Operator.Associativity.LEFT) && (token.getPrecedence() <= sc.getPrecedence())) || (token.getPrecedence() < sc.getPrecedence()))) {
             // Pop o2 off the stack, onto the output queue;
-            output(valueStack, operatorStack.pop(), evaluationContext);
+            depth = output(steps, depth, operatorStack.pop());
           } else {
             break;
           }
@@ -318,7 +433,7 @@ public abstract class AbstractEvaluator<T> {
         if ((previous != null) && previous.isLiteral()) {
           throw new IllegalArgumentException("A literal can't follow another literal");
         }
-        output(valueStack, token, evaluationContext);
+        depth = output(steps, depth, token);
       }
       previous = token;
     }
@@ -329,12 +444,12 @@ public abstract class AbstractEvaluator<T> {
       if (sc.isOpenBracket() || sc.isCloseBracket()) {
         throw new IllegalArgumentException("Parentheses mismatched");
       }
-      output(valueStack, sc, evaluationContext);
+      depth = output(steps, depth, sc);
     }
-    if (valueStack.size() != 1) {
+    if (depth != 1) {
       throw new IllegalArgumentException();
     }
-    return valueStack.pop();
+    return new Expression<T>(expression, this, steps);
   }
 
 
@@ -393,11 +508,12 @@ public abstract class AbstractEvaluator<T> {
 
 
 
-  private void doFunction(final Deque<T> values, final Function function, final int argCount, final Object evaluationContext) {
+  private int doFunction(final List<Expression.Step> steps, final int depth, final Function function, final int argCount) {
     if ((function.getMinimumArgumentCount() > argCount) || (function.getMaximumArgumentCount() < argCount)) {
       throw new IllegalArgumentException("Invalid argument count for " + function.getName() + " function");
     }
-    values.push(evaluate(function, getArguments(values, argCount), evaluationContext));
+    steps.add(Expression.Step.function(function, argCount));
+    return depth - argCount + 1;
   }
 
 
@@ -420,6 +536,31 @@ public abstract class AbstractEvaluator<T> {
 
 
 
+  /**
+   * Get the compiled form of an expression, compiling it if it has not been
+   * seen recently.
+   *
+   * @param expression the text of the expression
+   *
+   * @return the compiled expression
+   */
+  private Expression<T> getExpression(final String expression) {
+    Expression<T> retval;
+    synchronized (cache) {
+      retval = cache.get(expression);
+    }
+    if (retval == null) {
+      retval = compile(expression);
+      synchronized (cache) {
+        cache.put(expression, retval);
+      }
+    }
+    return retval;
+  }
+
+
+
+
   private BracketPair getBracketPair(final String token) {
     final BracketPair result = expressionBrackets.get(token);
     return result == null ? functionBrackets.get(token) : result;
@@ -429,25 +570,26 @@ public abstract class AbstractEvaluator<T> {
 
 
   /**
-   * Output a value to the given value stack.
+   * Output a step which places a value on the value stack.
    *
-   * @param values the stack of values to populate
+   * @param steps the steps of the expression being compiled
+   * @param depth the size of the value stack before the step
    * @param token the token to process/evaluate
-   * @param evaluationContext the context in which the token is to be evaluated
+   *
+   * @return the size of the value stack after the step
    */
-  @SuppressWarnings("unchecked")
-  private void output(final Deque<T> values, final Token token, final Object evaluationContext) {
+  private int output(final List<Expression.Step> steps, final int depth, final Token token) {
     if (token.isLiteral()) { // If the token is a literal, a constant, or a variable name
       final String literal = token.getLiteral();
-      final Constant ct = this.constants.get(literal);
-      T value = ct == null ? null : evaluate(ct, evaluationContext);
-      if ((value == null) && (evaluationContext != null) && (evaluationContext instanceof VariableSet)) {
-        value = ((VariableSet<T>)evaluationContext).get(literal);
-      }
-      values.push(value != null ? value : toValue(literal, evaluationContext));
+      steps.add(Expression.Step.literal(literal, this.constants.get(literal)));
+      return depth + 1;
     } else if (token.isOperator()) {
       final Operator operator = token.getOperator();
-      values.push(evaluate(operator, getArguments(values, operator.getOperandCount()), evaluationContext));
+      if (depth < operator.getOperandCount()) {
+        throw new IllegalArgumentException();
+      }
+      steps.add(Expression.Step.operator(operator));
+      return depth - operator.getOperandCount() + 1;
     } else {
       throw new IllegalArgumentException();
     }
@@ -566,6 +708,49 @@ public abstract class AbstractEvaluator<T> {
 
 
 
+  /**
+   * Prepares a method call when the expression containing it is compiled.
+   *
+   * <p>Subclasses override this to do the work which depends only on the
+   * arguments of the call once, instead of each time the expression is
+   * evaluated. The default implementation prepares nothing.</p>
+   *
+   * @param method The method
+   * @param arguments The methods arguments, last argument first
+   *
+   * @return the value to pass to
+   *         {@link #evaluate(Method, Iterator, Object, Object)} each time the
+   *         call is evaluated, or null if there is nothing to prepare
+   *
+   * @throws IllegalArgumentException if the arguments are not correct
+   */
+  protected Object prepare(final Method method, final List<String> arguments) {
+    return null;
+  }
+
+
+
+
+  /**
+   * Evaluates a method call which was prepared when it was compiled.
+   *
+   * <p>The default implementation ignores what was prepared and calls
+   * {@link #evaluate(Method, Iterator, Object)}.</p>
+   *
+   * @param method The method
+   * @param arguments The methods arguments
+   * @param prepared The value returned by {@link #prepare(Method, List)}
+   * @param evaluationContext The context of the evaluation
+   *
+   * @return The result of the method
+   */
+  protected T evaluate(final Method method, final Iterator<String> arguments, final Object prepared, final Object evaluationContext) {
+    return evaluate(method, arguments, evaluationContext);
+  }
+
+
+
+
   /**
    * Evaluates an operation.
    * <p>Subclasses that support operators must override this method. The
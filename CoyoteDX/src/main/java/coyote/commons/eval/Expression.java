@@ -0,0 +1,149 @@
+package coyote.commons.eval;
+
+import java.util.List;
+
+
+/**
+ * An expression which has been parsed by an evaluator.
+ *
+ * <p>Parsing an infix expression (tokenizing it and ordering the tokens with
+ * the shunting-yard algorithm) is the most expensive part of an evaluation.
+ * An expression holds the result of that parsing as a postfix program with
+ * its constants, operators, functions and methods already bound, so it can
+ * be evaluated many times, with different evaluation contexts, without being
+ * parsed again.</p>
+ *
+ * <p>Expressions are immutable and can be shared between threads, but they
+ * can only be evaluated by the evaluator which compiled them.</p>
+ *
+ * @param <T> The type of values handled by the evaluator
+ *
+ * @see AbstractEvaluator#compile(String)
+ * @see AbstractEvaluator#evaluate(Expression, Object)
+ */
+public final class Expression<T> {
+  private final String text;
+  private final AbstractEvaluator<T> evaluator;
+  private final Step[] steps;
+
+
+
+
+  Expression(final String text, final AbstractEvaluator<T> evaluator, final List<Step> steps) {
+    this.text = text;
+    this.evaluator = evaluator;
+    this.steps = steps.toArray(new Step[steps.size()]);
+  }
+
+
+
+
+  /**
+   * @return the evaluator which compiled this expression.
+   */
+  AbstractEvaluator<T> getEvaluator() {
+    return evaluator;
+  }
+
+
+
+
+  /**
+   * @return the steps of the postfix program.
+   */
+  Step[] getSteps() {
+    return steps;
+  }
+
+
+
+
+  /**
+   * @return the text of the expression as it was compiled.
+   */
+  public String getText() {
+    return text;
+  }
+
+
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return text;
+  }
+
+
+
+
+  /**
+   * One step of a compiled expression, each of which pushes one value on
+   * the value stack after (possibly) popping its operands.
+   */
+  static final class Step {
+    /** A literal, constant or variable name. */
+    static final int LITERAL = 0;
+    /** An operator applied to the top values on the stack. */
+    static final int OPERATOR = 1;
+    /** A function applied to the top values on the stack. */
+    static final int FUNCTION = 2;
+    /** A method called with string arguments. */
+    static final int METHOD = 3;
+
+    final int kind;
+    final String literal;
+    final Constant constant;
+    final Operator operator;
+    final Function function;
+    final int argumentCount;
+    final List<String> arguments;
+    /** What the evaluator prepared for a method call when it was compiled. */
+    final Object prepared;
+
+
+
+
+    private Step(final int kind, final String literal, final Constant constant, final Operator operator, final Function function, final int argumentCount, final List<String> arguments, final Object prepared) {
+      this.kind = kind;
+      this.literal = literal;
+      this.constant = constant;
+      this.operator = operator;
+      this.function = function;
+      this.argumentCount = argumentCount;
+      this.arguments = arguments;
+      this.prepared = prepared;
+    }
+
+
+
+
+    static Step literal(final String literal, final Constant constant) {
+      return new Step(LITERAL, literal, constant, null, null, 0, null, null);
+    }
+
+
+
+
+    static Step operator(final Operator operator) {
+      return new Step(OPERATOR, null, null, operator, null, operator.getOperandCount(), null, null);
+    }
+
+
+
+
+    static Step function(final Function function, final int argumentCount) {
+      return new Step(FUNCTION, null, null, null, function, argumentCount, null, null);
+    }
+
+
+
+
+    static Step method(final Method method, final List<String> arguments, final Object prepared) {
+      return new Step(METHOD, null, null, null, method, arguments.size(), arguments, prepared);
+    }
+  }
+
+}
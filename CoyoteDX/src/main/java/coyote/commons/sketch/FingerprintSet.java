@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.commons.sketch;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * A set of values which stores only fingerprints of the values.
+ *
+ * <p>Each value is stored as a 64-bit hash, used to place it in an
+ * open-addressing table, and a second, independent 32-bit hash, which is
+ * compared only when the 64-bit hashes collide. A value is reported as seen
+ * only if both hashes match, which for 100 million values happens by chance
+ * about once in ten trillion runs. Each value takes 12 bytes, 16 on average
+ * with the free slots of the table, compared with well over 100 bytes for a
+ * string in a hash set.
+ *
+ * <p>The table is split into segments by the high bits of the hash so it can
+ * hold billions of values and so growing it only copies one segment at a
+ * time. Segments are only allocated when the first value is placed in them,
+ * at the size for the expected number of values, so a set which holds few
+ * values costs little. The segments may be allocated outside of the Java
+ * heap.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class FingerprintSet {
+
+  private static final int SLOT_SIZE = 12;
+  private static final int SEGMENT_BITS = 6;
+  private static final int SEGMENTS = 1 << SEGMENT_BITS;
+  private static final int MIN_SEGMENT_SLOTS = 256;
+  private static final int MAX_SEGMENT_SLOTS = 1 << 27;
+  private static final double LOAD_FACTOR = 0.75;
+
+  /** Marks an empty slot; a hash of zero is stored as this instead. */
+  private static final long EMPTY = 0;
+  private static final long ZERO = Hash.SEED;
+
+  private final boolean offHeap;
+  private final ByteBuffer[] tables = new ByteBuffer[SEGMENTS];
+  private final int[] counts = new int[SEGMENTS];
+  private final int initialSlots;
+  private long size = 0;
+
+
+
+
+  /**
+   * @param expected the number of values expected, used to size the table;
+   *        0 to start at the minimum size and grow as values are added
+   * @param offHeap true to allocate the table outside of the Java heap
+   */
+  public FingerprintSet(long expected, boolean offHeap) {
+    this.offHeap = offHeap;
+    int slots = MIN_SEGMENT_SLOTS;
+    long perSegment = (long)(expected / LOAD_FACTOR / SEGMENTS) + 1;
+    while (slots < perSegment && slots < MAX_SEGMENT_SLOTS) {
+      slots <<= 1;
+    }
+    initialSlots = slots;
+  }
+
+
+
+
+  /**
+   * Add a value to the set.
+   *
+   * @param value the value to add
+   *
+   * @return true if the value was added, false if it was already in the set
+   */
+  public boolean add(CharSequence value) {
+    return add(Hash.hash64(value), (int)Hash.hash64(value, Hash.SEED2));
+  }
+
+
+
+
+  /**
+   * Add a fingerprint to the set.
+   *
+   * @param hash the 64-bit hash of the value
+   * @param check the independent 32-bit hash of the value
+   *
+   * @return true if the fingerprint was added, false if it was already in the
+   *         set
+   */
+  public boolean add(long hash, int check) {
+    if (hash == EMPTY) {
+      hash = ZERO;
+    }
+    int segment = (int)(hash >>> (64 - SEGMENT_BITS));
+    ByteBuffer table = tables[segment];
+    if (table == null) {
+      table = allocate(initialSlots);
+      tables[segment] = table;
+    }
+    int mask = table.capacity() / SLOT_SIZE - 1;
+    int slot = (int)hash & mask;
+    while (true) {
+      int offset = slot * SLOT_SIZE;
+      long stored = table.getLong(offset);
+      if (stored == EMPTY) {
+        break;
+      }
+      if (stored == hash && table.getInt(offset + 8) == check) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (counts[segment] + 1 > (mask + 1) * LOAD_FACTOR && mask + 1 < MAX_SEGMENT_SLOTS) {
+      grow(segment);
+      table = tables[segment];
+      mask = table.capacity() / SLOT_SIZE - 1;
+      slot = (int)hash & mask;
+      while (table.getLong(slot * SLOT_SIZE) != EMPTY) {
+        slot = (slot + 1) & mask;
+      }
+    } else if (counts[segment] + 1 > mask) {
+      throw new IllegalStateException("Fingerprint set is full");
+    }
+
+    int offset = slot * SLOT_SIZE;
+    table.putLong(offset, hash);
+    table.putInt(offset + 8, check);
+    counts[segment]++;
+    size++;
+    return true;
+  }
+
+
+
+
+  /**
+   * @return the number of values in the set
+   */
+  public long size() {
+    return size;
+  }
+
+
+
+
+  /**
+   * @return the number of bytes allocated for the table
+   */
+  public long getAllocated() {
+    long retval = 0;
+    for (ByteBuffer table : tables) {
+      if (table != null) {
+        retval += table.capacity();
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return true if the table is allocated outside of the Java heap
+   */
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+
+
+
+  /**
+   * Remove all the values, releasing the table.
+   */
+  public void clear() {
+    for (int x = 0; x < SEGMENTS; x++) {
+      tables[x] = null;
+      counts[x] = 0;
+    }
+    size = 0;
+  }
+
+
+
+
+  /**
+   * Double the slots of a segment and re-insert its fingerprints.
+   */
+  private void grow(int segment) {
+    ByteBuffer old = tables[segment];
+    int slots = old.capacity() / SLOT_SIZE;
+    ByteBuffer table = allocate(slots * 2);
+    int mask = slots * 2 - 1;
+    for (int x = 0; x < slots; x++) {
+      long hash = old.getLong(x * SLOT_SIZE);
+      if (hash != EMPTY) {
+        int slot = (int)hash & mask;
+        while (table.getLong(slot * SLOT_SIZE) != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        table.putLong(slot * SLOT_SIZE, hash);
+        table.putInt(slot * SLOT_SIZE + 8, old.getInt(x * SLOT_SIZE + 8));
+      }
+    }
+    tables[segment] = table;
+  }
+
+
+
+
+  private ByteBuffer allocate(int slots) {
+    // new buffers are zeroed, i.e. all the slots are empty
+    return offHeap ? ByteBuffer.allocateDirect(slots * SLOT_SIZE) : ByteBuffer.allocate(slots * SLOT_SIZE);
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.commons.sketch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Finds the most frequent values of a stream in a fixed amount of memory.
+ *
+ * <p>This is the Misra-Gries algorithm: a counter is kept for at most
+ * {@code capacity} values. When a new value does not fit, the median count
+ * is subtracted from all the counters and those which drop to zero are
+ * removed. The count of each value is therefore an underestimate, by at most
+ * {@link #getError()}, which is no more than 2n / capacity for a stream of
+ * n values. Any value occurring more often than that is sure to be kept.
+ *
+ * <p>Sketches can be merged, giving the frequent values of the union of their
+ * streams.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class FrequentItems {
+
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private final int capacity;
+  private final Map<String, Counter> counters = new HashMap<>();
+  private long count = 0;
+  private long error = 0;
+
+
+
+
+  public FrequentItems() {
+    this(DEFAULT_CAPACITY);
+  }
+
+
+
+
+  /**
+   * @param capacity the number of values to count, larger values are more
+   *        accurate
+   */
+  public FrequentItems(int capacity) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+
+
+
+  /**
+   * @param value the value to add
+   */
+  public void add(String value) {
+    count++;
+    increment(value, 1);
+  }
+
+
+
+
+  /**
+   * Add the values of another sketch to this one.
+   *
+   * @param other the sketch to merge into this one
+   */
+  public void merge(FrequentItems other) {
+    count += other.count;
+    error += other.error;
+    for (Map.Entry<String, Counter> entry : other.counters.entrySet()) {
+      increment(entry.getKey(), entry.getValue().value);
+    }
+  }
+
+
+
+
+  /**
+   * @param limit the maximum number of items to return
+   *
+   * @return the most frequent values with their estimated counts, most
+   *         frequent first
+   */
+  public List<Item> getTop(int limit) {
+    List<Item> retval = new ArrayList<>();
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      retval.add(new Item(entry.getKey(), entry.getValue().value));
+    }
+    Collections.sort(retval, new Comparator<Item>() {
+      @Override
+      public int compare(Item item1, Item item2) {
+        return Long.compare(item2.getCount(), item1.getCount());
+      }
+    });
+    return (retval.size() > limit) ? new ArrayList<>(retval.subList(0, limit)) : retval;
+  }
+
+
+
+
+  /**
+   * @return the number of values added
+   */
+  public long getCount() {
+    return count;
+  }
+
+
+
+
+  /**
+   * @return the most any count may be short of the true count
+   */
+  public long getError() {
+    return error;
+  }
+
+
+
+
+  private void increment(String value, long weight) {
+    Counter counter = counters.get(value);
+    if (counter != null) {
+      counter.value += weight;
+    } else {
+      counters.put(value, new Counter(weight));
+      if (counters.size() > capacity) {
+        purge();
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Subtract the median count from all the counters, dropping at least half
+   * of them.
+   */
+  private void purge() {
+    long[] values = new long[counters.size()];
+    int x = 0;
+    for (Counter counter : counters.values()) {
+      values[x++] = counter.value;
+    }
+    Arrays.sort(values);
+    long median = values[values.length / 2];
+    for (Iterator<Counter> it = counters.values().iterator(); it.hasNext();) {
+      Counter counter = it.next();
+      counter.value -= median;
+      if (counter.value <= 0) {
+        it.remove();
+      }
+    }
+    error += median;
+  }
+
+
+
+
+  /**
+   * A value and its estimated count.
+   */
+  public static class Item {
+    private final String value;
+    private final long count;
+
+
+
+
+    Item(String value, long count) {
+      this.value = value;
+      this.count = count;
+    }
+
+
+
+
+    /**
+     * @return the value
+     */
+    public String getValue() {
+      return value;
+    }
+
+
+
+
+    /**
+     * @return the estimated number of times the value occurred
+     */
+    public long getCount() {
+      return count;
+    }
+
+
+
+
+    @Override
+    public String toString() {
+      return value + " (" + count + ")";
+    }
+  }
+
+
+
+
+  private static class Counter {
+    long value;
+
+
+
+
+    Counter(long value) {
+      this.value = value;
+    }
+  }
+
+}
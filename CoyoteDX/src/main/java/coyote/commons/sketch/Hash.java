@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.commons.sketch;
+
+/**
+ * 64-bit hashing of strings for sketches and fingerprint sets.
+ *
+ * <p>This is the block mixing and finalization of MurmurHash3 applied to the
+ * UTF-16 characters of the string, four characters to a block. Different
+ * seeds give independent hashes of the same value.
+ */
+public final class Hash {
+
+  /** Seed of the primary hash. */
+  public static final long SEED = 0x9E3779B97F4A7C15L;
+
+  /** Seed of a second hash, independent of the primary one. */
+  public static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+
+  private static final long C1 = 0x87C37B91114253D5L;
+  private static final long C2 = 0x4CF5AD432745937FL;
+
+
+
+
+  private Hash() {
+    // static methods only
+  }
+
+
+
+
+  /**
+   * @param value the value to hash
+   *
+   * @return the primary 64-bit hash of the value
+   */
+  public static long hash64(CharSequence value) {
+    return hash64(value, SEED);
+  }
+
+
+
+
+  /**
+   * @param value the value to hash
+   * @param seed the seed of the hash
+   *
+   * @return the 64-bit hash of the value with the given seed
+   */
+  public static long hash64(CharSequence value, long seed) {
+    final int length = value.length();
+    long h = seed ^ (length * C2);
+    int i = 0;
+    for (; i + 4 <= length; i += 4) {
+      long k = value.charAt(i) | ((long)value.charAt(i + 1) << 16) | ((long)value.charAt(i + 2) << 32) | ((long)value.charAt(i + 3) << 48);
+      h ^= mixBlock(k);
+      h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+    }
+    if (i < length) {
+      long k = 0;
+      for (int shift = 0; i < length; i++, shift += 16) {
+        k |= (long)value.charAt(i) << shift;
+      }
+      h ^= mixBlock(k);
+    }
+    return mix(h);
+  }
+
+
+
+
+  /**
+   * @param value the value to hash
+   *
+   * @return a well distributed 64-bit hash of the value
+   */
+  public static long hash64(long value) {
+    return mix(value ^ SEED);
+  }
+
+
+
+
+  private static long mixBlock(long k) {
+    k *= C1;
+    k = Long.rotateLeft(k, 31);
+    return k * C2;
+  }
+
+
+
+
+  /**
+   * The finalization mix of MurmurHash3, so every bit of the input affects
+   * every bit of the result.
+   */
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
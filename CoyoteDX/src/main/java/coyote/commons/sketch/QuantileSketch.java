@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.commons.sketch;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+
+/**
+ * Estimates the quantiles of a stream of numbers in a fixed amount of memory.
+ *
+ * <p>This is the KLL sketch of Karnin, Lang and Liberty. Values are kept in
+ * levels where each value of level h stands for 2^h values of the stream.
+ * When a level is full it is sorted and every other value, starting at a
+ * random one of the first two, is promoted to the next level. The capacity
+ * of the levels shrinks by 2/3 going down from the top level, which holds
+ * {@code k} values, so the sketch holds about 3k values at most. With the
+ * default k of 200 the rank of an estimated quantile is within about 1.7% of
+ * the true rank.
+ *
+ * <p>Sketches can be merged, giving the quantiles of the union of their
+ * streams.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class QuantileSketch {
+
+  public static final int DEFAULT_K = 200;
+
+  private static final int MIN_CAPACITY = 2;
+
+  private final int k;
+  private final Random random = new Random();
+  private double[][] levels = new double[1][];
+  private int[] sizes = new int[1];
+  private int[] capacities = new int[1];
+  private int height = 1;
+  private int maxRetained = 0;
+  private int retained = 0;
+  private long count = 0;
+  private double min = Double.NaN;
+  private double max = Double.NaN;
+
+
+
+
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+
+
+
+  /**
+   * @param k the number of values kept in the top level, larger values are
+   *        more accurate
+   */
+  public QuantileSketch(int k) {
+    if (k < MIN_CAPACITY) {
+      throw new IllegalArgumentException("K must be at least " + MIN_CAPACITY + ": " + k);
+    }
+    this.k = k;
+    updateCapacities();
+    levels[0] = new double[capacities[0]];
+  }
+
+
+
+
+  /**
+   * @param value the value to add, NaN is ignored
+   */
+  public void add(double value) {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    if (count == 0) {
+      min = value;
+      max = value;
+    } else {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    count++;
+    append(0, value);
+    compress();
+  }
+
+
+
+
+  /**
+   * Add the values of another sketch to this one.
+   *
+   * @param other the sketch to merge into this one
+   */
+  public void merge(QuantileSketch other) {
+    if (other.count == 0) {
+      return;
+    }
+    for (int h = 0; h < other.height; h++) {
+      for (int x = 0; x < other.sizes[h]; x++) {
+        append(h, other.levels[h][x]);
+      }
+    }
+    if (count == 0) {
+      min = other.min;
+      max = other.max;
+    } else {
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+    count += other.count;
+    compress();
+  }
+
+
+
+
+  /**
+   * @param fraction the fraction of values which are less than or equal to
+   *        the value returned, e.g. 0.5 for the median or 0.95 for the 95th
+   *        percentile
+   *
+   * @return the estimated value at the given fraction, NaN if the sketch is
+   *         empty
+   */
+  public double getQuantile(double fraction) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    if (fraction <= 0) {
+      return min;
+    }
+    if (fraction >= 1) {
+      return max;
+    }
+
+    double[] values = new double[retained];
+    long[] weights = new long[retained];
+    int n = 0;
+    for (int h = 0; h < height; h++) {
+      for (int x = 0; x < sizes[h]; x++) {
+        values[n] = levels[h][x];
+        weights[n++] = 1L << h;
+      }
+    }
+    Integer[] order = new Integer[n];
+    for (int x = 0; x < n; x++) {
+      order[x] = x;
+    }
+    final double[] sortValues = values;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer index1, Integer index2) {
+        return Double.compare(sortValues[index1], sortValues[index2]);
+      }
+    });
+
+    long total = 0;
+    for (int x = 0; x < n; x++) {
+      total += weights[x];
+    }
+    double rank = fraction * total;
+    long cumulative = 0;
+    for (int x = 0; x < n; x++) {
+      cumulative += weights[order[x]];
+      if (cumulative >= rank) {
+        return values[order[x]];
+      }
+    }
+    return max;
+  }
+
+
+
+
+  /**
+   * @return the number of values added
+   */
+  public long getCount() {
+    return count;
+  }
+
+
+
+
+  /**
+   * @return the smallest value added, NaN if the sketch is empty
+   */
+  public double getMin() {
+    return min;
+  }
+
+
+
+
+  /**
+   * @return the largest value added, NaN if the sketch is empty
+   */
+  public double getMax() {
+    return max;
+  }
+
+
+
+
+  /**
+   * @return the number of values held by the sketch
+   */
+  public int getRetained() {
+    return retained;
+  }
+
+
+
+
+  /**
+   * Set the number of values each level may hold before it is compacted.
+   */
+  private void updateCapacities() {
+    capacities = new int[height];
+    maxRetained = 0;
+    for (int h = 0; h < height; h++) {
+      int depth = height - h - 1;
+      capacities[h] = Math.max(MIN_CAPACITY, (int)Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+      maxRetained += capacities[h];
+    }
+  }
+
+
+
+
+  private void append(int level, double value) {
+    while (level >= height) {
+      addLevel();
+    }
+    if (sizes[level] == levels[level].length) {
+      levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, sizes[level] * 2));
+    }
+    levels[level][sizes[level]++] = value;
+    retained++;
+  }
+
+
+
+
+  private void addLevel() {
+    levels = Arrays.copyOf(levels, height + 1);
+    sizes = Arrays.copyOf(sizes, height + 1);
+    levels[height] = new double[MIN_CAPACITY];
+    height++;
+    updateCapacities();
+  }
+
+
+
+
+  /**
+   * Compact full levels until the sketch is within its capacity.
+   */
+  private void compress() {
+    while (retained > maxRetained) {
+      for (int h = 0; h < height; h++) {
+        if (sizes[h] >= capacities[h]) {
+          compact(h);
+          break;
+        }
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Promote every other value of a level to the next level.
+   */
+  private void compact(int level) {
+    if (level + 1 >= height) {
+      addLevel();
+    }
+    double[] items = levels[level];
+    int size = sizes[level];
+    Arrays.sort(items, 0, size);
+
+    // an odd value out stays at this level
+    int pairs = size - (size % 2);
+    for (int x = random.nextBoolean() ? 1 : 0; x < pairs; x += 2) {
+      append(level + 1, items[x]);
+    }
+    if (pairs < size) {
+      items[0] = items[size - 1];
+    }
+    sizes[level] = size - pairs;
+    retained -= pairs;
+  }
+
+}
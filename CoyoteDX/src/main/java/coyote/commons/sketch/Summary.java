@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.commons.sketch;
+
+/**
+ * The count, total, minimum, maximum, mean and standard deviation of a
+ * stream of numbers.
+ *
+ * <p>The variance is kept with Welford's method, which does not lose
+ * precision on large totals, and summaries are merged with the method of
+ * Chan et al.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class Summary {
+
+  private long count = 0;
+  private long total = 0;
+  private long min = 0;
+  private long max = 0;
+  private double mean = 0;
+  private double squares = 0;
+
+
+
+
+  /**
+   * @param value the value to add
+   */
+  public void sample(long value) {
+    if (count == 0) {
+      min = value;
+      max = value;
+    } else {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    count++;
+    total += value;
+    double delta = value - mean;
+    mean += delta / count;
+    squares += delta * (value - mean);
+  }
+
+
+
+
+  /**
+   * Add the values of another summary to this one.
+   *
+   * @param other the summary to merge into this one
+   */
+  public void merge(Summary other) {
+    if (other.count == 0) {
+      return;
+    }
+    if (count == 0) {
+      min = other.min;
+      max = other.max;
+    } else {
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+    long combined = count + other.count;
+    double delta = other.mean - mean;
+    squares += other.squares + delta * delta * count * other.count / combined;
+    mean += delta * other.count / combined;
+    count = combined;
+    total += other.total;
+  }
+
+
+
+
+  /**
+   * @return the number of values added
+   */
+  public long getCount() {
+    return count;
+  }
+
+
+
+
+  /**
+   * @return the sum of the values added
+   */
+  public long getTotal() {
+    return total;
+  }
+
+
+
+
+  /**
+   * @return the smallest value added, 0 if there are none
+   */
+  public long getMin() {
+    return min;
+  }
+
+
+
+
+  /**
+   * @return the largest value added, 0 if there are none
+   */
+  public long getMax() {
+    return max;
+  }
+
+
+
+
+  /**
+   * @return the mean of the values added, 0 if there are none
+   */
+  public double getAverage() {
+    return mean;
+  }
+
+
+
+
+  /**
+   * @return the population standard deviation of the values added
+   */
+  public double getStandardDeviation() {
+    return (count > 0) ? Math.sqrt(squares / count) : 0;
+  }
+
+
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder b = new StringBuilder();
+    b.append("count=").append(count);
+    b.append(" total=").append(total);
+    b.append(" min=").append(min);
+    b.append(" max=").append(max);
+    b.append(" avg=").append(Math.round(mean));
+    b.append(" sdev=").append(Math.round(getStandardDeviation()));
+    return b.toString();
+  }
+
+}
@@ -25,9 +25,10 @@ import coyote.dx.context.ContextKey;
 import coyote.dx.context.ContextListener;
 import coyote.dx.context.TransactionContext;
 import coyote.dx.context.TransformContext;
+import coyote.dx.context.TransformSymbolTable;
 import coyote.dx.mapper.DefaultFrameMapper;
-import coyote.dx.mapper.MappingException;
-import coyote.dx.validate.ValidationException;
+import coyote.dx.metric.JobMetrics;
+import coyote.dx.metric.JobMetrics.Stage;
 import coyote.loader.Loader;
 import coyote.loader.log.Log;
 import coyote.loader.log.LogMsg;
@@ -74,7 +75,7 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
   protected List<ContextListener> listeners = new ArrayList<ContextListener>();
 
   /** A symbol table to support basic template functions */
-  protected final SymbolTable symbols = new SymbolTable();
+  protected final SymbolTable symbols = new TransformSymbolTable();
 
   /** The directory this engine uses for file operations */
   private File jobDirectory = null;
@@ -94,6 +95,15 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
   /** the loader which loaded this engine */
   private Loader loader = null;
 
+  /** The filter, validate, transform and map stages for the engine thread */
+  private FramePipeline pipeline = null;
+
+  /** The metrics recorded for this job */
+  private JobMetrics metrics = null;
+
+  /** Runs the reader on its own thread when read-ahead is configured */
+  private ReadAheadReader readAhead = null;
+
 
 
 
@@ -207,69 +217,39 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
         // prime them with historic records
         preLoad();
 
+        // the filter, validate, transform and map stages
+        metrics = JobMetrics.of(getName());
+        pipeline = new FramePipeline(getContext(), filters, validators, transformers, mapper);
+
+        // run the reader on its own thread if so configured
+        if (reader != null && getReadAheadDepth() > 0 && getContext().isNotInError()) {
+          readAhead = new ReadAheadReader(reader, getReadAheadDepth(), getContext());
+          readAhead.start();
+        }
+
         Log.trace("Engine '" + getName() + "' entering read loop");
 
         // loop through all data read in by the reader until EOF or an error in 
         // the transform context occurs.
         getContext().setState("Process");
-        while (getContext().isNotInError() && reader != null && !reader.eof()) {
-
-          // Create a new Transaction context with the list of listeners to react 
-          // to events in the transaction.
-          TransactionContext txnContext = new TransactionContext(getContext());
-
-          // place a reference to the transaction in the transform context
-          getContext().setTransaction(txnContext);
-
-          // Create a component to place in the Templates to give them access to
-          // all the data in the contexts and advanced functions
-          TemplateAccess access = new TemplateAccess(getContext());
-          Template.put("Context", access);
-
-          // Start the clock and fire event listeners for the beginning of the
-          // transaction
-          txnContext.start();
-          txnContext.setState("Read");
-
-          // Read a frame into the given context (source frame)
-          DataFrame retval = reader.read(txnContext);
-
-          // Sometimes readers read empty lines and the like, skip null dataframes
-          if (retval != null) {
-
-            // Set the returned dataframe into the transaction context
-            txnContext.setSourceFrame(retval);
-            getContext().setRow(++currentFrameNumber);
-            getContext().getSymbols().put(Symbols.CURRENT_FRAME, currentFrameNumber);
-            getContext().getSymbols().put(Symbols.LAST_FRAME, txnContext.isLastFrame());
-            txnContext.fireRead(txnContext, reader);
-
-            filter(txnContext);
-
-            // If the working frame did not get filtered out...
-            if (txnContext.getWorkingFrame() != null) {
-              validate(txnContext);
-              if (txnContext.isNotInError()) {
-                transform(txnContext);
-                map(txnContext);
-                if (aggregators.size() > 0) {
-                  aggregateAndwrite(txnContext);
-                } else {
-                  write(txnContext);
-                }
-              } // passed validators
-            } // passed filters
-
-            // Now end the transaction which should fire any context listeners
-            txnContext.end();
-
-            if (txnContext.isInError()) {
-              transactionErrors++;
-            }
-
-          } // if something was read in
-
-        } // Reader !eof and context is without error
+        if (getWorkerCount() > 1 && reader != null) {
+          transactionErrors = processWithWorkers();
+        } else if (getBatchSize() > 1 && reader != null) {
+          transactionErrors = processInBatches();
+        } else {
+          while (getContext().isNotInError() && reader != null && !isReaderEof()) {
+            TransactionContext txnContext = readTransaction();
+
+            // Sometimes readers read empty lines and the like, skip null dataframes
+            if (txnContext != null) {
+              pipeline.process(txnContext);
+              if (completeTransaction(txnContext)) {
+                transactionErrors++;
+              }
+            } // if something was read in
+
+          } // Reader !eof and context is without error
+        }
 
       } // transformContext ! err after pre-processing
 
@@ -339,6 +319,439 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
 
 
 
+  /**
+   * Read the next frame from the reader into a new transaction context.
+   * 
+   * <p>If the reader places its transaction in error without returning a 
+   * frame, the error is set on the transform context.
+   * 
+   * @return the transaction context containing the source frame read in or 
+   *         null if the reader did not return a frame.
+   */
+  @SuppressWarnings("unchecked")
+  private TransactionContext readTransaction() {
+    // Create a new Transaction context with the list of listeners to react 
+    // to events in the transaction.
+    TransactionContext txnContext = new TransactionContext(getContext());
+
+    // place a reference to the transaction in the transform context
+    getContext().setTransaction(txnContext);
+
+    // Create a component to place in the Templates to give them access to
+    // all the data in the contexts and advanced functions
+    TemplateAccess access = new TemplateAccess(getContext());
+    Template.put("Context", access);
+
+    // Start the clock and fire event listeners for the beginning of the
+    // transaction
+    txnContext.start();
+    txnContext.setState("Read");
+
+    // Read a frame into the given context (source frame)
+    DataFrame retval;
+    if (readAhead != null) {
+      retval = readAhead.read(txnContext);
+    } else {
+      long start = System.nanoTime();
+      retval = reader.read(txnContext);
+      metrics.record(Stage.READ, reader, start);
+    }
+
+    if (retval != null) {
+      acceptFrame(txnContext, retval);
+      return txnContext;
+    }
+
+    // there is no frame to carry the error through the pipeline, so the read 
+    // error ends the transform instead of looking like the end of the data
+    if (txnContext.isInError()) {
+      getContext().setError(true);
+      getContext().setErrorMessage(txnContext.getErrorMessage());
+    }
+    return null;
+  }
+
+
+
+
+  /**
+   * Set the frame read in as the source frame of the given transaction, 
+   * update the row counters and fire the read event.
+   * 
+   * @param txnContext the transaction into which the frame was read
+   * @param frame the frame returned by the reader
+   */
+  private void acceptFrame(TransactionContext txnContext, DataFrame frame) {
+    // Set the returned dataframe into the transaction context
+    txnContext.setSourceFrame(frame);
+    metrics.getRead().increment();
+    getContext().setRow(++currentFrameNumber);
+    txnContext.setFrameNumber(currentFrameNumber);
+    getContext().getSymbols().put(Symbols.CURRENT_FRAME, currentFrameNumber);
+    getContext().getSymbols().put(Symbols.LAST_FRAME, txnContext.isLastFrame());
+    txnContext.fireRead(txnContext, reader);
+  }
+
+
+
+
+  /**
+   * @return true if the reader (or read-ahead queue) has no more frames.
+   */
+  private boolean isReaderEof() {
+    return (readAhead != null) ? readAhead.eof() : reader.eof();
+  }
+
+
+
+
+  /**
+   * Stop the read-ahead thread, if running, so the reader can be closed.
+   */
+  private void stopReadAhead() {
+    if (readAhead != null) {
+      readAhead.stop();
+      readAhead = null;
+    }
+  }
+
+
+
+
+  /**
+   * Aggregate and write the target frame of a processed transaction then end 
+   * the transaction.
+   * 
+   * @param txnContext the transaction which has been through the pipeline
+   * 
+   * @return true if the transaction ended in error, false otherwise.
+   */
+  private boolean completeTransaction(TransactionContext txnContext) {
+    // If the working frame did not get filtered out and passed validation...
+    if (txnContext.getWorkingFrame() != null && txnContext.isNotInError()) {
+      if (aggregators.size() > 0) {
+        aggregateAndwrite(txnContext);
+      } else {
+        write(txnContext);
+      }
+    }
+
+    // Now end the transaction which should fire any context listeners
+    txnContext.end();
+
+    if (txnContext.isInError()) {
+      metrics.getErrors().increment();
+      return true;
+    }
+    return false;
+  }
+
+
+
+
+  /**
+   * Read all the frames and process them with a pool of workers.
+   * 
+   * <p>The reader, aggregators and writers are only ever called from the 
+   * engine thread; only the filter, validate, transform and map stages are 
+   * run by the workers. Completed transactions are written as they become 
+   * available, in read order unless the engine is configured to be 
+   * unordered.</p>
+   * 
+   * @return the number of transactions which ended in error
+   */
+  private int processWithWorkers() {
+    int errors = 0;
+    int size = getWorkerCount();
+    Log.debug(LogMsg.createMsg(CDX.MSG, "Engine.starting_workers", getName(), size, isOrdered()));
+    WorkerPool pool = new WorkerPool(getContext(), pipeline, size, isOrdered());
+    try {
+      while (getContext().isNotInError() && !isReaderEof()) {
+        TransactionContext txnContext = readTransaction();
+        if (txnContext != null) {
+          pool.submit(txnContext);
+        }
+
+        // write what has completed, waiting if the workers are saturated
+        for (TransactionContext done = pool.next(pool.isFull()); done != null; done = pool.next(pool.isFull())) {
+          if (completeWorkerTransaction(done)) {
+            errors++;
+          }
+        }
+      }
+
+      // drain the workers of all remaining transactions
+      while (!pool.isEmpty()) {
+        TransactionContext done = pool.next(true);
+        if (done != null && completeWorkerTransaction(done)) {
+          errors++;
+        }
+      }
+    } finally {
+      pool.close();
+    }
+    return errors;
+  }
+
+
+
+
+  /**
+   * Complete a transaction processed by a worker or as part of a batch with 
+   * that transaction bound to the engine thread so writers and listeners 
+   * resolve values against it and not the transaction most recently read.
+   */
+  private boolean completeWorkerTransaction(TransactionContext txnContext) {
+    getContext().bindTransaction(txnContext);
+    try {
+      return completeTransaction(txnContext);
+    } finally {
+      getContext().bindTransaction(null);
+    }
+  }
+
+
+
+
+  /**
+   * Read and process frames in batches of the configured size.
+   * 
+   * <p>Readers, transforms and writers which support batches are called once 
+   * per batch; all others are called once per frame. Each transaction still 
+   * has its own context, events and error state.</p>
+   * 
+   * @return the number of transactions which ended in error
+   */
+  private int processInBatches() {
+    int errors = 0;
+    int size = getBatchSize();
+    Log.debug(LogMsg.createMsg(CDX.MSG, "Engine.processing_batches", getName(), size));
+    while (getContext().isNotInError() && !isReaderEof()) {
+      List<TransactionContext> batch = readBatch(size);
+      if (batch.size() > 0) {
+        pipeline.process(batch);
+        errors += completeBatch(batch);
+      }
+    }
+    return errors;
+  }
+
+
+
+
+  /**
+   * Read up to the given number of frames, each into its own transaction 
+   * context.
+   * 
+   * <p>Fewer frames are returned if the reader reaches EOF, reads its last 
+   * frame or does not return a frame (e.g. a timeout waiting for data) so 
+   * frames already read are not held waiting for more data to arrive.</p>
+   * 
+   * @param size the maximum number of frames to read
+   * 
+   * @return the transactions read in, possibly empty but never null.
+   */
+  @SuppressWarnings("unchecked")
+  private List<TransactionContext> readBatch(int size) {
+    List<TransactionContext> retval = new ArrayList<TransactionContext>(size);
+    if (readAhead == null && reader instanceof BatchReader) {
+      TransactionContext batchContext = new TransactionContext(getContext());
+      batchContext.setState("Read");
+      long start = System.nanoTime();
+      List<DataFrame> frames = ((BatchReader)reader).readBatch(batchContext, size);
+      metrics.record(Stage.READ, reader, start);
+      if (frames != null && frames.size() > 0) {
+        Template.put("Context", new TemplateAccess(getContext()));
+        for (int x = 0; x < frames.size(); x++) {
+          if (frames.get(x) != null) {
+            TransactionContext txnContext = new TransactionContext(getContext());
+            getContext().setTransaction(txnContext);
+            for (String key : batchContext.getKeys()) {
+              txnContext.set(key, batchContext.get(key));
+            }
+            txnContext.start();
+            txnContext.setState("Read");
+            txnContext.setLastFrame(batchContext.isLastFrame() && x + 1 == frames.size());
+            if (batchContext.isInError()) {
+              txnContext.setError(true);
+              txnContext.setErrorMessage(batchContext.getErrorMessage());
+            }
+            acceptFrame(txnContext, frames.get(x));
+            retval.add(txnContext);
+          }
+        }
+      }
+    } else {
+      while (retval.size() < size && getContext().isNotInError() && !isReaderEof()) {
+        TransactionContext txnContext = readTransaction();
+        if (txnContext == null) {
+          break;
+        }
+        retval.add(txnContext);
+        if (txnContext.isLastFrame()) {
+          break;
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Aggregate and write the target frames of a processed batch then end each 
+   * of its transactions.
+   * 
+   * <p>Writers which support batches are passed all the target frames at 
+   * once. All other writers, and all aggregators, are called once per 
+   * transaction with that transaction bound to the transform context.</p>
+   * 
+   * @param batch the transactions which have been through the pipeline
+   * 
+   * @return the number of transactions which ended in error
+   */
+  private int completeBatch(List<TransactionContext> batch) {
+    int errors = 0;
+    if (aggregators.size() > 0) {
+      for (TransactionContext txnContext : batch) {
+        if (completeWorkerTransaction(txnContext)) {
+          errors++;
+        }
+      }
+      return errors;
+    }
+
+    // collect the transactions which survived the pipeline
+    List<TransactionContext> writable = new ArrayList<TransactionContext>(batch.size());
+    List<DataFrame> frames = new ArrayList<DataFrame>(batch.size());
+    for (TransactionContext txnContext : batch) {
+      if (txnContext.getWorkingFrame() != null && txnContext.isNotInError() && txnContext.getTargetFrame() != null) {
+        txnContext.setState("Write");
+        writable.add(txnContext);
+        frames.add(txnContext.getTargetFrame());
+      }
+    }
+
+    if (writable.size() > 0 && writers.size() > 0) {
+      metrics.getWritten().add(writable.size());
+      for (FrameWriter writer : writers) {
+        if (writer.isEnabled()) {
+          if (isBatchWriter(writer)) {
+            try {
+              long start = System.nanoTime();
+              ((BatchWriter)writer).writeBatch(frames);
+              metrics.record(Stage.WRITE, writer, start);
+              for (TransactionContext txnContext : writable) {
+                getContext().bindTransaction(txnContext);
+                try {
+                  txnContext.fireWrite(txnContext, writer);
+                } finally {
+                  getContext().bindTransaction(null);
+                }
+              }
+            } catch (Exception e) {
+              Log.error(LogMsg.createMsg(CDX.MSG, "Engine.write_error", e.getClass().getSimpleName(), e.getMessage(), ExceptionUtil.stackTrace(e)));
+              for (TransactionContext txnContext : writable) {
+                txnContext.setError(e.getMessage());
+              }
+            }
+          } else {
+            for (TransactionContext txnContext : writable) {
+              getContext().bindTransaction(txnContext);
+              try {
+                write(writer, txnContext);
+              } finally {
+                getContext().bindTransaction(null);
+              }
+            }
+          }
+        } else {
+          if (Log.isLogging(Log.DEBUG_EVENTS)) {
+            Log.notice(LogMsg.createMsg(CDX.MSG, "Engine.writer_skipped_disabled", writer.getClass().getSimpleName()));
+          }
+        }
+      }
+    }
+
+    for (TransactionContext txnContext : batch) {
+      getContext().bindTransaction(txnContext);
+      try {
+        txnContext.end();
+      } finally {
+        getContext().bindTransaction(null);
+      }
+      if (txnContext.isInError()) {
+        metrics.getErrors().increment();
+        errors++;
+      }
+    }
+    return errors;
+  }
+
+
+
+
+  /**
+   * @return true if the writer is to be passed whole batches of frames; 
+   *         writers with a condition are always called once per frame.
+   */
+  private static boolean isBatchWriter(FrameWriter writer) {
+    return writer instanceof BatchWriter && (writer.getConfiguration() == null || StringUtil.isBlank(writer.getConfiguration().getString(ConfigTag.CONDITION)));
+  }
+
+
+
+
+  /**
+   * @return the number of frames to read, process and write together; 1 or 
+   *         less indicates frames are processed one at a time.
+   */
+  public int getBatchSize() {
+    return getInteger(ConfigTag.BATCH);
+  }
+
+
+
+
+  /**
+   * @return the number of worker threads to use in processing frames; 1 or 
+   *         less indicates frames are processed on the engine thread.
+   */
+  public int getWorkerCount() {
+    return getInteger(ConfigTag.WORKERS);
+  }
+
+
+
+
+  /**
+   * @return the maximum number of frames to read ahead of processing on a 
+   *         separate reader thread; 0 or less indicates the reader is called 
+   *         on the engine thread.
+   */
+  public int getReadAheadDepth() {
+    return getInteger(ConfigTag.READ_AHEAD);
+  }
+
+
+
+
+  /**
+   * @return true if the workers are to return frames to the writers in the 
+   *         order they were read, false if frames are to be written as soon 
+   *         as they are processed. Defaults to true.
+   */
+  public boolean isOrdered() {
+    if (containsIgnoreCase(ConfigTag.ORDERED)) {
+      return getBoolean(ConfigTag.ORDERED);
+    }
+    return true;
+  }
+
+
+
+
   /**
    * Read in historic data to prime (preload) components so they can base 
    * their calculations based on previous / historic frames.
@@ -677,133 +1090,6 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
 
 
 
-  /**
-   * Filter out working frames.
-   * 
-   * @param txnContext the transaction context containing the data to filter
-   */
-  private void filter(TransactionContext txnContext) {
-    txnContext.setState("Filter");
-    for (FrameFilter filter : filters) {
-      if (filter.isEnabled()) {
-        if (!filter.process(txnContext)) {
-          // filter signaled to discontinue filter checks (early exit)
-          break;
-        }
-        if (txnContext.getWorkingFrame() == null) {
-          // no need to continue, the working record was removed from 
-          // the transaction context
-          break;
-        }
-      }
-    }
-  }
-
-
-
-
-  /**
-   * Validate the data in the transaction context.
-   * 
-   * @param txnContext the transaction context containing the data to validate
-   */
-  private void validate(TransactionContext txnContext) {
-    // pass it through the validation rules
-    txnContext.setState("Validate");
-    boolean passed = true;
-    List<String> errors = new ArrayList<String>();
-    for (FrameValidator validator : validators) {
-      try {
-        if (!validator.process(txnContext)) {
-          passed = false;
-          String error = validator.getDescription();
-          if (StringUtil.isBlank(error)) {
-            error = validator.getClass().getName();
-          }
-          errors.add(error);
-        }
-      } catch (ValidationException e) {
-        txnContext.setError(e.getMessage());
-      }
-    }
-
-    // if there were validation errors
-    if (!passed) {
-      StringBuffer b = new StringBuffer("Validation errors:");
-      for (int x = 0; x < errors.size(); x++) {
-        b.append(errors.get(x));
-        if (x + 1 < errors.size()) {
-          b.append(", ");
-        }
-      }
-      txnContext.setError(b.toString());
-      getContext().fireFrameValidationFailed(txnContext);
-    }
-  }
-
-
-
-
-  /**
-   * Transform the working frame contained in the given transaction context
-   * with the currently configured transformers.
-   * 
-   * @param txnContext the transaction context containing the data to transform
-   */
-  private void transform(TransactionContext txnContext) {
-    txnContext.setState("Transform");
-    // Pass the working frame through the transformers
-    for (FrameTransform transformer : transformers) {
-      try {
-        // Have the transformer process the frame
-        DataFrame resultFrame = transformer.process(txnContext.getWorkingFrame());
-
-        // place the results of the transformation in the context
-        txnContext.setWorkingFrame(resultFrame);
-
-      } catch (Exception e) {
-        StringBuilder b = new StringBuilder();
-        b.append(transformer.getClass().getSimpleName());
-        b.append(": ");
-        b.append(e.getMessage());
-        if (e instanceof NullPointerException) {
-          b.append("\n");
-          b.append(ExceptionUtil.stackTrace(e));
-        }
-        txnContext.setError(b.toString());
-      }
-    }
-    if (txnContext.isInError()) {
-      Log.error("TRANSFORM ERRORS: " + txnContext.getErrorMessage());
-    }
-  }
-
-
-
-
-  /**
-   * Map the working frame to the target frame.
-   * 
-   * @param txnContext the transaction context containing the data to map
-   */
-  private void map(TransactionContext txnContext) {
-    // Pass it through the mapper - only the required fields should 
-    // exist in the target frame after the mapper is done.
-    if (txnContext.isNotInError()) {
-      txnContext.setState("Map");
-      // Map / Move fields from the working to the target frame
-      try {
-        mapper.process(txnContext);
-        txnContext.fireMap(txnContext);
-      } catch (MappingException e) {
-        txnContext.setError(e.getMessage());
-      }
-    }
-  }
-
-
-
-
   /**
    * Pass the target frame in the given transaction context to the aggregators 
    * and write out any frames the aggregators emit.
@@ -822,7 +1108,9 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
         if (frames != null) {
           try {
             // process the frames emitted from the previous aggregators
+            long start = System.nanoTime();
             frames = aggregator.process(frames, txnContext);
+            metrics.record(Stage.AGGREGATE, aggregator, start);
           } catch (Exception e) {
             Log.error(LogMsg.createMsg(CDX.MSG, "Engine.aggregation_error", e.getClass().getSimpleName(), e.getMessage(), ExceptionUtil.stackTrace(e)));
             e.printStackTrace();
@@ -852,18 +1140,11 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
   private void write(TransactionContext txnContext) {
     if (txnContext.isNotInError() && txnContext.getTargetFrame() != null && writers.size() > 0) {
       txnContext.setState("Write");
+      metrics.getWritten().increment();
       // Pass the frame to all the enabled writers
       for (FrameWriter writer : writers) {
         if (writer.isEnabled()) {
-          try {
-            // Write the target (new) frame
-            writer.write(txnContext.getTargetFrame());
-            txnContext.fireWrite(txnContext, writer);
-          } catch (Exception e) {
-            Log.error(LogMsg.createMsg(CDX.MSG, "Engine.write_error", e.getClass().getSimpleName(), e.getMessage(), ExceptionUtil.stackTrace(e)));
-            e.printStackTrace();
-            txnContext.setError(e.getMessage());
-          }
+          write(writer, txnContext);
         } else {
           if (Log.isLogging(Log.DEBUG_EVENTS)) {
             Log.notice(LogMsg.createMsg(CDX.MSG, "Engine.writer_skipped_disabled", writer.getClass().getSimpleName()));
@@ -876,6 +1157,29 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
 
 
 
+  /**
+   * Write the target frame of the given transaction context with one writer.
+   * 
+   * @param writer the writer to call
+   * @param txnContext the transaction context containing the data to write
+   */
+  private void write(FrameWriter writer, TransactionContext txnContext) {
+    try {
+      // Write the target (new) frame
+      long start = System.nanoTime();
+      writer.write(txnContext.getTargetFrame());
+      metrics.record(Stage.WRITE, writer, start);
+      txnContext.fireWrite(txnContext, writer);
+    } catch (Exception e) {
+      Log.error(LogMsg.createMsg(CDX.MSG, "Engine.write_error", e.getClass().getSimpleName(), e.getMessage(), ExceptionUtil.stackTrace(e)));
+      e.printStackTrace();
+      txnContext.setError(e.getMessage());
+    }
+  }
+
+
+
+
   /**
    * Retrieves a list of command line arguments as set in the symbol table and 
    * places them in the context.
@@ -1110,6 +1414,7 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
    * Close the reader. 
    */
   private void closeReader() {
+    stopReadAhead();
     if (reader != null) {
       try {
         reader.close();
@@ -1243,6 +1548,7 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
    * deleting files. 
    */
   private void closeInternalComponents() {
+    stopReadAhead();
     if (reader != null) {
       try {
         reader.close();
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import java.util.List;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransactionContext;
+
+
+/**
+ * Readers which can read several frames with one call implement this
+ * interface to reduce the per-frame overhead of reading.
+ *
+ * <p>When the engine is configured with a {@code Batch} size greater than 1,
+ * it calls {@link #readBatch(TransactionContext, int)} on readers which
+ * implement this interface. All other readers are simply called once for
+ * each frame in the batch.</p>
+ */
+public interface BatchReader extends FrameReader {
+
+  /**
+   * Read and return up to the given number of frames.
+   *
+   * <p>The given context is shared by all the frames in the batch; any values
+   * the reader places in it are copied into the transaction context of each
+   * frame. If the last frame in the returned list is the last frame the
+   * reader will ever return, the reader should set the last frame flag in the
+   * given context as it would in {@link #read(TransactionContext)}.
+   *
+   * @param context the context containing data related to the batch.
+   * @param size the maximum number of frames to return
+   *
+   * @return the frames read, possibly empty but never null.
+   */
+  public List<DataFrame> readBatch(TransactionContext context, int size);
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import java.util.List;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * Transforms which can process several frames with one call (e.g. a single
+ * lookup for many keys) implement this interface.
+ *
+ * <p>When the engine is configured with a {@code Batch} size greater than 1,
+ * it passes the working frames of a batch to transforms which implement this
+ * interface. All other transforms are simply called once for each frame.</p>
+ */
+public interface BatchTransform extends FrameTransform {
+
+  /**
+   * Transform the given frames and return the transformed frames.
+   *
+   * <p>The returned list must contain one frame for each frame passed, in the
+   * same order, as each returned frame becomes the new working frame of the
+   * corresponding transaction.
+   *
+   * <p>If this method throws an exception, the transaction context of every
+   * frame in the batch will be placed in error.
+   *
+   * @param frames The frames to transform
+   *
+   * @return the transformed frames
+   *
+   * @throws TransformException if any problems occurred during transformation
+   *         causing the transactions to be aborted.
+   */
+  public List<DataFrame> processBatch(List<DataFrame> frames) throws TransformException;
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import java.util.List;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * Writers which can write several frames more efficiently than one at a time
+ * (e.g. with one database round trip or one flush of a file) implement this
+ * interface.
+ *
+ * <p>When the engine is configured with a {@code Batch} size greater than 1,
+ * it passes all the frames of a batch to writers which implement this
+ * interface. All other writers are simply called once for each frame.</p>
+ *
+ * <p>Writers configured with a {@code Condition} are always called once per
+ * frame so the condition can be evaluated against the transaction of each
+ * frame.</p>
+ */
+public interface BatchWriter extends FrameWriter {
+
+  /**
+   * Write all the given frames, in order.
+   *
+   * @param frames the frames to write
+   */
+  public void writeBatch(List<DataFrame> frames);
+
+}
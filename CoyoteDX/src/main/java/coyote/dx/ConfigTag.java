@@ -126,6 +126,9 @@ public class ConfigTag {
   public static final String CATEGORY = "category";
   public static final String ENABLED = "enabled";
   public static final String VAULT = "vault";
+  public static final String WORKERS = "Workers";
+  public static final String ORDERED = "Ordered";
+  public static final String READ_AHEAD = "ReadAhead";
   // Tasks
 
   public static final String TODIR = "todir";
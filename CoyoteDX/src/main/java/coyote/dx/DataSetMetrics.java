@@ -8,7 +8,9 @@
 package coyote.dx;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
@@ -21,21 +23,47 @@ import coyote.dataframe.DataFrame;
  * <p>Writers (and other components) can use this class to compile data about
  * Data Frames they have observed, compiling a detailed profile about the set
  * of frames.</p>
+ *
+ * <p>Metrics from different sets of frames, e.g. those sampled by different
+ * threads, can be combined with {@link #merge(DataSetMetrics)}.</p>
  */
 public class DataSetMetrics {
 
   private final List<FieldMetrics> metrics = new ArrayList<FieldMetrics>();
 
+  private final Map<String, FieldMetrics> index = new HashMap<String, FieldMetrics>();
+
+  private final boolean exact;
+
   private long samples = 0;
 
 
 
 
+  public DataSetMetrics() {
+    this(false);
+  }
+
+
+
+
+  /**
+   * @param exact true to count the unique values of fields exactly, false to
+   *        estimate them
+   */
+  public DataSetMetrics(final boolean exact) {
+    this.exact = exact;
+  }
+
+
+
+
   /**
    * Clear all the metrics from this schema.
    */
   public void clear() {
     metrics.clear();
+    index.clear();
     samples = 0;
   }
 
@@ -55,17 +83,15 @@ public class DataSetMetrics {
   public FieldMetrics getMetric(final String name) {
     FieldMetrics retval = null;
     if (name != null) {
-      for (final FieldMetrics metric : metrics) {
-        if (name.equals(metric.getName())) {
-          retval = metric;
-          break;
-        }
-      }
+      retval = index.get(name);
     }
 
     if (retval == null) {
-      retval = new FieldMetrics(name);
+      retval = new FieldMetrics(name, exact);
       metrics.add(retval);
+      if (name != null) {
+        index.put(name, retval);
+      }
     }
 
     return retval;
@@ -94,6 +120,31 @@ public class DataSetMetrics {
 
 
 
+  /**
+   * @return true if the unique values of fields are counted exactly
+   */
+  public boolean isExact() {
+    return exact;
+  }
+
+
+
+
+  /**
+   * Add the metrics of another set of frames to these metrics.
+   *
+   * @param other the metrics to merge into these
+   */
+  public void merge(final DataSetMetrics other) {
+    samples += other.samples;
+    for (final FieldMetrics metric : other.metrics) {
+      getMetric(metric.getName()).merge(metric);
+    }
+  }
+
+
+
+
   /**
    * Take a sample.
    *
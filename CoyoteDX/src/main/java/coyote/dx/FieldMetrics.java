@@ -8,50 +8,82 @@
 package coyote.dx;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import coyote.commons.sketch.FrequentItems;
+import coyote.commons.sketch.HyperLogLog;
+import coyote.commons.sketch.QuantileSketch;
+import coyote.commons.sketch.Summary;
 import coyote.dataframe.DataField;
-import coyote.i13n.SimpleMetric;
 
 
 /**
  * This class examines the sampled data fields and tracks several metrics.
  *
- * TODO track data based on types...numerics : MinMaxAvgSDev
+ * <p>The number of unique values is estimated with a HyperLogLog sketch
+ * which takes 4KB no matter how many values are sampled and is accurate to
+ * about 2%. Exact counting keeps every distinct value and should only be
+ * used when the number of distinct values is known to be small.
+ *
+ * <p>Quantiles of the string lengths and of numeric values, and the most
+ * frequent values, are tracked with sketches of fixed size. All the metrics
+ * of a field can be merged with those of the same field sampled elsewhere,
+ * e.g. by another thread.
  */
 public class FieldMetrics {
-  private static final String BYTE_LENGTH = "Byte Length";
-  private static final String STRING_LENGTH = "String Length";
   private long fieldLength = -1L;
   private String fieldName = null;
   private String fieldType = null;
-  private final Set<Object> values = new HashSet<Object>();
+  private boolean exact;
+  private Set<Object> values = null;
+  private HyperLogLog uniques = null;
+  private final FrequentItems frequentValues = new FrequentItems();
+  private final QuantileSketch lengthQuantiles = new QuantileSketch();
+  private QuantileSketch numericQuantiles = null;
   long blankCount = 0;
-  SimpleMetric byteLength = new SimpleMetric(BYTE_LENGTH, "");
+  Summary byteLength = new Summary();
   long emptyCount = 0;
   long nullCount = 0;
   long sampleCount = 0;
-  SimpleMetric stringLength = new SimpleMetric(STRING_LENGTH, "");
+  Summary stringLength = new Summary();
 
 
 
 
   public FieldMetrics(final String name) {
+    this(name, false);
+  }
+
+
+
+
+  /**
+   * @param name the name of the field
+   * @param exact true to count unique values exactly, false to estimate them
+   */
+  public FieldMetrics(final String name, final boolean exact) {
     fieldName = name;
+    this.exact = exact;
+    if (exact) {
+      values = new HashSet<Object>();
+    } else {
+      uniques = new HyperLogLog();
+    }
   }
 
 
 
 
   public long getAverageByteLength() {
-    return byteLength.getAvgValue();
+    return Math.round(byteLength.getAverage());
   }
 
 
 
 
   public long getAverageStringLength() {
-    return stringLength.getAvgValue();
+    return Math.round(stringLength.getAverage());
   }
 
 
@@ -79,7 +111,7 @@ public class FieldMetrics {
 
   public float getCoincidence() {
     if (sampleCount > 0) {
-      return (float)(sampleCount - (values.size() - 1)) / (float)sampleCount;
+      return (float)(sampleCount - (getUniqueValues() - 1)) / (float)sampleCount;
     } else {
       return 1F;
     }
@@ -113,14 +145,14 @@ public class FieldMetrics {
 
 
   public long getMaximumByteLength() {
-    return byteLength.getMinValue();
+    return byteLength.getMax();
   }
 
 
 
 
   public long getMaximumStringLength() {
-    return stringLength.getMaxValue();
+    return stringLength.getMax();
   }
 
 
@@ -130,21 +162,21 @@ public class FieldMetrics {
    * @return the maximum (string) length for this field.
    */
   public long getMaxLength() {
-    return stringLength.getMaxValue();
+    return stringLength.getMax();
   }
 
 
 
 
   public long getMinimumByteLength() {
-    return byteLength.getMaxValue();
+    return byteLength.getMin();
   }
 
 
 
 
   public long getMinimumStringLength() {
-    return stringLength.getMinValue();
+    return stringLength.getMin();
   }
 
 
@@ -170,15 +202,39 @@ public class FieldMetrics {
 
 
 
+  /**
+   * @return the number of sampled values which were numbers
+   */
+  public long getNumericCount() {
+    return (numericQuantiles != null) ? numericQuantiles.getCount() : 0;
+  }
+
+
+
+
+  /**
+   * @param fraction the fraction of numeric values less than or equal to the
+   *        value returned, e.g. 0.95 for the 95th percentile
+   *
+   * @return the estimated numeric value at the given fraction or NaN if no
+   *         numeric values were sampled
+   */
+  public double getNumericQuantile(final double fraction) {
+    return (numericQuantiles != null) ? numericQuantiles.getQuantile(fraction) : Double.NaN;
+  }
+
+
+
+
   public long getStdDevByteLength() {
-    return byteLength.getStandardDeviation();
+    return Math.round(byteLength.getStandardDeviation());
   }
 
 
 
 
   public long getStdDevStringLength() {
-    return stringLength.getStandardDeviation();
+    return Math.round(stringLength.getStandardDeviation());
   }
 
 
@@ -194,6 +250,33 @@ public class FieldMetrics {
 
 
 
+  /**
+   * @param fraction the fraction of string lengths less than or equal to the
+   *        length returned, e.g. 0.5 for the median length
+   *
+   * @return the estimated string length at the given fraction or 0 if no
+   *         values were sampled
+   */
+  public long getStringLengthQuantile(final double fraction) {
+    return (lengthQuantiles.getCount() > 0) ? Math.round(lengthQuantiles.getQuantile(fraction)) : 0;
+  }
+
+
+
+
+  /**
+   * @param limit the maximum number of values to return
+   *
+   * @return the most frequent values and their estimated counts, most
+   *         frequent first
+   */
+  public List<FrequentItems.Item> getTopValues(final int limit) {
+    return frequentValues.getTop(limit);
+  }
+
+
+
+
   public long getTotalByteLength() {
     return byteLength.getTotal();
   }
@@ -218,8 +301,80 @@ public class FieldMetrics {
 
 
 
+  /**
+   * @return the number of unique values sampled, estimated unless exact
+   *         counting is enabled
+   */
   public int getUniqueValues() {
-    return values.size();
+    if (exact) {
+      return values.size();
+    }
+    // the estimate may be slightly more than the number of values sampled
+    return (int)Math.min(Integer.MAX_VALUE, Math.min(uniques.cardinality(), sampleCount - nullCount));
+  }
+
+
+
+
+  /**
+   * @return true if the unique values are counted exactly
+   */
+  public boolean isExact() {
+    return exact;
+  }
+
+
+
+
+  /**
+   * Add the metrics of the same field sampled elsewhere to these metrics.
+   *
+   * <p>If only one of the metrics counts unique values exactly, these
+   * metrics switch to estimating them.
+   *
+   * @param other the metrics to merge into these
+   */
+  public void merge(final FieldMetrics other) {
+    sampleCount += other.sampleCount;
+    nullCount += other.nullCount;
+    emptyCount += other.emptyCount;
+    blankCount += other.blankCount;
+    if (fieldType == null) {
+      fieldType = other.fieldType;
+    }
+    if (other.fieldLength > fieldLength) {
+      fieldLength = other.fieldLength;
+    }
+    stringLength.merge(other.stringLength);
+    byteLength.merge(other.byteLength);
+    lengthQuantiles.merge(other.lengthQuantiles);
+    if (other.numericQuantiles != null) {
+      if (numericQuantiles == null) {
+        numericQuantiles = new QuantileSketch();
+      }
+      numericQuantiles.merge(other.numericQuantiles);
+    }
+    frequentValues.merge(other.frequentValues);
+
+    if (exact && other.exact) {
+      values.addAll(other.values);
+      return;
+    }
+    if (exact) {
+      uniques = new HyperLogLog();
+      for (final Object value : values) {
+        uniques.add(value.toString());
+      }
+      values = null;
+      exact = false;
+    }
+    if (other.exact) {
+      for (final Object value : other.values) {
+        uniques.add(value.toString());
+      }
+    } else {
+      uniques.merge(other.uniques);
+    }
   }
 
 
@@ -238,7 +393,21 @@ public class FieldMetrics {
     // Set metrics based on the value of the field
     final String value = field.getStringValue();
     if (value != null) {
-      values.add(value);
+      if (exact) {
+        values.add(value);
+      } else {
+        uniques.add(value);
+      }
+      frequentValues.add(value);
+      lengthQuantiles.add(value.length());
+
+      final Object object = field.getObjectValue();
+      if (object instanceof Number) {
+        if (numericQuantiles == null) {
+          numericQuantiles = new QuantileSketch();
+        }
+        numericQuantiles.add(((Number)object).doubleValue());
+      }
 
       if (value.length() == 0) {
         emptyCount++;
@@ -269,7 +438,7 @@ public class FieldMetrics {
 
   public void setMaxLength(final long len) {
 
-    stringLength.sample(len);;
+    stringLength.sample(len);
   }
 
 
@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import coyote.commons.ExceptionUtil;
+import coyote.commons.StringUtil;
+import coyote.commons.template.SymbolTable;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.mapper.MappingException;
+import coyote.dx.metric.JobMetrics;
+import coyote.dx.metric.JobMetrics.Stage;
+import coyote.dx.validate.ValidationException;
+import coyote.loader.log.Log;
+import coyote.loader.log.LogMsg;
+
+
+/**
+ * The filter, validate, transform and map stages of the engine for a single
+ * thread of execution.
+ *
+ * <p>The engine uses one pipeline when it processes frames on its own thread
+ * and one pipeline per worker when it has been configured with workers. Each
+ * worker pipeline holds either the shared engine components or its own
+ * copies of them, depending on the {@link ThreadSafety} policy of each
+ * component.</p>
+ */
+class FramePipeline {
+
+  private final TransformContext context;
+  private final List<FrameFilter> filters;
+  private final List<FrameValidator> validators;
+  private final List<FrameTransform> transformers;
+  private final FrameMapper mapper;
+  private final JobMetrics metrics;
+
+  /** The copy of the symbol table used by a worker, null to share the engine's */
+  private SymbolTable symbols = null;
+
+  /** The components this pipeline created and is responsible for closing. */
+  private final List<ConfigurableComponent> clones = new ArrayList<ConfigurableComponent>();
+
+
+
+
+  /**
+   * Create a pipeline using the given components.
+   *
+   * @param context the transform context in which the components operate
+   * @param filters the filters to apply
+   * @param validators the validators to apply
+   * @param transformers the transformers to apply
+   * @param mapper the mapper which creates the target frame
+   */
+  FramePipeline(TransformContext context, List<FrameFilter> filters, List<FrameValidator> validators, List<FrameTransform> transformers, FrameMapper mapper) {
+    this.context = context;
+    this.filters = filters;
+    this.validators = validators;
+    this.transformers = transformers;
+    this.mapper = mapper;
+    this.metrics = JobMetrics.of(context);
+  }
+
+
+
+
+  /**
+   * Create a copy of this pipeline for use by a worker thread.
+   *
+   * <p>Components with a {@code CLONE} policy are re-created from their
+   * configuration and opened in the transform context. All other components
+   * are shared with this pipeline. The copy is given its own copy of the
+   * symbol table so the worker never reads the table while the engine thread
+   * updates it.</p>
+   *
+   * @return a pipeline which can be run concurrently with this one.
+   */
+  FramePipeline copy() {
+    List<ConfigurableComponent> created = new ArrayList<ConfigurableComponent>();
+    List<FrameFilter> filterCopies = new ArrayList<FrameFilter>();
+    for (FrameFilter filter : filters) {
+      filterCopies.add((FrameFilter)copyComponent(filter, created));
+    }
+    List<FrameValidator> validatorCopies = new ArrayList<FrameValidator>();
+    for (FrameValidator validator : validators) {
+      validatorCopies.add((FrameValidator)copyComponent(validator, created));
+    }
+    List<FrameTransform> transformCopies = new ArrayList<FrameTransform>();
+    for (FrameTransform transformer : transformers) {
+      transformCopies.add((FrameTransform)copyComponent(transformer, created));
+    }
+    FrameMapper mapperCopy = (mapper != null) ? (FrameMapper)copyComponent(mapper, created) : null;
+
+    FramePipeline retval = new FramePipeline(context, filterCopies, validatorCopies, transformCopies, mapperCopy);
+    retval.clones.addAll(created);
+    retval.symbols = context.copySymbols();
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the symbol table the worker running this pipeline is to use, or
+   *         null to use the one shared with the engine
+   */
+  SymbolTable getSymbols() {
+    return symbols;
+  }
+
+
+
+
+  /**
+   * Return the component to use in a worker pipeline.
+   *
+   * @param component the engine component
+   * @param created the list to which any newly created instance is added
+   *
+   * @return a new, opened instance of the component if its policy is to be
+   *         cloned, otherwise the given component.
+   */
+  private ConfigurableComponent copyComponent(ConfigurableComponent component, List<ConfigurableComponent> created) {
+    if (policyOf(component) == ThreadSafety.Policy.CLONE) {
+      Object object = CDX.createComponent(component.getClass().getName(), component.getConfiguration());
+      if (object instanceof ConfigurableComponent) {
+        ConfigurableComponent retval = (ConfigurableComponent)object;
+        retval.setEnabled(component.isEnabled());
+        retval.open(context);
+        created.add(retval);
+        return retval;
+      } else {
+        Log.warn(LogMsg.createMsg(CDX.MSG, "Engine.worker_could_not_clone", component.getClass().getName()));
+      }
+    }
+    return component;
+  }
+
+
+
+
+  /**
+   * Determine the thread policy of the given component.
+   *
+   * @param component the component to query
+   *
+   * @return the policy declared by the component, or {@code SHARED} if it
+   *         does not declare one.
+   */
+  static ThreadSafety.Policy policyOf(Object component) {
+    if (component instanceof ThreadSafety) {
+      ThreadSafety.Policy retval = ((ThreadSafety)component).getThreadPolicy();
+      if (retval != null) {
+        return retval;
+      }
+    }
+    return ThreadSafety.Policy.SHARED;
+  }
+
+
+
+
+  /**
+   * @return true if calls to the given component must be serialized
+   */
+  private static boolean isSerial(Object component) {
+    return component instanceof ThreadSafety && ((ThreadSafety)component).getThreadPolicy() == ThreadSafety.Policy.SERIAL;
+  }
+
+
+
+
+  /**
+   * Run the frame in the given transaction through the filters, and if it was
+   * not filtered out, through the validators, transformers and the mapper.
+   *
+   * @param txnContext the transaction context containing the data to process
+   */
+  void process(TransactionContext txnContext) {
+    filter(txnContext);
+
+    // If the working frame did not get filtered out...
+    if (txnContext.getWorkingFrame() != null) {
+      validate(txnContext);
+      if (txnContext.isNotInError()) {
+        transform(txnContext);
+        map(txnContext);
+      } // passed validators
+    } // passed filters
+  }
+
+
+
+
+  /**
+   * Run a batch of transactions through the pipeline.
+   *
+   * <p>Each transaction is filtered and validated in turn, then the surviving
+   * transactions are passed through each transformer together so transforms
+   * which implement {@link BatchTransform} can process them in one call. The
+   * results are then mapped. Each transaction is bound to the transform
+   * context while it is processed individually so values resolve against the
+   * proper transaction.</p>
+   *
+   * @param batch the transaction contexts containing the data to process
+   */
+  void process(List<TransactionContext> batch) {
+    List<TransactionContext> active = new ArrayList<TransactionContext>(batch.size());
+    for (TransactionContext txnContext : batch) {
+      context.bindTransaction(txnContext);
+      try {
+        filter(txnContext);
+        if (txnContext.getWorkingFrame() != null) {
+          validate(txnContext);
+          if (txnContext.isNotInError()) {
+            active.add(txnContext);
+          }
+        }
+      } finally {
+        context.bindTransaction(null);
+      }
+    }
+
+    if (active.size() > 0) {
+      for (TransactionContext txnContext : active) {
+        txnContext.setState("Transform");
+      }
+      for (FrameTransform transformer : transformers) {
+        if (transformer instanceof BatchTransform) {
+          transform((BatchTransform)transformer, active);
+        } else {
+          for (TransactionContext txnContext : active) {
+            context.bindTransaction(txnContext);
+            try {
+              transform(transformer, txnContext);
+            } finally {
+              context.bindTransaction(null);
+            }
+          }
+        }
+      }
+
+      for (TransactionContext txnContext : active) {
+        context.bindTransaction(txnContext);
+        try {
+          if (txnContext.isInError()) {
+            Log.error("TRANSFORM ERRORS: " + txnContext.getErrorMessage());
+          }
+          map(txnContext);
+        } finally {
+          context.bindTransaction(null);
+        }
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Filter out working frames.
+   *
+   * @param txnContext the transaction context containing the data to filter
+   */
+  private void filter(TransactionContext txnContext) {
+    txnContext.setState("Filter");
+    for (FrameFilter filter : filters) {
+      if (filter.isEnabled()) {
+        boolean proceed;
+        long start = System.nanoTime();
+        if (isSerial(filter)) {
+          synchronized (filter) {
+            proceed = filter.process(txnContext);
+          }
+        } else {
+          proceed = filter.process(txnContext);
+        }
+        metrics.record(Stage.FILTER, filter, start);
+        if (!proceed) {
+          // filter signaled to discontinue filter checks (early exit)
+          break;
+        }
+        if (txnContext.getWorkingFrame() == null) {
+          // no need to continue, the working record was removed from
+          // the transaction context
+          break;
+        }
+      }
+    }
+    if (txnContext.getWorkingFrame() == null) {
+      metrics.getFiltered().increment();
+    }
+  }
+
+
+
+
+  /**
+   * Validate the data in the transaction context.
+   *
+   * @param txnContext the transaction context containing the data to validate
+   */
+  private void validate(TransactionContext txnContext) {
+    // pass it through the validation rules
+    txnContext.setState("Validate");
+    boolean passed = true;
+    List<String> errors = new ArrayList<String>();
+    for (FrameValidator validator : validators) {
+      try {
+        boolean valid;
+        long start = System.nanoTime();
+        if (isSerial(validator)) {
+          synchronized (validator) {
+            valid = validator.process(txnContext);
+          }
+        } else {
+          valid = validator.process(txnContext);
+        }
+        metrics.record(Stage.VALIDATE, validator, start);
+        if (!valid) {
+          passed = false;
+          String error = validator.getDescription();
+          if (StringUtil.isBlank(error)) {
+            error = validator.getClass().getName();
+          }
+          errors.add(error);
+        }
+      } catch (ValidationException e) {
+        txnContext.setError(e.getMessage());
+      }
+    }
+
+    // if there were validation errors
+    if (!passed) {
+      StringBuffer b = new StringBuffer("Validation errors:");
+      for (int x = 0; x < errors.size(); x++) {
+        b.append(errors.get(x));
+        if (x + 1 < errors.size()) {
+          b.append(", ");
+        }
+      }
+      txnContext.setError(b.toString());
+      metrics.getInvalid().increment();
+      context.fireFrameValidationFailed(txnContext);
+    }
+  }
+
+
+
+
+  /**
+   * Transform the working frame contained in the given transaction context
+   * with the currently configured transformers.
+   *
+   * @param txnContext the transaction context containing the data to transform
+   */
+  private void transform(TransactionContext txnContext) {
+    txnContext.setState("Transform");
+    // Pass the working frame through the transformers
+    for (FrameTransform transformer : transformers) {
+      transform(transformer, txnContext);
+    }
+    if (txnContext.isInError()) {
+      Log.error("TRANSFORM ERRORS: " + txnContext.getErrorMessage());
+    }
+  }
+
+
+
+
+  /**
+   * Pass the working frame contained in the given transaction context
+   * through one transformer.
+   *
+   * @param transformer the transformer to call
+   * @param txnContext the transaction context containing the data to transform
+   */
+  private void transform(FrameTransform transformer, TransactionContext txnContext) {
+    try {
+      // Have the transformer process the frame
+      DataFrame resultFrame;
+      long start = System.nanoTime();
+      if (isSerial(transformer)) {
+        synchronized (transformer) {
+          resultFrame = transformer.process(txnContext.getWorkingFrame());
+        }
+      } else {
+        resultFrame = transformer.process(txnContext.getWorkingFrame());
+      }
+      metrics.record(Stage.TRANSFORM, transformer, start);
+
+      // place the results of the transformation in the context
+      txnContext.setWorkingFrame(resultFrame);
+
+    } catch (Exception e) {
+      txnContext.setError(transformError(transformer, e));
+    }
+  }
+
+
+
+
+  /**
+   * Pass the working frames of the given transactions through a transformer
+   * which processes frames in batches.
+   *
+   * @param transformer the transformer to call
+   * @param batch the transactions containing the data to transform
+   */
+  private void transform(BatchTransform transformer, List<TransactionContext> batch) {
+    List<DataFrame> frames = new ArrayList<DataFrame>(batch.size());
+    for (TransactionContext txnContext : batch) {
+      frames.add(txnContext.getWorkingFrame());
+    }
+    try {
+      List<DataFrame> results;
+      long start = System.nanoTime();
+      if (isSerial(transformer)) {
+        synchronized (transformer) {
+          results = transformer.processBatch(frames);
+        }
+      } else {
+        results = transformer.processBatch(frames);
+      }
+      metrics.record(Stage.TRANSFORM, transformer, start);
+      if (results == null || results.size() != batch.size()) {
+        throw new TransformException("Returned " + ((results == null) ? 0 : results.size()) + " frames for a batch of " + batch.size());
+      }
+      for (int x = 0; x < batch.size(); x++) {
+        batch.get(x).setWorkingFrame(results.get(x));
+      }
+    } catch (Exception e) {
+      String error = transformError(transformer, e);
+      for (TransactionContext txnContext : batch) {
+        txnContext.setError(error);
+      }
+    }
+  }
+
+
+
+
+  /**
+   * @return the error message for a transaction failing in the given
+   *         transformer.
+   */
+  private static String transformError(FrameTransform transformer, Exception e) {
+    StringBuilder b = new StringBuilder();
+    b.append(transformer.getClass().getSimpleName());
+    b.append(": ");
+    b.append(e.getMessage());
+    if (e instanceof NullPointerException) {
+      b.append("\n");
+      b.append(ExceptionUtil.stackTrace(e));
+    }
+    return b.toString();
+  }
+
+
+
+
+  /**
+   * Map the working frame to the target frame.
+   *
+   * @param txnContext the transaction context containing the data to map
+   */
+  private void map(TransactionContext txnContext) {
+    // Pass it through the mapper - only the required fields should
+    // exist in the target frame after the mapper is done.
+    if (txnContext.isNotInError()) {
+      txnContext.setState("Map");
+      // Map / Move fields from the working to the target frame
+      try {
+        long start = System.nanoTime();
+        if (isSerial(mapper)) {
+          synchronized (mapper) {
+            mapper.process(txnContext);
+          }
+        } else {
+          mapper.process(txnContext);
+        }
+        metrics.record(Stage.MAP, mapper, start);
+        txnContext.fireMap(txnContext);
+      } catch (MappingException e) {
+        txnContext.setError(e.getMessage());
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Close all the components this pipeline created for itself.
+   *
+   * <p>Shared components are closed by the engine.</p>
+   */
+  void close() {
+    for (ConfigurableComponent component : clones) {
+      try {
+        component.close();
+      } catch (Exception e) {
+        Log.warn(LogMsg.createMsg(CDX.MSG, "Engine.problems_closing_worker_component", component.getClass().getName(), e.getClass().getSimpleName(), e.getMessage()));
+      }
+    }
+    clones.clear();
+  }
+
+}
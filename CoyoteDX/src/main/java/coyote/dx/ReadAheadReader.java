@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import coyote.commons.ExceptionUtil;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.metric.Gauge;
+import coyote.dx.metric.JobMetrics;
+import coyote.dx.metric.JobMetrics.Stage;
+import coyote.loader.log.Log;
+import coyote.loader.log.LogMsg;
+
+
+/**
+ * Runs a frame reader on its own thread, placing the frames it reads into a
+ * bounded queue from which the engine takes them.
+ *
+ * <p>This allows the latency of the reader (database round trips, network
+ * calls, file I/O) to overlap with the processing and writing of frames
+ * already read. When the queue is full, the reader thread waits for the
+ * engine to take frames, so no more than the configured number of frames are
+ * ever held in memory.</p>
+ *
+ * <p>Each frame is read into its own transaction context on the reader
+ * thread. The last frame flag, any error and any values the reader placed in
+ * that context are carried with the frame and applied to the engine's
+ * transaction context when the frame is taken. Errors the reader places in
+ * the transform context stop the reader thread and the engine loop alike.</p>
+ */
+class ReadAheadReader {
+
+  /** How long to wait between checks of the running flag when blocked. */
+  private static final long POLL_INTERVAL = 100;
+
+  /** The name of the queue depth metric of the read-ahead */
+  private static final String QUEUE = "ReadAhead";
+
+  /** Marks the end of the stream in the queue. */
+  private static final Item END = new Item();
+
+  private final FrameReader reader;
+  private final TransformContext context;
+  private final BlockingQueue<Item> queue;
+  private final JobMetrics metrics;
+  private Thread thread = null;
+  private volatile boolean running = false;
+  private boolean finished = false;
+
+
+
+
+  /**
+   * @param reader the (opened) reader to run on its own thread
+   * @param depth the maximum number of frames to hold in the queue
+   * @param context the transform context in which the reader operates
+   */
+  ReadAheadReader(FrameReader reader, int depth, TransformContext context) {
+    this.reader = reader;
+    this.context = context;
+    this.queue = new ArrayBlockingQueue<Item>(depth > 0 ? depth : 1);
+    this.metrics = JobMetrics.of(context);
+  }
+
+
+
+
+  /**
+   * Start reading frames on a separate thread.
+   */
+  void start() {
+    running = true;
+    finished = false;
+    metrics.addQueue(QUEUE, reader.getClass().getSimpleName(), new Gauge() {
+      @Override
+      public double getValue() {
+        return queue.size();
+      }
+    });
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        fill();
+      }
+    }, ((context.getEngine() != null) ? context.getEngine().getName() : "Engine") + "-reader");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+
+
+
+  /**
+   * Read frames from the reader until it reaches EOF, the transform context
+   * enters an error state or this read-ahead is stopped.
+   */
+  private void fill() {
+    try {
+      while (running && context.isNotInError() && !reader.eof()) {
+        TransactionContext txnContext = new TransactionContext(context);
+        txnContext.setState("Read");
+        long start = System.nanoTime();
+        DataFrame frame = reader.read(txnContext);
+        metrics.record(Stage.READ, reader, start);
+        if (frame != null || txnContext.isInError()) {
+          if (!enqueue(new Item(frame, txnContext))) {
+            return;
+          }
+        }
+      }
+    } catch (Exception e) {
+      Log.error(LogMsg.createMsg(CDX.MSG, "Engine.read_ahead_error", reader.getClass().getSimpleName(), e.getClass().getSimpleName(), e.getMessage(), ExceptionUtil.stackTrace(e)));
+      context.setError(reader.getClass().getSimpleName() + ": " + e.getMessage());
+    } finally {
+      enqueue(END);
+    }
+  }
+
+
+
+
+  /**
+   * Place the item in the queue, waiting for room while still running.
+   *
+   * @return true if the item was queued, false if the read-ahead was stopped
+   */
+  private boolean enqueue(Item item) {
+    try {
+      while (running) {
+        if (queue.offer(item, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+
+
+
+  /**
+   * Take the next frame read by the reader thread, waiting for one if
+   * necessary.
+   *
+   * @param txnContext the engine's transaction context into which the state
+   *        of the read is to be placed
+   *
+   * @return the next frame, or null if the reader has no more frames or the
+   *         transform context is in error.
+   */
+  DataFrame read(TransactionContext txnContext) {
+    DataFrame retval = null;
+    Item item = null;
+    try {
+      while (item == null && !finished && context.isNotInError()) {
+        item = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (item == END) {
+      finished = true;
+    } else if (item != null) {
+      retval = item.frame;
+      txnContext.setLastFrame(item.lastFrame);
+      for (Map.Entry<String, Object> entry : item.properties.entrySet()) {
+        txnContext.set(entry.getKey(), entry.getValue());
+      }
+      if (item.inError) {
+        txnContext.setError(true);
+        if (item.errorMessage != null) {
+          txnContext.setErrorMessage(item.errorMessage);
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return true if all the frames the reader will ever read have been taken
+   *         from this read-ahead.
+   */
+  boolean eof() {
+    return finished;
+  }
+
+
+
+
+  /**
+   * Stop the reader thread and discard any frames not yet taken.
+   *
+   * <p>This does not close the reader; that remains the responsibility of the
+   * engine and must only be done after this method returns.</p>
+   */
+  void stop() {
+    running = false;
+    metrics.removeQueue(QUEUE, reader.getClass().getSimpleName());
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join(POLL_INTERVAL * 10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      thread = null;
+    }
+    queue.clear();
+    finished = true;
+  }
+
+
+
+
+  /**
+   * The results of one read on the reader thread.
+   */
+  private static class Item {
+    final DataFrame frame;
+    final boolean lastFrame;
+    final boolean inError;
+    final String errorMessage;
+    final Map<String, Object> properties = new HashMap<String, Object>();
+
+
+
+
+    Item() {
+      frame = null;
+      lastFrame = false;
+      inError = false;
+      errorMessage = null;
+    }
+
+
+
+
+    Item(DataFrame frame, TransactionContext txnContext) {
+      this.frame = frame;
+      this.lastFrame = txnContext.isLastFrame();
+      this.inError = txnContext.isInError();
+      this.errorMessage = txnContext.getErrorMessage();
+      for (String key : txnContext.getKeys()) {
+        properties.put(key, txnContext.get(key));
+      }
+    }
+  }
+
+}
@@ -38,6 +38,12 @@ public class ScheduledBatchJob extends ScheduledJob implements ManagedComponent
   Context context = null;
   private Loader loader = null;
 
+  /** True while a worker of the scheduler thread pool holds this job */
+  private volatile boolean assigned = false;
+
+  /** True while the engine of this job is running */
+  private volatile boolean running = false;
+
 
 
 
@@ -161,6 +167,7 @@ public class ScheduledBatchJob extends ScheduledJob implements ManagedComponent
    */
   @Override
   public void initialize() {
+    assigned = true;
     setActiveFlag(true);
     Log.trace("Initializing job " + getName() + " engine:" + engine.getName());
   }
@@ -189,6 +196,7 @@ public class ScheduledBatchJob extends ScheduledJob implements ManagedComponent
       // scheduler and run intermittently as a scheduled job or multiple 
       // transform engines could be run in the thread pool of the super-class.
       try {
+        running = true;
         engine.run();
       } catch (final Exception e) {
         Log.fatal(LogMsg.createMsg(CDX.MSG, "Job.exception_running_engine", e.getClass().getSimpleName(), e.getMessage(), getName(), engine.getName()));
@@ -201,6 +209,7 @@ public class ScheduledBatchJob extends ScheduledJob implements ManagedComponent
         // us from the scheduler. We will be reloaded if our reload flag is set
         setActiveFlag(false);
       } finally {
+        running = false;
         try {
           engine.close();
         } catch (final IOException ignore) {}
@@ -212,6 +221,7 @@ public class ScheduledBatchJob extends ScheduledJob implements ManagedComponent
     }
 
     // break out of our doWork loop and go inactive
+    assigned = false;
     shutdown();
   }
 
@@ -356,6 +366,38 @@ public class ScheduledBatchJob extends ScheduledJob implements ManagedComponent
 
 
 
+  /**
+   * @return true if a worker of the scheduler thread pool is executing this
+   *         job
+   */
+  boolean isAssigned() {
+    return assigned;
+  }
+
+
+
+
+  /**
+   * @return true if the engine of this job is running
+   */
+  boolean isRunning() {
+    return running;
+  }
+
+
+
+
+  /**
+   * @return true if this job is due to run but is still waiting for a worker
+   *         of the scheduler thread pool
+   */
+  boolean isQueued() {
+    return !assigned && getExecutionTime() <= System.currentTimeMillis();
+  }
+
+
+
+
   /**
    * @return the cron entry for this job or null of this is not a repeatable job.
    */
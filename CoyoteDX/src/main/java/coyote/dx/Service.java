@@ -18,6 +18,9 @@ import coyote.dataframe.DataField;
 import coyote.dx.http.DefaultHttpManager;
 import coyote.dx.http.HttpManager;
 import coyote.dx.http.ManagerFactoryBinder;
+import coyote.dx.metric.Gauge;
+import coyote.dx.metric.JvmMetrics;
+import coyote.dx.metric.MetricRegistry;
 import coyote.loader.Loader;
 import coyote.loader.cfg.Config;
 import coyote.loader.cfg.ConfigurationException;
@@ -219,6 +222,87 @@ public class Service extends AbstractBatchLoader implements Loader {
       }
     }
     Log.append(Log.getCode("SCHEDULER"), "Initialized Scheduled Jobs:\r\n" + getScheduler().dump());
+
+    registerMetrics();
+  }
+
+
+
+
+  /**
+   * Publish gauges describing this service, its scheduler and the JVM in the
+   * default metric registry.
+   */
+  private void registerMetrics() {
+    final MetricRegistry registry = MetricRegistry.getDefault();
+    JvmMetrics.register(registry);
+
+    registry.gauge("coyote_scheduler_min_workers", "Minimum number of threads in the scheduler thread pool", new Gauge() {
+      @Override
+      public double getValue() {
+        return (scheduler != null) ? scheduler.getThreadpool().getMinWorkerCount() : 0;
+      }
+    });
+
+    registry.gauge("coyote_scheduled_jobs", "Number of jobs loaded by the service", new JobGauge() {
+      @Override
+      boolean counts(ScheduledBatchJob job) {
+        return true;
+      }
+    });
+
+    registry.gauge("coyote_scheduler_active_workers", "Number of scheduler thread pool workers executing a job", new JobGauge() {
+      @Override
+      boolean counts(ScheduledBatchJob job) {
+        return job.isAssigned();
+      }
+    });
+
+    registry.gauge("coyote_scheduler_busy_workers", "Number of scheduler thread pool workers running a transform engine", new JobGauge() {
+      @Override
+      boolean counts(ScheduledBatchJob job) {
+        return job.isRunning();
+      }
+    });
+
+    registry.gauge("coyote_scheduler_queued_jobs", "Number of jobs due to run which are waiting for a scheduler thread pool worker", new JobGauge() {
+      @Override
+      boolean counts(ScheduledBatchJob job) {
+        return job.isQueued();
+      }
+    });
+  }
+
+
+
+
+  /**
+   * A gauge of the number of loaded jobs in a particular state.
+   */
+  private abstract class JobGauge implements Gauge {
+
+    /**
+     * @param job the job to check
+     *
+     * @return true if the job is to be counted by this gauge
+     */
+    abstract boolean counts(ScheduledBatchJob job);
+
+
+
+
+    @Override
+    public double getValue() {
+      int retval = 0;
+      synchronized (components) {
+        for (Object cmpnt : components.keySet()) {
+          if (cmpnt instanceof ScheduledBatchJob && counts((ScheduledBatchJob)cmpnt)) {
+            retval++;
+          }
+        }
+      }
+      return retval;
+    }
   }
 
 
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+/**
+ * Components implement this interface to inform the engine how they may be
+ * called when the engine is processing frames with multiple workers.
+ *
+ * <p>Filters, validators, transforms and mappers which do not implement this
+ * interface are expected to be thread-safe and will be shared by all the
+ * workers in the engine. Components which keep state between frames (e.g.
+ * counters and duplicate checks) should implement this interface and return
+ * the appropriate policy.</p>
+ */
+public interface ThreadSafety {
+
+  /**
+   * The ways a component can be used by the engine workers.
+   */
+  public enum Policy {
+    /** One instance is called by all the workers concurrently. */
+    SHARED,
+    /** Each worker gets its own instance created from the same configuration. */
+    CLONE,
+    /** One instance is shared, but only one worker may call it at a time. */
+    SERIAL
+  }
+
+
+
+
+  /**
+   * @return the policy the engine is to use when calling this component from
+   *         its workers.
+   */
+  public Policy getThreadPolicy();
+
+}
@@ -27,6 +27,7 @@ import coyote.dx.transform.AbstractFrameTransform;
 import coyote.dx.validate.AbstractValidator;
 import coyote.dx.vault.*;
 import coyote.dx.writer.AbstractFrameWriter;
+import coyote.dx.writer.WriteBehindWriter;
 import coyote.loader.cfg.Config;
 import coyote.loader.log.Log;
 import coyote.loader.log.LogMsg;
@@ -240,6 +241,12 @@ public class TransformEngineFactory {
           } else {
             retval.setName(field.getStringValue());
           }
+        } else if (StringUtil.equalsIgnoreCase(ConfigTag.WORKERS, field.getName()) || StringUtil.equalsIgnoreCase(ConfigTag.ORDERED, field.getName()) || StringUtil.equalsIgnoreCase(ConfigTag.READ_AHEAD, field.getName()) || StringUtil.equalsIgnoreCase(ConfigTag.BATCH, field.getName())) {
+          if (field.isFrame()) {
+            Log.error("Invalid " + field.getName() + " value - expecting simple type");
+          } else {
+            retval.getConfiguration().put(field.getName(), field.getStringValue());
+          }
         } else if (StringUtil.equalsIgnoreCase(ConfigTag.SCHEDULE, field.getName())) {
           if (!field.isFrame()) {
             Log.error("Invalid Schedule section - expecting complex type");
@@ -584,7 +591,22 @@ public class TransformEngineFactory {
       Object object = CDX.createComponent(cfg);
       if (object != null) {
         if (object instanceof FrameWriter) {
-          engine.addWriter((FrameWriter) object);
+          FrameWriter writer = (FrameWriter) object;
+
+          // place the writer under write-behind if a queue depth is configured
+          String depth = findString(WriteBehindWriter.WRITE_BEHIND, cfg);
+          if (StringUtil.isNotBlank(depth)) {
+            try {
+              int size = Integer.parseInt(depth.trim());
+              if (size > 0) {
+                writer = new WriteBehindWriter(writer, size);
+                Log.debug(LogMsg.createMsg(CDX.MSG, "EngineFactory.created_write_behind", object.getClass().getName(), size));
+              }
+            } catch (NumberFormatException e) {
+              Log.error(LogMsg.createMsg(CDX.MSG, "EngineFactory.invalid_write_behind", depth, object.getClass().getName()));
+            }
+          }
+          engine.addWriter(writer);
           Log.debug(LogMsg.createMsg(CDX.MSG, "EngineFactory.created_writer", object.getClass().getName()));
         } else {
           Log.error(LogMsg.createMsg(CDX.MSG, "EngineFactory.specified_class_is_not_a_writer", object.getClass().getName()));
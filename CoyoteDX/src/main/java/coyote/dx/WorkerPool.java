@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import coyote.commons.ExceptionUtil;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.metric.Gauge;
+import coyote.dx.metric.JobMetrics;
+import coyote.loader.log.Log;
+
+
+/**
+ * A fixed set of threads which run transactions through the filter,
+ * validate, transform and map stages of the engine concurrently.
+ *
+ * <p>The engine thread reads frames and submits their transactions to the
+ * pool. Completed transactions are then retrieved by the engine thread for
+ * aggregation and writing. In ordered mode, transactions are returned in the
+ * order they were submitted; in unordered mode, they are returned in the
+ * order they complete, except the last frame of the stream which is always
+ * returned last so aggregators see it after all other frames.</p>
+ *
+ * <p>The number of transactions in the pool is bounded. The engine is
+ * expected to retrieve completed transactions while {@link #isFull()}
+ * returns true, which keeps the reader from getting too far ahead of the
+ * workers.</p>
+ *
+ * <p>Each time a worker completes a transaction, the transform context is
+ * signaled so components blocking the engine thread (e.g. a reader waiting
+ * for requests) can return and let the engine retrieve it.</p>
+ *
+ * <p>Each worker reads a copy of the symbol table taken when the pool is
+ * created, so the engine thread can keep updating its own table as it reads
+ * frames.</p>
+ *
+ * <p>This class is not thread-safe; only the engine thread is to call it.</p>
+ */
+class WorkerPool {
+
+  /** The name of the queue depth metric of the pool */
+  private static final String QUEUE = "Workers";
+
+  private final TransformContext context;
+  private final ExecutorService executor;
+  private final BlockingQueue<Future<TransactionContext>> completed;
+  private final BlockingQueue<FramePipeline> pipelines;
+  private final List<FramePipeline> allPipelines = new ArrayList<FramePipeline>();
+  private final LinkedList<Future<TransactionContext>> pending = new LinkedList<Future<TransactionContext>>();
+  private final int capacity;
+  private volatile int inFlight = 0;
+  private final JobMetrics metrics;
+
+  /** The last frame of the stream held back in unordered mode. */
+  private TransactionContext lastTransaction = null;
+
+
+
+
+  /**
+   * Create a pool of workers.
+   *
+   * @param context the transform context in which the workers operate
+   * @param pipeline the engine pipeline the workers are to copy
+   * @param size the number of worker threads
+   * @param ordered true to return transactions in the order they were
+   *        submitted, false to return them as they complete
+   */
+  WorkerPool(TransformContext context, FramePipeline pipeline, int size, boolean ordered) {
+    this.context = context;
+    this.capacity = size * 2;
+    this.pipelines = new ArrayBlockingQueue<FramePipeline>(size);
+    for (int x = 0; x < size; x++) {
+      FramePipeline copy = pipeline.copy();
+      allPipelines.add(copy);
+      pipelines.add(copy);
+    }
+
+    final String prefix = (context.getEngine() != null && context.getEngine().getName() != null) ? context.getEngine().getName() : "Engine";
+    executor = Executors.newFixedThreadPool(size, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+
+
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread retval = new Thread(runnable, prefix + "-worker-" + count.incrementAndGet());
+        retval.setDaemon(true);
+        return retval;
+      }
+    });
+    completed = ordered ? null : new LinkedBlockingQueue<Future<TransactionContext>>();
+
+    metrics = JobMetrics.of(context);
+    metrics.addQueue(QUEUE, getClass().getSimpleName(), new Gauge() {
+      @Override
+      public double getValue() {
+        return inFlight;
+      }
+    });
+  }
+
+
+
+
+  /**
+   * @return true if no more transactions should be submitted until a
+   *         completed transaction is retrieved.
+   */
+  boolean isFull() {
+    return inFlight >= capacity;
+  }
+
+
+
+
+  /**
+   * @return true if there are no transactions in the pool.
+   */
+  boolean isEmpty() {
+    return inFlight == 0 && lastTransaction == null;
+  }
+
+
+
+
+  /**
+   * Submit the transaction to be processed by the next available worker.
+   *
+   * @param txnContext the transaction to process
+   */
+  void submit(TransactionContext txnContext) {
+    Completion future = new Completion(new Task(txnContext));
+    if (completed == null) {
+      pending.add(future);
+    }
+    executor.execute(future);
+    inFlight++;
+  }
+
+
+
+
+  /**
+   * Retrieve the next completed transaction.
+   *
+   * @param wait true to block until a transaction completes, false to return
+   *        immediately if the next transaction has not yet completed.
+   *
+   * @return the next completed transaction, or null if there are none
+   *         available.
+   */
+  TransactionContext next(boolean wait) {
+    TransactionContext retval = null;
+    if (inFlight > 0) {
+      Future<TransactionContext> future = null;
+      if (completed != null) {
+        if (wait) {
+          try {
+            future = completed.take();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        } else {
+          future = completed.poll();
+        }
+      } else {
+        if (wait || pending.getFirst().isDone()) {
+          future = pending.removeFirst();
+        }
+      }
+
+      if (future != null) {
+        inFlight--;
+        retval = retrieve(future);
+
+        // hold the last frame until all the others have been returned
+        if (retval != null && completed != null && retval.isLastFrame() && inFlight > 0) {
+          lastTransaction = retval;
+          retval = next(wait);
+        }
+      }
+    }
+
+    if (retval == null && inFlight == 0 && lastTransaction != null) {
+      retval = lastTransaction;
+      lastTransaction = null;
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Wait for the future to complete and return its transaction.
+   */
+  private TransactionContext retrieve(Future<TransactionContext> future) {
+    TransactionContext retval = null;
+    try {
+      retval = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // tasks catch their own exceptions, so this is not expected
+      Log.error("Worker failed: " + e.getMessage() + "\n" + ExceptionUtil.stackTrace(e));
+      context.setError("Worker failed: " + e.getMessage());
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Stop the worker threads and close any components the workers created.
+   */
+  void close() {
+    metrics.removeQueue(QUEUE, getClass().getSimpleName());
+    executor.shutdownNow();
+    for (FramePipeline pipeline : allPipelines) {
+      pipeline.close();
+    }
+    allPipelines.clear();
+    pending.clear();
+    inFlight = 0;
+    lastTransaction = null;
+  }
+
+
+
+
+  /**
+   * A submitted transaction which signals the transform context when it is
+   * done, after it has been made available for retrieval.
+   */
+  private class Completion extends FutureTask<TransactionContext> {
+
+    Completion(Task task) {
+      super(task);
+    }
+
+
+
+
+    @Override
+    protected void done() {
+      if (completed != null) {
+        completed.add(this);
+      }
+      context.signalCompletion();
+    }
+  }
+
+
+
+
+  /**
+   * Runs one transaction through a pipeline not in use by any other worker.
+   */
+  private class Task implements Callable<TransactionContext> {
+    private final TransactionContext txnContext;
+
+
+
+
+    Task(TransactionContext txnContext) {
+      this.txnContext = txnContext;
+    }
+
+
+
+
+    @Override
+    public TransactionContext call() throws Exception {
+      FramePipeline pipeline = pipelines.take();
+      try {
+        context.bindSymbols(pipeline.getSymbols());
+        context.bindTransaction(txnContext);
+        pipeline.process(txnContext);
+      } catch (RuntimeException e) {
+        txnContext.setError(e.getClass().getSimpleName() + ": " + e.getMessage());
+        Log.error("Worker error: " + txnContext.getErrorMessage() + "\n" + ExceptionUtil.stackTrace(e));
+      } finally {
+        context.bindTransaction(null);
+        context.bindSymbols(null);
+        pipelines.add(pipeline);
+      }
+      return txnContext;
+    }
+  }
+
+}
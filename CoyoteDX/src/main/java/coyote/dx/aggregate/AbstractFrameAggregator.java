@@ -41,6 +41,15 @@ public abstract class AbstractFrameAggregator extends AbstractConfigurableCompon
 
     // set the transform context in the evaluator so it can resolve variables
     evaluator.setContext(context);
+
+    // parse the condition now instead of on the first frame
+    if (getCondition() != null) {
+      try {
+        evaluator.prepareBoolean(getCondition());
+      } catch (final IllegalArgumentException e) {
+        context.setError("Invalid boolean expression in aggregator: " + e.getMessage());
+      }
+    }
   }
 
 
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.aggregate;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import coyote.commons.StringUtil;
+import coyote.dataframe.DataFrame;
+import coyote.dx.CDX;
+import coyote.dx.ConfigTag;
+
+
+/**
+ * Compares dataframes by the values of one or more fields.
+ *
+ * <p>Each sort field has its own mode (ascending, descending, with or without
+ * case) and type. By default the type is determined by the values: numbers
+ * are compared numerically, dates chronologically, booleans false first and
+ * everything else as strings. The type can be set to numeric or date to
+ * compare string values (e.g. from CSV files) as numbers or dates. Missing
+ * and null values are placed before all others in ascending order.
+ *
+ * <p>When values of different types are compared, they are ordered by type:
+ * numbers, then dates, then booleans, then everything else. This keeps the
+ * order consistent (transitive) when a field holds a mix of numbers and
+ * strings, which sorting and merging rely on.
+ */
+public class FrameComparator implements Comparator<DataFrame> {
+
+  /** Compare by the type of the values. */
+  public static final String AUTO = "Auto";
+
+  /** Compare values as numbers, parsing strings. */
+  public static final String NUMERIC = "Numeric";
+
+  /** Compare values as dates, parsing strings with the configured format. */
+  public static final String DATE = "Date";
+
+  /** Compare the string representations of values. */
+  public static final String STRING = "String";
+
+  private final List<SortField> fields = new ArrayList<>();
+
+
+
+
+  /**
+   * Add a field to sort by, after any fields already added.
+   *
+   * @param name the name of the field
+   * @param mode how to order the values, fields with a mode of NONE are ignored
+   * @param type how to compare the values; AUTO, NUMERIC, DATE or STRING,
+   *        null is the same as AUTO
+   * @param format the date format used to parse string values of date fields,
+   *        may be null
+   *
+   * @return this comparator
+   *
+   * @throws IllegalArgumentException if the type or format is not valid
+   */
+  public FrameComparator add(String name, CDX.Sort mode, String type, String format) {
+    if (mode != CDX.Sort.NONE) {
+      fields.add(new SortField(name, mode, type, format));
+    }
+    return this;
+  }
+
+
+
+
+  /**
+   * @return true if there are no fields to sort by
+   */
+  public boolean isEmpty() {
+    return fields.isEmpty();
+  }
+
+
+
+
+  /**
+   * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+   */
+  @Override
+  public int compare(DataFrame frame1, DataFrame frame2) {
+    for (int x = 0; x < fields.size(); x++) {
+      SortField field = fields.get(x);
+      int retval = field.compare(frame1.get(field.name), frame2.get(field.name));
+      if (retval != 0) {
+        return field.descending ? -retval : retval;
+      }
+    }
+    return 0;
+  }
+
+
+
+
+  /**
+   * Parse the name of a sort mode.
+   *
+   * @param mode the name of the mode, e.g. "Ascend" or "DescendNoCase"
+   *
+   * @return the sort mode, NONE if blank or null if the name is not recognized
+   */
+  public static CDX.Sort getMode(String mode) {
+    if (StringUtil.isBlank(mode) || ConfigTag.NONE.equalsIgnoreCase(mode)) {
+      return CDX.Sort.NONE;
+    } else if (ConfigTag.ASCEND.equalsIgnoreCase(mode)) {
+      return CDX.Sort.ASCEND;
+    } else if (ConfigTag.DESCEND.equalsIgnoreCase(mode)) {
+      return CDX.Sort.DESCEND;
+    } else if (ConfigTag.ASCEND_CI.equalsIgnoreCase(mode)) {
+      return CDX.Sort.ASCEND_CI;
+    } else if (ConfigTag.DESCEND_CI.equalsIgnoreCase(mode)) {
+      return CDX.Sort.DESCEND_CI;
+    }
+    return null;
+  }
+
+
+
+
+  /**
+   * One of the fields to sort by.
+   */
+  private static class SortField {
+    private static final int NUMBER_RANK = 0;
+    private static final int DATE_RANK = 1;
+    private static final int BOOLEAN_RANK = 2;
+    private static final int OTHER_RANK = 3;
+    final String name;
+    final boolean descending;
+    final boolean ignoreCase;
+    final String type;
+    final SimpleDateFormat format;
+
+
+
+
+    SortField(String name, CDX.Sort mode, String type, String format) {
+      this.name = name;
+      descending = mode == CDX.Sort.DESCEND || mode == CDX.Sort.DESCEND_CI;
+      ignoreCase = mode == CDX.Sort.ASCEND_CI || mode == CDX.Sort.DESCEND_CI;
+      if (StringUtil.isBlank(type) || AUTO.equalsIgnoreCase(type)) {
+        this.type = AUTO;
+      } else if (NUMERIC.equalsIgnoreCase(type)) {
+        this.type = NUMERIC;
+      } else if (DATE.equalsIgnoreCase(type)) {
+        this.type = DATE;
+      } else if (STRING.equalsIgnoreCase(type)) {
+        this.type = STRING;
+      } else {
+        throw new IllegalArgumentException("Unrecognized sort type '" + type + "' for field '" + name + "'");
+      }
+      this.format = StringUtil.isNotBlank(format) ? new SimpleDateFormat(format) : null;
+    }
+
+
+
+
+    int compare(Object value1, Object value2) {
+      if (type == NUMERIC) {
+        value1 = toNumber(value1);
+        value2 = toNumber(value2);
+      } else if (type == DATE) {
+        value1 = toDate(value1);
+        value2 = toDate(value2);
+      }
+
+      if (value1 == null || value2 == null) {
+        return (value1 == null) ? ((value2 == null) ? 0 : -1) : 1;
+      }
+
+      if (type != STRING) {
+        int rank1 = rank(value1);
+        int rank2 = rank(value2);
+        if (rank1 != rank2) {
+          return (rank1 < rank2) ? -1 : 1;
+        } else if (rank1 == NUMBER_RANK) {
+          return compareNumbers((Number)value1, (Number)value2);
+        } else if (rank1 == DATE_RANK) {
+          return ((Date)value1).compareTo((Date)value2);
+        } else if (rank1 == BOOLEAN_RANK) {
+          return ((Boolean)value1).compareTo((Boolean)value2);
+        }
+      }
+
+      if (ignoreCase) {
+        return String.CASE_INSENSITIVE_ORDER.compare(value1.toString(), value2.toString());
+      }
+      return value1.toString().compareTo(value2.toString());
+    }
+
+
+
+
+    /**
+     * @return the position of the type of the value in the order of types
+     */
+    private static int rank(Object value) {
+      if (value instanceof Number) {
+        return NUMBER_RANK;
+      } else if (value instanceof Date) {
+        return DATE_RANK;
+      } else if (value instanceof Boolean) {
+        return BOOLEAN_RANK;
+      }
+      return OTHER_RANK;
+    }
+
+
+
+
+    private static int compareNumbers(Number number1, Number number2) {
+      if (isIntegral(number1) && isIntegral(number2)) {
+        long long1 = number1.longValue();
+        long long2 = number2.longValue();
+        return (long1 < long2) ? -1 : ((long1 == long2) ? 0 : 1);
+      } else if (number1 instanceof BigDecimal || number2 instanceof BigDecimal) {
+        try {
+          return new BigDecimal(number1.toString()).compareTo(new BigDecimal(number2.toString()));
+        } catch (NumberFormatException e) {
+          // NaN or infinity
+        }
+      }
+      return Double.compare(number1.doubleValue(), number2.doubleValue());
+    }
+
+
+
+
+    private static boolean isIntegral(Number number) {
+      return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+
+
+
+    /**
+     * @return the value as a number, null if it is not numeric
+     */
+    private static Object toNumber(Object value) {
+      if (value == null || value instanceof Number) {
+        return value;
+      }
+      String text = value.toString().trim();
+      try {
+        return Long.valueOf(text);
+      } catch (NumberFormatException e) {
+        try {
+          return Double.valueOf(text);
+        } catch (NumberFormatException e1) {
+          return null;
+        }
+      }
+    }
+
+
+
+
+    /**
+     * @return the value as a date, null if it could not be parsed
+     */
+    private Object toDate(Object value) {
+      if (value == null || value instanceof Date || format == null) {
+        return value;
+      }
+      try {
+        return format.parse(value.toString().trim());
+      } catch (ParseException e) {
+        return null;
+      }
+    }
+
+  }
+
+}
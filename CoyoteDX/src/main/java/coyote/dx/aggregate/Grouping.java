@@ -7,11 +7,15 @@
  */
 package coyote.dx.aggregate;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import coyote.commons.StringUtil;
 import coyote.dataframe.DataFrame;
@@ -20,6 +24,7 @@ import coyote.dx.ConfigTag;
 import coyote.dx.FrameAggregator;
 import coyote.dx.context.TransactionContext;
 import coyote.dx.context.TransformContext;
+import coyote.dx.metric.JobMetrics;
 import coyote.loader.log.Log;
 
 
@@ -63,14 +68,47 @@ import coyote.loader.log.Log;
  * <p>A sample configuration is as follows:<pre>
  * "Aggregator": { "class": "Grouping", "key":"Symbol", "limit": 288, "sort":"ascend" }</pre>
  * The above configuration groups all 
+ *
+ * <p>When the frames held exceed the memory limit ({@code "Memory"} in
+ * megabytes, by default a quarter of the heap), they are written to a fixed
+ * number of partition files ({@code "Partitions"}) by the hash of their key.
+ * At the end of the data, the partitions are read back and grouped one at a
+ * time as the frames are emitted, so only one partition needs to fit in
+ * memory. Groups are then emitted partition by partition and only sorted
+ * within their partition; use the Sort aggregator if large data sets must be
+ * in key order.
+ *
+ * <p>If the input is already ordered by the key, set {@code "Presorted"} to
+ * true and each group is emitted as soon as the key changes, so only one
+ * group is ever held in memory:<pre>
+ * "Aggregator": { "class": "Grouping", "key":"Symbol", "limit": 288, "Presorted": true }</pre>
  */
 public class Grouping extends AbstractFrameAggregator implements FrameAggregator {
 
   private static final String KEY = "Key";
 
+  /** Input is ordered by the key, so groups are emitted as the key changes. */
+  public static final String PRESORTED = "Presorted";
+
+  /** The number of megabytes of frames to hold in memory before spilling. */
+  public static final String MEMORY = "Memory";
+
+  /** The number of partition files to spill groups into. */
+  public static final String PARTITIONS = "Partitions";
+
+  /** The default number of partition files. */
+  public static final int DEFAULT_PARTITIONS = 32;
+
   private final List<String> keys = new ArrayList<>();
   private CDX.Sort sort = CDX.Sort.NONE;
   private Map<String, List<DataFrame>> dataMap = new HashMap<>();
+  private int limit = 0;
+  private int held = 0;
+  private boolean presorted = false;
+  private String currentKey = null;
+  private List<DataFrame> currentGroup = null;
+  private MemoryBudget budget = null;
+  private SpillFile[] partitions = null;
 
 
 
@@ -102,6 +140,12 @@ public class Grouping extends AbstractFrameAggregator implements FrameAggregator
       sort = CDX.Sort.NONE;
     }
 
+    limit = getLimit();
+    presorted = getBoolean(PRESORTED);
+    if (presorted && sort != CDX.Sort.NONE) {
+      Log.warn("Presorted groups are emitted in the order received - the sort parameter is ignored");
+    }
+    budget = new MemoryBudget(getLong(MEMORY));
   }
 
 
@@ -114,12 +158,26 @@ public class Grouping extends AbstractFrameAggregator implements FrameAggregator
   protected List<DataFrame> aggregate(List<DataFrame> frames, TransactionContext txnContext) {
     List<DataFrame> retval = new ArrayList<>();
 
+    if (presorted) {
+      for (int x = 0; x < frames.size(); x++) {
+        addPresorted(frames.get(x), retval);
+      }
+      if (txnContext.isLastFrame() && currentGroup != null) {
+        retval.addAll(currentGroup);
+        currentGroup = null;
+      }
+      return retval;
+    }
+
     for (int x = 0; x < frames.size(); x++) {
+      budget.add(frames.get(x));
       addFrame(frames.get(x));
     }
 
     if (txnContext.isLastFrame()) {
       retval = compileFrames();
+    } else if (budget.isExceeded(held)) {
+      spill();
     }
 
     return retval;
@@ -128,6 +186,29 @@ public class Grouping extends AbstractFrameAggregator implements FrameAggregator
 
 
 
+  /**
+   * Add a frame to the current group, emitting the current group first if
+   * the frame starts a new one.
+   *
+   * @param frame the frame to add
+   * @param emitted the list of frames to emit
+   */
+  private void addPresorted(DataFrame frame, List<DataFrame> emitted) {
+    String key = getKey(frame);
+    if (currentGroup != null && !(key == null ? currentKey == null : key.equals(currentKey))) {
+      emitted.addAll(currentGroup);
+      currentGroup = null;
+    }
+    if (currentGroup == null) {
+      currentGroup = new ArrayList<DataFrame>();
+      currentKey = key;
+    }
+    add(currentGroup, frame);
+  }
+
+
+
+
   /**
    * @param dataFrame
    */
@@ -194,15 +275,32 @@ public class Grouping extends AbstractFrameAggregator implements FrameAggregator
       list = new ArrayList<DataFrame>();
       dataMap.put(key, list);
     }
-    list.add(frame);
+    held += add(list, frame);
+  }
+
 
-    int limit = getLimit();
+
+
+  /**
+   * Add the frame to the group, removing the oldest frames if the group
+   * exceeds the limit.
+   *
+   * @param list the frames of the group
+   * @param frame the frame to add
+   *
+   * @return the change in the number of frames in the group
+   */
+  private int add(List<DataFrame> list, DataFrame frame) {
+    list.add(frame);
+    int retval = 1;
     if (limit > 0) {
       int extraCount = list.size() - limit;
       for (int x = 0; x < extraCount; x++) {
         list.remove(0);
+        retval--;
       }
     }
+    return retval;
   }
 
 
@@ -243,8 +341,17 @@ public class Grouping extends AbstractFrameAggregator implements FrameAggregator
    * @return all the frames collected so far grouped by their key value.
    */
   private List<DataFrame> compileFrames() {
+    if (partitions != null) {
+      return new StreamedFrames(-1) {
+        @Override
+        protected Iterator<DataFrame> open() {
+          return new PartitionIterator();
+        }
+      };
+    }
+
     List<DataFrame> retval = new ArrayList<>();
-    sortKeys(sort);
+    sortKeys(keys, sort);
 
     for (int x = 0; x < keys.size(); x++) {
       String key = keys.get(x);
@@ -261,9 +368,10 @@ public class Grouping extends AbstractFrameAggregator implements FrameAggregator
   /**
    * Sort the keys in the order indicated by the mode parameter.
    * 
+   * @param keys the keys to sort
    * @param mode How to sort the keys
    */
-  private void sortKeys(CDX.Sort mode) {
+  private static void sortKeys(List<String> keys, CDX.Sort mode) {
     if (mode != CDX.Sort.NONE) {
       if (mode == CDX.Sort.ASCEND || mode == CDX.Sort.DESCEND) {
         Collections.sort(keys);
@@ -276,4 +384,180 @@ public class Grouping extends AbstractFrameAggregator implements FrameAggregator
     }
   }
 
+
+
+  /**
+   * Write all the frames held in memory to the partition files of their
+   * keys.
+   */
+  private void spill() {
+    long bytes = 0;
+    try {
+      if (partitions == null) {
+        int count = getInteger(PARTITIONS);
+        partitions = new SpillFile[count > 0 ? count : DEFAULT_PARTITIONS];
+      }
+      for (int x = 0; x < partitions.length; x++) {
+        if (partitions[x] == null) {
+          partitions[x] = new SpillFile(getJobDirectory(), "group");
+        }
+        bytes -= partitions[x].length();
+      }
+      // first seen order, so the groups read back are in the same order
+      for (String key : keys) {
+        SpillFile partition = partitions[partition(key)];
+        for (DataFrame frame : dataMap.get(key)) {
+          partition.write(frame);
+        }
+      }
+      for (int x = 0; x < partitions.length; x++) {
+        bytes += partitions[x].length();
+      }
+    } catch (IOException e) {
+      // keep going in memory
+      Log.error("Could not spill groups to disk: " + e.getMessage());
+      budget.disable();
+      return;
+    }
+
+    JobMetrics metrics = JobMetrics.of(getContext());
+    metrics.getSpills(this).increment();
+    metrics.getSpilledBytes(this).add(bytes);
+    Log.debug("Spilled " + held + " frames in " + keys.size() + " groups (" + bytes + " bytes) to " + partitions.length + " partitions");
+
+    keys.clear();
+    dataMap = new HashMap<>();
+    held = 0;
+  }
+
+
+
+
+  /**
+   * @return the index of the partition for the given key
+   */
+  private int partition(String key) {
+    return (key == null) ? 0 : (key.hashCode() & Integer.MAX_VALUE) % partitions.length;
+  }
+
+
+
+
+  /**
+   * Read back one partition and group it with the frames in memory whose keys
+   * belong to it.
+   *
+   * @param index the index of the partition
+   *
+   * @return the frames of the partition grouped by their key
+   */
+  private List<DataFrame> groupPartition(int index) {
+    Map<String, List<DataFrame>> groups = new LinkedHashMap<>();
+    try {
+      Iterator<DataFrame> frames = partitions[index].iterator();
+      while (frames.hasNext()) {
+        DataFrame frame = frames.next();
+        addGroup(groups, getKey(frame), frame);
+      }
+    } catch (IOException | IllegalStateException e) {
+      Log.error("Could not read spilled groups: " + e.getMessage());
+      getContext().setError("Could not read spilled groups: " + e.getMessage());
+    }
+    // frames still in memory arrived after those spilled
+    for (String key : keys) {
+      if (partition(key) == index) {
+        for (DataFrame frame : dataMap.get(key)) {
+          addGroup(groups, key, frame);
+        }
+      }
+    }
+
+    List<String> order = new ArrayList<>(groups.keySet());
+    sortKeys(order, sort);
+    List<DataFrame> retval = new ArrayList<>();
+    for (String key : order) {
+      retval.addAll(groups.get(key));
+    }
+    return retval;
+  }
+
+
+
+
+  private void addGroup(Map<String, List<DataFrame>> groups, String key, DataFrame frame) {
+    List<DataFrame> list = groups.get(key);
+    if (list == null) {
+      list = new ArrayList<DataFrame>();
+      groups.put(key, list);
+    }
+    add(list, frame);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.aggregate.AbstractFrameAggregator#close()
+   */
+  @Override
+  public void close() throws IOException {
+    if (partitions != null) {
+      for (SpillFile partition : partitions) {
+        if (partition != null) {
+          partition.close();
+        }
+      }
+      partitions = null;
+    }
+    keys.clear();
+    dataMap = new HashMap<>();
+    held = 0;
+    currentGroup = null;
+    super.close();
+  }
+
+
+
+
+  /**
+   * Emits the groups one partition at a time.
+   */
+  private class PartitionIterator implements Iterator<DataFrame> {
+    private int partition = -1;
+    private Iterator<DataFrame> current = Collections.<DataFrame>emptyList().iterator();
+
+
+
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (partitions == null || ++partition >= partitions.length) {
+          return false;
+        }
+        current = groupPartition(partition).iterator();
+      }
+      return true;
+    }
+
+
+
+
+    @Override
+    public DataFrame next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return current.next();
+    }
+
+
+
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.aggregate;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * Estimates the memory used by the frames an aggregator holds so it knows
+ * when to spill them to disk.
+ *
+ * <p>Measuring every frame would cost as much as serializing it, so every
+ * few hundredth frame is measured and the largest size seen is used for all.
+ */
+class MemoryBudget {
+
+  /** Frames are sized every this many frames to estimate the memory used. */
+  private static final int SAMPLE_INTERVAL = 256;
+
+  /** Frames in memory take about this many times their serialized size. */
+  private static final int OVERHEAD = 4;
+
+  private long limit;
+  private long frameSize = 0;
+  private long sampled = 0;
+
+
+
+
+  /**
+   * @param megabytes the memory limit, zero or less for a quarter of the
+   *        maximum heap size
+   */
+  MemoryBudget(long megabytes) {
+    if (megabytes > 0) {
+      limit = megabytes * 1024 * 1024;
+    } else {
+      limit = Runtime.getRuntime().maxMemory() / 4;
+    }
+  }
+
+
+
+
+  /**
+   * Note a frame being held, measuring it if it is due to be sampled.
+   *
+   * @param frame the frame being held
+   */
+  void add(DataFrame frame) {
+    if (sampled++ % SAMPLE_INTERVAL == 0) {
+      frameSize = Math.max(frameSize, frame.getBytes().length * OVERHEAD);
+    }
+  }
+
+
+
+
+  /**
+   * @param frames the number of frames being held
+   *
+   * @return true if that many frames are estimated to exceed the limit
+   */
+  boolean isExceeded(long frames) {
+    return frames * frameSize > limit;
+  }
+
+
+
+
+  /**
+   * Stop reporting the limit as exceeded, e.g. when spilling has failed.
+   */
+  void disable() {
+    limit = Long.MAX_VALUE;
+  }
+
+}
@@ -1,44 +1,68 @@
 /*
  * Copyright (c) 2018 Stephan D. Cote' - All rights reserved.
- * 
- * This program and the accompanying materials are made available under the 
- * terms of the MIT License which accompanies this distribution, and is 
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
  * available at http://creativecommons.org/licenses/MIT/
  */
 package coyote.dx.aggregate;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 import coyote.commons.StringUtil;
+import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
 import coyote.dx.CDX;
 import coyote.dx.ConfigTag;
 import coyote.dx.FrameAggregator;
 import coyote.dx.context.TransactionContext;
 import coyote.dx.context.TransformContext;
+import coyote.dx.metric.JobMetrics;
 import coyote.loader.log.Log;
 
 
 /**
- * Simple aggregator to emit frames in a sorted order.
- * 
- * <p>This is a naive approach and results in consuming twice the about of 
- * memory it should. The original list of frames are buffered and upon 
- * completion, will create a duplicate list in sorted order. This is not 
- * optimal and a more memory efficient approach should be developed. 
- * 
+ * Aggregator to emit frames in a sorted order.
+ *
+ * <p>Frames are sorted by one or more fields with a stable sort, so frames
+ * with equal sort values are emitted in the order they were received. Values
+ * are compared by their type (see {@link FrameComparator}).
+ *
  * <p>A sample configuration is as follows:<pre>
- * "Aggregator": { "class": "Sort", "field":"Price", "sort":"decend" }</pre>
+ * "Aggregator": { "class": "Sort", "field":"Price", "mode":"Descend" }</pre>
  * The above configuration sort all the frames in descending order by price.
+ *
+ * <p>To sort by more than one field, list them in order in the fields
+ * section, each with its own mode and optionally its type:<pre>
+ * "Aggregator": { "class": "Sort", "fields": {
+ *   "State": { "mode": "AscendNoCase" },
+ *   "Amount": { "mode": "Descend", "type": "Numeric" },
+ *   "Updated": { "mode": "Ascend", "type": "Date", "format": "yyyy-MM-dd" }
+ * } }</pre>
+ *
+ * <p>Frames are held in memory until the estimated size of the held frames
+ * exceeds the memory limit, at which point they are sorted and written to a
+ * temporary file in the job directory. When the last frame is received, the
+ * sorted files are merged as the frames are emitted, so data sets much larger
+ * than the heap can be sorted. The limit is set in megabytes with
+ * {@code "Memory"}; by default it is a quarter of the maximum heap size.
  */
 public class Sort extends AbstractFrameAggregator implements FrameAggregator {
 
-  private CDX.Sort sort = CDX.Sort.NONE;
+  /** The number of megabytes of frames to hold in memory before spilling. */
+  public static final String MEMORY = "Memory";
+
+  private FrameComparator comparator = new FrameComparator();
   private List<DataFrame> frameList = new ArrayList<>();
+  private final List<SpillFile> runs = new ArrayList<>();
+  private MemoryBudget budget = null;
 
 
 
@@ -50,26 +74,41 @@ public class Sort extends AbstractFrameAggregator implements FrameAggregator {
   public void open(TransformContext context) {
     super.open(context);
 
-    String sortMode = getString(ConfigTag.MODE);
-    if (StringUtil.isNotBlank(sortMode)) {
-      if (ConfigTag.ASCEND.equalsIgnoreCase(sortMode)) {
-        sort = CDX.Sort.ASCEND;
-      } else if (ConfigTag.DESCEND.equalsIgnoreCase(sortMode)) {
-        sort = CDX.Sort.DESCEND;
-      } else if (ConfigTag.ASCEND_CI.equalsIgnoreCase(sortMode)) {
-        sort = CDX.Sort.ASCEND_CI;
-      } else if (ConfigTag.DESCEND_CI.equalsIgnoreCase(sortMode)) {
-        sort = CDX.Sort.DESCEND_CI;
-      } else if (ConfigTag.NONE.equalsIgnoreCase(sortMode)) {
-        sort = CDX.Sort.NONE;
-      } else {
-        Log.warn("Unrecognized sourt parameter '" + sortMode + "' - no sorting will occur");
-        sort = CDX.Sort.NONE;
+    comparator = new FrameComparator();
+    DataFrame fieldcfg = getFrame(ConfigTag.FIELDS);
+    if (fieldcfg != null) {
+      for (DataField field : fieldcfg.getFields()) {
+        if (field.isFrame()) {
+          DataFrame fielddef = (DataFrame)field.getObjectValue();
+          addField(field.getName(), fielddef.getAsString(ConfigTag.MODE), fielddef.getAsString(ConfigTag.TYPE), fielddef.getAsString(ConfigTag.FORMAT));
+        } else {
+          addField(field.getName(), field.getStringValue(), null, null);
+        }
       }
     } else {
-      sort = CDX.Sort.NONE;
+      String fieldName = getString(ConfigTag.FIELD);
+      if (StringUtil.isNotBlank(fieldName)) {
+        addField(fieldName, getString(ConfigTag.MODE), getString(ConfigTag.TYPE), getString(ConfigTag.FORMAT));
+      }
     }
+    budget = new MemoryBudget(getLong(MEMORY));
+  }
+
 
+
+
+  private void addField(String name, String sortMode, String type, String format) {
+    CDX.Sort mode = FrameComparator.getMode(sortMode);
+    if (mode == null) {
+      Log.warn("Unrecognized sourt parameter '" + sortMode + "' - no sorting will occur on '" + name + "'");
+      return;
+    }
+    try {
+      comparator.add(name, mode, type, format);
+    } catch (IllegalArgumentException e) {
+      Log.error(e.getMessage());
+      getContext().setError(e.getMessage());
+    }
   }
 
 
@@ -83,7 +122,15 @@ public class Sort extends AbstractFrameAggregator implements FrameAggregator {
     List<DataFrame> retval = new ArrayList<>();
 
     for (int x = 0; x < frames.size(); x++) {
-      frameList.add(frames.get(x));
+      DataFrame frame = frames.get(x);
+      if (!comparator.isEmpty()) {
+        budget.add(frame);
+      }
+      frameList.add(frame);
+    }
+
+    if (!comparator.isEmpty() && !txnContext.isLastFrame() && budget.isExceeded(frameList.size())) {
+      spill();
     }
 
     if (txnContext.isLastFrame()) {
@@ -97,46 +144,191 @@ public class Sort extends AbstractFrameAggregator implements FrameAggregator {
 
 
   /**
-   * @return
+   * Sort the frames in memory and write them to a temporary file.
+   */
+  private void spill() {
+    Collections.sort(frameList, comparator);
+    SpillFile run = null;
+    try {
+      run = new SpillFile(getJobDirectory(), "sort");
+      for (int x = 0; x < frameList.size(); x++) {
+        run.write(frameList.get(x));
+      }
+      runs.add(run);
+      JobMetrics metrics = JobMetrics.of(getContext());
+      metrics.getSpills(this).increment();
+      metrics.getSpilledBytes(this).add(run.length());
+      Log.debug("Spilled " + run.size() + " sorted frames to " + run.getFile().getAbsolutePath());
+      frameList = new ArrayList<>();
+    } catch (IOException e) {
+      // keep going in memory
+      Log.error("Could not spill frames to disk: " + e.getMessage());
+      if (run != null) {
+        run.close();
+      }
+      budget.disable();
+    }
+  }
+
+
+
+
+  /**
+   * @return all the frames in sorted order
    */
   private List<DataFrame> compileFrames() {
-    List<DataFrame> retval = frameList;
+    if (comparator.isEmpty()) {
+      return frameList;
+    }
 
-    String fieldName = getString(ConfigTag.FIELD);
-    if (StringUtil.isNotBlank(fieldName) && sort != CDX.Sort.NONE) {
-      retval = new ArrayList<>();
-      // iterate through all the frames in the list and place their keys in a hash set
-      Set<String> keys = new HashSet<>();
-      for (int x = 0; x < frameList.size(); x++) {
-        keys.add(frameList.get(x).getAsString(fieldName));
+    // a stable sort keeps frames with the same values in the order received
+    Collections.sort(frameList, comparator);
+    if (runs.isEmpty()) {
+      return frameList;
+    }
+
+    int size = frameList.size();
+    for (SpillFile run : runs) {
+      size += run.size();
+    }
+    Log.debug("Merging " + (runs.size() + 1) + " sorted runs of " + size + " frames");
+    return new StreamedFrames(size) {
+      @Override
+      protected Iterator<DataFrame> open() {
+        return merge();
       }
+    };
+  }
 
-      // Extract all the keys from the set into a list
-      List<String> list = new ArrayList<String>(keys);
 
-      // sort the list
-      if (sort != CDX.Sort.NONE) {
-        if (sort == CDX.Sort.ASCEND || sort == CDX.Sort.DESCEND) {
-          Collections.sort(list);
-        } else {
-          Collections.sort(list, String.CASE_INSENSITIVE_ORDER);
+
+
+  /**
+   * Merge the sorted runs on disk and the sorted frames in memory.
+   *
+   * @return an iterator over all the frames in sorted order
+   */
+  private Iterator<DataFrame> merge() {
+    List<Iterator<DataFrame>> sources = new ArrayList<>();
+    try {
+      for (SpillFile run : runs) {
+        sources.add(run.iterator());
+      }
+    } catch (IOException e) {
+      Log.error("Could not read spilled frames: " + e.getMessage());
+      getContext().setError("Could not read spilled frames: " + e.getMessage());
+    }
+    // frames in memory were received last so they are the last run
+    sources.add(frameList.iterator());
+    return new MergeIterator(sources);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.aggregate.AbstractFrameAggregator#close()
+   */
+  @Override
+  public void close() throws IOException {
+    for (SpillFile run : runs) {
+      run.close();
+    }
+    runs.clear();
+    frameList = new ArrayList<>();
+    super.close();
+  }
+
+
+
+
+  /**
+   * The next frame of one of the sorted runs being merged.
+   */
+  private static class Head {
+    final DataFrame frame;
+    final int run;
+    final Iterator<DataFrame> source;
+
+
+
+
+    Head(DataFrame frame, int run, Iterator<DataFrame> source) {
+      this.frame = frame;
+      this.run = run;
+      this.source = source;
+    }
+  }
+
+
+
+
+  /**
+   * Merges sorted runs, taking equal frames from earlier runs first so the
+   * merge is as stable as the sort of each run.
+   */
+  private class MergeIterator implements Iterator<DataFrame> {
+    private final PriorityQueue<Head> queue;
+
+
+
+
+    MergeIterator(List<Iterator<DataFrame>> sources) {
+      queue = new PriorityQueue<Head>(Math.max(1, sources.size()), new Comparator<Head>() {
+        @Override
+        public int compare(Head head1, Head head2) {
+          int retval = comparator.compare(head1.frame, head2.frame);
+          return (retval != 0) ? retval : (head1.run - head2.run);
         }
-        if (sort == CDX.Sort.DESCEND || sort == CDX.Sort.DESCEND_CI) {
-          Collections.reverse(list);
+      });
+      for (int x = 0; x < sources.size(); x++) {
+        advance(x, sources.get(x));
+      }
+    }
+
+
+
+
+    private void advance(int run, Iterator<DataFrame> source) {
+      if (source.hasNext()) {
+        try {
+          queue.add(new Head(source.next(), run, source));
+        } catch (IllegalStateException e) {
+          // the rest of the run is lost, so the sorted output is incomplete
+          Log.error(e.getMessage());
+          getContext().setError(e.getMessage());
         }
       }
+    }
+
+
 
-      for (int x = 0; x < list.size(); x++) {
-        String value = list.get(x);
-        for (int y = 0; y < frameList.size(); y++) {
-          // if the frame has a field value which matches the current key, remove it from the list and add it to the return value
-          if (value.equals(frameList.get(y).getAsString(fieldName))) {
-            retval.add(frameList.get(y));
-          }
-        } // for each frame in the list
-      } // for each key
+
+    @Override
+    public boolean hasNext() {
+      return !queue.isEmpty();
+    }
+
+
+
+
+    @Override
+    public DataFrame next() {
+      Head head = queue.poll();
+      if (head == null) {
+        throw new NoSuchElementException();
+      }
+      advance(head.run, head.source);
+      return head.frame;
+    }
+
+
+
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
     }
-    return retval;
   }
 
 }
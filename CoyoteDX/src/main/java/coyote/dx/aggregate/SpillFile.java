@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import coyote.dataframe.DataFrame;
+import coyote.loader.log.Log;
+
+
+/**
+ * A temporary file of dataframes used by aggregators which hold more data
+ * than fits in memory.
+ *
+ * <p>Frames are written in their binary form, so the types of their values
+ * are preserved, and are read back in the order they were written. The file
+ * is deleted when the spill file is closed.
+ */
+class SpillFile implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private DataOutputStream out;
+  private int count = 0;
+  private long length = 0;
+  private final List<FrameIterator> iterators = new ArrayList<>();
+
+
+
+
+  /**
+   * Create a new spill file.
+   *
+   * @param directory the directory to create the file in, null for the system
+   *        temporary directory
+   * @param prefix the prefix of the file name
+   *
+   * @throws IOException if the file could not be created
+   */
+  SpillFile(File directory, String prefix) throws IOException {
+    if (directory != null && !directory.isDirectory()) {
+      directory = null;
+    }
+    file = File.createTempFile(prefix, ".spill", directory);
+    file.deleteOnExit();
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+  }
+
+
+
+
+  /**
+   * Write a frame to the end of the file.
+   *
+   * @param frame the frame to write
+   *
+   * @throws IOException if the frame could not be written
+   */
+  void write(DataFrame frame) throws IOException {
+    byte[] data = frame.getBytes();
+    out.writeInt(data.length);
+    out.write(data);
+    count++;
+    length += data.length + 4;
+  }
+
+
+
+
+  /**
+   * @return the number of frames in the file
+   */
+  int size() {
+    return count;
+  }
+
+
+
+
+  /**
+   * @return the number of bytes written to the file
+   */
+  long length() {
+    return length;
+  }
+
+
+
+
+  /**
+   * @return the file holding the frames
+   */
+  File getFile() {
+    return file;
+  }
+
+
+
+
+  /**
+   * Read the frames from the start of the file.
+   *
+   * <p>No more frames can be written once the file is read. A frame which
+   * cannot be read ends the iteration with an {@link IllegalStateException}
+   * so the frames after it are never silently lost.
+   *
+   * @return an iterator over the frames in the order they were written
+   *
+   * @throws IOException if the file could not be opened
+   */
+  Iterator<DataFrame> iterator() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+    FrameIterator retval = new FrameIterator(new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)), count, file);
+    iterators.add(retval);
+    return retval;
+  }
+
+
+
+
+  /**
+   * Close the file and any iterators reading it, and delete it.
+   */
+  @Override
+  public void close() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException ignore) {
+        // deleting it anyway
+      }
+      out = null;
+    }
+    for (FrameIterator iterator : iterators) {
+      iterator.close();
+    }
+    iterators.clear();
+    if (file.exists() && !file.delete()) {
+      Log.warn("Could not delete spill file " + file.getAbsolutePath());
+    }
+  }
+
+
+
+
+  /**
+   * Reads the frames of the file one at a time.
+   */
+  private static class FrameIterator implements Iterator<DataFrame> {
+    private DataInputStream in;
+    private int remaining;
+    private final File file;
+
+
+
+
+    FrameIterator(DataInputStream in, int count, File file) {
+      this.in = in;
+      this.file = file;
+      remaining = count;
+      if (remaining == 0) {
+        close();
+      }
+    }
+
+
+
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+
+
+
+    @Override
+    public DataFrame next() {
+      if (remaining <= 0) {
+        throw new NoSuchElementException();
+      }
+      DataFrame retval = null;
+      try {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        retval = new DataFrame(data);
+        remaining--;
+      } catch (IOException e) {
+        close();
+        throw new IllegalStateException("Could not read spilled frame from " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+      }
+      if (remaining == 0) {
+        close();
+      }
+      return retval;
+    }
+
+
+
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+
+
+
+    void close() {
+      remaining = 0;
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException ignore) {
+          // nothing to do
+        }
+        in = null;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.aggregate;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * A list of frames which are produced as the list is iterated, so an
+ * aggregator can emit more frames than fit in memory.
+ *
+ * <p>The engine only iterates the frames an aggregator emits. Access by index
+ * should be sequential; each new iteration produces the frames again.
+ */
+abstract class StreamedFrames extends AbstractList<DataFrame> {
+  private int size;
+  private Iterator<DataFrame> cursor = null;
+  private int position = 0;
+
+
+
+
+  /**
+   * @param size the number of frames, or -1 if it is not known and must be
+   *        counted by iterating the frames
+   */
+  StreamedFrames(int size) {
+    this.size = size;
+  }
+
+
+
+
+  /**
+   * @return a new iterator producing the frames from the start
+   */
+  protected abstract Iterator<DataFrame> open();
+
+
+
+
+  @Override
+  public DataFrame get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    if (cursor == null || index < position) {
+      cursor = open();
+      position = 0;
+    }
+    while (position < index) {
+      cursor.next();
+      position++;
+    }
+    position++;
+    return cursor.next();
+  }
+
+
+
+
+  @Override
+  public Iterator<DataFrame> iterator() {
+    return open();
+  }
+
+
+
+
+  @Override
+  public int size() {
+    if (size < 0) {
+      int count = 0;
+      for (Iterator<DataFrame> it = open(); it.hasNext(); it.next()) {
+        count++;
+      }
+      size = count;
+    }
+    return size;
+  }
+
+}
@@ -23,6 +23,7 @@ public class TransactionContext extends OperationalContext {
   private DataFrame workingFrame = null;
 
   private boolean lastFrame = false;
+  private long frameNumber = 0;
 
 
 
@@ -121,5 +122,27 @@ public class TransactionContext extends OperationalContext {
 
 
 
+  /**
+   * @return the number of the frame in this transaction in the sequence of
+   *         frames read, 0 if it has not been numbered
+   */
+  public long getFrameNumber() {
+    return frameNumber;
+  }
+
+
+
+
+  /**
+   * @param number the number of the frame in this transaction in the
+   *        sequence of frames read
+   */
+  public void setFrameNumber(long number) {
+    frameNumber = number;
+  }
+
+
+
+
 
 }
@@ -10,11 +10,16 @@ package coyote.dx.context;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import coyote.commons.StringUtil;
+import coyote.commons.template.SymbolTable;
 import coyote.commons.template.Template;
 import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
+import coyote.dx.FrameReader;
+import coyote.dx.FrameValidator;
+import coyote.dx.FrameWriter;
 import coyote.dx.Symbols;
 import coyote.dx.TransformEngine;
 import coyote.loader.cfg.Config;
@@ -36,7 +41,10 @@ public class TransformContext extends OperationalContext {
   private static final String CONTEXT = "Context.";
   private static final String TRANSFORM = "Transform.";
   private static final String WORKING = "Working.";
-  private volatile TransactionContext transactionContext = null;
+  private volatile TransactionContext currentTransaction = null;
+  private final ThreadLocal<TransactionContext> workerTransaction = new ThreadLocal<TransactionContext>();
+  private final ThreadLocal<SymbolTable> workerSymbols = new ThreadLocal<SymbolTable>();
+  private final List<Runnable> completionSignals = new CopyOnWriteArrayList<Runnable>();
   protected Config configuration = new Config();
   protected TransformEngine engine = null;
   protected volatile long openCount = 0;
@@ -79,6 +87,7 @@ public class TransformContext extends OperationalContext {
 
   public boolean containsField(final String token) {
     Boolean retval = false;
+    final TransactionContext transactionContext = getTransaction();
     if (token.startsWith(WORKING)) {
       final String name = token.substring(WORKING.length());
       if ((transactionContext != null) && (transactionContext.getWorkingFrame() != null)) {
@@ -114,10 +123,37 @@ public class TransformContext extends OperationalContext {
 
 
   /**
-  * @return the current transaction context
-  */
+   * Frame symbols in a {@link TransformSymbolTable} are resolved against the
+   * transaction bound to the calling thread of this context.
+   *
+   * @see coyote.dx.context.OperationalContext#setSymbols(coyote.commons.template.SymbolTable)
+   */
+  @Override
+  public void setSymbols(final SymbolTable symbols) {
+    if (symbols instanceof TransformSymbolTable) {
+      ((TransformSymbolTable)symbols).setContext(this);
+    }
+    super.setSymbols(symbols);
+  }
+
+
+
+
+  /**
+   * Return the transaction currently being processed.
+   *
+   * <p>If the calling thread is an engine worker with a transaction bound to
+   * it, that transaction is returned, otherwise the transaction last set by
+   * the engine is returned.</p>
+   *
+   * @return the current transaction context
+   */
   public TransactionContext getTransaction() {
-    return transactionContext;
+    final TransactionContext retval = workerTransaction.get();
+    if (retval != null) {
+      return retval;
+    }
+    return currentTransaction;
   }
 
 
@@ -232,6 +268,7 @@ public class TransformContext extends OperationalContext {
    */
   public String resolveField(final String token) {
     String retval = null;
+    final TransactionContext transactionContext = getTransaction();
     if (token.startsWith(WORKING)) {
       final String name = token.substring(WORKING.length());
       if ((transactionContext != null) && (transactionContext.getWorkingFrame() != null)) {
@@ -284,6 +321,7 @@ public class TransformContext extends OperationalContext {
    */
   public Object resolveFieldValue(final String token) {
     Object retval = null;
+    final TransactionContext transactionContext = getTransaction();
     if (token.startsWith(WORKING)) {
       final String name = token.substring(WORKING.length());
       if ((transactionContext != null) && (transactionContext.getWorkingFrame() != null)) {
@@ -392,8 +430,9 @@ public class TransformContext extends OperationalContext {
         if (obj != null) {
           retval = obj;
         } else {
-          if (symbols != null && symbols.containsKey(token)) {
-            retval = symbols.get(token);
+          final SymbolTable table = getSymbols();
+          if (table != null && table.containsKey(token)) {
+            retval = table.get(token);
           }
         }
       }
@@ -550,7 +589,231 @@ public class TransformContext extends OperationalContext {
    * @param context the current transaction context being processed
    */
   public void setTransaction(final TransactionContext context) {
-    transactionContext = context;
+    currentTransaction = context;
+  }
+
+
+
+
+  /**
+   * @return the transaction bound to the calling thread or null if there is
+   *         none
+   */
+  TransactionContext getBoundTransaction() {
+    return workerTransaction.get();
+  }
+
+
+
+
+  /**
+   * Binds the given transaction to the calling thread.
+   *
+   * <p>Engine workers process several transactions at once. Binding the
+   * transaction to the worker thread allows components and templates running
+   * on that thread to resolve fields against the transaction they are
+   * actually processing and not the one most recently read.</p>
+   *
+   * @param context the transaction being processed by the calling thread,
+   *        null to remove the binding
+   */
+  public void bindTransaction(final TransactionContext context) {
+    if (context != null) {
+      workerTransaction.set(context);
+    } else {
+      workerTransaction.remove();
+    }
+  }
+
+
+
+
+  /**
+   * Return the symbol table of this context.
+   *
+   * <p>If the calling thread is an engine worker with a symbol table bound
+   * to it, that table is returned, otherwise the table shared with the
+   * engine is returned.</p>
+   *
+   * @see coyote.dx.context.OperationalContext#getSymbols()
+   */
+  @Override
+  public SymbolTable getSymbols() {
+    final SymbolTable retval = workerSymbols.get();
+    if (retval != null) {
+      return retval;
+    }
+    return super.getSymbols();
+  }
+
+
+
+
+  /**
+   * Create a copy of the symbol table of this context for an engine worker.
+   *
+   * <p>The engine keeps updating its symbol table as it reads frames, and
+   * the table is not safe to read while it is being updated. Each worker
+   * therefore reads its own copy, taken on the engine thread before the
+   * worker starts. The frame symbols of the copy are resolved against the
+   * transaction bound to the worker, and symbols the worker's components set
+   * are only visible to that worker.</p>
+   *
+   * @return a copy of the current symbols, or null if there are none
+   */
+  public SymbolTable copySymbols() {
+    TransformSymbolTable retval = null;
+    if (symbols != null) {
+      retval = new TransformSymbolTable();
+      retval.putAll(symbols);
+      retval.setContext(this);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Binds the given symbol table to the calling thread.
+   *
+   * @param table the symbols to be used by the calling thread, null to use
+   *        the symbols shared with the engine
+   *
+   * @see #copySymbols()
+   */
+  public void bindSymbols(final SymbolTable table) {
+    if (table != null) {
+      workerSymbols.set(table);
+    } else {
+      workerSymbols.remove();
+    }
+  }
+
+
+
+
+  /**
+   * Register a signal to be run each time an engine worker completes a
+   * transaction.
+   *
+   * <p>Components called by the engine thread which block while waiting for
+   * data, such as readers waiting for requests to arrive, can use this to
+   * return as soon as there are completed transactions for the engine to
+   * collect instead of polling for them.</p>
+   *
+   * <p>Signals are run by the worker threads and must not block.</p>
+   *
+   * @param signal the signal to run
+   */
+  public void addCompletionSignal(final Runnable signal) {
+    if (signal != null) {
+      completionSignals.add(signal);
+    }
+  }
+
+
+
+
+  /**
+   * @param signal the signal to no longer run when workers complete
+   *        transactions
+   */
+  public void removeCompletionSignal(final Runnable signal) {
+    completionSignals.remove(signal);
+  }
+
+
+
+
+  /**
+   * Called by engine workers each time they complete a transaction.
+   */
+  public void signalCompletion() {
+    for (Runnable signal : completionSignals) {
+      signal.run();
+    }
+  }
+
+
+
+
+  /**
+   * Listener callbacks are serialized so that listeners, which are not
+   * expected to be thread-safe, are never called concurrently by engine
+   * workers.
+   *
+   * @see coyote.dx.context.OperationalContext#fireMap(coyote.dx.context.TransactionContext)
+   */
+  @Override
+  public synchronized void fireMap(final TransactionContext txnContext) {
+    super.fireMap(txnContext);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.context.OperationalContext#fireWrite(coyote.dx.context.TransactionContext, coyote.dx.FrameWriter)
+   */
+  @Override
+  public synchronized void fireWrite(final TransactionContext context, final FrameWriter writer) {
+    super.fireWrite(context, writer);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.context.OperationalContext#fireRead(coyote.dx.context.TransactionContext, coyote.dx.FrameReader)
+   */
+  @Override
+  public synchronized void fireRead(final TransactionContext context, final FrameReader reader) {
+    super.fireRead(context, reader);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.context.OperationalContext#fireValidationFailed(coyote.dx.FrameValidator, java.lang.String)
+   */
+  @Override
+  public synchronized void fireValidationFailed(final FrameValidator validator, final String msg) {
+    super.fireValidationFailed(validator, msg);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.context.OperationalContext#fireFrameValidationFailed(coyote.dx.context.TransactionContext)
+   */
+  @Override
+  public synchronized void fireFrameValidationFailed(final TransactionContext txnContext) {
+    super.fireFrameValidationFailed(txnContext);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.context.OperationalContext#fireStart(coyote.dx.context.OperationalContext)
+   */
+  @Override
+  protected synchronized void fireStart(final OperationalContext context) {
+    super.fireStart(context);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.context.OperationalContext#fireEnd(coyote.dx.context.OperationalContext)
+   */
+  @Override
+  protected synchronized void fireEnd(final OperationalContext context) {
+    super.fireEnd(context);
   }
 
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.context;
+
+import coyote.commons.template.SymbolTable;
+import coyote.dx.Symbols;
+
+
+/**
+ * The symbol table of a transform context which resolves the symbols
+ * describing the current frame against the transaction bound to the calling
+ * thread.
+ *
+ * <p>Engine workers process several frames at once while the reader keeps
+ * reading ahead of them, so the {@code CurrentFrame} and {@code LastFrame}
+ * symbols in the shared table describe the frame most recently read. When a
+ * worker has a transaction bound to its thread, those symbols are taken from
+ * that transaction instead. Workers read their own copy of the table so they
+ * are not affected by the engine updating it; see
+ * {@link TransformContext#copySymbols()}.</p>
+ */
+public class TransformSymbolTable extends SymbolTable {
+
+  private static final long serialVersionUID = 1L;
+
+  private transient volatile TransformContext context = null;
+
+
+
+
+  /**
+   * @param context the context whose bound transactions provide the frame
+   *        symbols
+   */
+  void setContext(final TransformContext context) {
+    this.context = context;
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#get(java.lang.Object)
+   */
+  @Override
+  public Object get(final Object key) {
+    final TransactionContext transaction = getBoundTransaction();
+    if (transaction != null) {
+      if (Symbols.CURRENT_FRAME.equals(key)) {
+        return transaction.getFrameNumber();
+      } else if (Symbols.LAST_FRAME.equals(key)) {
+        return transaction.isLastFrame();
+      }
+    }
+    return super.get(key);
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#containsKey(java.lang.Object)
+   */
+  @Override
+  public boolean containsKey(final Object key) {
+    if (getBoundTransaction() != null && (Symbols.CURRENT_FRAME.equals(key) || Symbols.LAST_FRAME.equals(key))) {
+      return true;
+    }
+    return super.containsKey(key);
+  }
+
+
+
+
+  /**
+   * @return the numbered transaction bound to the calling thread, or null
+   */
+  private TransactionContext getBoundTransaction() {
+    final TransformContext ctx = context;
+    if (ctx != null) {
+      final TransactionContext retval = ctx.getBoundTransaction();
+      if (retval != null && retval.getFrameNumber() > 0) {
+        return retval;
+      }
+    }
+    return null;
+  }
+
+}
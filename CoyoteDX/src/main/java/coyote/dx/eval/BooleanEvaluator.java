@@ -9,6 +9,8 @@ package coyote.dx.eval;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
 
 import coyote.commons.StringUtil;
 import coyote.commons.eval.AbstractEvaluator;
@@ -291,6 +293,40 @@ public class BooleanEvaluator extends AbstractEvaluator<Boolean> {
 
 
 
+  /**
+   * Compile the regular expression of a regex method when the expression is
+   * compiled so it is not compiled again each time it is evaluated.
+   *
+   * @see coyote.commons.eval.AbstractEvaluator#prepare(coyote.commons.eval.Method, java.util.List)
+   */
+  @Override
+  protected Object prepare(final Method method, final List<String> arguments) {
+    if (REGEX.equals(method) && arguments.size() == 2) {
+      // arguments are held last first
+      return Pattern.compile(arguments.get(0));
+    }
+    return super.prepare(method, arguments);
+  }
+
+
+
+
+  /**
+   * @see coyote.commons.eval.AbstractEvaluator#evaluate(coyote.commons.eval.Method, java.util.Iterator, java.lang.Object, java.lang.Object)
+   */
+  @Override
+  protected Boolean evaluate(final Method method, final Iterator<String> arguments, final Object prepared, final Object evaluationContext) {
+    if (REGEX.equals(method) && prepared instanceof Pattern) {
+      arguments.next(); // the regular expression is already compiled
+      final String arg1 = arguments.next();
+      return RegexMethod.execute(transformContext, arg1, (Pattern)prepared);
+    }
+    return super.evaluate(method, arguments, prepared, evaluationContext);
+  }
+
+
+
+
   /**
    * Return the value of a method and its string arguments.
    *
@@ -12,6 +12,11 @@ import coyote.dx.context.TransformContext;
 
 /**
  * This is a facade to the evaluation functions.
+ * 
+ * <p>Expressions are parsed the first time they are evaluated and the parsed 
+ * form is reused each time the same expression is evaluated again, so 
+ * components can evaluate their conditions for every frame without paying 
+ * for the parsing each time.
  */
 public class Evaluator {
   private final BooleanEvaluator beval = new BooleanEvaluator();
@@ -62,6 +67,25 @@ public class Evaluator {
 
 
 
+  /**
+   * Parse the given boolean expression so it is ready to be evaluated, 
+   * without evaluating it.
+   * 
+   * <p>Components call this when they are opened so the syntax of their 
+   * conditions is checked before the first frame and the first evaluation 
+   * does not pay for the parsing.
+   * 
+   * @param expression the boolean expression to prepare
+   * 
+   * @throws IllegalArgumentException if the expression is not correct
+   */
+  public void prepareBoolean( final String expression ) throws IllegalArgumentException {
+    beval.prepare( expression );
+  }
+
+
+
+
   /**
    * Evaluate the given expression as a numeric (double) expression.
    * 
@@ -27,6 +27,27 @@ public class RegexMethod extends AbstractBooleanMethod {
    * @return true if there is a match false otherwise
    */
   public static Boolean execute(TransformContext context, String token, String regex) {
+    return execute(context, token, Pattern.compile(regex));
+  }
+
+
+
+
+  /**
+   * Checks to see if the named token matches the given compiled regular 
+   * expression.
+   * 
+   * <p>The boolean evaluator compiles the regular expression of each regex 
+   * method when it compiles the expression and calls this method each time 
+   * the expression is evaluated.
+   * 
+   * @param context The transform context in which to look for the job status
+   * @param token name of the context variable to check
+   * @param pattern the compiled regular expression
+   * 
+   * @return true if there is a match false otherwise
+   */
+  public static Boolean execute(TransformContext context, String token, Pattern pattern) {
     boolean retval = false;
     String key = sanitize(token);
     String value = null;
@@ -34,7 +55,7 @@ public class RegexMethod extends AbstractBooleanMethod {
       value = context.resolveToString(key);
     }
     if (value != null)
-      retval = Pattern.compile(regex).matcher(value).find();
+      retval = pattern.matcher(value).find();
     return retval;
   }
 
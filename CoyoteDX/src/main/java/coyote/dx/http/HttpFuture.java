@@ -7,10 +7,17 @@
  */
 package coyote.dx.http;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import coyote.commons.ExceptionUtil;
 import coyote.commons.StringUtil;
 import coyote.commons.network.MimeType;
 import coyote.commons.network.http.Response;
 import coyote.dataframe.DataFrame;
+import coyote.loader.log.Log;
 
 
 /**
@@ -21,10 +28,18 @@ import coyote.dataframe.DataFrame;
  * transforming and writing the contained data frame.
  * 
  * <p>It is expected that a Response object will be set to mark this future 
- * completed.
+ * completed. The first response set completes the future; any set after 
+ * that are ignored.
+ * 
+ * <p>Threads waiting in {@link #getResponse(long)} are parked until the 
+ * future completes or the time-out expires, they do not wake up to check 
+ * for the response. Alternatively, a {@link ResponseListener} can be 
+ * registered to be called with the response when the future completes.
  */
 public class HttpFuture {
   private final Object mutex = new Object();
+  private final CountDownLatch completion = new CountDownLatch(1);
+  private final List<ResponseListener> listeners = new ArrayList<ResponseListener>();
   private volatile Response response = null;
   private DataFrame frame = null;
   private String method = null;
@@ -86,28 +101,56 @@ public class HttpFuture {
 
 
 
+  /**
+   * Wait for this future to complete.
+   * 
+   * @param timeout the number of milliseconds to wait for the response
+   * 
+   * @return the response or null if the future did not complete within the 
+   *         time-out period
+   */
   public Response getResponse(final long timeout) {
-    synchronized (mutex) {
-      final long expiry = System.currentTimeMillis() + timeout;
-      while (response == null && System.currentTimeMillis() < expiry) {
-        try {
-          mutex.wait(10);
-        } catch (final InterruptedException ignore) {
-          // don't care, simply time-out
-        }
-      }
-      if(response == null) timedOut= true;
-      return response;
+    try {
+      completion.await(timeout, TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      // simply time-out, but let the caller know it was interrupted
+      Thread.currentThread().interrupt();
     }
-
+    if (response == null) {
+      timedOut = true;
+    }
+    return response;
   }
 
 
 
 
   public boolean isComplete() {
-    synchronized (mutex) {
-      return (response != null);
+    return completion.getCount() == 0;
+  }
+
+
+
+
+  /**
+   * Register a listener to be called with the response when this future 
+   * completes.
+   * 
+   * <p>The listener is called by the thread completing the future. If the 
+   * future is already complete, the listener is called immediately by the 
+   * calling thread.
+   * 
+   * @param listener the listener to call when the response is set
+   */
+  public void onComplete(final ResponseListener listener) {
+    if (listener != null) {
+      synchronized (mutex) {
+        if (response == null) {
+          listeners.add(listener);
+          return;
+        }
+      }
+      fireResponse(listener, response);
     }
   }
 
@@ -155,10 +198,44 @@ public class HttpFuture {
 
 
 
-  public void setResponse(final Response result) {
+  /**
+   * Complete this future with the given response, releasing any waiting 
+   * threads and calling any registered listeners.
+   * 
+   * @param result the response to the request, null responses are ignored
+   * 
+   * @return true if this call completed the future, false if the response 
+   *         was null or the future was already complete
+   */
+  public boolean setResponse(final Response result) {
+    final List<ResponseListener> waiting;
     synchronized (mutex) {
+      if (result == null || response != null) {
+        return false;
+      }
       response = result;
-      mutex.notifyAll();
+      waiting = new ArrayList<ResponseListener>(listeners);
+      listeners.clear();
+    }
+    completion.countDown();
+    for (final ResponseListener listener : waiting) {
+      fireResponse(listener, result);
+    }
+    return true;
+  }
+
+
+
+
+  /**
+   * Call the listener with the response, logging any exception it throws so
+   * one failing listener does not keep the others from being called.
+   */
+  private void fireResponse(final ResponseListener listener, final Response result) {
+    try {
+      listener.onResponse(this, result);
+    } catch (final RuntimeException e) {
+      Log.error("Response listener failed: " + e.getMessage() + "\n" + ExceptionUtil.stackTrace(e));
     }
   }
 
@@ -325,4 +402,23 @@ public class HttpFuture {
     return timedOut;
   }
 
+
+
+
+  /**
+   * Components implement this to be called when a future is completed 
+   * instead of waiting for the response.
+   */
+  public interface ResponseListener {
+
+    /**
+     * Called once when the future is completed.
+     * 
+     * @param future the future which completed
+     * @param response the response to the request
+     */
+    void onResponse(HttpFuture future, Response response);
+
+  }
+
 }
\ No newline at end of file
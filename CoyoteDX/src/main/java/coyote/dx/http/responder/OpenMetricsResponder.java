@@ -7,32 +7,43 @@
  */
 package coyote.dx.http.responder;
 
-import coyote.commons.network.MimeType;
+import java.util.Map;
+
 import coyote.commons.network.http.HTTPSession;
 import coyote.commons.network.http.Response;
 import coyote.commons.network.http.responder.Resource;
 import coyote.commons.network.http.responder.Responder;
 import coyote.dx.Service;
-
-import java.util.Map;
+import coyote.dx.metric.MetricRegistry;
 
 
 /**
  * This responder reports the health of the service via OpenMetrics.
  * 
- * <p>This is the endpoint Prometheus systems can scrape for data about this service.
+ * <p>This is the endpoint Prometheus systems can scrape for data about this 
+ * service. It exposes everything in the default metric registry: the frame 
+ * counts, stage latencies and queue depths recorded by each job along with 
+ * the scheduler and JVM gauges published by the service.
  */
 public class OpenMetricsResponder extends AbstractCoyoteResponder implements Responder {
 
-  private String generateMetrics(Service service){
-    return "# Future home of OpenMetrics for this node.";
+  /** The content type of the OpenMetrics text exposition format */
+  private static final String OPENMETRICS_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+
+
+
+  private String generateMetrics(Service service) {
+    return MetricRegistry.getDefault().expose();
   }
 
 
+
+
   @Override
   public Response get(Resource resource, Map<String, String> urlParams, HTTPSession session) {
     Service service = resource.initParameter(0, Service.class);
-    return Response.createFixedLengthResponse(getStatus(), MimeType.TEXT.getType(), generateMetrics(service));
+    return Response.createFixedLengthResponse(getStatus(), OPENMETRICS_TYPE, generateMetrics(service));
   }
 
 }
@@ -7,9 +7,7 @@
  */
 package coyote.dx.listener;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import coyote.commons.Decimal;
@@ -60,6 +58,17 @@ import coyote.loader.log.LogMsg;
  * indicate {@code UP}. Values of 'down', 'downwards', 'negative' or 
  * 'negatively' indicate {@code DOWN}. The default setting is {@code BOTH} and 
  * can be configured with 'both' or 'either'. 
+ * 
+ * <p>Samples are kept in a ring buffer for each group with the total, 
+ * minimum, maximum and variance kept up to date as samples are added, so 
+ * each sample takes constant time no matter how many samples or groups are 
+ * tracked. The exponential average is calculated when it is requested from 
+ * the samples within the horizon of its decay factor (see {@code 
+ * SampleWindow}). Samples are primitive doubles by default which is fast 
+ * and does not allocate objects for each sample, at the cost of the usual 
+ * floating point rounding. Setting {@code Precision} to 'decimal' keeps the 
+ * samples as decimals so totals and averages of values like currency are 
+ * exact.
  */
 public abstract class AbstractChangeListener extends AbstractMonitoringListener implements ContextListener {
 
@@ -68,11 +77,14 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
   private int maxSampleSize = Integer.MAX_VALUE;
   private String fieldName = null;
   private String groupingFieldName = null;
-  private final Map<String, List<Decimal>> sampleMap = new HashMap<>();
+  private final Map<String, SampleWindow> sampleMap = new HashMap<>();
+  private boolean decimalPrecision = false;
 
   protected String DIRECTION_TAG = "Direction";
   protected Direction direction = Direction.BOTH;
 
+  protected String PRECISION_TAG = "Precision";
+
   protected enum Direction {
     UP("Up"), DOWN("Down"), BOTH("Both)");
     // Member to hold the name
@@ -142,6 +154,17 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
       }
     }
 
+    String precision = getConfiguration().getString(PRECISION_TAG);
+    if (StringUtil.isNotBlank(precision)) {
+      if ("double".equalsIgnoreCase(precision.trim())) {
+        setDecimalPrecision(false);
+      } else if ("decimal".equalsIgnoreCase(precision.trim())) {
+        setDecimalPrecision(true);
+      } else {
+        Log.warn("Unrecognized '" + PRECISION_TAG + "' argument: " + precision);
+      }
+    }
+
   }
 
 
@@ -182,11 +205,7 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
   private Decimal add(final Decimal value, final String group) {
     Decimal retval = null;
     if (value != null) {
-      final List<Decimal> samples = getOrCreateSampleList(group);
-      samples.add(value);
-      while (samples.size() > maxSampleSize) {
-        retval = samples.remove(0);
-      }
+      retval = getOrCreateSampleWindow(group).add(value);
     }
     return retval;
   }
@@ -241,18 +260,8 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
    *         each. The decay factor will never reach 1.
    */
   protected Decimal getExponentialAverage(final Decimal decayFactor, final String group) {
-    Decimal retval = null;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    for (int x = samples.size() - 1; x >= 0; x--) {
-      final Decimal value = samples.get(x);
-      if (retval == null) {
-        retval = value;
-        continue;
-      } else {
-        retval = retval.plus(decayFactor.multipliedBy(value.minus(retval)));
-      }
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getExponentialAverage(decayFactor) : null;
   }
 
 
@@ -289,17 +298,27 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
 
 
   /**
-   * @param groupName
-   * @return
+   * @param groupName the name of the group
+   *
+   * @return the samples of the group, null if there are none
    */
-  private List<Decimal> getOrCreateSampleList(final String groupName) {
-    List<Decimal> retval = null;
-    if (StringUtil.isNotEmpty(groupName)) {
-      retval = sampleMap.get(groupName);
-      if (retval == null) {
-        retval = new ArrayList<Decimal>();
-        sampleMap.put(groupName, retval);
-      }
+  private SampleWindow getSampleWindow(final String groupName) {
+    return StringUtil.isNotEmpty(groupName) ? sampleMap.get(groupName) : null;
+  }
+
+
+
+
+  /**
+   * @param groupName the name of the group
+   *
+   * @return the samples of the group, created if there are none
+   */
+  private SampleWindow getOrCreateSampleWindow(final String groupName) {
+    SampleWindow retval = sampleMap.get(groupName);
+    if (retval == null) {
+      retval = SampleWindow.create(maxSampleSize, decimalPrecision);
+      sampleMap.put(groupName, retval);
     }
     return retval;
   }
@@ -308,12 +327,8 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
 
 
   protected Decimal getSample(final int index, final String group) {
-    Decimal retval = null;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    if (index < samples.size()) {
-      retval = samples.get(index);
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.get(index) : null;
   }
 
 
@@ -323,7 +338,7 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
    * @return the current size of the sample array
    */
   public int getSampleSize(final String group) {
-    final List<Decimal> samples = getOrCreateSampleList(group);
+    final SampleWindow samples = getSampleWindow(group);
     if (samples != null) {
       return samples.size();
     } else {
@@ -342,16 +357,8 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
 
 
   protected Decimal getSimpleAverage(final String group) {
-    Decimal retval = Decimal.ZERO;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    if (samples.size() > 0) {
-      Decimal sum = Decimal.ZERO;
-      for (final Decimal value : samples) {
-        sum = sum.plus(value);
-      }
-      retval = sum.dividedBy(Decimal.valueOf(samples.size()));
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getAverage() : Decimal.ZERO;
   }
 
 
@@ -365,18 +372,8 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
 
 
   protected Decimal getMinimum(final String group) {
-    Decimal retval = Decimal.NaN;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    if (samples.size() > 0) {
-      Decimal min = Decimal.NaN;
-      for (final Decimal value : samples) {
-        if (min.isNaN() || value.isLessThan(min)) {
-          min = value;
-        }
-      }
-      retval = min;
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getMinimum() : Decimal.NaN;
   }
 
 
@@ -390,18 +387,8 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
 
 
   protected Decimal getMaximum(final String group) {
-    Decimal retval = Decimal.NaN;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    if (samples.size() > 0) {
-      Decimal max = Decimal.NaN;
-      for (final Decimal value : samples) {
-        if (max.isNaN() || value.isGreaterThan(max)) {
-          max = value;
-        }
-      }
-      retval = max;
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getMaximum() : Decimal.NaN;
   }
 
 
@@ -415,16 +402,29 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
 
 
   protected Decimal getTotal(final String group) {
-    Decimal retval = Decimal.ZERO;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    if (samples.size() > 0) {
-      Decimal sum = Decimal.ZERO;
-      for (final Decimal value : samples) {
-        sum = sum.plus(value);
-      }
-      retval = sum;
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getTotal() : Decimal.ZERO;
+  }
+
+
+
+
+  protected Decimal getVariance() {
+    return getVariance(DEFAULT_GROUP);
+  }
+
+
+
+
+  /**
+   * @param group the name of the group
+   *
+   * @return the population variance of the samples in the group, zero if
+   *         there are no samples
+   */
+  protected Decimal getVariance(final String group) {
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getVariance() : Decimal.ZERO;
   }
 
 
@@ -540,14 +540,20 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
    *          not been reached or the value eas null.
    */
   protected Decimal sample(final double value) {
-    return add(Decimal.valueOf(value), DEFAULT_GROUP);
+    return sample(value, DEFAULT_GROUP);
   }
 
 
 
 
   protected Decimal sample(final double value, final String group) {
-    return add(Decimal.valueOf(value), group);
+    // groups sampled before the precision was changed keep their precision
+    final SampleWindow samples = getOrCreateSampleWindow(group);
+    if (samples instanceof DoubleSampleWindow) {
+      final double retval = ((DoubleSampleWindow)samples).add(value);
+      return Double.isNaN(retval) ? null : Decimal.valueOf(retval);
+    }
+    return samples.add(Decimal.valueOf(value));
   }
 
 
@@ -618,9 +624,9 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
       String str = value.replace(",", "");
       str = str.replace(" ", "");
       if (StringUtil.isEmpty(group)) {
-        retval = add(Decimal.valueOf(str), DEFAULT_GROUP);
+        retval = getOrCreateSampleWindow(DEFAULT_GROUP).add(str);
       } else {
-        retval = add(Decimal.valueOf(str), group);
+        retval = getOrCreateSampleWindow(group).add(str);
       }
     }
     return retval;
@@ -650,6 +656,34 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
 
 
   /**
+   * @return true if samples are kept as decimals, false if they are kept as
+   *         primitive doubles
+   */
+  public boolean isDecimalPrecision() {
+    return decimalPrecision;
+  }
+
+
+
+
+  /**
+   * Groups already sampled keep the precision they were created with, only 
+   * groups sampled for the first time use the new precision.
+   *
+   * @param flag true to keep samples as decimals, false to keep them as
+   *        primitive doubles
+   */
+  public AbstractChangeListener setDecimalPrecision(final boolean flag) {
+    decimalPrecision = flag;
+    return this;
+  }
+
+
+
+
+  /**
+   * Groups already sampled keep their previous maximum size.
+   *
    * @param size the maximum size of the sample array
    */
   public AbstractChangeListener setMaximumSampleSize(final int size) {
@@ -679,12 +713,8 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
    * @return
    */
   protected Decimal getLastSample(String group) {
-    Decimal retval = Decimal.NaN;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    if (samples.size() > 0) {
-      retval = samples.get(samples.size() - 1);
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getLast() : Decimal.NaN;
   }
 
 
@@ -720,12 +750,8 @@ public abstract class AbstractChangeListener extends AbstractMonitoringListener
    * @return the oldest sample in the cache for the given group.
    */
   protected Decimal getFirstSample(String group) {
-    Decimal retval = Decimal.NaN;
-    final List<Decimal> samples = getOrCreateSampleList(group);
-    if (samples.size() > 0) {
-      retval = samples.get(0);
-    }
-    return retval;
+    final SampleWindow samples = getSampleWindow(group);
+    return (samples != null) ? samples.getFirst() : Decimal.NaN;
   }
 
 
@@ -10,8 +10,10 @@ package coyote.dx.listener;
 import java.text.DecimalFormat;
 import java.text.FieldPosition;
 import java.util.Date;
+import java.util.List;
 
 import coyote.commons.StringUtil;
+import coyote.commons.sketch.FrequentItems;
 import coyote.commons.template.SymbolTable;
 import coyote.dataframe.DataFrame;
 import coyote.dx.DataSetMetrics;
@@ -27,8 +29,20 @@ import coyote.dx.context.TransformContext;
 /**
  * This listener keeps track of the data read in to and out of the engine and 
  * reports on the characteristics of the data observed.
+ * 
+ * <p>The number of unique values of each field is estimated with a sketch of 
+ * fixed size so wide, high-cardinality data sets can be profiled. Set 
+ * {@code "Exact"} to true to count unique values exactly by keeping every 
+ * distinct value in memory.</p>
  */
 public class DataProfiler extends FileRecorder implements ContextListener {
+
+  /** Count unique values exactly instead of estimating them. */
+  public static final String EXACT = "Exact";
+
+  private static final int TOP_VALUES = 3;
+  private static final int TOP_VALUE_LENGTH = 20;
+
   protected DataSetMetrics inputSchema = new DataSetMetrics();
   protected DataSetMetrics outputSchema = new DataSetMetrics();
   protected static final SymbolTable symbols = new SymbolTable();
@@ -39,6 +53,7 @@ public class DataProfiler extends FileRecorder implements ContextListener {
   private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#,###,##0.00");
   private static final DecimalFormat P_FORMAT = new DecimalFormat("##0.0");
   private static final DecimalFormat NUMBER_FORMAT = new DecimalFormat("###,###,###,###,###");
+  private static final DecimalFormat VALUE_FORMAT = new DecimalFormat("0.###");
 
   Date start = null;
   Date end = null;
@@ -66,6 +81,10 @@ public class DataProfiler extends FileRecorder implements ContextListener {
   public void open(TransformContext context) {
     super.open(context); // initialize FileRecorder
 
+    if (getBoolean(EXACT)) {
+      inputSchema = new DataSetMetrics(true);
+      outputSchema = new DataSetMetrics(true);
+    }
   }
 
 
@@ -156,22 +175,7 @@ public class DataProfiler extends FileRecorder implements ContextListener {
    * @return a FieldMetric associated with the named field. Never returns null.
    */
   private FieldMetrics getOutputFieldMetric(String name) {
-    FieldMetrics retval = null;
-    if (name != null) {
-      for (FieldMetrics metric : outputSchema.getMetrics()) {
-        if (name.equals(metric.getName())) {
-          retval = metric;
-          break;
-        }
-      }
-    }
-
-    if (retval == null) {
-      retval = new FieldMetrics(name);
-      outputSchema.getMetrics().add(retval);
-    }
-
-    return retval;
+    return outputSchema.getMetric(name);
   }
 
 
@@ -298,6 +302,7 @@ public class DataProfiler extends FileRecorder implements ContextListener {
       b.append(formatSizeBytes(totalBytes));
       b.append(StringUtil.LINE_FEED);
       write(b.toString());
+      writeDistribution(inputSchema);
     }
 
     b.delete(0, b.length());
@@ -412,6 +417,9 @@ public class DataProfiler extends FileRecorder implements ContextListener {
       b.append("  ");
       b.append(formatSizeBytes(totalBytes));
       b.append(StringUtil.LINE_FEED);
+      write(b.toString());
+      b.delete(0, b.length());
+      writeDistribution(outputSchema);
     }
 
     b.append(StringUtil.LINE_FEED);
@@ -421,6 +429,91 @@ public class DataProfiler extends FileRecorder implements ContextListener {
 
 
 
+  /**
+   * Write the estimated percentiles of the string lengths and numeric values 
+   * of each field along with the most frequent values.
+   * 
+   * @param schema the metrics of the fields to write
+   */
+  protected void writeDistribution(DataSetMetrics schema) {
+    int nameSize = 5;
+    for (FieldMetrics metric : schema.getMetrics()) {
+      if (metric.getName().length() > nameSize) {
+        nameSize = metric.getName().length();
+      }
+    }
+
+    StringBuffer b = new StringBuffer(StringUtil.LINE_FEED);
+    b.append(StringUtil.fixedLength("Field", nameSize + 1, StringUtil.LEFT_ALIGNMENT));
+    b.append(StringUtil.fixedLength("Len p50", 9, StringUtil.LEFT_ALIGNMENT));
+    b.append(StringUtil.fixedLength("p95", 9, StringUtil.LEFT_ALIGNMENT));
+    b.append(StringUtil.fixedLength("p99", 9, StringUtil.LEFT_ALIGNMENT));
+    b.append(StringUtil.fixedLength("Value p50", 13, StringUtil.LEFT_ALIGNMENT));
+    b.append(StringUtil.fixedLength("p95", 13, StringUtil.LEFT_ALIGNMENT));
+    b.append(StringUtil.fixedLength("p99", 13, StringUtil.LEFT_ALIGNMENT));
+    b.append("Top Values");
+    b.append(StringUtil.LINE_FEED);
+    write(b.toString());
+
+    for (FieldMetrics metric : schema.getMetrics()) {
+      b.delete(0, b.length());
+      b.append(StringUtil.fixedLength(metric.getName(), nameSize, StringUtil.LEFT_ALIGNMENT));
+      b.append(" ");
+      b.append(StringUtil.fixedLength(Long.toString(metric.getStringLengthQuantile(0.5)), 8, StringUtil.LEFT_ALIGNMENT));
+      b.append(" ");
+      b.append(StringUtil.fixedLength(Long.toString(metric.getStringLengthQuantile(0.95)), 8, StringUtil.LEFT_ALIGNMENT));
+      b.append(" ");
+      b.append(StringUtil.fixedLength(Long.toString(metric.getStringLengthQuantile(0.99)), 8, StringUtil.LEFT_ALIGNMENT));
+      b.append(" ");
+      b.append(StringUtil.fixedLength(formatValue(metric.getNumericQuantile(0.5)), 12, StringUtil.LEFT_ALIGNMENT));
+      b.append(" ");
+      b.append(StringUtil.fixedLength(formatValue(metric.getNumericQuantile(0.95)), 12, StringUtil.LEFT_ALIGNMENT));
+      b.append(" ");
+      b.append(StringUtil.fixedLength(formatValue(metric.getNumericQuantile(0.99)), 12, StringUtil.LEFT_ALIGNMENT));
+      b.append(" ");
+      b.append(formatTopValues(metric.getTopValues(TOP_VALUES)));
+      b.append(StringUtil.LINE_FEED);
+      write(b.toString());
+    }
+  }
+
+
+
+
+  private static String formatValue(double value) {
+    return Double.isNaN(value) ? "-" : VALUE_FORMAT.format(value);
+  }
+
+
+
+
+  /**
+   * Values which only occurred once are not worth listing.
+   */
+  private static String formatTopValues(List<FrequentItems.Item> items) {
+    StringBuilder b = new StringBuilder();
+    for (FrequentItems.Item item : items) {
+      if (item.getCount() > 1) {
+        if (b.length() > 0) {
+          b.append(", ");
+        }
+        String value = item.getValue();
+        if (value.length() > TOP_VALUE_LENGTH) {
+          value = value.substring(0, TOP_VALUE_LENGTH - 3) + "...";
+        }
+        b.append('\'');
+        b.append(value);
+        b.append("' (");
+        b.append(item.getCount());
+        b.append(")");
+      }
+    }
+    return (b.length() > 0) ? b.toString() : "-";
+  }
+
+
+
+
   /**
    * Get a formatted string representing the difference between the two times.
    * 
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.listener;
+
+import coyote.commons.Decimal;
+
+
+/**
+ * A window of samples kept as decimals, giving exact totals and averages of
+ * decimal values such as currency amounts.
+ */
+class DecimalSampleWindow extends SampleWindow {
+
+  /** Relative weight below which older samples do not affect the average. */
+  private static final double EPSILON = 1e-33;
+
+  private Decimal[] values;
+  private int head = 0;
+  private int count = 0;
+  private long sequence = 0;
+  private long removed = 0;
+
+  private Decimal sum = Decimal.ZERO;
+  private Decimal squares = Decimal.ZERO;
+
+  private final Extremes minimums = new Extremes(true);
+  private final Extremes maximums = new Extremes(false);
+
+  private Decimal emaFactor = null;
+  private int emaHorizon = 0;
+  private long emaRemoved = -1;
+  private int emaCount = 0;
+  private int emaStart = 0;
+  private Decimal ema = null;
+
+
+
+
+  DecimalSampleWindow(int limit) {
+    super(limit);
+    values = new Decimal[Math.min(INITIAL_CAPACITY, this.limit)];
+    minimums.resize(values.length);
+    maximums.resize(values.length);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#add(coyote.commons.Decimal)
+   */
+  @Override
+  Decimal add(Decimal value) {
+    Decimal retval = null;
+    if (value == null || value.isNaN()) {
+      return retval;
+    }
+
+    if (count == values.length && count < limit) {
+      grow();
+    }
+
+    long seq = sequence++;
+    if (count == limit) {
+      // the newest sample takes the place of the oldest
+      retval = values[head];
+      values[head] = value;
+      head = slot(head, 1, values.length);
+      minimums.expire(seq - count);
+      maximums.expire(seq - count);
+      removed++;
+    } else {
+      values[slot(head, count, values.length)] = value;
+      count++;
+    }
+    minimums.push(value, seq);
+    maximums.push(value, seq);
+
+    sum = sum.plus(value);
+    squares = squares.plus(value.multipliedBy(value));
+    if (retval != null) {
+      sum = sum.minus(retval);
+      squares = squares.minus(retval.multipliedBy(retval));
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#add(java.lang.String)
+   */
+  @Override
+  Decimal add(String value) {
+    return add(Decimal.valueOf(value));
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#size()
+   */
+  @Override
+  int size() {
+    return count;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#get(int)
+   */
+  @Override
+  Decimal get(int index) {
+    return (index >= 0 && index < count) ? values[slot(head, index, values.length)] : null;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getTotal()
+   */
+  @Override
+  Decimal getTotal() {
+    return sum;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getAverage()
+   */
+  @Override
+  Decimal getAverage() {
+    return (count > 0) ? sum.dividedBy(Decimal.valueOf(count)) : Decimal.ZERO;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getMinimum()
+   */
+  @Override
+  Decimal getMinimum() {
+    return (count > 0) ? minimums.first() : Decimal.NaN;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getMaximum()
+   */
+  @Override
+  Decimal getMaximum() {
+    return (count > 0) ? maximums.first() : Decimal.NaN;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getVariance()
+   */
+  @Override
+  Decimal getVariance() {
+    if (count > 0) {
+      Decimal n = Decimal.valueOf(count);
+      Decimal retval = squares.minus(sum.multipliedBy(sum).dividedBy(n)).dividedBy(n);
+      return retval.isNegative() ? Decimal.ZERO : retval;
+    }
+    return Decimal.ZERO;
+  }
+
+
+
+
+  /**
+   * Only the oldest samples within the horizon of the decay factor are
+   * walked; the weight of all the newer samples together is too small to
+   * change the result. The result is reused until the oldest samples change,
+   * which happens with every sample added once the window is full, so the
+   * first call after each sample walks up to the horizon (265 samples for a
+   * factor of 0.25).
+   *
+   * @see coyote.dx.listener.SampleWindow#getExponentialAverage(coyote.commons.Decimal)
+   */
+  @Override
+  Decimal getExponentialAverage(Decimal decayFactor) {
+    if (count == 0) {
+      return null;
+    }
+    if (!decayFactor.equals(emaFactor)) {
+      emaFactor = decayFactor;
+      emaHorizon = horizon(decayFactor.toDouble(), EPSILON);
+      ema = null;
+    }
+    int start = Math.min(count - 1, emaHorizon);
+    if (ema == null || removed != emaRemoved || start != emaStart || (count != emaCount && start == count - 1)) {
+      Decimal retval = values[slot(head, start, values.length)];
+      for (int x = start - 1; x >= 0; x--) {
+        retval = retval.plus(decayFactor.multipliedBy(values[slot(head, x, values.length)].minus(retval)));
+      }
+      ema = retval;
+      emaRemoved = removed;
+      emaStart = start;
+      emaCount = count;
+    }
+    return ema;
+  }
+
+
+
+
+  private void grow() {
+    int length = (int)Math.min(limit, values.length * 2L);
+    Decimal[] retval = new Decimal[length];
+    for (int x = 0; x < count; x++) {
+      retval[x] = values[slot(head, x, values.length)];
+    }
+    values = retval;
+    head = 0;
+    minimums.resize(length);
+    maximums.resize(length);
+  }
+
+
+
+
+  /**
+   * The candidates for the minimum (or maximum) of the window in the order
+   * they were added, each smaller (or larger) than all those after it. The
+   * first candidate is the minimum (or maximum) of the window.
+   */
+  private static class Extremes {
+    private final boolean minimum;
+    private Decimal[] values = new Decimal[0];
+    private long[] sequences = new long[0];
+    private int head = 0;
+    private int size = 0;
+
+
+
+
+    Extremes(boolean minimum) {
+      this.minimum = minimum;
+    }
+
+
+
+
+    void push(Decimal value, long seq) {
+      while (size > 0) {
+        Decimal last = values[slot(head, size - 1, values.length)];
+        if (minimum ? last.isLessThan(value) : last.isGreaterThan(value)) {
+          break;
+        }
+        size--;
+      }
+      int tail = slot(head, size, values.length);
+      values[tail] = value;
+      sequences[tail] = seq;
+      size++;
+    }
+
+
+
+
+    /**
+     * Remove the candidate with the given sequence if it is the first.
+     */
+    void expire(long seq) {
+      if (size > 0 && sequences[head] == seq) {
+        values[head] = null;
+        head = slot(head, 1, values.length);
+        size--;
+      }
+    }
+
+
+
+
+    Decimal first() {
+      return values[head];
+    }
+
+
+
+
+    void resize(int length) {
+      Decimal[] newValues = new Decimal[length];
+      long[] newSequences = new long[length];
+      for (int x = 0; x < size; x++) {
+        newValues[x] = values[slot(head, x, values.length)];
+        newSequences[x] = sequences[slot(head, x, values.length)];
+      }
+      values = newValues;
+      sequences = newSequences;
+      head = 0;
+    }
+  }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.listener;
+
+import coyote.commons.Decimal;
+
+
+/**
+ * A window of samples kept as primitive doubles.
+ *
+ * <p>Adding a sample does not allocate any objects once the window is full.
+ * The total is kept with compensated (Kahan) summation and the variance
+ * with Welford's method, and both are recalculated from the samples each
+ * time the window has turned over to remove any drift.
+ */
+class DoubleSampleWindow extends SampleWindow {
+
+  /** Relative weight below which older samples do not affect the average. */
+  private static final double EPSILON = 1e-17;
+
+  private double[] values;
+  private int head = 0;
+  private int count = 0;
+  private long sequence = 0;
+  private long removed = 0;
+  private int drift = 0;
+
+  private double sum = 0;
+  private double compensation = 0;
+  private double mean = 0;
+  private double squares = 0;
+
+  private final Extremes minimums = new Extremes(true);
+  private final Extremes maximums = new Extremes(false);
+
+  private Decimal emaFactor = null;
+  private int emaHorizon = 0;
+  private long emaRemoved = -1;
+  private int emaCount = 0;
+  private int emaStart = 0;
+  private Decimal ema = null;
+
+
+
+
+  DoubleSampleWindow(int limit) {
+    super(limit);
+    values = new double[Math.min(INITIAL_CAPACITY, this.limit)];
+    minimums.resize(values.length);
+    maximums.resize(values.length);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#add(coyote.commons.Decimal)
+   */
+  @Override
+  Decimal add(Decimal value) {
+    return (value != null) ? toDecimal(add(value.toDouble())) : null;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#add(java.lang.String)
+   */
+  @Override
+  Decimal add(String value) {
+    return toDecimal(add(Double.parseDouble(value)));
+  }
+
+
+
+
+  /**
+   * @param value the sample to add
+   *
+   * @return the oldest sample if it was removed to make room, NaN otherwise
+   */
+  double add(double value) {
+    double retval = Double.NaN;
+    if (Double.isNaN(value)) {
+      return retval;
+    }
+
+    if (count == values.length && count < limit) {
+      grow();
+    }
+
+    long seq = sequence++;
+    if (count == limit) {
+      // the newest sample takes the place of the oldest
+      retval = values[head];
+      values[head] = value;
+      head = slot(head, 1, values.length);
+      minimums.expire(seq - count);
+      maximums.expire(seq - count);
+      removed++;
+    } else {
+      values[slot(head, count, values.length)] = value;
+      count++;
+    }
+    minimums.push(value, seq);
+    maximums.push(value, seq);
+
+    accumulate(value);
+    if (Double.isNaN(retval)) {
+      double delta = value - mean;
+      mean += delta / count;
+      squares += delta * (value - mean);
+    } else {
+      // replacing a sample keeps the count the same
+      accumulate(-retval);
+      double previous = mean;
+      mean += (value - retval) / count;
+      squares = Math.max(0, squares + (value - retval) * (value - mean + retval - previous));
+      if (++drift >= count) {
+        rebase();
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#size()
+   */
+  @Override
+  int size() {
+    return count;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#get(int)
+   */
+  @Override
+  Decimal get(int index) {
+    return (index >= 0 && index < count) ? Decimal.valueOf(values[slot(head, index, values.length)]) : null;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getTotal()
+   */
+  @Override
+  Decimal getTotal() {
+    return Decimal.valueOf(sum);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getAverage()
+   */
+  @Override
+  Decimal getAverage() {
+    return (count > 0) ? Decimal.valueOf(sum / count) : Decimal.ZERO;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getMinimum()
+   */
+  @Override
+  Decimal getMinimum() {
+    return (count > 0) ? Decimal.valueOf(minimums.first()) : Decimal.NaN;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getMaximum()
+   */
+  @Override
+  Decimal getMaximum() {
+    return (count > 0) ? Decimal.valueOf(maximums.first()) : Decimal.NaN;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.listener.SampleWindow#getVariance()
+   */
+  @Override
+  Decimal getVariance() {
+    return (count > 0) ? Decimal.valueOf(squares / count) : Decimal.ZERO;
+  }
+
+
+
+
+  /**
+   * Only the oldest samples within the horizon of the decay factor are
+   * walked; the weight of all the newer samples together is too small to
+   * change the result. The result is reused until the oldest samples change,
+   * which happens with every sample added once the window is full, so the
+   * first call after each sample walks up to the horizon (137 samples for a
+   * factor of 0.25).
+   *
+   * @see coyote.dx.listener.SampleWindow#getExponentialAverage(coyote.commons.Decimal)
+   */
+  @Override
+  Decimal getExponentialAverage(Decimal decayFactor) {
+    if (count == 0) {
+      return null;
+    }
+    if (!decayFactor.equals(emaFactor)) {
+      emaFactor = decayFactor;
+      emaHorizon = horizon(decayFactor.toDouble(), EPSILON);
+      ema = null;
+    }
+    int start = Math.min(count - 1, emaHorizon);
+    if (ema == null || removed != emaRemoved || start != emaStart || (count != emaCount && start == count - 1)) {
+      double factor = decayFactor.toDouble();
+      double retval = values[slot(head, start, values.length)];
+      for (int x = start - 1; x >= 0; x--) {
+        retval = retval + factor * (values[slot(head, x, values.length)] - retval);
+      }
+      ema = Decimal.valueOf(retval);
+      emaRemoved = removed;
+      emaStart = start;
+      emaCount = count;
+    }
+    return ema;
+  }
+
+
+
+
+  private void accumulate(double value) {
+    double adjusted = value - compensation;
+    double total = sum + adjusted;
+    compensation = (total - sum) - adjusted;
+    sum = total;
+  }
+
+
+
+
+  /**
+   * Recalculate the total and variance from the samples.
+   */
+  private void rebase() {
+    sum = 0;
+    compensation = 0;
+    for (int x = 0; x < count; x++) {
+      accumulate(values[slot(head, x, values.length)]);
+    }
+    mean = sum / count;
+    squares = 0;
+    for (int x = 0; x < count; x++) {
+      double delta = values[slot(head, x, values.length)] - mean;
+      squares += delta * delta;
+    }
+    drift = 0;
+  }
+
+
+
+
+  private void grow() {
+    int length = (int)Math.min(limit, values.length * 2L);
+    double[] retval = new double[length];
+    for (int x = 0; x < count; x++) {
+      retval[x] = values[slot(head, x, values.length)];
+    }
+    values = retval;
+    head = 0;
+    minimums.resize(length);
+    maximums.resize(length);
+  }
+
+
+
+
+  private static Decimal toDecimal(double value) {
+    return Double.isNaN(value) ? null : Decimal.valueOf(value);
+  }
+
+
+
+
+  /**
+   * The candidates for the minimum (or maximum) of the window in the order
+   * they were added, each smaller (or larger) than all those after it. The
+   * first candidate is the minimum (or maximum) of the window.
+   */
+  private static class Extremes {
+    private final boolean minimum;
+    private double[] values = new double[0];
+    private long[] sequences = new long[0];
+    private int head = 0;
+    private int size = 0;
+
+
+
+
+    Extremes(boolean minimum) {
+      this.minimum = minimum;
+    }
+
+
+
+
+    void push(double value, long seq) {
+      while (size > 0) {
+        double last = values[slot(head, size - 1, values.length)];
+        if (minimum ? last < value : last > value) {
+          break;
+        }
+        size--;
+      }
+      int tail = slot(head, size, values.length);
+      values[tail] = value;
+      sequences[tail] = seq;
+      size++;
+    }
+
+
+
+
+    /**
+     * Remove the candidate with the given sequence if it is the first.
+     */
+    void expire(long seq) {
+      if (size > 0 && sequences[head] == seq) {
+        head = slot(head, 1, values.length);
+        size--;
+      }
+    }
+
+
+
+
+    double first() {
+      return values[head];
+    }
+
+
+
+
+    void resize(int length) {
+      double[] newValues = new double[length];
+      long[] newSequences = new long[length];
+      for (int x = 0; x < size; x++) {
+        newValues[x] = values[slot(head, x, values.length)];
+        newSequences[x] = sequences[slot(head, x, values.length)];
+      }
+      values = newValues;
+      sequences = newSequences;
+      head = 0;
+    }
+  }
+
+}
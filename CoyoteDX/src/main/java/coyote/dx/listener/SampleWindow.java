@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.listener;
+
+import coyote.commons.Decimal;
+
+
+/**
+ * The most recent samples of a change listener with the statistics of those
+ * samples kept up to date as samples are added and removed.
+ *
+ * <p>Samples are kept in a ring buffer which grows until it reaches the
+ * limit, after which each new sample replaces the oldest one. The total,
+ * minimum, maximum and variance are all maintained as samples come and go,
+ * so adding a sample and reading any of them takes constant time regardless
+ * of the number of samples.
+ *
+ * <p>The exponential average is not maintained incrementally. The weight of
+ * each sample decays with its position from the oldest sample, so removing
+ * the oldest sample changes the weight of every other one; backing it out of
+ * a running average would divide by the decay factor each time and amplify
+ * rounding errors without bound. Instead it is calculated when requested by
+ * walking the oldest samples within the horizon of the decay factor, and
+ * the result is reused until those samples change. While the window is
+ * growing the oldest samples rarely change, but once it is full every sample
+ * added replaces the oldest one, so the first request after each sample
+ * costs time proportional to {@code min(size, horizon)}. For the default
+ * factor of 0.25 the horizon is 137 samples for doubles and 265 for
+ * decimals. Requesting a different factor also recalculates it.
+ */
+abstract class SampleWindow {
+
+  protected static final int INITIAL_CAPACITY = 16;
+
+  protected final int limit;
+
+
+
+
+  /**
+   * @param limit the maximum number of samples to keep
+   */
+  protected SampleWindow(int limit) {
+    this.limit = Math.max(1, limit);
+  }
+
+
+
+
+  /**
+   * Create a window of samples.
+   *
+   * @param limit the maximum number of samples to keep
+   * @param decimal true to keep decimal samples, false for primitive doubles
+   *
+   * @return a new, empty window
+   */
+  static SampleWindow create(int limit, boolean decimal) {
+    return decimal ? new DecimalSampleWindow(limit) : new DoubleSampleWindow(limit);
+  }
+
+
+
+
+  /**
+   * @param value the sample to add
+   *
+   * @return the oldest sample if it was removed to make room, null otherwise
+   */
+  abstract Decimal add(Decimal value);
+
+
+
+
+  /**
+   * Add a sample represented by a string.
+   *
+   * @param value the string representation of the number to add
+   *
+   * @return the oldest sample if it was removed to make room, null otherwise
+   *
+   * @throws NumberFormatException if the value is not a number
+   */
+  abstract Decimal add(String value);
+
+
+
+
+  /**
+   * @return the number of samples in the window
+   */
+  abstract int size();
+
+
+
+
+  /**
+   * @param index the index of the sample, 0 being the oldest
+   *
+   * @return the sample or null if there is no sample with that index
+   */
+  abstract Decimal get(int index);
+
+
+
+
+  /**
+   * @return the oldest sample or NaN if there are none
+   */
+  Decimal getFirst() {
+    return (size() > 0) ? get(0) : Decimal.NaN;
+  }
+
+
+
+
+  /**
+   * @return the newest sample or NaN if there are none
+   */
+  Decimal getLast() {
+    return (size() > 0) ? get(size() - 1) : Decimal.NaN;
+  }
+
+
+
+
+  /**
+   * @return the sum of the samples, zero if there are none
+   */
+  abstract Decimal getTotal();
+
+
+
+
+  /**
+   * @return the mean of the samples, zero if there are none
+   */
+  abstract Decimal getAverage();
+
+
+
+
+  /**
+   * @return the smallest sample or NaN if there are none
+   */
+  abstract Decimal getMinimum();
+
+
+
+
+  /**
+   * @return the largest sample or NaN if there are none
+   */
+  abstract Decimal getMaximum();
+
+
+
+
+  /**
+   * @return the population variance of the samples, zero if there are none
+   */
+  abstract Decimal getVariance();
+
+
+
+
+  /**
+   * Calculate the exponential average the way it has always been calculated
+   * by the change listeners: starting with the newest sample, each older
+   * sample moves the average toward it by the decay factor.
+   *
+   * @param decayFactor the decay factor
+   *
+   * @return the exponential average or null if there are no samples
+   */
+  abstract Decimal getExponentialAverage(Decimal decayFactor);
+
+
+
+
+  /**
+   * @param factor the decay factor of an exponential average
+   * @param epsilon the weight below which samples do not change the average
+   *
+   * @return the number of samples, counting from the oldest, which can
+   *         change the exponential average
+   */
+  protected static int horizon(double factor, double epsilon) {
+    if (factor > 0 && factor < 1) {
+      return (int)Math.min(Integer.MAX_VALUE, Math.ceil(Math.log(epsilon) / Math.log(1 - factor)));
+    }
+    // other factors do not decay so all the samples count
+    return Integer.MAX_VALUE;
+  }
+
+
+
+
+  /**
+   * @return the position in an array of the given length of the slot at the
+   *         given offset from the head slot
+   */
+  protected static int slot(int head, int offset, int length) {
+    int retval = head + offset;
+    return (retval >= length) ? retval - length : retval;
+  }
+
+}
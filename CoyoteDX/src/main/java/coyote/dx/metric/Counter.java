@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.metric;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A monotonically increasing count which can be updated from many threads
+ * without contention.
+ *
+ * <p>The count is striped across several cells, each on its own cache line.
+ * Threads update the cell selected by their thread identifier so concurrent
+ * updates rarely touch the same memory. Reading the count sums the cells,
+ * which is expected to be rare (e.g. once per scrape).</p>
+ */
+public class Counter {
+
+  /** The number of longs between cells; 8 longs fill a 64 byte cache line. */
+  static final int PAD = 8;
+
+  /** The number of cells, always a power of 2. */
+  static final int STRIPES = stripes();
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+
+
+
+  /**
+   * @return the number of stripes to use for the processors available.
+   */
+  private static int stripes() {
+    int cpus = Runtime.getRuntime().availableProcessors();
+    int retval = 1;
+    while (retval < cpus && retval < 64) {
+      retval <<= 1;
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the stripe to be used by the current thread.
+   */
+  static int stripe() {
+    return (int)Thread.currentThread().getId() & (STRIPES - 1);
+  }
+
+
+
+
+  /**
+   * Add one to the count.
+   */
+  public void increment() {
+    cells.getAndIncrement(stripe() * PAD);
+  }
+
+
+
+
+  /**
+   * Add the given amount to the count.
+   *
+   * @param value the amount to add, which should not be negative.
+   */
+  public void add(long value) {
+    cells.getAndAdd(stripe() * PAD, value);
+  }
+
+
+
+
+  /**
+   * @return the current count.
+   */
+  public long get() {
+    long retval = 0;
+    for (int x = 0; x < STRIPES; x++) {
+      retval += cells.get(x * PAD);
+    }
+    return retval;
+  }
+
+}
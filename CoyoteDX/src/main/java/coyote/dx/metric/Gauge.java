@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.metric;
+
+/**
+ * A value which is sampled when the metrics are collected (e.g. the depth of a
+ * queue or the heap in use).
+ */
+public interface Gauge {
+
+  /**
+   * @return the current value of the gauge.
+   */
+  public double getValue();
+
+}
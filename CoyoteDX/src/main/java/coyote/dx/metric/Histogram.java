@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.metric;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A distribution of durations in fixed buckets from 5 microseconds to 10
+ * seconds.
+ *
+ * <p>Like the {@link Counter}, each thread records into its own stripe of
+ * buckets so the frame path never waits on a lock or contends for a cache
+ * line. Durations are recorded in nanoseconds and reported in seconds.</p>
+ */
+public class Histogram {
+
+  /** Upper bounds of the buckets in seconds. */
+  static final double[] BOUNDS = {0.000005, 0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+  /** Upper bounds of the buckets in nanoseconds. */
+  private static final long[] LIMITS = new long[BOUNDS.length];
+
+  /** Slots per stripe: one per bucket, one for +Inf and one for the sum. */
+  private static final int WIDTH;
+
+  static {
+    for (int x = 0; x < BOUNDS.length; x++) {
+      LIMITS[x] = (long)(BOUNDS[x] * 1000000000L);
+    }
+    // round up to a whole number of cache lines
+    WIDTH = ((BOUNDS.length + 2 + Counter.PAD - 1) / Counter.PAD) * Counter.PAD;
+  }
+
+  private static final int SUM = BOUNDS.length + 1;
+
+  private final AtomicLongArray cells = new AtomicLongArray(Counter.STRIPES * WIDTH);
+
+
+
+
+  /**
+   * Record the time elapsed since the given start time.
+   *
+   * @param start the value of {@link System#nanoTime()} when the timed
+   *        operation started.
+   */
+  public void recordSince(long start) {
+    record(System.nanoTime() - start);
+  }
+
+
+
+
+  /**
+   * Record one duration.
+   *
+   * @param nanos the duration in nanoseconds
+   */
+  public void record(long nanos) {
+    int bucket = 0;
+    while (bucket < LIMITS.length && nanos > LIMITS[bucket]) {
+      bucket++;
+    }
+    int base = Counter.stripe() * WIDTH;
+    cells.getAndIncrement(base + bucket);
+    cells.getAndAdd(base + SUM, nanos);
+  }
+
+
+
+
+  /**
+   * @return the number of durations recorded in each bucket (not cumulative),
+   *         the last element being the count of those over the largest bound.
+   */
+  public long[] getBuckets() {
+    long[] retval = new long[BOUNDS.length + 1];
+    for (int stripe = 0; stripe < Counter.STRIPES; stripe++) {
+      int base = stripe * WIDTH;
+      for (int x = 0; x < retval.length; x++) {
+        retval[x] += cells.get(base + x);
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the sum of all the recorded durations in seconds.
+   */
+  public double getSum() {
+    long retval = 0;
+    for (int stripe = 0; stripe < Counter.STRIPES; stripe++) {
+      retval += cells.get(stripe * WIDTH + SUM);
+    }
+    return retval / 1000000000D;
+  }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.metric;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import coyote.dx.context.TransformContext;
+
+
+/**
+ * The metrics the engine records for one job.
+ *
+ * <p>All the metrics are held by the default {@link MetricRegistry} and
+ * labeled with the name of the job. This class keeps references to them so
+ * recording a frame never involves more than a hash lookup of the component
+ * class and a striped increment. Components of the same class in the same
+ * stage share a latency histogram.</p>
+ */
+public class JobMetrics {
+
+  /** The stages of the engine for which latency is recorded. */
+  public enum Stage {
+    READ("Read"), FILTER("Filter"), VALIDATE("Validate"), TRANSFORM("Transform"), MAP("Map"), AGGREGATE("Aggregate"), WRITE("Write");
+
+    private final String label;
+
+
+
+
+    private Stage(String label) {
+      this.label = label;
+    }
+
+
+
+
+    @Override
+    public String toString() {
+      return label;
+    }
+  }
+
+  public static final String FRAMES_READ = "coyote_frames_read";
+  public static final String FRAMES_FILTERED = "coyote_frames_filtered";
+  public static final String FRAMES_INVALID = "coyote_frames_invalid";
+  public static final String FRAMES_WRITTEN = "coyote_frames_written";
+  public static final String TRANSACTION_ERRORS = "coyote_transaction_errors";
+  public static final String STAGE_LATENCY = "coyote_stage_latency_seconds";
+  public static final String QUEUE_DEPTH = "coyote_queue_depth";
+  public static final String SPILLS = "coyote_spills";
+  public static final String SPILLED_BYTES = "coyote_spilled_bytes";
+
+  private static final String JOB = "job";
+  private static final String UNNAMED = "unnamed";
+
+  private static final ConcurrentMap<String, JobMetrics> jobs = new ConcurrentHashMap<String, JobMetrics>();
+
+  private final String job;
+  private final MetricRegistry registry;
+  private final Counter read;
+  private final Counter filtered;
+  private final Counter invalid;
+  private final Counter written;
+  private final Counter errors;
+  private final Map<Stage, ConcurrentMap<Class<?>, Histogram>> latencies = new EnumMap<Stage, ConcurrentMap<Class<?>, Histogram>>(Stage.class);
+
+
+
+
+  private JobMetrics(String job, MetricRegistry registry) {
+    this.job = job;
+    this.registry = registry;
+    read = registry.counter(FRAMES_READ, "Frames read by the reader", JOB, job);
+    filtered = registry.counter(FRAMES_FILTERED, "Frames removed by filters", JOB, job);
+    invalid = registry.counter(FRAMES_INVALID, "Frames which failed validation", JOB, job);
+    written = registry.counter(FRAMES_WRITTEN, "Frames passed to the writers", JOB, job);
+    errors = registry.counter(TRANSACTION_ERRORS, "Transactions which ended in error", JOB, job);
+    for (Stage stage : Stage.values()) {
+      latencies.put(stage, new ConcurrentHashMap<Class<?>, Histogram>());
+    }
+  }
+
+
+
+
+  /**
+   * @param job the name of the job
+   *
+   * @return the metrics for the job with the given name.
+   */
+  public static JobMetrics of(String job) {
+    String name = (job != null && job.trim().length() > 0) ? job : UNNAMED;
+    JobMetrics retval = jobs.get(name);
+    if (retval == null) {
+      JobMetrics created = new JobMetrics(name, MetricRegistry.getDefault());
+      retval = jobs.putIfAbsent(name, created);
+      if (retval == null) {
+        retval = created;
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @param context the transform context of the job
+   *
+   * @return the metrics for the job running in the given context.
+   */
+  public static JobMetrics of(TransformContext context) {
+    return of((context != null && context.getEngine() != null) ? context.getEngine().getName() : null);
+  }
+
+
+
+
+  /**
+   * @return the name of the job as used in the metric labels.
+   */
+  public String getJob() {
+    return job;
+  }
+
+
+
+
+  public Counter getRead() {
+    return read;
+  }
+
+
+
+
+  public Counter getFiltered() {
+    return filtered;
+  }
+
+
+
+
+  public Counter getInvalid() {
+    return invalid;
+  }
+
+
+
+
+  public Counter getWritten() {
+    return written;
+  }
+
+
+
+
+  public Counter getErrors() {
+    return errors;
+  }
+
+
+
+
+  /**
+   * Record the time a component took to perform one operation.
+   *
+   * @param stage the stage of the engine
+   * @param component the component which was called
+   * @param start the value of {@link System#nanoTime()} when the component
+   *        was called
+   */
+  public void record(Stage stage, Object component, long start) {
+    latency(stage, component).recordSince(start);
+  }
+
+
+
+
+  /**
+   * @param stage the stage of the engine
+   * @param component the component called in that stage
+   *
+   * @return the latency histogram of the component in the given stage.
+   */
+  public Histogram latency(Stage stage, Object component) {
+    ConcurrentMap<Class<?>, Histogram> histograms = latencies.get(stage);
+    Histogram retval = histograms.get(component.getClass());
+    if (retval == null) {
+      retval = registry.histogram(STAGE_LATENCY, "Time taken by each component to process a frame (or batch)", JOB, job, "stage", stage.toString(), "component", component.getClass().getSimpleName());
+      histograms.putIfAbsent(component.getClass(), retval);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @param component the component which spills data to disk
+   *
+   * @return the counter of the times the component wrote data to disk
+   *         because it exceeded its memory limit.
+   */
+  public Counter getSpills(Object component) {
+    return registry.counter(SPILLS, "Times a component wrote data to disk to stay within its memory limit", JOB, job, "component", component.getClass().getSimpleName());
+  }
+
+
+
+
+  /**
+   * @param component the component which spills data to disk
+   *
+   * @return the counter of the bytes the component wrote to disk because it
+   *         exceeded its memory limit.
+   */
+  public Counter getSpilledBytes(Object component) {
+    return registry.counter(SPILLED_BYTES, "Bytes a component wrote to disk to stay within its memory limit", JOB, job, "component", component.getClass().getSimpleName());
+  }
+
+
+
+
+  /**
+   * Publish the depth of a queue in this job.
+   *
+   * @param queue the name of the queue (e.g. ReadAhead)
+   * @param component the name of the component owning the queue
+   * @param gauge the gauge returning the depth of the queue
+   */
+  public void addQueue(String queue, String component, Gauge gauge) {
+    registry.gauge(QUEUE_DEPTH, "Frames waiting in engine queues", gauge, JOB, job, "queue", queue, "component", component);
+  }
+
+
+
+
+  /**
+   * Stop publishing the depth of a queue.
+   *
+   * @param queue the name of the queue
+   * @param component the name of the component owning the queue
+   */
+  public void removeQueue(String queue, String component) {
+    registry.remove(QUEUE_DEPTH, JOB, job, "queue", queue, "component", component);
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.metric;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+
+
+/**
+ * Gauges describing the Java virtual machine in which the service runs.
+ */
+public class JvmMetrics {
+
+  private JvmMetrics() {}
+
+
+
+
+  /**
+   * Register the JVM gauges in the given registry.
+   *
+   * <p>This may be called more than once; later calls replace the gauges
+   * registered by earlier calls.</p>
+   *
+   * @param registry the registry in which to place the gauges
+   */
+  public static void register(MetricRegistry registry) {
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    final RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+
+    registry.gauge("jvm_memory_used_bytes", "Memory in use", new Gauge() {
+      @Override
+      public double getValue() {
+        return memory.getHeapMemoryUsage().getUsed();
+      }
+    }, "area", "heap");
+    registry.gauge("jvm_memory_used_bytes", "Memory in use", new Gauge() {
+      @Override
+      public double getValue() {
+        return memory.getNonHeapMemoryUsage().getUsed();
+      }
+    }, "area", "nonheap");
+    registry.gauge("jvm_memory_committed_bytes", "Memory committed by the JVM", new Gauge() {
+      @Override
+      public double getValue() {
+        return memory.getHeapMemoryUsage().getCommitted();
+      }
+    }, "area", "heap");
+    registry.gauge("jvm_memory_max_bytes", "Maximum memory available", new Gauge() {
+      @Override
+      public double getValue() {
+        return memory.getHeapMemoryUsage().getMax();
+      }
+    }, "area", "heap");
+
+    registry.gauge("jvm_threads_current", "Current number of live threads", new Gauge() {
+      @Override
+      public double getValue() {
+        return threads.getThreadCount();
+      }
+    });
+    registry.gauge("jvm_threads_daemon", "Current number of live daemon threads", new Gauge() {
+      @Override
+      public double getValue() {
+        return threads.getDaemonThreadCount();
+      }
+    });
+    registry.gauge("jvm_threads_peak", "Peak number of live threads", new Gauge() {
+      @Override
+      public double getValue() {
+        return threads.getPeakThreadCount();
+      }
+    });
+
+    for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      registry.gauge("jvm_gc_collections", "Garbage collections performed", new Gauge() {
+        @Override
+        public double getValue() {
+          return collector.getCollectionCount();
+        }
+      }, "gc", collector.getName());
+      registry.gauge("jvm_gc_collection_seconds", "Time spent in garbage collection", new Gauge() {
+        @Override
+        public double getValue() {
+          return collector.getCollectionTime() / 1000D;
+        }
+      }, "gc", collector.getName());
+    }
+
+    registry.gauge("process_uptime_seconds", "Time since the JVM started", new Gauge() {
+      @Override
+      public double getValue() {
+        return runtime.getUptime() / 1000D;
+      }
+    });
+    registry.gauge("jvm_available_processors", "Processors available to the JVM", new Gauge() {
+      @Override
+      public double getValue() {
+        return Runtime.getRuntime().availableProcessors();
+      }
+    });
+  }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.metric;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+
+/**
+ * The collection of all the metrics in this runtime.
+ *
+ * <p>Metrics are grouped into families by name. Each metric in a family is
+ * identified by its labels, given as name-value pairs. Asking for a counter
+ * or histogram which already exists returns the existing instance, so
+ * components should look up their metrics once and keep the reference
+ * instead of looking them up on each frame.</p>
+ *
+ * <p>{@link #expose()} renders all the metrics in the OpenMetrics text
+ * exposition format for scraping by Prometheus and similar systems.</p>
+ */
+public class MetricRegistry {
+
+  /** The registry fed by the engines and exposed by the service. */
+  private static final MetricRegistry DEFAULT = new MetricRegistry();
+
+  private static final String COUNTER = "counter";
+  private static final String GAUGE = "gauge";
+  private static final String HISTOGRAM = "histogram";
+
+  private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<String, Family>();
+
+
+
+
+  /**
+   * @return the registry shared by all the components in this runtime.
+   */
+  public static MetricRegistry getDefault() {
+    return DEFAULT;
+  }
+
+
+
+
+  /**
+   * Get or create a counter.
+   *
+   * @param name the name of the metric family, without the {@code _total} suffix
+   * @param help description of the metric family
+   * @param labels label names and values, alternating
+   *
+   * @return the counter with the given name and labels
+   */
+  public Counter counter(String name, String help, String... labels) {
+    return (Counter)family(name, help, COUNTER).get(labels);
+  }
+
+
+
+
+  /**
+   * Get or create a histogram.
+   *
+   * @param name the name of the metric family
+   * @param help description of the metric family
+   * @param labels label names and values, alternating
+   *
+   * @return the histogram with the given name and labels
+   */
+  public Histogram histogram(String name, String help, String... labels) {
+    return (Histogram)family(name, help, HISTOGRAM).get(labels);
+  }
+
+
+
+
+  /**
+   * Register a gauge, replacing any gauge with the same name and labels.
+   *
+   * @param name the name of the metric family
+   * @param help description of the metric family
+   * @param gauge the gauge to sample
+   * @param labels label names and values, alternating
+   */
+  public void gauge(String name, String help, Gauge gauge, String... labels) {
+    family(name, help, GAUGE).metrics.put(labelText(labels), gauge);
+  }
+
+
+
+
+  /**
+   * Remove a metric, typically a gauge on a component which is closing.
+   *
+   * @param name the name of the metric family
+   * @param labels label names and values, alternating
+   */
+  public void remove(String name, String... labels) {
+    Family family = families.get(name);
+    if (family != null) {
+      family.metrics.remove(labelText(labels));
+    }
+  }
+
+
+
+
+  /**
+   * @return all the metrics in the OpenMetrics text exposition format.
+   */
+  public String expose() {
+    StringBuilder b = new StringBuilder(4096);
+    for (Family family : families.values()) {
+      family.expose(b);
+    }
+    b.append("# EOF\n");
+    return b.toString();
+  }
+
+
+
+
+  private Family family(String name, String help, String type) {
+    Family retval = families.get(name);
+    if (retval == null) {
+      Family created = new Family(name, help, type);
+      retval = families.putIfAbsent(name, created);
+      if (retval == null) {
+        retval = created;
+      }
+    }
+    if (!type.equals(retval.type)) {
+      throw new IllegalArgumentException("Metric '" + name + "' is a " + retval.type + ", not a " + type);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the labels in exposition format, e.g. {@code job="Test",stage="Read"}
+   */
+  static String labelText(String... labels) {
+    if (labels == null || labels.length == 0) {
+      return "";
+    }
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be name-value pairs");
+    }
+    StringBuilder b = new StringBuilder();
+    for (int x = 0; x < labels.length; x += 2) {
+      if (x > 0) {
+        b.append(',');
+      }
+      b.append(labels[x]);
+      b.append("=\"");
+      String value = (labels[x + 1] != null) ? labels[x + 1] : "";
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '\\' || c == '"') {
+          b.append('\\');
+          b.append(c);
+        } else if (c == '\n') {
+          b.append("\\n");
+        } else {
+          b.append(c);
+        }
+      }
+      b.append('"');
+    }
+    return b.toString();
+  }
+
+
+
+
+  private static void sample(StringBuilder b, String name, String labels, String extra, String value) {
+    b.append(name);
+    if (labels.length() > 0 || extra != null) {
+      b.append('{');
+      b.append(labels);
+      if (extra != null) {
+        if (labels.length() > 0) {
+          b.append(',');
+        }
+        b.append(extra);
+      }
+      b.append('}');
+    }
+    b.append(' ');
+    b.append(value);
+    b.append('\n');
+  }
+
+
+
+
+  private static String format(double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    } else if (Double.isInfinite(value)) {
+      return (value > 0) ? "+Inf" : "-Inf";
+    } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long)value);
+    }
+    return Double.toString(value);
+  }
+
+
+
+
+  /**
+   * The metrics sharing a name, type and help text.
+   */
+  private static class Family {
+    final String name;
+    final String help;
+    final String type;
+    final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<String, Object>();
+
+
+
+
+    Family(String name, String help, String type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+
+
+
+
+    Object get(String[] labels) {
+      String key = labelText(labels);
+      Object retval = metrics.get(key);
+      if (retval == null) {
+        Object metric = COUNTER.equals(type) ? new Counter() : new Histogram();
+        retval = metrics.putIfAbsent(key, metric);
+        if (retval == null) {
+          retval = metric;
+        }
+      }
+      return retval;
+    }
+
+
+
+
+    void expose(StringBuilder b) {
+      if (metrics.isEmpty()) {
+        return;
+      }
+      b.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+      if (help != null) {
+        b.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+      }
+      for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+        String labels = entry.getKey();
+        Object metric = entry.getValue();
+        if (metric instanceof Counter) {
+          sample(b, name + "_total", labels, null, Long.toString(((Counter)metric).get()));
+        } else if (metric instanceof Histogram) {
+          Histogram histogram = (Histogram)metric;
+          long[] buckets = histogram.getBuckets();
+          long cumulative = 0;
+          for (int x = 0; x < Histogram.BOUNDS.length; x++) {
+            cumulative += buckets[x];
+            sample(b, name + "_bucket", labels, "le=\"" + Histogram.BOUNDS[x] + "\"", Long.toString(cumulative));
+          }
+          cumulative += buckets[Histogram.BOUNDS.length];
+          sample(b, name + "_bucket", labels, "le=\"+Inf\"", Long.toString(cumulative));
+          sample(b, name + "_count", labels, null, Long.toString(cumulative));
+          sample(b, name + "_sum", labels, null, format(histogram.getSum()));
+        } else if (metric instanceof Gauge) {
+          double value;
+          try {
+            value = ((Gauge)metric).getValue();
+          } catch (RuntimeException e) {
+            value = Double.NaN;
+          }
+          sample(b, name, labels, null, format(value));
+        }
+      }
+    }
+  }
+
+}
@@ -8,16 +8,21 @@
 package coyote.dx.reader;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 import coyote.commons.StringUtil;
 import coyote.commons.UriUtil;
 import coyote.commons.csv.CSVReader;
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.DataFrameException;
+import coyote.dx.BatchReader;
 import coyote.dx.CDX;
 import coyote.dx.ConfigTag;
 import coyote.dx.ConfigurableComponent;
@@ -33,9 +38,16 @@ import coyote.loader.log.LogMsg;
 /**
  * Character Separated Value Reader
  * 
- * TODO: Support preload
+ * <p>The separator is set with the {@code character} configuration
+ * attribute and may be more than one character long. A value of "\t" or
+ * "tab" sets the separator to the tab character. The {@code Encoding}
+ * attribute sets the character set of the source, defaulting to that of the
+ * platform.</p>
+ * 
+ * <p>With {@code preload} set to true, all the records are read into memory
+ * when the reader is opened and the source is closed.</p>
  */
-public class CsvReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent {
+public class CsvReader extends AbstractFrameReader implements FrameReader, BatchReader, ConfigurableComponent {
 
   /** The component responsible for reading CSV files into frames */
   private CSVReader reader = null;
@@ -49,11 +61,23 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
   /** The column names read in from the first line */
   private String[] header = new String[0];
 
+  /** The names of the columns, generated once for columns not in the header */
+  private String[] columns = new String[0];
+
+  /** The records read into memory when preloading */
+  private List<String[]> rows = null;
+
+  /** The position of the next record in the preloaded rows */
+  private int rowIndex = 0;
+
   private volatile String[] nextLine = null;
 
   /** The default separator character */
   public char SEPARATOR = ',';
 
+  /** The separator, which may be more than one character long */
+  private String separator = String.valueOf(SEPARATOR);
+
 
 
 
@@ -83,6 +107,10 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
       String value = cfg.getString(ConfigTag.CHARACTER);
 
       if (StringUtil.isNotEmpty(value)) {
+        if ("\\t".equals(value) || "tab".equalsIgnoreCase(value)) {
+          value = "\t";
+        }
+        separator = value;
         SEPARATOR = value.charAt(0);
       } else {
         Log.info("Character value not valid ");
@@ -90,10 +118,7 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
     } else {
       Log.debug("No separator config");
     }
-    Log.debug(LogMsg.createMsg(CDX.MSG, "Reader.separator_character_is", SEPARATOR, (int)SEPARATOR));
-
-    // TODO: support a different separator character including "/t"
-
+    Log.debug(LogMsg.createMsg(CDX.MSG, "Reader.separator_character_is", separator, (int)SEPARATOR));
   }
 
 
@@ -107,10 +132,8 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
     DataFrame retval = null;
     String[] data = nextLine;
     if (data != null) {
-      retval = new DataFrame();
-      for (int x = 0; x < data.length; x++) {
-        retval.add(x < header.length ? header[x] : new String("COL" + x), data[x]);
-      }
+      retval = createFrame(data);
+
       // read the next line of data (if it exists)
       readNext();
 
@@ -126,6 +149,67 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
 
 
 
+  /**
+   * @see coyote.dx.BatchReader#readBatch(coyote.dx.context.TransactionContext, int)
+   */
+  @Override
+  public List<DataFrame> readBatch(TransactionContext context, int size) {
+    List<DataFrame> retval = new ArrayList<DataFrame>(size);
+    while (nextLine != null && retval.size() < size) {
+      retval.add(createFrame(nextLine));
+      readNext();
+    }
+
+    // if there is no next line, the last frame is in this batch
+    if (eof() && retval.size() > 0) {
+      context.setLastFrame(true);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Create a frame from the given line of data using the header for the 
+   * field names.
+   * 
+   * @param data the values of the line
+   * 
+   * @return a frame with a field for each value
+   */
+  private DataFrame createFrame(String[] data) {
+    if (data.length > columns.length) {
+      nameColumns(data.length);
+    }
+    DataFrame retval = new DataFrame();
+    for (int x = 0; x < data.length; x++) {
+      retval.add(columns[x], data[x]);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Generate the names of the columns, using the header where there is one, 
+   * so the names are not created for each record.
+   * 
+   * @param count the number of columns to name
+   */
+  private void nameColumns(int count) {
+    String[] names = new String[count];
+    System.arraycopy(columns, 0, names, 0, columns.length);
+    for (int x = columns.length; x < count; x++) {
+      names[x] = x < header.length && header[x] != null ? header[x] : "COL" + x;
+    }
+    columns = names;
+  }
+
+
+
+
   /**
    * @see coyote.dx.FrameReader#eof()
    */
@@ -145,6 +229,7 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
     if (reader != null) {
       reader.close();
     }
+    rows = null;
   }
 
 
@@ -194,7 +279,11 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
       // Basic checks
       if (sourceFile.exists() && sourceFile.canRead()) {
         try {
-          setReader(new CSVReader(new FileReader(sourceFile), SEPARATOR));
+          Charset charset = Charset.defaultCharset();
+          if (StringUtil.isNotBlank(getString(ConfigTag.ENCODING))) {
+            charset = Charset.forName(getString(ConfigTag.ENCODING));
+          }
+          setReader(new CSVReader(new InputStreamReader(new FileInputStream(sourceFile), charset), separator));
         } catch (Exception e) {
           Log.error("Could not create reader: " + e.getMessage());
           context.setError(e.getMessage());
@@ -222,8 +311,18 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
    */
   protected void setReader(CSVReader csvReader) throws IOException, ParseException {
     reader = csvReader;
+    columns = new String[0];
     if (hasHeader) {
       header = reader.readNext();
+      if (header == null) {
+        header = new String[0];
+      }
+    }
+    if (preload) {
+      rows = reader.readAll();
+      rowIndex = 0;
+      reader.close();
+      Log.debug("Preloaded " + rows.size() + " records");
     }
     readNext();
   }
@@ -237,13 +336,11 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
   private void readNext() {
     nextLine = null;
     try {
-      while (nextLine == null) {
-        nextLine = reader.readNext();
-        reader.consumeEmptyLines();
-        if (reader.eof()) {
-          break;
-        }
+      do {
+        nextLine = nextRow();
       }
+      while (nextLine != null && nextLine.length == 1 && nextLine[0].length() == 0);
+
       if (nextLine != null) {
         super.recordCounter++;
         if (super.readLimit > 0 && super.recordCounter > super.readLimit) {
@@ -258,6 +355,24 @@ public class CsvReader extends AbstractFrameReader implements FrameReader, Confi
 
 
 
+  /**
+   * @return the next row from memory when preloaded, otherwise from the source
+   */
+  private String[] nextRow() throws IOException, ParseException {
+    if (rows == null) {
+      return reader.readNext();
+    }
+    String[] retval = null;
+    if (rowIndex < rows.size()) {
+      retval = rows.get(rowIndex);
+      rows.set(rowIndex++, null); // release it once it is read
+    }
+    return retval;
+  }
+
+
+
+
   /**
    * @return true indicating the reader will load all available data into and read records from memory, false to get one or (batch size) at a time.
    */
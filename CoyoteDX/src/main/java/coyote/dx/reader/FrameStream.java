@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * A source of frames parsed incrementally from a document.
+ *
+ * <p>Streams allow the MarshalingFrameReader to read documents much larger
+ * than the heap by keeping only the record being parsed in memory.</p>
+ */
+public interface FrameStream extends Closeable {
+
+  /**
+   * Parse the next record from the document.
+   *
+   * @return the next frame in the document or null if there are no more
+   *
+   * @throws IOException if the document could not be read or is not valid
+   */
+  public DataFrame next() throws IOException;
+
+}
@@ -42,7 +42,11 @@ import coyote.loader.log.Log;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -70,7 +74,19 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * <p>This will start a new thread acting as a listener and a thread for each 
  * request that comes in. Each request thread simply converts the retrieved 
  * data into a DataFrame and places it in the Queue for the reader to return 
- * when requested.
+ * when requested. The reader blocks on that queue, so requests are handed to 
+ * the engine as soon as they arrive and an idle job does not consume CPU. 
+ * When engine workers complete requests, the reader is woken through the 
+ * same queue so the engine can return their responses without delay.
+ * 
+ * <p>By default the engine processes one request at a time. Setting 
+ * {@code Workers} in the job configuration allows the engine to process 
+ * several requests concurrently, each in its own transaction context. The 
+ * response for each request is generated when its transaction ends.
+ * 
+ * <p>The queue of requests waiting to be processed is limited. Once it is 
+ * full, new requests are immediately rejected with a 503 (Service 
+ * Unavailable) response instead of waiting to time out.
  * 
  * <p>This reader never returns EOF. This means the job will run indefinitely 
  * until the JRE is shut down.
@@ -80,12 +96,20 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  *   "class" : "HttpReader",
  *   "port" : 80, 
  *   "timeout" : 5000, 
+ *   "wait" : 1000, 
+ *   "queueDepth" : 100, 
  *   "endpoint" : "/coyote/:id" 
  * }</pre>
  * 
  * <p>The {@code port} and {@code timeout} arguments are optional and will 
  * default to port 80 and 10000 (10 seconds) if not specified.
  * 
+ * <p>The {@code wait} argument is the number of milliseconds a read waits for 
+ * a request to arrive before returning no frame so the engine can check its 
+ * state. It defaults to 1000 (1 second). The {@code queueDepth} argument is 
+ * the number of requests allowed to wait for processing before new requests 
+ * are rejected and defaults to 1000.
+ * 
  * <p>The {@code endpoint} argument can be a single endpoint or a comma 
  * separated list of many different endpoints. For example:<pre>
  * "endpoint" : "/api/order/:id, /api/account/:id, /api/user/:id"</pre>
@@ -102,7 +126,10 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class HttpReader extends AbstractFrameReader implements FrameReader {
   private static final String DEFAULT_ENDPOINT = "/api";
   private static final String ENDPOINT_TAG = "endpoint";
+  private static final String WAIT_TAG = "wait";
+  private static final String QUEUE_DEPTH_TAG = "queueDepth";
   private static final String HTTP_FUTURE = "HttpFuture";
+  private static final String HTTP_VALIDATION_ERRORS = "HttpValidationErrors";
   private static final String HTTP_METHOD = "HttpMethod";
   private static final String HTTP_LISTENER = "HttpListener";
   private static final String HTTP_ACCEPT_TYPE = "HttpAcceptType";
@@ -115,7 +142,20 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
   public static final String MESSAGE = "Message";
   private static final int DEFAULT_PORT = 80;
   protected static final int DEFAULT_TIMEOUT = 10000;
-  private ConcurrentLinkedQueue<HttpFuture> queue = new ConcurrentLinkedQueue<HttpFuture>();
+  private static final int DEFAULT_WAIT = 1000;
+  private static final int DEFAULT_QUEUE_DEPTH = 1000;
+  /** Placed on the queue to wake the reader when a worker completes a request */
+  private static final HttpFuture WAKE_UP = new HttpFuture();
+  private BlockingQueue<HttpFuture> queue = null;
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final AtomicBoolean wakePending = new AtomicBoolean();
+  private final Runnable wakeUpSignal = new Runnable() {
+    @Override
+    public void run() {
+      wakeUp();
+    }
+  };
+  private int wait = DEFAULT_WAIT;
   private HttpListener listener = null;
 
 
@@ -141,6 +181,22 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
         throw new ConfigurationException(this.getClass().getName() + " configuration contains an invalid timeout specification of '" + getConfiguration().getString(ConfigTag.TIMEOUT) + "'");
       }
     }
+
+    if (getConfiguration().containsIgnoreCase(WAIT_TAG) && !Template.appearsToBeATemplate(getString(WAIT_TAG))) {
+      try {
+        getConfiguration().getInt(WAIT_TAG);
+      } catch (Exception ignore) {
+        throw new ConfigurationException(this.getClass().getName() + " configuration contains an invalid wait specification of '" + getConfiguration().getString(WAIT_TAG) + "'");
+      }
+    }
+
+    if (getConfiguration().containsIgnoreCase(QUEUE_DEPTH_TAG) && !Template.appearsToBeATemplate(getString(QUEUE_DEPTH_TAG))) {
+      try {
+        getConfiguration().getInt(QUEUE_DEPTH_TAG);
+      } catch (Exception ignore) {
+        throw new ConfigurationException(this.getClass().getName() + " configuration contains an invalid queue depth specification of '" + getConfiguration().getString(QUEUE_DEPTH_TAG) + "'");
+      }
+    }
   }
 
 
@@ -151,6 +207,9 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
    */
   @Override
   public void close() throws IOException {
+    if (getContext() != null) {
+      getContext().removeCompletionSignal(wakeUpSignal);
+    }
     listener.stop();
     super.close();
   }
@@ -205,6 +264,8 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
     }
 
     int timeout = getTimeout();
+    createQueue();
+    transformContext.addCompletionSignal(wakeUpSignal);
 
     String endpoint = getEndpoint();
     String[] values = endpoint.split("[,\\s]+");
@@ -246,6 +307,46 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
 
 
 
+  /**
+   * Create the queue of requests waiting to be read according to our 
+   * configuration.
+   */
+  void createQueue() {
+    wait = getWait();
+    queue = new ArrayBlockingQueue<HttpFuture>(getQueueDepth());
+  }
+
+
+
+
+  /**
+   * @return the queue the request handlers place their futures in for this 
+   *         reader
+   */
+  BlockingQueue<HttpFuture> getQueue() {
+    return queue;
+  }
+
+
+
+
+  /**
+   * Wake up a read waiting for a request so the engine can collect the 
+   * requests its workers have completed.
+   * 
+   * <p>This is called by the worker threads. Only one wake-up is placed on 
+   * the queue at a time. If the queue is full, the read will not wait 
+   * anyway.
+   */
+  void wakeUp() {
+    if (outstanding.get() > 0 && wakePending.compareAndSet(false, true) && !queue.offer(WAKE_UP)) {
+      wakePending.set(false);
+    }
+  }
+
+
+
+
   /**
    * Get a port to which this listener should bind.
    * 
@@ -304,6 +405,59 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
 
 
 
+  /**
+   * @return the number of milliseconds a read should wait for a request to 
+   *         arrive before returning.
+   */
+  private int getWait() {
+    int retval = DEFAULT_WAIT;
+    if (getConfiguration().containsIgnoreCase(WAIT_TAG)) {
+      String value = getString(WAIT_TAG);
+      if (Template.appearsToBeATemplate(value)) {
+        Log.error("Could not fully resolve configuration element '" + WAIT_TAG + "' (" + value + "), using default value of " + retval);
+      } else {
+        try {
+          retval = Math.max(0, Integer.parseInt(value));
+        } catch (Exception ignore) {
+          Log.error("Configuration contains an invalid '" + WAIT_TAG + "' value of '" + value + "' (" + getConfiguration().getAsString(WAIT_TAG) + "), using value of " + retval);
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the number of requests which may wait to be processed before 
+   *         new requests are rejected.
+   */
+  private int getQueueDepth() {
+    int retval = DEFAULT_QUEUE_DEPTH;
+    if (getConfiguration().containsIgnoreCase(QUEUE_DEPTH_TAG)) {
+      String value = getString(QUEUE_DEPTH_TAG);
+      if (Template.appearsToBeATemplate(value)) {
+        Log.error("Could not fully resolve configuration element '" + QUEUE_DEPTH_TAG + "' (" + value + "), using default value of " + retval);
+      } else {
+        try {
+          int depth = Integer.parseInt(value);
+          if (depth > 0) {
+            retval = depth;
+          } else {
+            Log.error("Configuration contains an out of range '" + QUEUE_DEPTH_TAG + "' value of '" + value + "', using value of " + retval);
+          }
+        } catch (Exception ignore) {
+          Log.error("Configuration contains an invalid '" + QUEUE_DEPTH_TAG + "' value of '" + value + "' (" + getConfiguration().getAsString(QUEUE_DEPTH_TAG) + "), using value of " + retval);
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
   /**
    * @return the endpoint this listener is to use. Defaults to "/api"
    */
@@ -323,24 +477,36 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
   /**
    * Retrieve the next future from our queue and return the data frame it contains.
    * 
-   * <p>If there is no future, this method pauses for a short time to keep the 
-   * engine thread from constantly cycling when there is nothing to do.
+   * <p>If there is no future, this method waits for one to arrive, returning 
+   * null if none arrives within the configured wait time. If an engine 
+   * worker completes a request while this method is waiting, it returns 
+   * immediately so the engine can return the response.
+   * 
+   * <p>Requests whose callers stopped waiting for a response are discarded.
    * 
    * @see coyote.dx.FrameReader#read(coyote.dx.context.TransactionContext)
    */
   @Override
   public DataFrame read(TransactionContext context) {
-    HttpFuture future = queue.poll();
+    HttpFuture future = null;
     DataFrame retval = null;
 
-    if (future == null) {
-      // wait a short time before returning a null frame to keep the job from running hot
-      try {
-        Thread.sleep(250);
-      } catch (InterruptedException ignore) {}
+    try {
+      future = queue.poll(wait, TimeUnit.MILLISECONDS);
+      while (future != null && (future == WAKE_UP || future.isTimedOut())) {
+        if (future == WAKE_UP) {
+          wakePending.set(false);
+        } else {
+          Log.debug("Discarding timed-out request for '" + future.getRequestUri() + "'");
+        }
+        future = queue.poll();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
 
     if (future != null) {
+      outstanding.incrementAndGet();
       retval = future.getDataFrame();
 
       // Set request arguments in the transaction context
@@ -451,8 +617,6 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
    */
   private class ResponseGenerator extends AbstractListener implements ContextListener {
 
-    List<String> validationErrors = new ArrayList<String>();
-
 
 
 
@@ -467,6 +631,7 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
         HttpFuture future = (HttpFuture)context.get(HTTP_FUTURE);
 
         if (future != null) {
+          outstanding.decrementAndGet();
           DataFrame result = ((TransactionContext)context).getProcessingResult();
           if (result == null) {
             if (future.isProcessed()) {
@@ -514,8 +679,13 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
     /**
      * @see coyote.dx.listener.AbstractListener#onValidationFailed(coyote.dx.context.OperationalContext, coyote.dx.FrameValidator, java.lang.String)
      */
+    @SuppressWarnings("unchecked")
     @Override
     public void onValidationFailed(OperationalContext context, FrameValidator validator, String msg) {
+      TransactionContext txnContext = getTransaction(context);
+      if (txnContext == null) {
+        return;
+      }
       StringBuffer b = new StringBuffer();
       b.append("Field '");
       b.append(validator.getFieldName());
@@ -523,6 +693,14 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
       b.append(validator.getClass().getSimpleName());
       b.append("' check: ");
       b.append(validator.getDescription());
+
+      // workers may be validating several requests at once, so the errors 
+      // are kept with the transaction of each request
+      List<String> validationErrors = (List<String>)txnContext.get(HTTP_VALIDATION_ERRORS);
+      if (validationErrors == null) {
+        validationErrors = new ArrayList<String>();
+        txnContext.set(HTTP_VALIDATION_ERRORS, validationErrors);
+      }
       validationErrors.add(b.toString());
     }
 
@@ -532,19 +710,38 @@ public class HttpReader extends AbstractFrameReader implements FrameReader {
     /**
      * @see coyote.dx.listener.AbstractListener#onFrameValidationFailed(coyote.dx.context.TransactionContext)
      */
+    @SuppressWarnings("unchecked")
     @Override
     public void onFrameValidationFailed(TransactionContext context) {
       DataFrame errorFrame = getOrCreateErrorFrame(context);
 
       // add each validation error to the validation error field in the error frame
       DataFrame errors = new DataFrame();
-      for (int x = 0; x < validationErrors.size(); x++) {
-        errors.add(validationErrors.get(x));
+      List<String> validationErrors = (List<String>)context.get(HTTP_VALIDATION_ERRORS);
+      if (validationErrors != null) {
+        for (int x = 0; x < validationErrors.size(); x++) {
+          errors.add(validationErrors.get(x));
+        }
+        // clear out the collected errors
+        validationErrors.clear();
       }
       errorFrame.put("ValidationError", errors);
+    }
+
+
 
-      // clear out the collected errors
-      validationErrors.clear();
+
+    /**
+     * Validation events are fired in the transform context, so use the 
+     * transaction bound to the current thread.
+     */
+    private TransactionContext getTransaction(OperationalContext context) {
+      if (context instanceof TransactionContext) {
+        return (TransactionContext)context;
+      } else if (context instanceof TransformContext) {
+        return ((TransformContext)context).getTransaction();
+      }
+      return null;
     }
 
 
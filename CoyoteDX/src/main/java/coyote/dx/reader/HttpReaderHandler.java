@@ -24,7 +24,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.BlockingQueue;
 
 
 /**
@@ -39,14 +39,27 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * 
  * <p>This class will be used by the HTTP Server Request thread, marshaling 
  * the request into a data frame and placing it in a future object. This then 
- * blocks on that future while the single threaded engine processes the 
- * futures in its queue. The Reader in the engine generates Responses based on 
- * the results of the engine processing the data frame inside the future. The 
- * result is many threads blocking while the engine thread processes each data 
- * frame in the order it was received. 
+ * blocks on that future while the engine processes the futures in its queue. 
+ * The Reader in the engine generates Responses based on the results of the 
+ * engine processing the data frame inside the future. The result is many 
+ * threads blocking while the engine thread (or its workers) processes each 
+ * data frame in the order it was received. 
+ * 
+ * <p>The queue is bounded. If it is full, the request is rejected immediately 
+ * with a 503 (Service Unavailable) response so callers can back off instead 
+ * of waiting for a time-out. 
  */
 public class HttpReaderHandler extends AbstractCoyoteResponder implements Responder {
   private static final int TWO_MINUTES = 120000;
+  private static final String RETRY_AFTER = "Retry-After";
+
+  /** Reports requests which were processed after the client was told they timed out */
+  private static final HttpFuture.ResponseListener LATE_RESPONSE = new HttpFuture.ResponseListener() {
+    @Override
+    public void onResponse(final HttpFuture future, final Response response) {
+      Log.warn("Request for '" + future.getRequestUri() + "' was processed after it timed out; its response was not sent");
+    }
+  };
 
 
 
@@ -57,7 +70,7 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
   @Override
   public Response delete(final Resource resource, final Map<String, String> urlParams, final HTTPSession session) {
     @SuppressWarnings("unchecked")
-    final ConcurrentLinkedQueue<HttpFuture> queue = resource.initParameter(0, ConcurrentLinkedQueue.class);
+    final BlockingQueue<HttpFuture> queue = resource.initParameter(0, BlockingQueue.class);
     final int timeout = resource.initParameter(1, Integer.class);
     return handleRequest(HTTP.METHOD_DELETE, determineEndpoint(resource.getUri()), session, urlParams, queue, timeout);
   }
@@ -71,7 +84,7 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
   @Override
   public Response get(final Resource resource, final Map<String, String> urlParams, final HTTPSession session) {
     @SuppressWarnings("unchecked")
-    final ConcurrentLinkedQueue<HttpFuture> queue = resource.initParameter(0, ConcurrentLinkedQueue.class);
+    final BlockingQueue<HttpFuture> queue = resource.initParameter(0, BlockingQueue.class);
     final int timeout = resource.initParameter(1, Integer.class);
     return handleRequest(HTTP.METHOD_GET, determineEndpoint(resource.getUri()), session, urlParams, queue, timeout);
   }
@@ -85,7 +98,7 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
   @Override
   public Response other(final String method, final Resource resource, final Map<String, String> urlParams, final HTTPSession session) {
     @SuppressWarnings("unchecked")
-    final ConcurrentLinkedQueue<HttpFuture> queue = resource.initParameter(0, ConcurrentLinkedQueue.class);
+    final BlockingQueue<HttpFuture> queue = resource.initParameter(0, BlockingQueue.class);
     final int timeout = resource.initParameter(1, Integer.class);
     return handleRequest(method.toUpperCase(), determineEndpoint(resource.getUri()), session, urlParams, queue, timeout);
   }
@@ -99,7 +112,7 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
   @Override
   public Response post(final Resource resource, final Map<String, String> urlParams, final HTTPSession session) {
     @SuppressWarnings("unchecked")
-    final ConcurrentLinkedQueue<HttpFuture> queue = resource.initParameter(0, ConcurrentLinkedQueue.class);
+    final BlockingQueue<HttpFuture> queue = resource.initParameter(0, BlockingQueue.class);
     final int timeout = resource.initParameter(1, Integer.class);
     return handleRequest(HTTP.METHOD_POST, determineEndpoint(resource.getUri()), session, urlParams, queue, timeout);
   }
@@ -113,7 +126,7 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
   @Override
   public Response put(final Resource resource, final Map<String, String> urlParams, final HTTPSession session) {
     @SuppressWarnings("unchecked")
-    final ConcurrentLinkedQueue<HttpFuture> queue = resource.initParameter(0, ConcurrentLinkedQueue.class);
+    final BlockingQueue<HttpFuture> queue = resource.initParameter(0, BlockingQueue.class);
     final int timeout = resource.initParameter(1, Integer.class);
     return handleRequest(HTTP.METHOD_PUT, determineEndpoint(resource.getUri()), session, urlParams, queue, timeout);
   }
@@ -160,11 +173,13 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
    * @param method HTTP method (GET, POST, PUT, etc.) called
    * @param resource the name of the resource requested
    * @param session the session representing the HTTP request
+   * @param urlParams the parameters parsed from the URL
+   * @param queue the queue of requests waiting for the reader
    * @param timeout how long to wait for the completion of the future
    *
    * @return the HTTP response with the results of processing.
    */
-  private Response handleRequest(final String method, final String resource, final HTTPSession session, final Map<String, String> urlParams, final ConcurrentLinkedQueue<HttpFuture> queue, final int timeout) {
+  private Response handleRequest(final String method, final String resource, final HTTPSession session, final Map<String, String> urlParams, final BlockingQueue<HttpFuture> queue, final int timeout) {
     int millis = timeout;
 
     // prevent infinite and excessive blocking
@@ -208,20 +223,7 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
       future.setFrame(dframe);
 
       if (future.getFrame().getFieldCount() > 0) {
-        queue.add(future);
-
-        // wait for a response, but only for the timeout period
-        retval = future.getResponse(millis);
-
-        if (retval == null) {
-          if( future.isTimedOut()){
-            setResults(new DataFrame().set(HttpReader.STATUS, HttpReader.ERROR).set(HttpReader.MESSAGE, "Transform did not return a result within the time-out period"));
-            retval = Response.createFixedLengthResponse(Status.UNAVAILABLE, getMimeType(), getText());
-          } else {
-            setResults(new DataFrame().set(HttpReader.STATUS, HttpReader.PROCESSED));
-            retval = Response.createFixedLengthResponse(Status.NO_CONTENT, getMimeType(), getText());
-          }
-        }
+        retval = dispatch(future, queue, millis);
       } else {
         setResults(new DataFrame().set(HttpReader.STATUS, HttpReader.ERROR).set(HttpReader.MESSAGE, "No data to process"));
         retval = Response.createFixedLengthResponse(Status.BAD_REQUEST, getMimeType(), getText());
@@ -233,6 +235,47 @@ public class HttpReaderHandler extends AbstractCoyoteResponder implements Respon
 
 
 
+  /**
+   * Place the future in the queue for the reader and wait for its response.
+   *
+   * <p>If the queue is full, the request is rejected immediately with a 503
+   * (Service Unavailable) response and a Retry-After header.</p>
+   *
+   * @param future the future containing the request data
+   * @param queue the queue of requests waiting for the reader
+   * @param millis how long to wait for the completion of the future
+   *
+   * @return the HTTP response with the results of processing.
+   */
+  Response dispatch(final HttpFuture future, final BlockingQueue<HttpFuture> queue, final int millis) {
+    Response retval = null;
+    if (queue.offer(future)) {
+      // wait for a response, but only for the timeout period
+      retval = future.getResponse(millis);
+    } else {
+      Log.warn("Request queue is full, rejecting request for '" + future.getRequestUri() + "'");
+      setResults(new DataFrame().set(HttpReader.STATUS, HttpReader.ERROR).set(HttpReader.MESSAGE, "Too many requests are waiting to be processed, try again later"));
+      retval = Response.createFixedLengthResponse(Status.UNAVAILABLE, getMimeType(), getText());
+      retval.addHeader(RETRY_AFTER, "1");
+    }
+
+    if (retval == null) {
+      if( future.isTimedOut()){
+        // the reader still has the request; report it if it is processed after all
+        future.onComplete(LATE_RESPONSE);
+        setResults(new DataFrame().set(HttpReader.STATUS, HttpReader.ERROR).set(HttpReader.MESSAGE, "Transform did not return a result within the time-out period"));
+        retval = Response.createFixedLengthResponse(Status.UNAVAILABLE, getMimeType(), getText());
+      } else {
+        setResults(new DataFrame().set(HttpReader.STATUS, HttpReader.PROCESSED));
+        retval = Response.createFixedLengthResponse(Status.NO_CONTENT, getMimeType(), getText());
+      }
+    }
+    return retval;
+  }
+
+
+
+
   private static String determineEndpoint(String entryUri) {
     String retval = entryUri;
 
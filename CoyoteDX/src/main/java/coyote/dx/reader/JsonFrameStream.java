@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.reader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import coyote.commons.StringUtil;
+import coyote.dataframe.DataField;
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * Parses frames from a JSON document one record at a time.
+ *
+ * <p>The document is tokenized incrementally from the reader so only the
+ * record currently being parsed is held in memory, no matter how large the
+ * document is. Without a selector, each element of a root array is a record,
+ * a root object is a single record and a sequence of root objects (one per
+ * line for example) are each a record.</p>
+ *
+ * <p>With a selector, the records are the values at the matching path. The
+ * selector is a dot-separated list of field names, array indexes or
+ * {@code *} which matches any name or index. For example, {@code issues.*}
+ * returns each element of the {@code issues} array and
+ * {@code CVE_Items.*.cve} returns the {@code cve} object of each element of
+ * the {@code CVE_Items} array. Values which are not on the path to a match
+ * are skipped without being parsed into frames.</p>
+ */
+public class JsonFrameStream implements FrameStream {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final String WILDCARD = "*";
+
+  private final Reader reader;
+  private final String[] selector;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder text = new StringBuilder();
+
+  /** The arrays and objects enclosing the current position. */
+  private final List<Level> levels = new ArrayList<Level>();
+
+  private int position = 0;
+  private int limit = 0;
+  private long offset = 0;
+
+
+
+
+  /**
+   * @param reader the source of the JSON document
+   * @param selector the path to the records, may be null
+   */
+  public JsonFrameStream(Reader reader, String selector) {
+    this.reader = reader;
+    this.selector = StringUtil.isNotBlank(selector) ? selector.trim().split("\\.") : null;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.reader.FrameStream#next()
+   */
+  @Override
+  public DataFrame next() throws IOException {
+    while (true) {
+      int c = skipWhitespace();
+
+      if (levels.isEmpty()) {
+        if (c == -1) {
+          return null;
+        }
+        if (c == '[' || (selector != null && c == '{')) {
+          read();
+          levels.add(new Level(c == '['));
+        } else {
+          Object value = parseValue();
+          if (value instanceof DataFrame && selector == null) {
+            return (DataFrame)value;
+          }
+        }
+        continue;
+      }
+
+      Level level = levels.get(levels.size() - 1);
+      if (c == -1) {
+        throw error("unexpected end of document");
+      }
+      if (c == (level.array ? ']' : '}')) {
+        read();
+        levels.remove(levels.size() - 1);
+        continue;
+      }
+      if (level.count > 0) {
+        expect(',');
+      }
+      String name;
+      if (level.array) {
+        name = Integer.toString(level.count);
+      } else {
+        name = parseString();
+        expect(':');
+      }
+      level.count++;
+
+      // the length of the path to this value
+      int depth = levels.size();
+      if (selector == null || (depth == selector.length && matches(depth, name))) {
+        Object value = parseValue();
+        if (value instanceof DataFrame) {
+          return (DataFrame)value;
+        }
+      } else if (depth < selector.length && matches(depth, name) && (skipWhitespace() == '{' || skipWhitespace() == '[')) {
+        levels.add(new Level(read() == '['));
+      } else {
+        skipValue();
+      }
+    }
+  }
+
+
+
+
+  /**
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+
+
+
+  private boolean matches(int depth, String name) {
+    String segment = selector[depth - 1];
+    return WILDCARD.equals(segment) || segment.equals(name);
+  }
+
+
+
+
+  private Object parseValue() throws IOException {
+    int c = skipWhitespace();
+    switch (c) {
+      case '{':
+        return parseObject();
+      case '[':
+        return parseArray();
+      case '"':
+        return parseString();
+      case 't':
+        parseLiteral("true");
+        return Boolean.TRUE;
+      case 'f':
+        parseLiteral("false");
+        return Boolean.FALSE;
+      case 'n':
+        parseLiteral("null");
+        return null;
+      case -1:
+        throw error("unexpected end of document");
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          return parseNumber();
+        }
+        throw error("unexpected character '" + (char)c + "'");
+    }
+  }
+
+
+
+
+  private DataFrame parseObject() throws IOException {
+    DataFrame retval = new DataFrame();
+    read();
+    if (skipWhitespace() == '}') {
+      read();
+      return retval;
+    }
+    while (true) {
+      String name = parseString();
+      expect(':');
+      retval.add(name, parseValue());
+      int c = skipWhitespace();
+      read();
+      if (c == '}') {
+        return retval;
+      } else if (c != ',') {
+        throw error("expected ',' or '}'");
+      }
+    }
+  }
+
+
+
+
+  private DataFrame parseArray() throws IOException {
+    DataFrame retval = new DataFrame();
+    read();
+    if (skipWhitespace() == ']') {
+      read();
+      return retval;
+    }
+    while (true) {
+      retval.add(new DataField(null, parseValue()));
+      int c = skipWhitespace();
+      read();
+      if (c == ']') {
+        return retval;
+      } else if (c != ',') {
+        throw error("expected ',' or ']'");
+      }
+    }
+  }
+
+
+
+
+  private String parseString() throws IOException {
+    if (skipWhitespace() != '"') {
+      throw error("expected a string");
+    }
+    read();
+    text.setLength(0);
+    while (true) {
+      int c = read();
+      if (c == '"') {
+        return text.toString();
+      } else if (c == '\\') {
+        c = read();
+        switch (c) {
+          case 'b':
+            text.append('\b');
+            break;
+          case 'f':
+            text.append('\f');
+            break;
+          case 'n':
+            text.append('\n');
+            break;
+          case 'r':
+            text.append('\r');
+            break;
+          case 't':
+            text.append('\t');
+            break;
+          case 'u':
+            int code = 0;
+            for (int x = 0; x < 4; x++) {
+              int digit = Character.digit(read(), 16);
+              if (digit < 0) {
+                throw error("invalid unicode escape");
+              }
+              code = (code << 4) + digit;
+            }
+            text.append((char)code);
+            break;
+          case -1:
+            throw error("unterminated string");
+          default:
+            text.append((char)c);
+            break;
+        }
+      } else if (c == -1) {
+        throw error("unterminated string");
+      } else {
+        text.append((char)c);
+      }
+    }
+  }
+
+
+
+
+  private Object parseNumber() throws IOException {
+    text.setLength(0);
+    boolean decimal = false;
+    int c = peek();
+    while ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+      if (c == '.' || c == 'e' || c == 'E') {
+        decimal = true;
+      }
+      text.append((char)read());
+      c = peek();
+    }
+    String number = text.toString();
+    try {
+      if (!decimal) {
+        long value = Long.parseLong(number);
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+          return (int)value;
+        }
+        return value;
+      }
+      return Double.valueOf(number);
+    } catch (NumberFormatException e) {
+      try {
+        return Double.valueOf(number);
+      } catch (NumberFormatException ignore) {
+        throw error("invalid number '" + number + "'");
+      }
+    }
+  }
+
+
+
+
+  private void parseLiteral(String literal) throws IOException {
+    for (int x = 0; x < literal.length(); x++) {
+      if (read() != literal.charAt(x)) {
+        throw error("expected '" + literal + "'");
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Move past the next value without creating any objects for it.
+   */
+  private void skipValue() throws IOException {
+    int c = skipWhitespace();
+    if (c != '{' && c != '[') {
+      parseValue();
+      return;
+    }
+    int depth = 0;
+    do {
+      c = skipWhitespace();
+      if (c == -1) {
+        throw error("unexpected end of document");
+      } else if (c == '"') {
+        read();
+        for (c = read(); c != '"'; c = read()) {
+          if (c == '\\') {
+            c = read();
+          }
+          if (c == -1) {
+            throw error("unterminated string");
+          }
+        }
+      } else {
+        read();
+        if (c == '{' || c == '[') {
+          depth++;
+        } else if (c == '}' || c == ']') {
+          depth--;
+        }
+      }
+    }
+    while (depth > 0);
+  }
+
+
+
+
+  private void expect(char expected) throws IOException {
+    if (skipWhitespace() != expected) {
+      throw error("expected '" + expected + "'");
+    }
+    read();
+  }
+
+
+
+
+  private int skipWhitespace() throws IOException {
+    int c = peek();
+    while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+      position++;
+      c = peek();
+    }
+    return c;
+  }
+
+
+
+
+  private int peek() throws IOException {
+    if (position >= limit) {
+      offset += limit;
+      position = 0;
+      limit = Math.max(0, reader.read(buffer, 0, buffer.length));
+      if (limit == 0) {
+        return -1;
+      }
+    }
+    return buffer[position];
+  }
+
+
+
+
+  private int read() throws IOException {
+    int retval = peek();
+    if (retval != -1) {
+      position++;
+    }
+    return retval;
+  }
+
+
+
+
+  private IOException error(String message) {
+    return new IOException("Invalid JSON at character " + (offset + position) + ": " + message);
+  }
+
+
+
+
+  /**
+   * An array or object enclosing the current position in the document.
+   */
+  private static class Level {
+    final boolean array;
+    int count = 0;
+
+
+
+
+    Level(boolean array) {
+      this.array = array;
+    }
+  }
+
+}
@@ -7,6 +7,7 @@
  */
 package coyote.dx.reader;
 
+import java.io.Reader;
 import java.util.List;
 
 import coyote.dataframe.DataFrame;
@@ -22,6 +23,12 @@ import coyote.dx.FrameReader;
  * <pre>"Reader": { "class": "JsonReader", "source": "requestmetric.json" },</pre>
  * <p>Ths reader support the ability to flatten hierarchical records (complex objects) into a single flat (single level)
  * record format. This is turned on by default. This capability is provided by the MarshalingFrameReader super class.
+ *
+ * <p>By default the entire document is loaded into memory. Large documents can be streamed, one record at a time, by
+ * setting {@code preload} to false:
+ * <pre>"Reader": { "class": "JsonReader", "source": "nvdcve.json", "preload": false, "Selector": "CVE_Items.*.cve" },</pre>
+ * <p>When streaming, the selector is a dot-separated path of field names where {@code *} matches any field or array
+ * element. Without a selector, each element of a root array or each root object is a record.
  */
 public class JsonReader extends MarshalingFrameReader implements FrameReader, ConfigurableComponent {
 
@@ -33,4 +40,15 @@ public class JsonReader extends MarshalingFrameReader implements FrameReader, Co
     return JSONMarshaler.marshal(data);
   }
 
+
+
+
+  /**
+   * @see coyote.dx.reader.MarshalingFrameReader#getStream(java.io.Reader, java.lang.String)
+   */
+  @Override
+  protected FrameStream getStream(Reader reader, String selector) {
+    return new JsonFrameStream(reader, selector);
+  }
+
 }
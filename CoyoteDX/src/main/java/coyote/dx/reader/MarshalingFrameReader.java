@@ -23,14 +23,26 @@ import coyote.dx.context.TransformContext;
 import coyote.loader.log.Log;
 import coyote.loader.log.LogMsg;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
 
 /**
- * TODO: Make into a streaming reader with preload optional.
+ * Base class for readers which marshal a document into frames.
+ *
+ * <p>By default the whole document is loaded and marshaled into memory when 
+ * the reader is opened. Setting {@code preload} to false reads the document 
+ * as a stream, parsing one record at a time, so documents larger than the 
+ * heap can be read. Streaming is only available when the subclass provides 
+ * a {@link FrameStream} for its format.
  */
 public abstract class MarshalingFrameReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent {
 
@@ -39,7 +51,10 @@ public abstract class MarshalingFrameReader extends AbstractFrameReader implemen
   private volatile DataFrame nextFrame = null;
 
   /** Flag indicating all data should be loaded into and read from memory. */
-  private final boolean preload = true; // we only support buffered reads
+  private boolean preload = true;
+
+  /** The stream of frames when not preloading. */
+  private FrameStream stream = null;
 
   /** Flag indicating the frame should be be flattened to a single level of fields. */
   private boolean flatten = true;
@@ -61,14 +76,14 @@ public abstract class MarshalingFrameReader extends AbstractFrameReader implemen
       retval = null;
     }
     currentFrame++;
-    if (preload) {
+    if (stream == null) {
       if (currentFrame < buffer.size()) {
         nextFrame = buffer.get(currentFrame);
       } else {
         nextFrame = null;
       }
     } else {
-      Log.warn("Whoa! We don't support streaming yet");
+      nextFrame = readStream();
     }
 
     // Support the concept of last frame    
@@ -105,6 +120,10 @@ public abstract class MarshalingFrameReader extends AbstractFrameReader implemen
     if(getConfiguration().containsIgnoreCase(ConfigTag.FLATTEN)){
       flatten = getBoolean(ConfigTag.FLATTEN);
     }
+    if (getConfiguration().containsIgnoreCase(ConfigTag.PRELOAD)) {
+      preload = getBoolean(ConfigTag.PRELOAD);
+    }
+    Log.debug(LogMsg.createMsg(CDX.MSG, "Reader.preload_is", preload));
 
     // check for a source in our configuration, if not there use the transform 
     // context as it may have been set by a previous operation
@@ -142,25 +161,46 @@ public abstract class MarshalingFrameReader extends AbstractFrameReader implemen
 
       // Basic checks
       if (sourceFile.exists() && sourceFile.canRead()) {
-        String data = FileUtil.fileToString(sourceFile);
-        Log.debug("Read in " + data.length() + " characters of data");
-
-        List<DataFrame> frames = getFrames(data);
-        Log.debug("Read in " + frames.size() + " frames");
-        DataFrame frame = frames.get(0);
-
-        String pattern = getString(ConfigTag.SELECTOR);
-        if (StringUtil.isNotBlank(pattern)) {
-          FrameSelector selector = new FrameSelector(pattern, CDX.DEFAULT_FRAMEPATH_NAME);
-          List<DataFrame> results = selector.select(frame);
-          Log.debug("Selected " + results.size() + " frames");
-          frames = results;
+        boolean streaming = false;
+        if (!preload) {
+          try {
+            Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(sourceFile), Charset.forName("UTF-8")));
+            stream = getStream(reader, getString(ConfigTag.SELECTOR));
+            if (stream == null) {
+              reader.close();
+              Log.warn(getClass().getSimpleName() + " does not support streaming, preloading " + sourceFile.getAbsolutePath());
+            } else {
+              Log.info("Streaming frames from " + sourceFile.getAbsolutePath());
+              streaming = true;
+              nextFrame = readStream();
+            }
+          } catch (IOException e) {
+            context.setError(LogMsg.createMsg(CDX.MSG, "Reader.could_not_read_from_source", getClass().getName(), sourceFile.getAbsolutePath()).toString());
+            return;
+          }
         }
 
-        if (frames.size() > 0) {
-          buffer.addAll(frames);
-          Log.info("Preloaded " + buffer.size() + " frames");
-          nextFrame = buffer.get(currentFrame);
+        if (!streaming) {
+          String data = FileUtil.fileToString(sourceFile);
+          Log.debug("Read in " + data.length() + " characters of data");
+
+          List<DataFrame> frames = getFrames(data);
+          Log.debug("Read in " + frames.size() + " frames");
+          DataFrame frame = frames.get(0);
+
+          String pattern = getString(ConfigTag.SELECTOR);
+          if (StringUtil.isNotBlank(pattern)) {
+            FrameSelector selector = new FrameSelector(pattern, CDX.DEFAULT_FRAMEPATH_NAME);
+            List<DataFrame> results = selector.select(frame);
+            Log.debug("Selected " + results.size() + " frames");
+            frames = results;
+          }
+
+          if (frames.size() > 0) {
+            buffer.addAll(frames);
+            Log.info("Preloaded " + buffer.size() + " frames");
+            nextFrame = buffer.get(currentFrame);
+          }
         }
 
       } else {
@@ -183,4 +223,70 @@ public abstract class MarshalingFrameReader extends AbstractFrameReader implemen
     return JSONMarshaler.marshal(data);
   }
 
+
+
+
+  /**
+   * Create a stream of frames from the document in the given reader.
+   *
+   * <p>Subclasses which can parse their format incrementally override this
+   * to support reading with {@code preload} set to false. This default
+   * implementation returns null, meaning the document will be preloaded.</p>
+   *
+   * @param reader the source of the document
+   * @param selector the path to the records in the document, may be null
+   *
+   * @return a stream of frames or null if streaming is not supported
+   *
+   * @throws IOException if the stream could not be created
+   */
+  protected FrameStream getStream(Reader reader, String selector) throws IOException {
+    return null;
+  }
+
+
+
+
+  /**
+   * Read the next frame from the stream, closing it at the end.
+   */
+  private DataFrame readStream() {
+    DataFrame retval = null;
+    try {
+      retval = stream.next();
+    } catch (IOException e) {
+      getContext().setError(getClass().getSimpleName() + " could not read from source: " + e.getMessage());
+    }
+    if (retval == null) {
+      closeStream();
+    }
+    return retval;
+  }
+
+
+
+
+  private void closeStream() {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (IOException ignore) {
+        // nothing to do
+      }
+      stream = null;
+    }
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.reader.AbstractFrameReader#close()
+   */
+  @Override
+  public void close() throws IOException {
+    closeStream();
+    super.close();
+  }
+
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.reader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import coyote.commons.StringUtil;
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * Parses frames from an XML document one element at a time with a StAX pull
+ * parser.
+ *
+ * <p>Only the element currently being parsed into a frame is held in memory;
+ * elements which are not on the selector path are read past without being
+ * built into frames, so memory use does not grow with the document and the
+ * first frame is returned as soon as its element has been read.</p>
+ *
+ * <p>The selector is a dot-separated list of element names starting with
+ * the root element where {@code *} matches any name. For example,
+ * {@code feed.entry} returns each {@code entry} element of a {@code feed}
+ * document. Without a selector, each child of the root element is a
+ * record.</p>
+ *
+ * <p>The attributes and child elements of a record become its fields. A
+ * child element with neither attributes nor children becomes a field with
+ * its text as the value, otherwise it becomes a nested frame. The text of an
+ * element which also has attributes is placed in a field named
+ * {@value #TEXT_FIELD}.</p>
+ */
+public class XmlFrameStream implements FrameStream {
+
+  /** The name of the field holding the text of elements with attributes. */
+  public static final String TEXT_FIELD = "value";
+
+  private static final String WILDCARD = "*";
+  private static final String[] CHILDREN_OF_ROOT = {WILDCARD, WILDCARD};
+
+  private final Reader reader;
+  private final XMLStreamReader parser;
+  private final String[] selector;
+
+  /** The depth of the current element, the root element being 1. */
+  private int depth = 0;
+
+
+
+
+  /**
+   * @param reader the source of the XML document
+   * @param selector the path to the record elements, may be null
+   *
+   * @throws IOException if the parser could not be created
+   */
+  public XmlFrameStream(Reader reader, String selector) throws IOException {
+    this.reader = reader;
+    this.selector = StringUtil.isNotBlank(selector) ? selector.trim().split("\\.") : CHILDREN_OF_ROOT;
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    try {
+      parser = factory.createXMLStreamReader(reader);
+    } catch (XMLStreamException e) {
+      throw new IOException("Could not create XML parser: " + e.getMessage(), e);
+    }
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.reader.FrameStream#next()
+   */
+  @Override
+  public DataFrame next() throws IOException {
+    try {
+      while (parser.hasNext()) {
+        int event = parser.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (!matches(depth, parser.getLocalName())) {
+            skipElement();
+            depth--;
+          } else if (depth == selector.length) {
+            DataFrame retval = readRecord();
+            depth--;
+            return retval;
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+      return null;
+    } catch (XMLStreamException e) {
+      throw new IOException("Invalid XML: " + e.getMessage(), e);
+    }
+  }
+
+
+
+
+  /**
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      parser.close();
+    } catch (XMLStreamException e) {
+      // the reader is closed below
+    }
+    reader.close();
+  }
+
+
+
+
+  private boolean matches(int depth, String name) {
+    if (depth > selector.length) {
+      return false;
+    }
+    String segment = selector[depth - 1];
+    return WILDCARD.equals(segment) || segment.equals(name);
+  }
+
+
+
+
+  /**
+   * Read the current element into a frame, leaving the parser on its end
+   * tag.
+   */
+  private DataFrame readRecord() throws XMLStreamException {
+    DataFrame retval = readAttributes();
+    String text = readContent(retval);
+    if (text != null) {
+      retval.add(TEXT_FIELD, text);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Read the value of the current element, a string if it is only text or a
+   * frame if it has attributes or children.
+   */
+  private Object readValue() throws XMLStreamException {
+    DataFrame frame = readAttributes();
+    String text = readContent(frame);
+    if (frame.getFieldCount() == 0) {
+      return text;
+    }
+    if (text != null) {
+      frame.add(TEXT_FIELD, text);
+    }
+    return frame;
+  }
+
+
+
+
+  private DataFrame readAttributes() {
+    DataFrame retval = new DataFrame();
+    for (int x = 0; x < parser.getAttributeCount(); x++) {
+      retval.add(parser.getAttributeLocalName(x), parser.getAttributeValue(x));
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Add the child elements of the current element to the given frame and
+   * return its text, if any.
+   */
+  private String readContent(DataFrame frame) throws XMLStreamException {
+    StringBuilder text = null;
+    while (true) {
+      int event = parser.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String name = parser.getLocalName();
+        frame.add(name, readValue());
+      } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+        if (!parser.isWhiteSpace()) {
+          if (text == null) {
+            text = new StringBuilder();
+          }
+          text.append(parser.getText());
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        return text != null ? text.toString().trim() : null;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Move past the current element without building anything from it.
+   */
+  private void skipElement() throws XMLStreamException {
+    int level = 1;
+    while (level > 0) {
+      int event = parser.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        level++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        level--;
+      }
+    }
+  }
+
+}
@@ -7,6 +7,8 @@
  */
 package coyote.dx.reader;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.List;
 
 import coyote.dataframe.DataFrame;
@@ -20,6 +22,12 @@ import coyote.dx.FrameReader;
  *
  * Ths reader support the ability to flatten hierarchical records (complex objects) into a single flat (single level)
  * record format. This is turned on by default. This capability is provided by the MarshalingFrameReader super class.
+ *
+ * <p>By default the entire document is loaded into memory. Large documents can be streamed with a pull parser, one
+ * element at a time, by setting {@code preload} to false:
+ * <pre>"Reader": { "class": "XmlReader", "source": "feed.xml", "preload": false, "Selector": "feed.entry" },</pre>
+ * <p>When streaming, the selector is a dot-separated path of element names starting with the root element where
+ * {@code *} matches any name. Without a selector, each child of the root element is a record.
  */
 
 public class XmlReader extends MarshalingFrameReader implements FrameReader, ConfigurableComponent {
@@ -32,4 +40,15 @@ public class XmlReader extends MarshalingFrameReader implements FrameReader, Con
     return XMLMarshaler.marshal(data);
   }
 
+
+
+
+  /**
+   * @see coyote.dx.reader.MarshalingFrameReader#getStream(java.io.Reader, java.lang.String)
+   */
+  @Override
+  protected FrameStream getStream(Reader reader, String selector) throws IOException {
+    return new XmlFrameStream(reader, selector);
+  }
+
 }
@@ -84,6 +84,15 @@ public abstract class AbstractFieldTransform extends AbstractFrameTransform impl
     // set the transform context in the evaluator so it can resolve variables
     evaluator.setContext(context);
 
+    // parse the condition now instead of on the first frame
+    if (StringUtil.isNotBlank(expression)) {
+      try {
+        evaluator.prepareBoolean(expression);
+      } catch (final IllegalArgumentException e) {
+        context.setError("Invalid boolean expression in transform: " + e.getMessage());
+      }
+    }
+
   }
 
 
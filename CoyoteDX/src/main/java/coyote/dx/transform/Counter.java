@@ -10,6 +10,7 @@ package coyote.dx.transform;
 import coyote.dataframe.DataFrame;
 import coyote.dx.ConfigTag;
 import coyote.dx.FrameTransform;
+import coyote.dx.ThreadSafety;
 import coyote.dx.TransformException;
 import coyote.dx.context.TransformContext;
 import coyote.loader.cfg.Config;
@@ -25,7 +26,7 @@ import coyote.loader.cfg.ConfigurationException;
  * "Counter": { "field": "RecordNumber", "step": 5}
  * "Counter": { "field": "RecordNumber", "stop": 99999999}</pre>
  */
-public class Counter extends AbstractFieldTransform implements FrameTransform {
+public class Counter extends AbstractFieldTransform implements FrameTransform, ThreadSafety {
   private static final String STEP = "step";
   private long step = 1L;
   private long start = 0L;
@@ -118,4 +119,17 @@ public class Counter extends AbstractFieldTransform implements FrameTransform {
     this.stop = stop;
   }
 
+
+
+
+  /**
+   * The sequence must be shared by all workers, so calls are serialized.
+   * 
+   * @see coyote.dx.ThreadSafety#getThreadPolicy()
+   */
+  @Override
+  public Policy getThreadPolicy() {
+    return Policy.SERIAL;
+  }
+
 }
@@ -11,6 +11,7 @@ import coyote.commons.GUID;
 import coyote.dataframe.DataFrame;
 import coyote.dx.ConfigTag;
 import coyote.dx.FrameTransform;
+import coyote.dx.ThreadSafety;
 import coyote.dx.TransformException;
 import coyote.loader.cfg.Config;
 import coyote.loader.cfg.ConfigurationException;
@@ -23,7 +24,7 @@ import coyote.loader.cfg.ConfigurationException;
  * "Guid": { "field": "RecordId"}
  * "Guid": { "field": "RecordId", "secure": true }</pre>
  */
-public class Guid extends AbstractFieldTransform implements FrameTransform {
+public class Guid extends AbstractFieldTransform implements FrameTransform, ThreadSafety {
   private boolean secure = false;
 
 
@@ -71,4 +72,18 @@ public class Guid extends AbstractFieldTransform implements FrameTransform {
     return retval;
   }
 
+
+
+
+  /**
+   * The random generators of GUID are shared by every instance and are not
+   * documented to be thread-safe, so calls are serialized.
+   * 
+   * @see coyote.dx.ThreadSafety#getThreadPolicy()
+   */
+  @Override
+  public Policy getThreadPolicy() {
+    return Policy.SERIAL;
+  }
+
 }
@@ -48,12 +48,10 @@ public class Numeric extends AbstractFieldTransform implements FrameTransform {
       switch (format) {
         case NOW_JAVA:
         case NOW_MILLISECONDS:
-          System.out.println("NOW_JAVA");
           field = setNowMilliseconds(field);
           break;
         case NOW_SECONDS:
         case NOW_UNIX:
-          System.out.println("NOW_UNIX");
           field = setNowSeconds(field);
           break;
         default:
@@ -63,7 +61,6 @@ public class Numeric extends AbstractFieldTransform implements FrameTransform {
     } else
 
     {
-      System.out.println("No format");
       field = processField(field);
     }
 
@@ -7,14 +7,19 @@
  */
 package coyote.dx.validate;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
 
 import coyote.commons.StringUtil;
+import coyote.commons.sketch.BloomFilter;
+import coyote.commons.sketch.FingerprintSet;
 import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
 import coyote.dx.FrameValidator;
+import coyote.dx.ThreadSafety;
 import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
 
 
 /**
@@ -22,10 +27,48 @@ import coyote.dx.context.TransactionContext;
  * 
  *<pre>"Distinct" : { "field" : "model",  "desc" : "Optional description value"  },</pre>
  *
+ * <p>Values are not kept; only a 96-bit fingerprint of each value is kept in
+ * a set of primitive slots, about 16 bytes per value. Two different values
+ * have the same fingerprint so rarely that checking 100 million values would
+ * report a false duplicate about once in ten trillion runs. The set starts
+ * small and grows with the number of values; set {@code "Expected"} to the
+ * number of values expected to allocate it at that size up front instead,
+ * and {@code "OffHeap"} to true to keep the set outside of the Java heap.
+ *
+ * <p>When approximate checking is acceptable, {@code "Approximate"} uses a
+ * Bloom filter sized for the expected number of values (1,000,000 if
+ * {@code "Expected"} is not set) since it cannot grow, which takes about
+ * 1.2 bytes per value for the default false positive rate of 1%. A false
+ * positive reports a distinct value as a duplicate; set the rate with
+ * {@code "FalsePositive"}:<pre>
+ * "Distinct" : { "field" : "id", "Approximate" : true, "Expected" : 100000000, "FalsePositive" : 0.001 },</pre>
  */
-public class Distinct extends AbstractValidator implements FrameValidator {
+public class Distinct extends AbstractValidator implements FrameValidator, ThreadSafety {
+
+  /** Use a Bloom filter instead of an exact set of fingerprints. */
+  public static final String APPROXIMATE = "Approximate";
+
+  /** The false positive rate of the Bloom filter. */
+  public static final String FALSE_POSITIVE = "FalsePositive";
+
+  /** The number of distinct values expected. */
+  public static final String EXPECTED = "Expected";
 
-  private final Map<String, Integer> values = new HashMap<String, Integer>();
+  /** Allocate the set of fingerprints outside of the Java heap. */
+  public static final String OFF_HEAP = "OffHeap";
+
+  public static final double DEFAULT_FALSE_POSITIVE = 0.01;
+  /** The number of values a Bloom filter is sized for by default. */
+  public static final long DEFAULT_EXPECTED = 1000000;
+
+  private boolean approximate = false;
+  private boolean offHeap = false;
+  private double falsePositive = DEFAULT_FALSE_POSITIVE;
+  /** The number of values configured to be expected, 0 if not configured */
+  private long expected = 0;
+  private FingerprintSet values = null;
+  private BloomFilter filter = null;
+  long duplicatecount = 0;
   long emptycount = 0;
   long missingcount = 0;
 
@@ -39,6 +82,67 @@ public class Distinct extends AbstractValidator implements FrameValidator {
 
 
 
+  /**
+   * @see coyote.dx.validate.AbstractValidator#setConfiguration(coyote.loader.cfg.Config)
+   */
+  @Override
+  public void setConfiguration(Config cfg) throws ConfigurationException {
+    super.setConfiguration(cfg);
+
+    approximate = getBoolean(APPROXIMATE);
+    offHeap = getBoolean(OFF_HEAP);
+
+    String value = getString(EXPECTED);
+    if (StringUtil.isNotBlank(value)) {
+      try {
+        expected = Long.parseLong(value.trim());
+      } catch (NumberFormatException e) {
+        expected = 0;
+      }
+      if (expected < 1) {
+        throw new ConfigurationException("Invalid '" + EXPECTED + "' value of '" + value + "' - must be a positive integer");
+      }
+    }
+
+    value = getString(FALSE_POSITIVE);
+    if (StringUtil.isNotBlank(value)) {
+      try {
+        falsePositive = Double.parseDouble(value.trim());
+      } catch (NumberFormatException e) {
+        falsePositive = 0;
+      }
+      if (!(falsePositive > 0 && falsePositive < 1)) {
+        throw new ConfigurationException("Invalid '" + FALSE_POSITIVE + "' value of '" + value + "' - must be between 0 and 1");
+      }
+    }
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.validate.AbstractValidator#open(coyote.dx.context.TransformContext)
+   */
+  @Override
+  public void open(TransformContext context) {
+    super.open(context);
+    allocate();
+  }
+
+
+
+
+  private void allocate() {
+    if (approximate) {
+      filter = new BloomFilter((expected > 0) ? expected : DEFAULT_EXPECTED, falsePositive);
+    } else {
+      values = new FingerprintSet(expected, offHeap);
+    }
+  }
+
+
+
+
   /**
    * @see coyote.dx.FrameValidator#process(coyote.dx.context.TransactionContext)
    */
@@ -56,14 +160,13 @@ public class Distinct extends AbstractValidator implements FrameValidator {
         // get the value
         String key = field.getStringValue();
         if (StringUtil.isNotBlank(key)) {
-          if (values.containsKey(key)) {
-            int count = (Integer)values.get(key);
-            count++;
-            values.put(key, count);
+          if (values == null && filter == null) {
+            allocate();
+          }
+          boolean added = approximate ? filter.add(key) : values.add(key);
+          if (!added) {
             retval = false;
-            fail(context, fieldName, fieldName + ": value of '" + key + "' has occured " + count + " times");
-          } else {
-            values.put(key, 1);
+            fail(context, fieldName, fieldName + ": value of '" + key + "' is a duplicate, duplicate count: " + ++duplicatecount);
           }
         } else {
           retval = false;
@@ -82,4 +185,32 @@ public class Distinct extends AbstractValidator implements FrameValidator {
     return retval;
   }
 
+
+
+
+  /**
+   * @see coyote.dx.validate.AbstractValidator#close()
+   */
+  @Override
+  public void close() throws IOException {
+    // direct buffers are released when no longer referenced
+    values = null;
+    filter = null;
+    super.close();
+  }
+
+
+
+
+  /**
+   * All workers must check against the same set of values, so calls are 
+   * serialized.
+   * 
+   * @see coyote.dx.ThreadSafety#getThreadPolicy()
+   */
+  @Override
+  public Policy getThreadPolicy() {
+    return Policy.SERIAL;
+  }
+
 }
@@ -13,10 +13,13 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.net.URI;
+import java.util.List;
 
 import coyote.commons.StringUtil;
 import coyote.commons.UriUtil;
+import coyote.dataframe.DataFrame;
 import coyote.dataframe.DataFrameException;
+import coyote.dx.BatchWriter;
 import coyote.dx.CDX;
 import coyote.dx.ConfigTag;
 import coyote.dx.FrameWriter;
@@ -30,7 +33,7 @@ import coyote.loader.log.LogMsg;
 /**
  * Base class for all frame writers writing frames to files
  */
-public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implements FrameWriter {
+public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implements FrameWriter, BatchWriter {
 
   protected static final String STDOUT = "STDOUT";
   protected static final String STDERR = "STDERR";
@@ -40,6 +43,9 @@ public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implem
   //size of the target file when this componet was opened
   private long targetSize = -1;
 
+  // set while writing a batch so the output is flushed once per batch
+  private boolean batching = false;
+
 
 
 
@@ -84,6 +90,41 @@ public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implem
 
 
 
+  /**
+   * Write all the frames, flushing the output once for the whole batch 
+   * instead of once for each frame.
+   * 
+   * @see coyote.dx.BatchWriter#writeBatch(java.util.List)
+   */
+  @Override
+  public void writeBatch(List<DataFrame> frames) {
+    batching = true;
+    try {
+      for (DataFrame frame : frames) {
+        write(frame);
+      }
+    } finally {
+      batching = false;
+      flush();
+    }
+  }
+
+
+
+
+  /**
+   * Flush the output unless a batch is being written, in which case the 
+   * output is flushed when the batch is complete.
+   */
+  protected void flush() {
+    if (!batching && printwriter != null) {
+      printwriter.flush();
+    }
+  }
+
+
+
+
   /**
    * @return the print writer used for output
    */
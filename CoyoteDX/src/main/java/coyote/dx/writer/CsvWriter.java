@@ -440,7 +440,7 @@ public class CsvWriter extends AbstractFrameFileWriter implements FrameWriter, C
 
     retval.append(LINE_DELIMITER);
     printwriter.write(retval.toString());
-    printwriter.flush();
+    flush();
 
   }
 
@@ -174,7 +174,7 @@ public class FlatFileWriter extends AbstractFrameFileWriter implements FrameWrit
     // write to line to the file
     printwriter.write(line.toString());
     printwriter.write(StringUtil.LINE_FEED);
-    printwriter.flush();
+    flush();
 
     // Increment the row number
     rowNumber++;
@@ -7,6 +7,8 @@
  */
 package coyote.dx.writer;
 
+import java.util.List;
+
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.marshal.JSONMarshaler;
 import coyote.dx.CDX;
@@ -49,22 +51,57 @@ public class JsonWriter extends AbstractFrameFileWriter implements FrameWriter,
   }
 
 
+  /**
+   * Only the last frame of a batch can be the last frame of the transform, so
+   * the closing bracket is only considered after the last frame of the batch.
+   *
+   * @see coyote.dx.writer.AbstractFrameFileWriter#writeBatch(java.util.List)
+   */
+  @Override
+  public void writeBatch(final List<DataFrame> frames) {
+    if (expression != null) {
+      super.writeBatch(frames);
+    } else {
+      final boolean lastBatch = getContext().getTransaction().isLastFrame();
+      for (int x = 0; x < frames.size(); x++) {
+        writeFrame(frames.get(x), lastBatch && x + 1 == frames.size());
+      }
+      printwriter.flush();
+    }
+  }
+
+
+
+
   /**
    * This is where we actually write the frame.
    *
    * @param frame the frame to be written
    */
   private void writeFrame(final DataFrame frame) {
+    writeFrame(frame, getContext().getTransaction().isLastFrame());
+    flush();
+  }
+
+
+
+
+  /**
+   * Write the frame as an element of the JSON array.
+   *
+   * @param frame the frame to be written
+   * @param last true if this is the last frame, closing the array
+   */
+  private void writeFrame(final DataFrame frame, final boolean last) {
     if (rowNumber == 0) {
       printwriter.write('[');
     }
     printwriter.write(JSONMarshaler.toFormattedString(frame));
-    if (getContext().getTransaction().isLastFrame()) {
+    if (last) {
       printwriter.write(']');
     } else {
       printwriter.write(',');
     }
-    printwriter.flush();
     rowNumber++;
   }
 
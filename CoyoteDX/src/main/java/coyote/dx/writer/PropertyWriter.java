@@ -66,7 +66,7 @@ public class PropertyWriter extends AbstractFrameFileWriter implements FrameWrit
       printwriter.write(" = ");
       printwriter.write(valueField.getStringValue());
       printwriter.write(StringUtil.LINE_FEED);
-      printwriter.flush();
+      flush();
     } else {
       Log.warn("did not write property, both 'name' and 'value' field are required:\nName: " + nameField + "\nValue:" + valueField);
     }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.writer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import coyote.commons.ExceptionUtil;
+import coyote.commons.StringUtil;
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractConfigurableComponent;
+import coyote.dx.BatchWriter;
+import coyote.dx.CDX;
+import coyote.dx.ConfigTag;
+import coyote.dx.FrameWriter;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.metric.Gauge;
+import coyote.dx.metric.JobMetrics;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+import coyote.loader.log.Log;
+import coyote.loader.log.LogMsg;
+
+
+/**
+ * Places frames in a bounded queue which is drained by a dedicated thread
+ * calling the wrapped writer.
+ *
+ * <p>This allows slow writers (e.g. databases and web services) to write
+ * while the engine reads and transforms the next frames. When several
+ * writers are configured with write-behind, they also write in parallel with
+ * each other. Any writer can be placed under write-behind by adding a
+ * {@code WriteBehind} attribute to its configuration specifying the maximum
+ * number of frames which may be queued:<pre>
+ * "Writer" : {
+ *     "class" : "JdbcWriter",
+ *     "WriteBehind" : 1000,
+ *     ...
+ * }</pre>
+ *
+ * <p>When the queue is full, the engine waits for the writer thread to catch
+ * up. Closing this writer waits for all queued frames to be written before
+ * closing the wrapped writer.
+ *
+ * <p>The transaction a frame belongs to is bound to the writer thread while
+ * the frame is written so writer conditions and templates resolve against
+ * the proper transaction. Write events are fired by the engine when the
+ * frame is queued. Writers which support batches are passed all the frames
+ * drained from the queue at once. If the wrapped writer throws an exception,
+ * the transform context is placed in error, which stops the engine from
+ * reading more frames, and the next call to {@link #write(DataFrame)} throws
+ * the error. A failure while writing the last queued frames is thrown by
+ * {@link #close()}.
+ */
+public class WriteBehindWriter extends AbstractConfigurableComponent implements FrameWriter {
+
+  /** The configuration attribute specifying the depth of the queue */
+  public static final String WRITE_BEHIND = "WriteBehind";
+
+  /** How long to wait between checks of the state of the writer thread */
+  private static final long POLL_INTERVAL = 100;
+
+  /** The name of the queue depth metric of this writer */
+  private static final String QUEUE = "WriteBehind";
+
+  /** The most frames the writer thread will remove from the queue at once */
+  private static final int DRAIN_SIZE = 100;
+
+  private final FrameWriter writer;
+  private final BlockingQueue<Entry> queue;
+  private Thread thread = null;
+  private volatile boolean closing = false;
+  private volatile Throwable failure = null;
+  private boolean reported = false;
+
+
+
+
+  /**
+   * @param writer the writer to call from the write-behind thread
+   * @param depth the maximum number of frames to queue
+   */
+  public WriteBehindWriter(FrameWriter writer, int depth) {
+    this.writer = writer;
+    this.queue = new ArrayBlockingQueue<Entry>(depth > 0 ? depth : 1);
+    this.configuration = writer.getConfiguration();
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.AbstractConfigurableComponent#setConfiguration(coyote.loader.cfg.Config)
+   */
+  @Override
+  public void setConfiguration(Config cfg) throws ConfigurationException {
+    writer.setConfiguration(cfg);
+    configuration = cfg;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.AbstractConfigurableComponent#isEnabled()
+   */
+  @Override
+  public boolean isEnabled() {
+    return writer.isEnabled();
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.AbstractConfigurableComponent#setEnabled(boolean)
+   */
+  @Override
+  public void setEnabled(boolean flag) {
+    writer.setEnabled(flag);
+  }
+
+
+
+
+  /**
+   * @return the writer this component calls from its write-behind thread.
+   */
+  public FrameWriter getWriter() {
+    return writer;
+  }
+
+
+
+
+  /**
+   * Open the wrapped writer and start the write-behind thread.
+   *
+   * @see coyote.dx.Component#open(coyote.dx.context.TransformContext)
+   */
+  @Override
+  public void open(TransformContext context) {
+    super.context = context;
+    writer.open(context);
+    if (context.isNotInError()) {
+      closing = false;
+      failure = null;
+      reported = false;
+      queue.clear();
+      thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      }, writer.getClass().getSimpleName() + "-writebehind");
+      thread.setDaemon(true);
+      thread.start();
+      JobMetrics.of(context).addQueue(QUEUE, writer.getClass().getSimpleName(), new Gauge() {
+        @Override
+        public double getValue() {
+          return queue.size();
+        }
+      });
+    }
+  }
+
+
+
+
+  /**
+   * Queue the frame to be written by the write-behind thread, waiting for
+   * room in the queue if necessary.
+   *
+   * @see coyote.dx.FrameWriter#write(coyote.dataframe.DataFrame)
+   */
+  @Override
+  public void write(DataFrame frame) {
+    checkFailure();
+    if (thread == null) {
+      writer.write(frame);
+      return;
+    }
+    Entry entry = new Entry(frame, (context != null) ? context.getTransaction() : null);
+    try {
+      while (!queue.offer(entry, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+        checkFailure();
+        if (!thread.isAlive()) {
+          throw new IllegalStateException(writer.getClass().getSimpleName() + " write-behind thread is not running");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting to queue frame for " + writer.getClass().getSimpleName());
+    }
+  }
+
+
+
+
+  /**
+   * Throw any exception encountered by the write-behind thread.
+   */
+  private void checkFailure() {
+    Throwable error = failure;
+    if (error != null) {
+      reported = true;
+      throw new IllegalStateException(writer.getClass().getSimpleName() + " write-behind failure: " + error.getMessage(), error);
+    }
+  }
+
+
+
+
+  /**
+   * Write queued frames until closed and the queue is empty or the writer
+   * fails.
+   */
+  private void drain() {
+    List<Entry> batch = new ArrayList<Entry>(DRAIN_SIZE);
+    try {
+      while (failure == null && (!closing || !queue.isEmpty())) {
+        Entry entry = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if (entry != null) {
+          batch.add(entry);
+          queue.drainTo(batch, DRAIN_SIZE - 1);
+          if (batch.size() > 1 && isBatchWriter()) {
+            writeEntries(batch);
+          } else {
+            for (Entry item : batch) {
+              writeEntry(item);
+              if (failure != null) {
+                break;
+              }
+            }
+          }
+          batch.clear();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+
+
+  /**
+   * @return true if the wrapped writer can be passed all the frames drained
+   *         from the queue at once; writers with a condition are always
+   *         called once per frame.
+   */
+  private boolean isBatchWriter() {
+    return writer instanceof BatchWriter && (configuration == null || StringUtil.isBlank(configuration.getString(ConfigTag.CONDITION)));
+  }
+
+
+
+
+  /**
+   * Write one frame with its transaction bound to this thread.
+   */
+  private void writeEntry(Entry entry) {
+    if (context != null) {
+      context.bindTransaction(entry.transaction);
+    }
+    try {
+      writer.write(entry.frame);
+    } catch (Throwable t) {
+      fail(t);
+    } finally {
+      if (context != null) {
+        context.bindTransaction(null);
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Write several frames with one call to the wrapped batch writer, with the
+   * transaction of the last frame bound to this thread.
+   */
+  private void writeEntries(List<Entry> entries) {
+    List<DataFrame> frames = new ArrayList<DataFrame>(entries.size());
+    for (Entry entry : entries) {
+      frames.add(entry.frame);
+    }
+    if (context != null) {
+      context.bindTransaction(entries.get(entries.size() - 1).transaction);
+    }
+    try {
+      ((BatchWriter)writer).writeBatch(frames);
+    } catch (Throwable t) {
+      fail(t);
+    } finally {
+      if (context != null) {
+        context.bindTransaction(null);
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Record the failure of the wrapped writer and place the context in error.
+   */
+  private void fail(Throwable t) {
+    failure = t;
+    Log.error(LogMsg.createMsg(CDX.MSG, "Writer.write_behind_error", writer.getClass().getSimpleName(), t.getClass().getSimpleName(), t.getMessage(), ExceptionUtil.stackTrace(t)));
+    if (context != null) {
+      context.setError(writer.getClass().getSimpleName() + " write-behind failure: " + t.getMessage());
+    }
+  }
+
+
+
+
+  /**
+   * Wait for all the queued frames to be written then close the wrapped
+   * writer.
+   *
+   * <p>If writing the remaining frames failed and the failure has not already
+   * been thrown from {@link #write(DataFrame)}, it is thrown after the
+   * wrapped writer is closed.
+   *
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    closing = true;
+    if (thread != null) {
+      JobMetrics.of(context).removeQueue(QUEUE, writer.getClass().getSimpleName());
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      thread = null;
+    }
+    queue.clear();
+    try {
+      writer.close();
+    } finally {
+      if (!reported) {
+        checkFailure();
+      }
+    }
+  }
+
+
+
+
+  /**
+   * A queued frame and the transaction which produced it.
+   */
+  private static class Entry {
+    final DataFrame frame;
+    final TransactionContext transaction;
+
+
+
+
+    Entry(DataFrame frame, TransactionContext transaction) {
+      this.frame = frame;
+      this.transaction = transaction;
+    }
+  }
+
+}
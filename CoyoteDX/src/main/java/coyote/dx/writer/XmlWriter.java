@@ -345,7 +345,7 @@ public class XmlWriter extends AbstractFrameFileWriter implements FrameWriter, C
 
     printwriter.write(b.toString());
     printwriter.write(StringUtil.LINE_FEED);
-    printwriter.flush();
+    flush();
 
     // Increment the row number
     rowNumber++;
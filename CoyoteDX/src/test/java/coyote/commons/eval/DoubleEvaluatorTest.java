@@ -1,6 +1,7 @@
 package coyote.commons.eval;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -189,4 +190,44 @@ public class DoubleEvaluatorTest {
   public void testStartWithFunctionSeparator() {
     evaluator.evaluate( ",3" );
   }
+
+
+
+
+  @Test
+  public void compiled() {
+    Expression<Double> expression = evaluator.compile( "x * 2 + min(x, 3)" );
+    StaticVariableSet<Double> variables = new StaticVariableSet<Double>();
+    for ( int x = 0; x < 5; x++ ) {
+      variables.set( "x", (double)x );
+      assertEquals( x * 2 + Math.min( x, 3 ), evaluator.evaluate( expression, variables ), 0.001 );
+    }
+    assertSame( "x * 2 + min(x, 3)", expression.getText() );
+  }
+
+
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compileMissingOperand() {
+    evaluator.compile( "3 +" );
+  }
+
+
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void compiledByAnotherEvaluator() {
+    Expression<Double> expression = new DoubleEvaluator().compile( "1 + 1" );
+    evaluator.evaluate( expression, null );
+  }
+
+
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void prepareMissingOperand() {
+    evaluator.prepare( "4 *" );
+  }
+
 }
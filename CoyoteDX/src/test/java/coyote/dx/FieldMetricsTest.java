@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import coyote.commons.sketch.FrequentItems;
+import coyote.dataframe.DataFrame;
+
+
+/**
+ *
+ */
+public class FieldMetricsTest {
+
+  private static final int COUNT = 100000;
+
+
+
+
+  @Test
+  public void estimate() {
+    DataSetMetrics exact = new DataSetMetrics(true);
+    DataSetMetrics estimate = new DataSetMetrics();
+    for (int x = 0; x < COUNT; x++) {
+      DataFrame frame = createFrame(x);
+      exact.sample(frame);
+      estimate.sample(frame);
+    }
+
+    assertEquals(COUNT, exact.getMetric("id").getUniqueValues());
+    assertEquals(COUNT, estimate.getMetric("id").getUniqueValues(), COUNT * 0.05);
+    assertEquals(11, exact.getMetric("state").getUniqueValues());
+    assertEquals(11, estimate.getMetric("state").getUniqueValues());
+
+    FieldMetrics amount = estimate.getMetric("amount");
+    assertEquals(COUNT, amount.getNumericCount());
+    assertEquals(COUNT * 0.5, amount.getNumericQuantile(0.5), COUNT * 0.03);
+    assertEquals(COUNT * 0.95, amount.getNumericQuantile(0.95), COUNT * 0.03);
+    assertEquals(COUNT * 0.99, amount.getNumericQuantile(0.99), COUNT * 0.03);
+    assertEquals(2, estimate.getMetric("state").getStringLengthQuantile(0.99));
+    assertTrue(Double.isNaN(estimate.getMetric("state").getNumericQuantile(0.5)));
+
+    List<FrequentItems.Item> top = estimate.getMetric("state").getTopValues(1);
+    assertEquals(1, top.size());
+    assertEquals("TX", top.get(0).getValue());
+  }
+
+
+
+
+  @Test
+  public void merge() {
+    DataSetMetrics whole = new DataSetMetrics();
+    DataSetMetrics even = new DataSetMetrics();
+    DataSetMetrics odd = new DataSetMetrics(true);
+    for (int x = 0; x < COUNT; x++) {
+      DataFrame frame = createFrame(x);
+      whole.sample(frame);
+      ((x % 2 == 0) ? even : odd).sample(frame);
+    }
+    even.merge(odd);
+
+    assertEquals(whole.getSampleCount(), even.getSampleCount());
+    FieldMetrics merged = even.getMetric("id");
+    FieldMetrics expected = whole.getMetric("id");
+    assertFalse(merged.isExact());
+    assertEquals(expected.getUniqueValues(), merged.getUniqueValues());
+    assertEquals(expected.getTotalStringLength(), merged.getTotalStringLength());
+    assertEquals(expected.getMaximumStringLength(), merged.getMaximumStringLength());
+    assertEquals(expected.getAverageStringLength(), merged.getAverageStringLength());
+    assertEquals(expected.getStdDevStringLength(), merged.getStdDevStringLength());
+    assertEquals(COUNT * 0.95, even.getMetric("amount").getNumericQuantile(0.95), COUNT * 0.03);
+    assertEquals("TX", even.getMetric("state").getTopValues(1).get(0).getValue());
+  }
+
+
+
+
+  private static DataFrame createFrame(int x) {
+    DataFrame retval = new DataFrame();
+    retval.put("id", "ID" + x);
+    retval.put("amount", (long)x);
+    retval.put("state", (x % 4 == 0) ? "TX" : "S" + (x % 10));
+    return retval;
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.reader.AbstractFrameReader;
+
+
+/**
+ *
+ */
+public class ReadAheadReaderTest extends AbstractTest {
+
+  /**
+   * Reader which returns a numbered frame for each read and fails on request;
+   * a negative position reports the failure in the transaction instead of
+   * throwing it.
+   */
+  private static class CountingReader extends AbstractFrameReader {
+    private final int limit;
+    private final int failAt;
+    private int count = 0;
+
+
+
+
+    CountingReader(int limit, int failAt) {
+      this.limit = limit;
+      this.failAt = failAt;
+    }
+
+
+
+
+    @Override
+    public DataFrame read(TransactionContext context) {
+      if (++count == failAt) {
+        throw new IllegalStateException("Read failure");
+      }
+      if (count == -failAt) {
+        // report the error in the transaction without a frame
+        context.setError("Bad record " + count);
+        return null;
+      }
+      DataFrame retval = new DataFrame();
+      retval.put("Count", count);
+      context.set("ReadCount", count);
+      context.setLastFrame(count >= limit);
+      return retval;
+    }
+
+
+
+
+    @Override
+    public boolean eof() {
+      return count >= limit;
+    }
+  }
+
+
+
+
+  @Test
+  public void readsAllFramesInOrder() throws Exception {
+    ReadAheadReader readAhead = new ReadAheadReader(new CountingReader(500, 0), 8, getTransformContext());
+    readAhead.start();
+    try {
+      int expected = 1;
+      while (!readAhead.eof()) {
+        TransactionContext txn = createTransactionContext();
+        DataFrame frame = readAhead.read(txn);
+        if (frame != null) {
+          assertEquals(expected, frame.getAsInt("Count"));
+          assertEquals(expected, txn.get("ReadCount"));
+          assertEquals(expected == 500, txn.isLastFrame());
+          expected++;
+        }
+      }
+      assertEquals(501, expected);
+      assertFalse(getTransformContext().isInError());
+    } finally {
+      readAhead.stop();
+    }
+  }
+
+
+
+
+  @Test
+  public void readerErrorsStopTheStream() throws Exception {
+    ReadAheadReader readAhead = new ReadAheadReader(new CountingReader(500, 10), 4, getTransformContext());
+    readAhead.start();
+    try {
+      int frames = 0;
+      for (int x = 0; x < 100 && !readAhead.eof(); x++) {
+        DataFrame frame = readAhead.read(createTransactionContext());
+        if (frame != null) {
+          frames++;
+        } else {
+          break;
+        }
+      }
+      assertTrue(frames < 10);
+      assertTrue(getTransformContext().isInError());
+      assertNotNull(getTransformContext().getErrorMessage());
+      assertNull(readAhead.read(createTransactionContext()));
+    } finally {
+      readAhead.stop();
+    }
+  }
+
+
+
+
+  @Test
+  public void readerErrorsWithoutFrames() throws Exception {
+    ReadAheadReader readAhead = new ReadAheadReader(new CountingReader(500, -3), 4, getTransformContext());
+    readAhead.start();
+    try {
+      assertNotNull(readAhead.read(createTransactionContext()));
+      assertNotNull(readAhead.read(createTransactionContext()));
+
+      // the error is passed through the queue even though there is no frame
+      TransactionContext txnContext = createTransactionContext();
+      assertNull(readAhead.read(txnContext));
+      assertTrue(txnContext.isInError());
+      assertTrue(txnContext.getErrorMessage().endsWith("Bad record 3"));
+    } finally {
+      readAhead.stop();
+    }
+  }
+
+
+
+
+  /**
+   * An error flagged without a message is still passed through the queue.
+   */
+  @Test
+  public void readerErrorsWithoutMessages() throws Exception {
+    AbstractFrameReader reader = new AbstractFrameReader() {
+      private boolean done = false;
+
+
+
+
+      @Override
+      public DataFrame read(TransactionContext context) {
+        done = true;
+        context.setError(true);
+        return null;
+      }
+
+
+
+
+      @Override
+      public boolean eof() {
+        return done;
+      }
+    };
+    ReadAheadReader readAhead = new ReadAheadReader(reader, 4, getTransformContext());
+    readAhead.start();
+    try {
+      TransactionContext txnContext = createTransactionContext();
+      assertNull(readAhead.read(txnContext));
+      assertTrue(txnContext.isInError());
+    } finally {
+      readAhead.stop();
+    }
+  }
+
+
+
+
+  @Test
+  public void engineReportsReadErrors() throws Exception {
+    TransformEngine engine = TransformEngineFactory.getInstance("{\"name\":\"ReadAheadError\",\"ReadAhead\":4}");
+    assertNotNull(engine);
+    engine.setReader(new CountingReader(500, -3));
+    try {
+      engine.run();
+    } finally {
+      engine.close();
+    }
+
+    // the job does not end as if the reader reached the end of its data
+    assertTrue(engine.getContext().isInError());
+    assertTrue(engine.getContext().getErrorMessage().endsWith("Bad record 3"));
+  }
+
+}
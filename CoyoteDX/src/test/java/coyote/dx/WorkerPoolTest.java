@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import coyote.commons.template.SymbolTable;
+import coyote.commons.template.Template;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.mapper.DefaultFrameMapper;
+import coyote.dx.reader.AbstractFrameReader;
+import coyote.dx.transform.AbstractFrameTransform;
+import coyote.dx.writer.AbstractFrameWriter;
+
+
+/**
+ *
+ */
+public class WorkerPoolTest extends AbstractTest {
+  private static final String SEQ = "Seq";
+  private static final int COUNT = 200;
+
+
+
+
+  private FramePipeline createPipeline() {
+    List<FrameTransform> transforms = new ArrayList<FrameTransform>();
+    transforms.add(new AbstractFrameTransform() {
+      @Override
+      public DataFrame process(DataFrame frame) throws TransformException {
+        // vary the processing time so frames complete out of order
+        try {
+          Thread.sleep(frame.getAsInt(SEQ) % 3);
+        } catch (Exception ignore) {}
+        frame.put("Thread", Thread.currentThread().getName());
+        return frame;
+      }
+    });
+    return new FramePipeline(getTransformContext(), new ArrayList<FrameFilter>(), new ArrayList<FrameValidator>(), transforms, new DefaultFrameMapper());
+  }
+
+
+
+
+  private List<TransactionContext> run(boolean ordered) throws Exception {
+    List<TransactionContext> retval = new ArrayList<TransactionContext>();
+    WorkerPool pool = new WorkerPool(getTransformContext(), createPipeline(), 4, ordered);
+    try {
+      for (int x = 0; x < COUNT; x++) {
+        TransactionContext txn = createTransactionContext();
+        DataFrame frame = new DataFrame();
+        frame.put(SEQ, x);
+        txn.setSourceFrame(frame);
+        txn.setLastFrame(x + 1 == COUNT);
+        pool.submit(txn);
+        for (TransactionContext done = pool.next(pool.isFull()); done != null; done = pool.next(pool.isFull())) {
+          retval.add(done);
+        }
+      }
+      while (!pool.isEmpty()) {
+        TransactionContext done = pool.next(true);
+        if (done != null) {
+          retval.add(done);
+        }
+      }
+    } finally {
+      pool.close();
+    }
+    return retval;
+  }
+
+
+
+
+  @Test
+  public void ordered() throws Exception {
+    List<TransactionContext> results = run(true);
+    assertEquals(COUNT, results.size());
+    Set<String> threads = new HashSet<String>();
+    for (int x = 0; x < COUNT; x++) {
+      DataFrame target = results.get(x).getTargetFrame();
+      assertNotNull(target);
+      assertEquals(x, target.getAsInt(SEQ));
+      threads.add(target.getAsString("Thread"));
+    }
+    assertTrue(threads.size() > 1);
+  }
+
+
+
+
+  @Test
+  public void unordered() throws Exception {
+    List<TransactionContext> results = run(false);
+    assertEquals(COUNT, results.size());
+    Set<Integer> seen = new HashSet<Integer>();
+    for (TransactionContext txn : results) {
+      assertTrue(seen.add(txn.getTargetFrame().getAsInt(SEQ)));
+    }
+    // the last frame is always returned last
+    assertTrue(results.get(COUNT - 1).isLastFrame());
+  }
+
+
+
+
+  /**
+   * Workers read their own copy of the symbol table, so the engine thread
+   * can keep updating its table while they run.
+   */
+  @Test
+  public void workerSymbols() throws Exception {
+    final SymbolTable shared = getTransformContext().getSymbols();
+    shared.put("Job", "Before");
+    final List<Object> seen = Collections.synchronizedList(new ArrayList<Object>());
+    List<FrameTransform> transforms = new ArrayList<FrameTransform>();
+    transforms.add(new AbstractFrameTransform() {
+      @Override
+      public DataFrame process(DataFrame frame) throws TransformException {
+        SymbolTable symbols = getTransformContext().getSymbols();
+        seen.add((symbols != shared) ? symbols.get("Job") : null);
+        return frame;
+      }
+    });
+    FramePipeline pipeline = new FramePipeline(getTransformContext(), new ArrayList<FrameFilter>(), new ArrayList<FrameValidator>(), transforms, new DefaultFrameMapper());
+
+    WorkerPool pool = new WorkerPool(getTransformContext(), pipeline, 4, true);
+    try {
+      shared.put("Job", "After");
+      for (int x = 0; x < COUNT; x++) {
+        TransactionContext txn = createTransactionContext();
+        txn.setSourceFrame(new DataFrame().set(SEQ, x));
+        pool.submit(txn);
+        while (pool.isFull()) {
+          pool.next(true);
+        }
+      }
+      while (!pool.isEmpty()) {
+        pool.next(true);
+      }
+    } finally {
+      pool.close();
+    }
+
+    assertEquals(COUNT, seen.size());
+    for (Object value : seen) {
+      assertEquals("Before", value);
+    }
+    assertSame(shared, getTransformContext().getSymbols());
+  }
+
+
+
+
+  /**
+   * The frame symbols seen by a transform on a worker are those of the frame
+   * it is processing, not of the frame most recently read.
+   */
+  @Test
+  public void currentFrameSymbol() throws Exception {
+    TransformEngine engine = TransformEngineFactory.getInstance("{\"name\":\"WorkerSymbols\",\"Workers\":4}");
+    assertNotNull(engine);
+
+    engine.setReader(new AbstractFrameReader() {
+      private int count = 0;
+
+
+
+
+      @Override
+      public DataFrame read(TransactionContext context) {
+        DataFrame retval = new DataFrame();
+        retval.put(SEQ, ++count);
+        context.setLastFrame(count >= COUNT);
+        return retval;
+      }
+
+
+
+
+      @Override
+      public boolean eof() {
+        return count >= COUNT;
+      }
+    });
+
+    engine.addTransformer(new AbstractFrameTransform() {
+      @Override
+      public DataFrame process(DataFrame frame) throws TransformException {
+        // vary the processing time so the reader gets ahead of the workers
+        try {
+          Thread.sleep(frame.getAsInt(SEQ) % 3);
+        } catch (Exception ignore) {}
+        frame.put("Current", Template.resolve("[#" + Symbols.CURRENT_FRAME + "#]", getContext().getSymbols()));
+        frame.put("Last", Template.resolve("[#" + Symbols.LAST_FRAME + "#]", getContext().getSymbols()));
+        return frame;
+      }
+    });
+
+    final List<DataFrame> written = Collections.synchronizedList(new ArrayList<DataFrame>());
+    engine.addWriter(new AbstractFrameWriter() {
+      @Override
+      public void write(DataFrame frame) {
+        written.add(frame);
+      }
+    });
+
+    try {
+      engine.run();
+    } finally {
+      engine.close();
+    }
+
+    assertEquals(COUNT, written.size());
+    for (DataFrame frame : written) {
+      int seq = frame.getAsInt(SEQ);
+      assertEquals(String.valueOf(seq), frame.getAsString("Current"));
+      assertEquals(String.valueOf(seq == COUNT), frame.getAsString("Last"));
+    }
+  }
+
+}
@@ -19,6 +19,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import coyote.dataframe.DataFrame;
+import coyote.dataframe.DataFrameException;
 import coyote.dx.AbstractTest;
 import coyote.dx.context.TransactionContext;
 import coyote.loader.cfg.Config;
@@ -234,4 +235,85 @@ public class GroupingTest extends AbstractTest {
     }
   }
 
+
+
+
+  /**
+   * Presorted input emits each group as soon as the next one starts
+   */
+  @Test
+  public void presorted() throws ConfigurationException, IOException {
+    DataFrame cfg = new DataFrame().set("key", "city").set(Grouping.PRESORTED, true);
+    Config configuration = new Config(cfg);
+
+    List<DataFrame> frames = new ArrayList<>();
+    frames.add(new DataFrame().set("city", "CLE").set("order", "A"));
+    frames.add(new DataFrame().set("city", "CLE").set("order", "B"));
+    frames.add(new DataFrame().set("city", "CMH").set("order", "A"));
+    frames.add(new DataFrame().set("city", "IATA").set("order", "A"));
+
+    try (Grouping aggregator = new Grouping()) {
+      aggregator.setConfiguration(configuration);
+      aggregator.open(getTransformContext());
+
+      List<DataFrame> framelist = new ArrayList<>();
+      framelist.add(new DataFrame());
+      TransactionContext context = createTransactionContext();
+      int[] emitted = new int[frames.size()];
+      for (int x = 0; x < frames.size(); x++) {
+        framelist.set(0, frames.get(x));
+        context.setLastFrame(x + 1 == frames.size());
+        emitted[x] = aggregator.aggregate(framelist, context).size();
+      }
+      assertEquals(0, emitted[0]);
+      assertEquals(0, emitted[1]);
+      assertEquals(2, emitted[2]); // CLE group
+      assertEquals(1, emitted[3]); // CMH group
+    }
+  }
+
+
+
+
+  /**
+   * Groups larger than the memory limit are spilled to partitions and still
+   * emitted together in the order received
+   */
+  @Test
+  public void spill() throws ConfigurationException, IOException, DataFrameException {
+    DataFrame cfg = new DataFrame().set("key", "city").set(Grouping.MEMORY, 1).set(Grouping.PARTITIONS, 4);
+    Config configuration = new Config(cfg);
+
+    try (Grouping aggregator = new Grouping()) {
+      aggregator.setConfiguration(configuration);
+      aggregator.open(getTransformContext());
+
+      List<DataFrame> result = null;
+      List<DataFrame> framelist = new ArrayList<>();
+      framelist.add(new DataFrame());
+      TransactionContext context = createTransactionContext();
+      int count = 20000;
+      for (int x = 0; x < count; x++) {
+        framelist.set(0, new DataFrame().set("city", "C" + (x % 50)).set("order", x).set("text", "The quick brown fox jumps over the lazy dog"));
+        context.setLastFrame(x + 1 == count);
+        result = aggregator.aggregate(framelist, context);
+      }
+
+      assertEquals(count, result.size());
+      List<String> seen = new ArrayList<>();
+      DataFrame previous = null;
+      for (DataFrame frame : result) {
+        String city = frame.getAsString("city");
+        if (previous != null && city.equals(previous.getAsString("city"))) {
+          assertTrue(previous.getAsInt("order") < frame.getAsInt("order"));
+        } else {
+          assertTrue(!seen.contains(city)); // each group appears once
+          seen.add(city);
+        }
+        previous = frame;
+      }
+      assertEquals(50, seen.size());
+    }
+  }
+
 }
@@ -8,17 +8,22 @@ package coyote.dx.aggregate;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import coyote.dataframe.DataFrame;
+import coyote.dataframe.DataFrameException;
 import coyote.dx.AbstractTest;
 import coyote.dx.context.TransactionContext;
 import coyote.loader.cfg.Config;
@@ -378,4 +383,171 @@ public class SortTest extends AbstractTest {
     }
   }
 
+
+
+
+  /**
+   * Sort by state without case, then by amount in descending numeric order
+   */
+  @Test
+  public void multipleFields() throws ConfigurationException, IOException {
+    DataFrame fields = new DataFrame() //
+        .set("state", new DataFrame().set("mode", "AscendNoCase")) //
+        .set("amount", new DataFrame().set("mode", "Descend").set("type", "Numeric"));
+    Config configuration = new Config(new DataFrame().set("fields", fields));
+
+    List<DataFrame> frames = new ArrayList<>();
+    frames.add(new DataFrame().set("state", "OH").set("amount", "9"));
+    frames.add(new DataFrame().set("state", "ca").set("amount", "100"));
+    frames.add(new DataFrame().set("state", "oh").set("amount", "10"));
+    frames.add(new DataFrame().set("state", "CA").set("amount", "20"));
+
+    try (Sort aggregator = new Sort()) {
+      aggregator.setConfiguration(configuration);
+      aggregator.open(getTransformContext());
+      TransactionContext context = createTransactionContext();
+      context.setLastFrame(true);
+      List<DataFrame> result = aggregator.aggregate(frames, context);
+
+      assertEquals(4, result.size());
+      assertEquals("100", result.get(0).getAsString("amount"));
+      assertEquals("20", result.get(1).getAsString("amount"));
+      assertEquals("10", result.get(2).getAsString("amount"));
+      assertEquals("9", result.get(3).getAsString("amount"));
+    }
+  }
+
+
+
+
+  /**
+   * Numbers and strings in the same field are ordered by type, numbers 
+   * first, so the order does not depend on the order of the input
+   */
+  @Test
+  public void mixedTypes() throws ConfigurationException, IOException {
+    Config configuration = new Config(new DataFrame().set("field", "key").set("mode", "Ascend"));
+
+    List<DataFrame> frames = new ArrayList<>();
+    frames.add(new DataFrame().set("key", "9"));
+    frames.add(new DataFrame().set("key", 10));
+    frames.add(new DataFrame().set("key", "10"));
+    frames.add(new DataFrame().set("key", 9));
+    frames.add(new DataFrame().set("key", "abc"));
+    frames.add(new DataFrame().set("key", 1.5));
+
+    try (Sort aggregator = new Sort()) {
+      aggregator.setConfiguration(configuration);
+      aggregator.open(getTransformContext());
+      TransactionContext context = createTransactionContext();
+      context.setLastFrame(true);
+      List<DataFrame> result = aggregator.aggregate(frames, context);
+
+      assertEquals(6, result.size());
+      assertEquals(1.5, result.get(0).getAsDouble("key"), 0);
+      assertEquals(9, result.get(1).getAsInt("key"));
+      assertEquals(10, result.get(2).getAsInt("key"));
+      assertEquals("10", result.get(3).get("key"));
+      assertEquals("9", result.get(4).get("key"));
+      assertEquals("abc", result.get(5).get("key"));
+    }
+  }
+
+
+
+
+  /**
+   * More frames than fit in the memory limit are sorted in runs on disk and
+   * merged
+   */
+  @Test
+  public void spill() throws ConfigurationException, IOException, DataFrameException {
+    Config configuration = new Config(new DataFrame().set("field", "key").set("mode", "Ascend").set(Sort.MEMORY, 1));
+
+    try (Sort aggregator = new Sort()) {
+      aggregator.setConfiguration(configuration);
+      aggregator.open(getTransformContext());
+
+      List<DataFrame> result = null;
+      List<DataFrame> framelist = new ArrayList<>();
+      framelist.add(new DataFrame());
+      TransactionContext context = createTransactionContext();
+      int count = 20000;
+      for (int x = 0; x < count; x++) {
+        framelist.set(0, new DataFrame().set("key", (x * 7919) % 1000).set("order", x).set("text", "The quick brown fox jumps over the lazy dog"));
+        context.setLastFrame(x + 1 == count);
+        result = aggregator.aggregate(framelist, context);
+      }
+
+      assertEquals(count, result.size());
+      DataFrame previous = null;
+      for (DataFrame frame : result) {
+        if (previous != null) {
+          int key = frame.getAsInt("key");
+          assertTrue(previous.getAsInt("key") <= key);
+          if (previous.getAsInt("key") == key) {
+            assertTrue(previous.getAsInt("order") < frame.getAsInt("order"));
+          }
+        }
+        previous = frame;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * A spilled run which cannot be read back places the context in error
+   * instead of silently truncating the sorted frames.
+   */
+  @Test
+  public void truncatedSpill() throws ConfigurationException, IOException {
+    final File directory = new File(System.getProperty("java.io.tmpdir"), "SortTest" + System.nanoTime());
+    assertTrue(directory.mkdirs());
+    Config configuration = new Config(new DataFrame().set("field", "key").set("mode", "Ascend").set(Sort.MEMORY, 1));
+
+    try (Sort aggregator = new Sort() {
+      {
+        jobDirectory = directory;
+      }
+    }) {
+      aggregator.setConfiguration(configuration);
+      aggregator.open(getTransformContext());
+
+      List<DataFrame> result = null;
+      List<DataFrame> framelist = new ArrayList<>();
+      framelist.add(new DataFrame());
+      TransactionContext context = createTransactionContext();
+      int count = 20000;
+      for (int x = 0; x < count; x++) {
+        framelist.set(0, new DataFrame().set("key", (x * 7919) % 1000).set("text", "The quick brown fox jumps over the lazy dog"));
+        context.setLastFrame(x + 1 == count);
+        result = aggregator.aggregate(framelist, context);
+      }
+
+      // cut each run on disk in half
+      File[] runs = directory.listFiles();
+      assertTrue(runs.length > 0);
+      for (File run : runs) {
+        try (RandomAccessFile file = new RandomAccessFile(run, "rw")) {
+          file.setLength(file.length() / 2);
+        }
+      }
+
+      assertFalse(getTransformContext().isInError());
+      int read = 0;
+      for (Iterator<DataFrame> it = result.iterator(); it.hasNext(); it.next()) {
+        read++;
+      }
+      assertTrue(read < count);
+      assertTrue(getTransformContext().isInError());
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
 }
@@ -132,6 +132,44 @@ public class EvaluatorTest {
 
 
 
+  /**
+   * Regex is a method which finds a regular expression in the value of a
+   * frame field, transform context key or symbol.
+   */
+  @Test
+  public void booleanRegex() {
+    String expression;
+    try {
+      expression = "regex(Working.field1,val.e)";
+      assertTrue(evaluator.evaluateBoolean(expression));
+      assertTrue(evaluator.evaluateBoolean(expression)); // compiled once
+
+      expression = "regex(Working.field1,Val)";
+      assertFalse(evaluator.evaluateBoolean(expression));
+
+      expression = "islast && regex(string,yl)";
+      assertTrue(evaluator.evaluateBoolean(expression));
+    } catch (final Exception e) {
+      e.printStackTrace();
+      fail(e.getMessage());
+    }
+  }
+
+
+
+
+  /**
+   * Invalid regular expressions are reported when the expression is
+   * prepared, not when it is first evaluated.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void booleanRegexSyntax() {
+    evaluator.prepareBoolean("regex(Working.field1,*a)");
+  }
+
+
+
+
   /**
    * contextError is a literal for the current error state of the current transform (parent) context.
    */
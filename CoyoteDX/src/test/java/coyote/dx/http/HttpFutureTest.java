@@ -7,11 +7,15 @@
  */
 package coyote.dx.http;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 import coyote.commons.network.MimeType;
@@ -38,6 +42,38 @@ public class HttpFutureTest {
 
 
 
+  @Test
+  public void listener() {
+    final List<Response> responses = new ArrayList<Response>();
+    HttpFuture.ResponseListener listener = new HttpFuture.ResponseListener() {
+      @Override
+      public void onResponse(HttpFuture future, Response response) {
+        responses.add(response);
+      }
+    };
+
+    HttpFuture future = new HttpFuture();
+    future.onComplete(listener);
+    assertTrue(responses.isEmpty());
+
+    Response response = new Response(Status.OK, MimeType.ANY.getType(), null, 0L);
+    assertTrue(future.setResponse(response));
+    assertEquals(1, responses.size());
+    assertTrue(response == responses.get(0));
+
+    // only the first response completes the future
+    assertFalse(future.setResponse(new Response(Status.NO_CONTENT, MimeType.ANY.getType(), null, 0L)));
+    assertTrue(response == future.getResponse(0));
+    assertEquals(1, responses.size());
+
+    // listeners added after completion are called right away
+    future.onComplete(listener);
+    assertEquals(2, responses.size());
+  }
+
+
+
+
   /**
    * Somthing which runs in a different thread and completes the HttpFuture
    */
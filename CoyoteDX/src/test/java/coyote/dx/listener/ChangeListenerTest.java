@@ -7,6 +7,8 @@
  */
 package coyote.dx.listener;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -50,9 +52,11 @@ public class ChangeListenerTest extends AbstractChangeListenerTest {
 
     Config listenerCfg = new Config();
     listenerCfg.put(ConfigTag.FIELD, "Fee");
+    listenerCfg.put("Precision", "decimal");
 
     try (TestListener listener = new TestListener()) {
       initListener(listener, listenerCfg);
+      assertTrue(listener.isDecimalPrecision());
       loadListener(listener, frames);
 
       Decimal average = listener.getSimpleAverage();
@@ -91,6 +95,7 @@ public class ChangeListenerTest extends AbstractChangeListenerTest {
 
     Config listenerCfg = new Config();
     listenerCfg.put(ConfigTag.FIELD, "Memory");
+    listenerCfg.put("Precision", "decimal");
 
     try (TestListener listener = new TestListener()) {
       initListener(listener, listenerCfg);
@@ -122,6 +127,78 @@ public class ChangeListenerTest extends AbstractChangeListenerTest {
 
 
 
+  /**
+   * Samples kept as doubles in a limited window should give the same 
+   * results (within rounding) as the decimals.
+   */
+  @Test
+  public void doublePrecision() {
+    List<DataFrame> frames = new ArrayList<>();
+    frames.add(new DataFrame().set("Id", "123").set("Fee", 0.225));
+    frames.add(new DataFrame().set("Id", "456").set("Fee", "0.225"));
+    frames.add(new DataFrame().set("Id", "789").set("Fee", 5));
+    frames.add(new DataFrame().set("Id", "012").set("Fee", "-3"));
+
+    Config listenerCfg = new Config();
+    listenerCfg.put(ConfigTag.FIELD, "Fee");
+    listenerCfg.put(ConfigTag.LIMIT, 3);
+
+    try (TestListener listener = new TestListener()) {
+      initListener(listener, listenerCfg);
+      assertFalse(listener.isDecimalPrecision());
+      loadListener(listener, frames);
+
+      assertEquals(0.225, listener.getFirstSample().toDouble(), 0.0000001);
+      assertEquals(-3, listener.getLastSample().toDouble(), 0.0000001);
+      assertEquals(2.225, listener.getTotal().toDouble(), 0.0000001);
+      assertEquals(2.225 / 3, listener.getSimpleAverage().toDouble(), 0.0000001);
+      assertEquals(-3, listener.getMinimum().toDouble(), 0.0000001);
+      assertEquals(5, listener.getMaximum().toDouble(), 0.0000001);
+      assertEquals(10.80013889, listener.getVariance().toDouble(), 0.0000001);
+      assertEquals(0.6125, listener.getExponentialAverage(Decimal.valueOf("0.5")).toDouble(), 0.0000001);
+
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      fail(e.getMessage());
+    }
+
+  }
+
+
+
+
+  /**
+   * Changing the precision after groups have been sampled should leave those
+   * groups with the precision they were created with.
+   */
+  @Test
+  public void precisionChange() {
+    Config listenerCfg = new Config();
+    listenerCfg.put(ConfigTag.FIELD, "Fee");
+    listenerCfg.put(ConfigTag.GROUP, "Id");
+
+    try (TestListener listener = new TestListener()) {
+      initListener(listener, listenerCfg);
+      listener.sample(1.5, "Double");
+      listener.setDecimalPrecision(true);
+      listener.sample(2.5, "Double");
+      listener.sample(0.5, "Decimal");
+      listener.setDecimalPrecision(false);
+      listener.sample(0.25, "Decimal");
+
+      assertEquals(4, listener.getTotal("Double").toDouble(), 0.0000001);
+      assertEquals(0.75, listener.getTotal("Decimal").toDouble(), 0.0000001);
+
+    } catch (Exception e) {
+      System.out.println(e.getMessage());
+      fail(e.getMessage());
+    }
+
+  }
+
+
+
+
   /**
    * Each unique value in the field "System" will specify a grouping.
    * Samples will be grouped by the different "System" names.
@@ -133,6 +210,7 @@ public class ChangeListenerTest extends AbstractChangeListenerTest {
     Config listenerCfg = new Config();
     listenerCfg.put(ConfigTag.FIELD, "Memory");
     listenerCfg.put(ConfigTag.GROUP, "System");
+    listenerCfg.put("Precision", "decimal");
 
     try (TestListener listener = new TestListener()) {
       initListener(listener, listenerCfg);
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+
+/**
+ *
+ */
+public class MetricRegistryTest {
+
+  @Test
+  public void countsAcrossThreads() throws Exception {
+    final Counter counter = new MetricRegistry().counter("test_counter", "Test");
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int x = 0; x < 8; x++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            counter.increment();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(80000, counter.get());
+  }
+
+
+
+
+  @Test
+  public void exposesCounters() {
+    MetricRegistry registry = new MetricRegistry();
+    Counter counter = registry.counter("frames", "Frames \"read\"", "job", "Say \"Hi\"");
+    assertSame(counter, registry.counter("frames", "Frames \"read\"", "job", "Say \"Hi\""));
+    counter.add(3);
+
+    String text = registry.expose();
+    assertTrue(text.contains("# TYPE frames counter\n"));
+    assertTrue(text.contains("frames_total{job=\"Say \\\"Hi\\\"\"} 3\n"));
+    assertTrue(text.endsWith("# EOF\n"));
+  }
+
+
+
+
+  @Test
+  public void exposesHistograms() {
+    MetricRegistry registry = new MetricRegistry();
+    Histogram histogram = registry.histogram("latency_seconds", "Latency", "stage", "Read");
+    histogram.record(1000); // 1 microsecond
+    histogram.record(2000000); // 2 milliseconds
+    histogram.record(60000000000L); // 60 seconds
+
+    String text = registry.expose();
+    assertTrue(text.contains("latency_seconds_bucket{stage=\"Read\",le=\"5.0E-6\"} 1\n"));
+    assertTrue(text.contains("latency_seconds_bucket{stage=\"Read\",le=\"0.0025\"} 2\n"));
+    assertTrue(text.contains("latency_seconds_bucket{stage=\"Read\",le=\"10.0\"} 2\n"));
+    assertTrue(text.contains("latency_seconds_bucket{stage=\"Read\",le=\"+Inf\"} 3\n"));
+    assertTrue(text.contains("latency_seconds_count{stage=\"Read\"} 3\n"));
+    assertTrue(text.contains("latency_seconds_sum{stage=\"Read\"} 60.002001\n"));
+  }
+
+
+
+
+  @Test
+  public void exposesAndRemovesGauges() {
+    MetricRegistry registry = new MetricRegistry();
+    registry.gauge("depth", "Queue depth", new Gauge() {
+      @Override
+      public double getValue() {
+        return 42;
+      }
+    }, "queue", "ReadAhead");
+    assertTrue(registry.expose().contains("depth{queue=\"ReadAhead\"} 42\n"));
+
+    registry.remove("depth", "queue", "ReadAhead");
+    assertEquals("# EOF\n", registry.expose());
+  }
+
+}
@@ -8,6 +8,7 @@
 package coyote.dx.reader;
 
 //import static org.junit.Assert.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -15,6 +16,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.io.StringReader;
 import java.text.ParseException;
+import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -85,4 +87,64 @@ public class CsvReaderTest extends AbstractTest {
 
   }
 
+
+
+  @Test
+  public void readBatch() throws IOException, ParseException {
+    DataFrame config = new DataFrame().set(ConfigTag.READER,
+        new DataFrame() //
+            .set(ConfigTag.CLASS, "CsvReader") //
+            .set(ConfigTag.TARGET, "dummy") // will set target & reader later
+            .set(ConfigTag.HEADER, true) //
+    );
+
+    TransformEngine engine = createEngine(config);
+    TransformContext engineContext = engine.contextInit();
+    CsvReader reader = (CsvReader)engine.getReader();
+    reader.open(engineContext);
+    reader.setReader(new CSVReader(new StringReader(CsvTestData.simpleNumericData()), SEPARATOR));
+
+    TransactionContext context = new TransactionContext(engineContext);
+    List<DataFrame> frames = reader.readBatch(context, 1);
+    assertEquals(1, frames.size());
+    assertEquals("0.00845", frames.get(0).getAsString("Rate"));
+    assertFalse(context.isLastFrame());
+
+    context = new TransactionContext(engineContext);
+    frames = reader.readBatch(context, 10);
+    assertEquals(1, frames.size());
+    assertEquals("0.008757", frames.get(0).getAsString("Rate"));
+    assertTrue(reader.eof());
+    assertTrue(context.isLastFrame());
+  }
+
+
+
+
+  @Test
+  public void preload() throws IOException, ParseException {
+    DataFrame config = new DataFrame().set(ConfigTag.READER,
+        new DataFrame() //
+            .set(ConfigTag.CLASS, "CsvReader") //
+            .set(ConfigTag.TARGET, "dummy") // will set target & reader later
+            .set(ConfigTag.HEADER, true) //
+            .set(ConfigTag.PRELOAD, true) //
+    );
+
+    TransformEngine engine = createEngine(config);
+    TransformContext engineContext = engine.contextInit();
+    CsvReader reader = (CsvReader)engine.getReader();
+    reader.open(engineContext);
+    reader.setReader(new CSVReader(new StringReader("Rate||Amount\r\n0.00845||1.21\r\n\r\n0.008757||0.02||extra\r\n"), "||"));
+
+    TransactionContext context = new TransactionContext(engineContext);
+    DataFrame frame = reader.read(context);
+    assertEquals("1.21", frame.getAsString("Amount"));
+    frame = reader.read(context);
+    assertEquals("0.008757", frame.getAsString("Rate"));
+    assertEquals("extra", frame.getAsString("COL2"));
+    assertTrue(reader.eof());
+    assertTrue(context.isLastFrame());
+  }
+
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import coyote.commons.network.http.HTTP;
+import coyote.commons.network.http.Response;
+import coyote.commons.network.http.Status;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.dx.http.HttpFuture;
+import coyote.loader.cfg.Config;
+
+
+/**
+ *
+ */
+public class HttpReaderTest {
+
+  /** Reads wait much longer than any of the tests should take */
+  private static final int WAIT = 10000;
+
+
+
+
+  @Test
+  public void handoff() throws Exception {
+    final HttpReader reader = createReader(WAIT, 10);
+    final HttpFuture future = createFuture("one");
+
+    // the read should block until the request arrives, not until the wait expires
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException ignore) {}
+        reader.getQueue().offer(future);
+      }
+    }).start();
+
+    TransactionContext context = new TransactionContext(new TransformContext());
+    long start = System.currentTimeMillis();
+    DataFrame frame = reader.read(context);
+    assertTrue(System.currentTimeMillis() - start < WAIT / 2);
+    assertNotNull(frame);
+    assertEquals("one", frame.getAsString("Name"));
+    assertSame(future, context.get("HttpFuture"));
+    assertEquals(HTTP.METHOD_POST, context.get("HttpMethod"));
+  }
+
+
+
+
+  @Test
+  public void wakeUp() throws Exception {
+    final HttpReader reader = createReader(WAIT, 10);
+
+    // nothing outstanding, so there is nothing to wake up for
+    reader.wakeUp();
+    assertTrue(reader.getQueue().isEmpty());
+
+    reader.getQueue().offer(createFuture("one"));
+    assertNotNull(reader.read(new TransactionContext(new TransformContext())));
+
+    // a worker completing the request wakes up the waiting read
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException ignore) {}
+        reader.wakeUp();
+        reader.wakeUp();
+      }
+    }).start();
+
+    long start = System.currentTimeMillis();
+    assertNull(reader.read(new TransactionContext(new TransformContext())));
+    assertTrue(System.currentTimeMillis() - start < WAIT / 2);
+
+    // only one wake-up is placed in the queue at a time
+    assertTrue(reader.getQueue().size() <= 1);
+  }
+
+
+
+
+  @Test
+  public void queueDepth() throws Exception {
+    HttpReader reader = createReader(WAIT, 2);
+    HttpReaderHandler handler = new HttpReaderHandler();
+    assertTrue(reader.getQueue().offer(createFuture("one")));
+    assertTrue(reader.getQueue().offer(createFuture("two")));
+
+    // the queue is full, so the request is rejected without waiting
+    long start = System.currentTimeMillis();
+    Response response = handler.dispatch(createFuture("three"), reader.getQueue(), WAIT);
+    assertTrue(System.currentTimeMillis() - start < WAIT / 2);
+    assertEquals(Status.UNAVAILABLE, response.getStatus());
+    assertEquals("1", response.getHeader("Retry-After"));
+    assertEquals(2, reader.getQueue().size());
+  }
+
+
+
+
+  @Test
+  public void discardTimedOut() throws Exception {
+    HttpReader reader = createReader(100, 10);
+
+    // the caller of this future stopped waiting for the response
+    HttpFuture expired = createFuture("expired");
+    assertNull(expired.getResponse(1));
+    assertTrue(expired.isTimedOut());
+
+    reader.getQueue().offer(expired);
+    reader.getQueue().offer(createFuture("current"));
+    DataFrame frame = reader.read(new TransactionContext(new TransformContext()));
+    assertNotNull(frame);
+    assertEquals("current", frame.getAsString("Name"));
+
+    reader.getQueue().offer(expired);
+    assertNull(reader.read(new TransactionContext(new TransformContext())));
+    assertTrue(reader.getQueue().isEmpty());
+    assertFalse(expired.isComplete());
+  }
+
+
+
+
+  private static HttpReader createReader(int wait, int depth) throws Exception {
+    Config cfg = new Config();
+    cfg.put("wait", wait);
+    cfg.put("queueDepth", depth);
+    HttpReader retval = new HttpReader();
+    retval.setConfiguration(cfg);
+    retval.createQueue();
+    return retval;
+  }
+
+
+
+
+  private static HttpFuture createFuture(String name) {
+    HttpFuture retval = new HttpFuture();
+    retval.setMethod(HTTP.METHOD_POST);
+    retval.setRequestUri("/api/test");
+    retval.setResource("test");
+    retval.setFrame(new DataFrame().set("Name", name));
+    return retval;
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ *
+ */
+public class JsonFrameStreamTest {
+
+  @Test
+  public void rootArray() throws IOException {
+    JsonFrameStream stream = new JsonFrameStream(new StringReader("[{\"a\":1},{\"a\":2,\"b\":[1,2]}]"), null);
+    DataFrame frame = stream.next();
+    assertNotNull(frame);
+    assertEquals(1, frame.getAsInt("a"));
+    frame = stream.next();
+    assertNotNull(frame);
+    assertEquals(2, frame.getAsInt("a"));
+    assertNull(stream.next());
+    stream.close();
+  }
+
+
+
+
+  @Test
+  public void rootObjects() throws IOException {
+    JsonFrameStream stream = new JsonFrameStream(new StringReader("{\"a\":1}\n{\"a\":2}\n{\"a\":3}\n"), null);
+    int count = 0;
+    while (stream.next() != null) {
+      count++;
+    }
+    assertEquals(3, count);
+    stream.close();
+  }
+
+
+
+
+  @Test
+  public void selector() throws IOException {
+    String json = "{\"total\":2,\"CVE_Items\":[{\"cve\":{\"id\":\"one\"},\"impact\":{}},{\"cve\":{\"id\":\"two\"}}]}";
+    JsonFrameStream stream = new JsonFrameStream(new StringReader(json), "CVE_Items.*.cve");
+    assertEquals("one", stream.next().getAsString("id"));
+    assertEquals("two", stream.next().getAsString("id"));
+    assertNull(stream.next());
+    stream.close();
+  }
+
+
+
+
+  @Test
+  public void invalid() throws IOException {
+    JsonFrameStream stream = new JsonFrameStream(new StringReader("[{\"a\":1},{\"a\" 2}]"), null);
+    assertNotNull(stream.next());
+    try {
+      stream.next();
+      fail("should not parse");
+    } catch (IOException e) {
+      // expected
+    }
+    stream.close();
+  }
+
+}
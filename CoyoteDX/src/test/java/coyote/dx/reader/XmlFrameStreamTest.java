@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ *
+ */
+public class XmlFrameStreamTest {
+
+  private static final String FEED = "<?xml version=\"1.0\"?><feed><title>Test</title>" + "<entry id=\"1\"><name>one</name><link href=\"a\"/></entry>" + "<entry id=\"2\"><name>two</name><size unit=\"kb\">12</size></entry></feed>";
+
+
+
+
+  @Test
+  public void childrenOfRoot() throws IOException {
+    XmlFrameStream stream = new XmlFrameStream(new StringReader(FEED), null);
+    assertEquals("Test", stream.next().getAsString(XmlFrameStream.TEXT_FIELD));
+    assertEquals("1", stream.next().getAsString("id"));
+    assertEquals("2", stream.next().getAsString("id"));
+    assertNull(stream.next());
+    stream.close();
+  }
+
+
+
+
+  @Test
+  public void selector() throws IOException {
+    XmlFrameStream stream = new XmlFrameStream(new StringReader(FEED), "feed.entry");
+    DataFrame frame = stream.next();
+    assertNotNull(frame);
+    assertEquals("one", frame.getAsString("name"));
+    frame = stream.next();
+    assertNotNull(frame);
+    assertEquals("two", frame.getAsString("name"));
+    assertNull(stream.next());
+    stream.close();
+  }
+
+
+
+
+  @Test
+  public void wildcard() throws IOException {
+    XmlFrameStream stream = new XmlFrameStream(new StringReader(FEED), "*.entry.size");
+    assertEquals("kb", stream.next().getAsString("unit"));
+    assertNull(stream.next());
+    stream.close();
+  }
+
+
+
+
+  @Test
+  public void invalid() throws IOException {
+    XmlFrameStream stream = new XmlFrameStream(new StringReader("<feed><entry>one</entry><entry>two</feed>"), "feed.entry");
+    assertNotNull(stream.next());
+    try {
+      stream.next();
+      fail("should not parse");
+    } catch (IOException e) {
+      // expected
+    }
+    stream.close();
+  }
+
+}
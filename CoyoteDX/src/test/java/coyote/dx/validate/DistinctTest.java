@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.validate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractTest;
+import coyote.dx.FrameValidator;
+import coyote.dx.context.TransactionContext;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+
+
+/**
+ *
+ */
+public class DistinctTest extends AbstractTest {
+
+  @Test
+  public void exact() {
+    String cfgData = "{ \"field\" : \"id\", \"Expected\" : 100, \"OffHeap\" : true }";
+    assertEquals(0, countDuplicates(cfgData, 10000));
+  }
+
+
+
+
+  /**
+   * Without an expected count the set starts small and grows as needed.
+   */
+  @Test
+  public void growing() {
+    String cfgData = "{ \"field\" : \"id\" }";
+    assertEquals(0, countDuplicates(cfgData, 50000));
+  }
+
+
+
+
+  @Test
+  public void approximate() {
+    String cfgData = "{ \"field\" : \"id\", \"Approximate\" : true, \"Expected\" : 10000, \"FalsePositive\" : 0.001 }";
+    // about 10 false positives are expected for 10,000 distinct values
+    assertTrue(countDuplicates(cfgData, 10000) < 50);
+  }
+
+
+
+
+  @Test(expected = ConfigurationException.class)
+  public void badRate() throws ConfigurationException {
+    Config configuration = parseConfiguration("{ \"field\" : \"id\", \"Approximate\" : true, \"FalsePositive\" : 1.5 }");
+    new Distinct().setConfiguration(configuration);
+  }
+
+
+
+
+  /**
+   * Validate the given number of distinct values, then validate each of them
+   * again, expecting all of the repeats to fail.
+   *
+   * @return the number of distinct values which failed validation
+   */
+  private int countDuplicates(String cfgData, int count) {
+    Config configuration = parseConfiguration(cfgData);
+    TransactionContext context = createTransactionContext();
+    int retval = 0;
+
+    try (FrameValidator validator = new Distinct()) {
+      validator.setConfiguration(configuration);
+      validator.open(getTransformContext());
+
+      for (int x = 0; x < count; x++) {
+        DataFrame sourceFrame = new DataFrame();
+        sourceFrame.put("id", "ID" + x);
+        context.setSourceFrame(sourceFrame);
+        if (!validator.process(context)) {
+          retval++;
+        }
+      }
+
+      for (int x = 0; x < count; x++) {
+        DataFrame sourceFrame = new DataFrame();
+        sourceFrame.put("id", "ID" + x);
+        context.setSourceFrame(sourceFrame);
+        assertFalse(validator.process(context));
+      }
+
+      DataFrame sourceFrame = new DataFrame();
+      sourceFrame.put("id", " ");
+      context.setSourceFrame(sourceFrame);
+      assertFalse(validator.process(context));
+
+    } catch (ConfigurationException | ValidationException | IOException e) {
+      e.printStackTrace();
+      fail(e.getMessage());
+    }
+    return retval;
+  }
+
+}
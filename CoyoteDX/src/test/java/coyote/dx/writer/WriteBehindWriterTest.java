@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractTest;
+
+
+/**
+ *
+ */
+public class WriteBehindWriterTest extends AbstractTest {
+
+  /**
+   * Records the frames written and the threads which wrote them.
+   */
+  private static class RecordingWriter extends AbstractFrameWriter {
+    final List<DataFrame> frames = new ArrayList<DataFrame>();
+    final int failAt;
+    volatile String threadName = null;
+    volatile boolean closed = false;
+
+
+
+
+    RecordingWriter(int failAt) {
+      this.failAt = failAt;
+    }
+
+
+
+
+    @Override
+    public void write(DataFrame frame) {
+      threadName = Thread.currentThread().getName();
+      if (frames.size() + 1 == failAt) {
+        throw new IllegalStateException("Write failure");
+      }
+      frames.add(frame);
+    }
+
+
+
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+
+
+
+  @Test
+  public void writesAllFramesOnClose() throws Exception {
+    RecordingWriter target = new RecordingWriter(0);
+    WriteBehindWriter writer = new WriteBehindWriter(target, 10);
+    writer.open(getTransformContext());
+    for (int x = 0; x < 1000; x++) {
+      DataFrame frame = new DataFrame();
+      frame.put("Seq", x);
+      writer.write(frame);
+    }
+    writer.close();
+
+    assertTrue(target.closed);
+    assertEquals(1000, target.frames.size());
+    for (int x = 0; x < 1000; x++) {
+      assertEquals(x, target.frames.get(x).getAsInt("Seq"));
+    }
+    assertNotEquals(Thread.currentThread().getName(), target.threadName);
+    assertFalse(getTransformContext().isInError());
+  }
+
+
+
+
+  @Test
+  public void surfacesWriterErrors() throws Exception {
+    RecordingWriter target = new RecordingWriter(5);
+    WriteBehindWriter writer = new WriteBehindWriter(target, 2);
+    writer.open(getTransformContext());
+    try {
+      for (int x = 0; x < 1000; x++) {
+        writer.write(new DataFrame());
+      }
+      fail("Writer failure should have been thrown");
+    } catch (IllegalStateException e) {
+      // expected
+    } finally {
+      writer.close();
+    }
+    assertTrue(getTransformContext().isInError());
+    assertEquals(4, target.frames.size());
+  }
+
+
+
+
+  @Test
+  public void surfacesErrorsOnClose() throws Exception {
+    // only the last frame fails, so every write is queued without error
+    RecordingWriter target = new RecordingWriter(10);
+    WriteBehindWriter writer = new WriteBehindWriter(target, 20);
+    writer.open(getTransformContext());
+    for (int x = 0; x < 10; x++) {
+      writer.write(new DataFrame());
+    }
+    try {
+      writer.close();
+      fail("Writer failure should have been thrown on close");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertTrue(target.closed);
+    assertTrue(getTransformContext().isInError());
+    assertEquals(9, target.frames.size());
+  }
+
+}
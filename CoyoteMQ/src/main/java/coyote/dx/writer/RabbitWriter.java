@@ -12,6 +12,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 
 import com.rabbitmq.client.AlreadyClosedException;
@@ -27,6 +28,7 @@ import coyote.commons.StringUtil;
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.marshal.JSONMarshaler;
 import coyote.dataframe.marshal.XMLMarshaler;
+import coyote.dx.BatchWriter;
 import coyote.dx.CMQ;
 import coyote.dx.ConfigTag;
 import coyote.dx.ConfigurableComponent;
@@ -40,7 +42,7 @@ import coyote.loader.log.LogMsg;
 /**
  * 
  */
-public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, ConfigurableComponent {
+public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, BatchWriter, ConfigurableComponent {
 
   private static final String BINARY = "Binary";
   private static final String JSON = "JSON";
@@ -191,48 +193,98 @@ public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, Co
   @Override
   public void write(DataFrame frame) {
     if (frame != null) {
-      byte[] data;
+      byte[] data = encode(frame, getFormat(), getEncoding());
+      if (data != null) {
+        try {
+          channel.basicPublish("", getQueueName(), null, data);
+          Log.debug("Sent " + data.length + " bytes to '" + getQueueName() + "'");
+        } catch (IOException e) {
+          Log.error(e.getClass().getSimpleName() + ":" + e.getMessage() + "\n" + ExceptionUtil.stackTrace(e));
+        }
+      }
+    }
+  }
 
-      try {
-        String format = getFormat();
-        if (StringUtil.isNotBlank(format)) {
-
-          if (format.equalsIgnoreCase(BINARY)) {
-            data = frame.getBytes();
-          } else {
-            String datastring;
-            if (format.equalsIgnoreCase(JSON)) {
-              datastring = JSONMarshaler.marshal(frame);
-            } else if (format.equalsIgnoreCase(XML)) {
-              datastring = XMLMarshaler.marshal(frame);
-            } else {
-              Log.error("Unsupported message format of '" + format + "' JSON and XML are the currently supported options");
-              getContext().setError("Unsupported message format of '" + format + "'");
-              return;
-            }
-            String encoding = getEncoding();
-            if (StringUtil.isNotBlank(encoding)) {
-              try {
-                data = datastring.getBytes(encoding);
-              } catch (Exception e) {
-                Log.error("Unsupported string encoding of '" + encoding + "'");
-                getContext().setError("Unsupported string encoding of '" + encoding + "'");
-                return;
-              }
-            } else {
-              data = StringUtil.getBytes(datastring);
-            }
+
+
+
+  /**
+   * Publish all the frames, resolving the queue, format and encoding once for 
+   * the whole batch.
+   * 
+   * @see coyote.dx.BatchWriter#writeBatch(java.util.List)
+   */
+  @Override
+  public void writeBatch(List<DataFrame> frames) {
+    String queue = getQueueName();
+    String format = getFormat();
+    String encoding = getEncoding();
+    int count = 0;
+    long bytes = 0;
+    try {
+      for (DataFrame frame : frames) {
+        if (frame != null) {
+          byte[] data = encode(frame, format, encoding);
+          if (data == null) {
+            break;
           }
-        } else {
-          data = frame.getBytes();
+          channel.basicPublish("", queue, null, data);
+          count++;
+          bytes += data.length;
         }
+      }
+    } catch (IOException e) {
+      Log.error(e.getClass().getSimpleName() + ":" + e.getMessage() + "\n" + ExceptionUtil.stackTrace(e));
+    }
+    Log.debug("Sent " + count + " messages (" + bytes + " bytes) to '" + queue + "'");
+  }
+
+
+
+
+  /**
+   * Convert the frame into the bytes of a message in the given format.
+   * 
+   * @param frame the frame to encode
+   * @param format the configured message format
+   * @param encoding the configured string encoding
+   * 
+   * @return the message body or null if the format or encoding is not 
+   *         supported, in which case the context will be in error.
+   */
+  private byte[] encode(DataFrame frame, String format, String encoding) {
+    byte[] data;
+    if (StringUtil.isNotBlank(format)) {
 
-        channel.basicPublish("", getQueueName(), null, data);
-        Log.debug("Sent " + data.length + " bytes to '" + getQueueName() + "'");
-      } catch (IOException e) {
-        Log.error(e.getClass().getSimpleName() + ":" + e.getMessage() + "\n" + ExceptionUtil.stackTrace(e));
+      if (format.equalsIgnoreCase(BINARY)) {
+        data = frame.getBytes();
+      } else {
+        String datastring;
+        if (format.equalsIgnoreCase(JSON)) {
+          datastring = JSONMarshaler.marshal(frame);
+        } else if (format.equalsIgnoreCase(XML)) {
+          datastring = XMLMarshaler.marshal(frame);
+        } else {
+          Log.error("Unsupported message format of '" + format + "' JSON and XML are the currently supported options");
+          getContext().setError("Unsupported message format of '" + format + "'");
+          return null;
+        }
+        if (StringUtil.isNotBlank(encoding)) {
+          try {
+            data = datastring.getBytes(encoding);
+          } catch (Exception e) {
+            Log.error("Unsupported string encoding of '" + encoding + "'");
+            getContext().setError("Unsupported string encoding of '" + encoding + "'");
+            return null;
+          }
+        } else {
+          data = StringUtil.getBytes(datastring);
+        }
       }
+    } else {
+      data = frame.getBytes();
     }
+    return data;
   }
 
 
@@ -10,6 +10,8 @@ package coyote.dx;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
+import org.apache.http.HttpHost;
+
 import coyote.commons.CipherUtil;
 import coyote.commons.StringUtil;
 import coyote.commons.Version;
@@ -20,6 +22,7 @@ import coyote.dataframe.DataFrame;
 import coyote.dataframe.DataFrameException;
 import coyote.dx.context.TransformContext;
 import coyote.dx.web.ExchangeType;
+import coyote.dx.web.HttpClientService;
 import coyote.dx.web.Parameters;
 import coyote.dx.web.Proxy;
 import coyote.dx.web.Resource;
@@ -65,10 +68,19 @@ public class CWS {
   public static final String PAGINATION = "Pagination";
   private static final String STEP = "Step";
   private static final String START = "Start";
+  public static final String PREFETCH = "Prefetch";
+  public static final String PARALLEL = "Parallel";
+  public static final String TOTAL = "Total";
 
   // For the WebServiceWriter
   public static final String RESPONSE_WRITER = "ResponseWriter";
 
+  // Shared HTTP client tags
+  public static final String HTTP_CLIENT = "HttpClient";
+  public static final String MAX_CONNECTIONS = "MaxConnections";
+  public static final String MAX_PER_HOST = "MaxPerHost";
+  public static final String THREADS = "Threads";
+
   // Message bundle for i18n
   public static final BundleBaseName MSG;
 
@@ -140,6 +152,56 @@ public class CWS {
 
 
 
+  /**
+   * Apply the limits in the given configuration to the HTTP client shared by 
+   * all the web service components in the runtime.
+   * 
+   * <p>{@code MaxConnections} limits the connections to all hosts and 
+   * {@code Threads} the number of requests sent at once; these apply to all 
+   * the components in the runtime. {@code MaxPerHost} limits the connections 
+   * to the host of the given resource.</p>
+   * 
+   * @param cfg the configuration of the HTTP client
+   * @param resource the resource whose host is to be limited
+   * 
+   * @throws ConfigurationException if any of the limits is not a positive integer
+   */
+  public static void configHttpClient(DataFrame cfg, Resource resource) throws ConfigurationException {
+    if (cfg != null) {
+      HttpClientService service = HttpClientService.getInstance();
+      for (DataField field : cfg.getFields()) {
+        if (MAX_CONNECTIONS.equalsIgnoreCase(field.getName())) {
+          service.setMaxTotal(parseLimit(field));
+        } else if (MAX_PER_HOST.equalsIgnoreCase(field.getName())) {
+          if (resource != null) {
+            service.setMaxPerHost(new HttpHost(resource.getHost(), resource.getPort(), resource.getScheme()), parseLimit(field));
+          }
+        } else if (THREADS.equalsIgnoreCase(field.getName())) {
+          service.setThreads(parseLimit(field));
+        }
+      }
+    }
+  }
+
+
+
+
+  private static int parseLimit(DataField field) throws ConfigurationException {
+    int retval;
+    try {
+      retval = Integer.parseInt(field.getStringValue().trim());
+    } catch (Exception e) {
+      throw new ConfigurationException("Could not parse HTTP client '" + field.getName() + "' value '" + field.getStringValue() + "' into an integer");
+    }
+    if (retval < 1) {
+      throw new ConfigurationException("HTTP client '" + field.getName() + "' must be greater than zero");
+    }
+    return retval;
+  }
+
+
+
+
   /**
    * Add a request decorator to the resource.
    *  
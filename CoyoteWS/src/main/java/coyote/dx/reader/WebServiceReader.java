@@ -17,6 +17,7 @@ import coyote.commons.template.SymbolTable;
 import coyote.commons.template.Template;
 import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
+import coyote.dataframe.DataFrameException;
 import coyote.dataframe.selector.FrameSelector;
 import coyote.dx.*;
 import coyote.dx.context.TransactionContext;
@@ -25,6 +26,7 @@ import coyote.dx.web.*;
 import coyote.dx.web.auth.AuthenticationException;
 import coyote.dx.web.auth.Authenticator;
 import coyote.dx.web.auth.NullAuthenticator;
+import coyote.loader.cfg.Config;
 import coyote.loader.cfg.ConfigurationException;
 import coyote.loader.log.Log;
 import coyote.loader.log.LogMsg;
@@ -32,6 +34,7 @@ import coyote.loader.log.LogMsg;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 
@@ -54,10 +57,23 @@ import java.util.List;
  * they do occur, it is often easier to subclass this reader and handle 
  * pagination according to the particular API being called. 
  * 
- * <p>Note: pagination is used to retrieve the entire set into memory for 
- * those APIs which limit result limits. All results, regardless of the number 
- * of pages, are retrieved into memory before the read method returns the 
- * first data frame.
+ * <p>When a {@code Pagination} section is configured, the results are 
+ * streamed a page at a time. Frames are returned from the current page while 
+ * the next {@code Prefetch} pages (default 1) are requested in the 
+ * background, so only the pages in flight are held in memory. The last page 
+ * is the first one returning fewer frames than the pagination step; any pages
+ * requested past it are discarded. 
+ * 
+ * <p>If the API reports the total number of records in a field of the 
+ * result, naming that field in {@code Total} stops requests at the last 
+ * page and allows up to {@code Parallel} pages to be requested at once after 
+ * the first page reports the total. Frames are always returned in page order.
+ * <pre>
+ * "Pagination": { "Step": 100, "Prefetch": 2, "Total": "total", "Parallel": 8 }
+ * </pre>
+ * 
+ * <p>Note: {@link #retrieveData()} still retrieves all the pages into memory 
+ * for those subclasses which need the entire set before reading.
  */
 public class WebServiceReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent {
 
@@ -68,6 +84,23 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
   private Pagination pagination = null;
   private String resourceUrl = null;
 
+  /** The number of pages to request ahead of the page being read */
+  private int prefetch = 1;
+  /** The number of pages to request at once when the total is known */
+  private int parallel = 0;
+  /** The name of the result field holding the total number of records */
+  private String totalField = null;
+
+  /** True when frames are being read a page at a time */
+  private boolean streaming = false;
+  /** The responses of the pages requested but not yet read, in page order */
+  private final LinkedList<Response> pages = new LinkedList<Response>();
+  /** True when the last page has been received */
+  private boolean lastPage = false;
+  /** The total number of records reported by the API, -1 if not known */
+  private long total = -1;
+  private SymbolTable pageSymbols = null;
+
 
 
 
@@ -152,8 +185,10 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
       if ((field.getName() != null) && field.getName().equalsIgnoreCase(CWS.PAGINATION)) {
         if (field.isFrame()) {
           try {
-            pagination = CWS.configPagination((DataFrame)field.getObjectValue());
-            Log.debug("Using pagination settings: " + pagination.toString());
+            DataFrame cfg = (DataFrame)field.getObjectValue();
+            pagination = CWS.configPagination(cfg);
+            configPrefetch(cfg);
+            Log.debug("Using pagination settings: " + pagination.toString() + " prefetch:" + prefetch + " parallel:" + parallel);
           } catch (ConfigurationException e) {
             Log.fatal(e);
             context.setError("Could not configure pagination: " + e.getMessage());
@@ -192,6 +227,8 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
       // Set the configured authenticator
       resource.setAuthenticator(authenticator);
 
+      CWS.configHttpClient(getConfiguration().getSection(CWS.HTTP_CLIENT), resource);
+
       // Now look for a Request Decorator configuration frame and add the 
       // request decorators to the new resource 
       for (DataField field : getConfiguration().getFields()) {
@@ -224,6 +261,9 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
     } catch (AuthenticationException e) {
       Log.fatal(e);
       context.setError("Could not authenticate resource: " + e.getMessage());
+    } catch (ConfigurationException e) {
+      Log.fatal(e);
+      context.setError("Could not configure HTTP client: " + e.getMessage());
     }
 
     // The resource should be open and ready for reads
@@ -232,18 +272,56 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
 
 
 
+  /**
+   * Read the prefetch settings from the pagination configuration.
+   * 
+   * @param cfg the pagination section of the configuration
+   * 
+   * @throws ConfigurationException if a setting could not be parsed
+   */
+  private void configPrefetch(DataFrame cfg) throws ConfigurationException {
+    Config config = new Config(cfg);
+    for (DataField field : cfg.getFields()) {
+      try {
+        if (CWS.PREFETCH.equalsIgnoreCase(field.getName())) {
+          prefetch = Math.max(0, config.getAsInt(field.getName()));
+        } else if (CWS.PARALLEL.equalsIgnoreCase(field.getName())) {
+          parallel = Math.max(0, config.getAsInt(field.getName()));
+        } else if (CWS.TOTAL.equalsIgnoreCase(field.getName())) {
+          totalField = field.getStringValue();
+        }
+      } catch (DataFrameException e) {
+        throw new ConfigurationException("Configuration value '" + field.getName() + "' could not be parsed into a numeric value");
+      }
+    }
+  }
+
+
+
+
   @Override
   public DataFrame read(TransactionContext context) {
     DataFrame retval = null;
 
     if (dataframes == null) {
-      dataframes = retrieveData();
+      if (pagination != null) {
+        startPaging();
+      } else {
+        dataframes = retrieveData();
+      }
+    }
+
+    if (dataframes.size() == 0) {
+      nextPage();
     }
 
     if (dataframes.size() > 0) {
       retval = dataframes.remove(0);
       if (dataframes.size() == 0) {
-        context.setLastFrame(true);
+        nextPage();
+        if (dataframes.size() == 0) {
+          context.setLastFrame(true);
+        }
       }
     }
 
@@ -257,9 +335,182 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
   @Override
   public void close() throws IOException {
     dataframes = null;
+    streaming = false;
+    pages.clear();
     super.close();
   }
 
+
+
+
+  /**
+   * Start reading the results a page at a time, requesting the first pages.
+   */
+  private void startPaging() {
+    streaming = true;
+    lastPage = false;
+    total = -1;
+    pages.clear();
+    dataframes = new LinkedList<DataFrame>();
+    pagination.reset();
+    pageSymbols = new SymbolTable();
+    pageSymbols.merge(getContext().getSymbols());
+    requestPages(Math.max(1, prefetch));
+  }
+
+
+
+
+  /**
+   * Fill the data frames with the next page which has frames, waiting for 
+   * it to arrive if necessary.
+   * 
+   * <p>Nothing is done if the results are not being streamed or all the 
+   * pages have been read.
+   */
+  private void nextPage() {
+    if (!streaming) {
+      return;
+    }
+    while (dataframes.size() == 0) {
+      requestPages(1);
+      if (pages.size() == 0) {
+        break;
+      }
+      Response response = pages.removeFirst();
+      lastResponse = response;
+      while (!response.isComplete() && !Thread.currentThread().isInterrupted()) {
+        response.waitForComplete(100);
+      }
+      long retrieved = selectFrames(response, dataframes);
+      if (total < 0 && totalField != null && response.getResult() != null) {
+        total = findTotal(response.getResult());
+      }
+      if (retrieved < pagination.getStep() || Thread.currentThread().isInterrupted()) {
+        // any pages requested past this one are empty
+        lastPage = true;
+        pages.clear();
+      }
+      requestPages((total < 0) ? prefetch : Math.max(prefetch, parallel));
+    }
+    if (pages.size() == 0 && lastPage) {
+      streaming = false;
+    }
+  }
+
+
+
+
+  /**
+   * Request pages until the given number of pages are waiting to be read.
+   * 
+   * <p>Pages are not requested after the last page is received or past the 
+   * total number of records when the total is known.
+   * 
+   * @param depth the number of pages to have requested
+   */
+  private void requestPages(int depth) {
+    while (!lastPage && pages.size() < depth) {
+      if (total >= 0 && pagination.getOffset() - pagination.getStart() >= total) {
+        lastPage = pages.size() == 0;
+        break;
+      }
+      Response response = requestPage(pageSymbols);
+      pagination.step();
+      if (response == null) {
+        lastPage = true;
+      } else {
+        pages.addLast(response);
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Request the page at the current pagination offset.
+   * 
+   * @param symbols the symbols used to resolve the resource URI
+   * 
+   * @return the response to the request, or null if it could not be sent
+   */
+  private Response requestPage(SymbolTable symbols) {
+    Response retval = null;
+    symbols.merge(pagination.toSymbolTable());
+    String uri = Template.preProcess(resourceUrl, symbols);
+    Log.debug("Retrieving batch for " + uri);
+    try {
+      resource.setBaseUri(uri);
+    } catch (URISyntaxException e) {
+      e.printStackTrace();
+    }
+
+    try {
+      retval = resource.request();
+    } catch (InvocationException e) {
+      e.printStackTrace();
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Add the frames selected from the result of the given response to the 
+   * given list.
+   * 
+   * @param response the completed response
+   * @param frames the list to which the frames are to be added
+   * 
+   * @return the number of frames selected; zero if no selector is configured 
+   *         as the entire result is a single frame
+   */
+  private long selectFrames(Response response, List<DataFrame> frames) {
+    long retval = 0;
+    DataFrame result = response.getResult();
+    // apply the selector to the results
+    String pattern = getString(ConfigTag.SELECTOR);
+    if (StringUtil.isNotBlank(pattern)) {
+      FrameSelector selector = new FrameSelector(pattern, CDX.DEFAULT_FRAMEPATH_NAME);
+      List<DataFrame> results = selector.select(result);
+      retval = results.size();
+      Log.debug("Selected " + retval + " frames");
+      // add the selected frames to the return value list
+      for (DataFrame frame : results) {
+        frames.add(DataFrameUtil.flatten(frame));
+      }
+    } else {
+      // if no selector, place the entire result in the return value
+      frames.add(DataFrameUtil.flatten(result));
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @param result the result of the first page
+   * 
+   * @return the total number of records reported in the result, or -1 if it 
+   *         was not found
+   */
+  private long findTotal(DataFrame result) {
+    long retval = -1;
+    DataField field = result.getFieldIgnoreCase(totalField);
+    if (field != null && field.getObjectValue() != null) {
+      try {
+        retval = Long.parseLong(field.getStringValue().trim());
+        Log.debug("Retrieving a total of " + retval + " records");
+      } catch (NumberFormatException e) {
+        Log.warn("Could not parse the total of '" + totalField + "' from '" + field.getStringValue() + "'");
+      }
+    }
+    return retval;
+  }
+
   /**
    * Read data from the web service call and populate a list of data frames 
    * representing the retrieved data.
@@ -282,46 +533,18 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
     long retrieved;
     do {
       retrieved = 0;
-      symbols.merge(pagination.toSymbolTable());
-      String uri = Template.preProcess(resourceUrl, symbols);
-      Log.debug("Retrieving batch for " + uri);
-      try {
-        resource.setBaseUri(uri);
-      } catch (URISyntaxException e) {
-        e.printStackTrace();
-      }
-
-      try {
-        lastResponse = resource.request();
-      } catch (InvocationException e) {
-        e.printStackTrace();
-      }
+      lastResponse = requestPage(symbols);
 
       if (lastResponse != null) {
-        while (!lastResponse.isComplete()) {
-          Thread.yield();
+        while (!lastResponse.isComplete() && !Thread.currentThread().isInterrupted()) {
+          lastResponse.waitForComplete(100);
         }
         // TODO: what about time-outs?
         // TODO: What about errors?
       }
 
       if (lastResponse != null) {
-        DataFrame result = lastResponse.getResult();
-        // apply the selector to the results
-        String pattern = getString(ConfigTag.SELECTOR);
-        if (StringUtil.isNotBlank(pattern)) {
-          FrameSelector selector = new FrameSelector(pattern, CDX.DEFAULT_FRAMEPATH_NAME);
-          List<DataFrame> results = selector.select(result);
-          retrieved = results.size();
-          Log.debug("Selected " + retrieved + " frames");
-          // add the selected frames to the return value list
-          for (DataFrame frame : results) {
-            retval.add(DataFrameUtil.flatten(frame));
-          }
-        } else {
-          // if no selector, place the entire result in the return value
-          retval.add(DataFrameUtil.flatten(result));
-        }
+        retrieved = selectFrames(lastResponse, retval);
       }
       // set the variable to the next batch
       pagination.step();
@@ -342,7 +565,7 @@ public class WebServiceReader extends AbstractFrameReader implements FrameReader
    */
   @Override
   public boolean eof() {
-    return (dataframes != null && dataframes.size() == 0);
+    return (dataframes != null && dataframes.size() == 0 && !streaming);
   }
 
 
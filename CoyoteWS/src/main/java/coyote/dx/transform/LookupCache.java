@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.transform;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ * A cache of lookup results which expire after a time to live.
+ *
+ * <p>Keys which were found to have no result are cached as negative entries
+ * with their own (usually shorter) time to live so missing keys are not
+ * looked up on every frame. The least recently used entries are removed when
+ * the cache is full.</p>
+ *
+ * <p>All the methods are synchronized; the cache may be shared by several
+ * threads.</p>
+ */
+class LookupCache {
+
+  private final int size;
+  private final long ttl;
+  private final long negativeTtl;
+  private final Map<String, Entry> entries;
+  private long hits = 0;
+  private long misses = 0;
+
+
+
+
+  /**
+   * @param size the maximum number of entries, 0 to cache nothing
+   * @param ttl milliseconds a result is kept
+   * @param negativeTtl milliseconds a missing result is kept, 0 to not cache
+   *        missing results
+   */
+  LookupCache(final int size, final long ttl, final long negativeTtl) {
+    this.size = size;
+    this.ttl = ttl;
+    this.negativeTtl = negativeTtl;
+    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+
+
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+        return size() > LookupCache.this.size;
+      }
+    };
+  }
+
+
+
+
+  /**
+   * @param key the key to look up
+   *
+   * @return the entry for the key or null if there is none or it has expired
+   */
+  synchronized Entry get(final String key) {
+    Entry retval = entries.get(key);
+    if (retval != null && retval.expires <= System.currentTimeMillis()) {
+      entries.remove(key);
+      retval = null;
+    }
+    if (retval != null) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @param key the key which was looked up
+   * @param result the result of the lookup, null if the key has no result
+   */
+  synchronized void put(final String key, final DataFrame result) {
+    final long life = (result != null) ? ttl : negativeTtl;
+    if (size > 0 && life > 0) {
+      entries.put(key, new Entry(result, System.currentTimeMillis() + life));
+    }
+  }
+
+
+
+
+  /**
+   * @return the number of entries in the cache, including expired ones not
+   *         yet removed
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+
+
+
+  /**
+   * @return the fraction of the calls to {@link #get(String)} which found an
+   *         entry, 0 if there have been none
+   */
+  synchronized double getHitRatio() {
+    final long total = hits + misses;
+    return (total > 0) ? (double)hits / total : 0;
+  }
+
+
+
+
+  /**
+   * Remove all the entries.
+   */
+  synchronized void clear() {
+    entries.clear();
+  }
+
+
+
+
+  /**
+   * A cached result and when it expires.
+   */
+  static class Entry {
+    private final DataFrame result;
+    private final long expires;
+
+
+
+
+    Entry(final DataFrame result, final long expires) {
+      this.result = result;
+      this.expires = expires;
+    }
+
+
+
+
+    /**
+     * @return the result of the lookup or null if the key has no result
+     */
+    DataFrame getResult() {
+      return result;
+    }
+
+  }
+
+}
@@ -1,22 +1,681 @@
 /*
  * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
- * 
- * This program and the accompanying materials are made available under the 
- * terms of the MIT License which accompanies this distribution, and is 
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
  * available at http://creativecommons.org/licenses/MIT/
  *
  * Contributors:
- *   Stephan D. Cote 
+ *   Stephan D. Cote
  *      - Initial concept and implementation
  */
 package coyote.dx.transform;
 
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import coyote.commons.DataFrameUtil;
+import coyote.commons.StringUtil;
+import coyote.commons.template.SymbolTable;
+import coyote.commons.template.Template;
+import coyote.dataframe.DataField;
+import coyote.dataframe.DataFrame;
+import coyote.dataframe.DataFrameException;
+import coyote.dataframe.selector.FrameSelector;
+import coyote.dx.BatchTransform;
+import coyote.dx.CDX;
+import coyote.dx.CWS;
+import coyote.dx.ConfigTag;
+import coyote.dx.TransformException;
+import coyote.dx.context.TransformContext;
+import coyote.dx.metric.Counter;
+import coyote.dx.metric.Gauge;
+import coyote.dx.metric.Histogram;
+import coyote.dx.metric.MetricRegistry;
+import coyote.dx.web.InvocationException;
+import coyote.dx.web.Parameters;
+import coyote.dx.web.Proxy;
+import coyote.dx.web.Resource;
+import coyote.dx.web.Response;
+import coyote.dx.web.auth.AuthenticationException;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+import coyote.loader.log.Log;
+import coyote.loader.log.LogMsg;
+
+
 /**
- * The vision for this component is to perform a web service lookup of a value 
- * and place the results in the working frame.
- * 
- * <p>The configuration for this transform can get complex and not expected to be easy to read. 
+ * Look up a value of the working frame with a web service call and place the
+ * fields of the result in the working frame.
+ *
+ * <p>The value of the named field is placed in the {@code lookup.key} symbol
+ * (URL encoded) and used to resolve the source URL of the request. The
+ * fields of the result, or of the first frame selected from it, are added to
+ * the working frame with an optional prefix. Keys with no result (nothing
+ * selected or HTTP 404) leave the frame unchanged.
+ * <pre>
+ * "WebServiceLookup": {
+ *   "field": "userId",
+ *   "source": "https://api.example.com/users/[#lookup.key#]",
+ *   "Selector": "user",
+ *   "Prefix": "user.",
+ *   "CacheSize": 10000, "CacheTtl": 300000, "NegativeTtl": 60000
+ * }</pre>
+ *
+ * <p>The {@code Protocol}, {@code Authenticator}, {@code Proxy},
+ * {@code Decorator} and {@code HttpClient} sections are the same as those of
+ * the WebServiceReader.
+ *
+ * <p>Results are kept in a least recently used cache for {@code CacheTtl}
+ * milliseconds and missing results for {@code NegativeTtl} milliseconds.
+ * When several threads (e.g. engine workers) look up the same key at the
+ * same time, only one request is sent and all the threads share its result.
+ *
+ * <p>APIs with a bulk endpoint can be given a {@code BatchSource} URL
+ * containing the {@code lookup.keys} symbol, the comma separated list of up
+ * to {@code BatchSize} keys. When the engine passes frames in batches (see
+ * the job {@code Batch} setting), the keys of the batch not in the cache are
+ * looked up with as few requests as possible. The frames selected from a
+ * bulk result are matched to their keys by the {@code BatchKey} field, the
+ * name of the lookup field by default. Without a bulk endpoint, the requests
+ * for all the keys of a batch are sent at once.
+ *
+ * <p>The cache hits, misses and coalesced lookups are counted, the hit ratio
+ * is published as a gauge and the time taken by each lookup request is
+ * recorded in a histogram, all in the default {@link MetricRegistry} and
+ * labeled with the name of the transform (or of its lookup field).
  */
-public class WebServiceLookup {
+public class WebServiceLookup extends AbstractFieldTransform implements BatchTransform {
+
+  public static final String HITS = "coyote_lookup_hits";
+  public static final String MISSES = "coyote_lookup_misses";
+  public static final String COALESCED = "coyote_lookup_coalesced";
+  public static final String HIT_RATIO = "coyote_lookup_hit_ratio";
+  public static final String LATENCY = "coyote_lookup_seconds";
+
+  /** The symbol holding the key being looked up */
+  public static final String KEY_SYMBOL = "lookup.key";
+
+  /** The symbol holding the keys of a bulk lookup */
+  public static final String KEYS_SYMBOL = "lookup.keys";
+
+  private static final String PREFIX = "Prefix";
+  private static final String CACHE_SIZE = "CacheSize";
+  private static final String CACHE_TTL = "CacheTtl";
+  private static final String NEGATIVE_TTL = "NegativeTtl";
+  private static final String BATCH_SOURCE = "BatchSource";
+  private static final String BATCH_SIZE = "BatchSize";
+  private static final String BATCH_KEY = "BatchKey";
+  private static final String LOOKUP = "lookup";
+  private static final String KEY_DELIMITER = ",";
+
+  private static final int DEFAULT_CACHE_SIZE = 1000;
+  private static final long DEFAULT_CACHE_TTL = 5 * 60 * 1000L;
+  private static final long DEFAULT_NEGATIVE_TTL = 60 * 1000L;
+  private static final int DEFAULT_BATCH_SIZE = 50;
+  private static final long DEFAULT_TIMEOUT = 30 * 1000L;
+
+  private String source = null;
+  private String batchSource = null;
+  private String selector = null;
+  private String batchKey = null;
+  private String prefix = "";
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private long timeout = DEFAULT_TIMEOUT;
+  private String name = null;
+
+  private Resource resource = null;
+  private LookupCache cache = null;
+
+  /** The lookups being performed, by key */
+  private final ConcurrentMap<String, Lookup> inFlight = new ConcurrentHashMap<>();
+
+  private Counter hits = null;
+  private Counter misses = null;
+  private Counter coalesced = null;
+  private Histogram latency = null;
+
+
+
+
+  /**
+   * @see coyote.dx.transform.AbstractFieldTransform#setConfiguration(coyote.loader.cfg.Config)
+   */
+  @Override
+  public void setConfiguration(Config cfg) throws ConfigurationException {
+    super.setConfiguration(cfg);
+
+    source = getConfiguration().getString(ConfigTag.SOURCE);
+    if (StringUtil.isBlank(source)) {
+      throw new ConfigurationException("WebServiceLookup requires a '" + ConfigTag.SOURCE + "' URL");
+    }
+    batchSource = getConfiguration().getString(BATCH_SOURCE);
+    selector = getConfiguration().getString(CWS.SELECTOR);
+    if (StringUtil.isNotBlank(batchSource) && StringUtil.isBlank(selector)) {
+      throw new ConfigurationException("WebServiceLookup requires a '" + CWS.SELECTOR + "' to split the results of the '" + BATCH_SOURCE + "'");
+    }
+    batchKey = getConfiguration().getString(BATCH_KEY);
+    if (StringUtil.isBlank(batchKey)) {
+      batchKey = getFieldName();
+    }
+    if (getConfiguration().containsIgnoreCase(PREFIX)) {
+      prefix = getConfiguration().getString(PREFIX);
+    }
+
+    int cacheSize = DEFAULT_CACHE_SIZE;
+    long cacheTtl = DEFAULT_CACHE_TTL;
+    long negativeTtl = DEFAULT_NEGATIVE_TTL;
+    try {
+      if (getConfiguration().containsIgnoreCase(CACHE_SIZE)) {
+        cacheSize = getConfiguration().getAsInt(CACHE_SIZE);
+      }
+      if (getConfiguration().containsIgnoreCase(CACHE_TTL)) {
+        cacheTtl = getConfiguration().getAsLong(CACHE_TTL);
+      }
+      if (getConfiguration().containsIgnoreCase(NEGATIVE_TTL)) {
+        negativeTtl = getConfiguration().getAsLong(NEGATIVE_TTL);
+      }
+      if (getConfiguration().containsIgnoreCase(BATCH_SIZE)) {
+        batchSize = Math.max(1, getConfiguration().getAsInt(BATCH_SIZE));
+      }
+      if (getConfiguration().containsIgnoreCase(ConfigTag.TIMEOUT)) {
+        timeout = getConfiguration().getAsLong(ConfigTag.TIMEOUT);
+      }
+    } catch (DataFrameException e) {
+      throw new ConfigurationException("WebServiceLookup cache, batch and timeout settings must be numeric: " + e.getMessage());
+    }
+    cache = new LookupCache(cacheSize, cacheTtl, negativeTtl);
+
+    name = getConfiguration().getString(ConfigTag.NAME);
+    if (StringUtil.isBlank(name)) {
+      name = getFieldName();
+    }
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.transform.AbstractFieldTransform#open(coyote.dx.context.TransformContext)
+   */
+  @Override
+  public void open(TransformContext context) {
+    super.open(context);
+
+    Proxy proxy = null;
+    Parameters protocol = null;
+    try {
+      for (DataField field : getConfiguration().getFields()) {
+        if (field.isFrame() && field.getName() != null) {
+          if (field.getName().equalsIgnoreCase(CWS.PROXY)) {
+            proxy = CWS.configProxy((DataFrame)field.getObjectValue());
+          } else if (field.getName().equalsIgnoreCase(CWS.PROTOCOL)) {
+            protocol = CWS.configParameters((DataFrame)field.getObjectValue(), context);
+          }
+        }
+      }
+
+      // resolve the context symbols now, the lookup symbols on each request
+      source = Template.preProcess(source, context.getSymbols());
+      if (StringUtil.isNotBlank(batchSource)) {
+        batchSource = Template.preProcess(batchSource, context.getSymbols());
+      }
+      resource = new Resource(Template.resolve(source, new SymbolTable()), protocol, proxy);
+
+      for (DataField field : getConfiguration().getFields()) {
+        if (field.isFrame() && field.getName() != null) {
+          if (field.getName().equalsIgnoreCase(CWS.AUTHENTICATOR)) {
+            resource.setAuthenticator(CWS.configAuthenticator((DataFrame)field.getObjectValue()));
+          } else if (field.getName().equalsIgnoreCase(CWS.DECORATOR)) {
+            for (DataField cfgfield : ((DataFrame)field.getObjectValue()).getFields()) {
+              if (cfgfield.isFrame() && StringUtil.isNotBlank(cfgfield.getName())) {
+                CWS.configDecorator(cfgfield.getName(), (DataFrame)cfgfield.getObjectValue(), resource, context);
+              } else {
+                Log.error(LogMsg.createMsg(CWS.MSG, "Decorator.invalid_decorator_configuration_section"));
+              }
+            }
+          }
+        }
+      }
+      CWS.configHttpClient(getConfiguration().getSection(CWS.HTTP_CLIENT), resource);
+
+      resource.open();
+    } catch (ConfigurationException e) {
+      Log.fatal(e);
+      context.setError("Could not configure lookup: " + e.getMessage());
+      return;
+    } catch (IOException e) {
+      Log.fatal(e);
+      context.setError("Could not create lookup resource: " + e.getMessage());
+      return;
+    } catch (AuthenticationException e) {
+      Log.fatal(e);
+      context.setError("Could not authenticate lookup resource: " + e.getMessage());
+      return;
+    }
+
+    MetricRegistry registry = MetricRegistry.getDefault();
+    hits = registry.counter(HITS, "Lookups found in the cache", LOOKUP, name);
+    misses = registry.counter(MISSES, "Lookups not found in the cache", LOOKUP, name);
+    coalesced = registry.counter(COALESCED, "Lookups which waited for the same lookup by another thread", LOOKUP, name);
+    latency = registry.histogram(LATENCY, "Time taken by lookup requests", LOOKUP, name);
+    registry.gauge(HIT_RATIO, "Fraction of the lookups found in the cache", new Gauge() {
+      @Override
+      public double getValue() {
+        return cache.getHitRatio();
+      }
+    }, LOOKUP, name);
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.transform.AbstractFrameTransform#close()
+   */
+  @Override
+  public void close() throws IOException {
+    MetricRegistry.getDefault().remove(HIT_RATIO, LOOKUP, name);
+    if (cache != null) {
+      cache.clear();
+    }
+    if (resource != null) {
+      resource.close();
+    }
+    super.close();
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.transform.AbstractFieldTransform#performTransform(coyote.dataframe.DataFrame)
+   */
+  @Override
+  protected DataFrame performTransform(DataFrame frame) throws TransformException {
+    String key = getKey(frame);
+    if (key != null) {
+      merge(frame, resolve(Collections.singleton(key)).get(key));
+    }
+    return frame;
+  }
+
+
+
+
+  /**
+   * Look up the keys of all the frames together.
+   *
+   * <p>Frames are transformed one at a time when the transform has a
+   * condition as it is evaluated against the current transaction.
+   *
+   * @see coyote.dx.BatchTransform#processBatch(java.util.List)
+   */
+  @Override
+  public List<DataFrame> processBatch(List<DataFrame> frames) throws TransformException {
+    List<DataFrame> retval = new ArrayList<>(frames.size());
+    if (!isEnabled() || getCondition() != null) {
+      for (DataFrame frame : frames) {
+        retval.add(process(frame));
+      }
+      return retval;
+    }
+
+    Collection<String> keys = new LinkedHashSet<>();
+    for (DataFrame frame : frames) {
+      String key = getKey(frame);
+      if (key != null) {
+        keys.add(key);
+      }
+    }
+    Map<String, DataFrame> results = resolve(keys);
+    for (DataFrame frame : frames) {
+      String key = getKey(frame);
+      if (key != null) {
+        merge(frame, results.get(key));
+      }
+      retval.add(frame);
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the value of the lookup field or null if it is blank or missing
+   */
+  private String getKey(DataFrame frame) {
+    String retval = null;
+    if (frame != null) {
+      DataField field = frame.getField(getFieldName());
+      if (field != null && StringUtil.isNotBlank(field.getStringValue())) {
+        retval = field.getStringValue();
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Add the fields of the result to the frame.
+   */
+  private void merge(DataFrame frame, DataFrame result) {
+    if (result != null) {
+      for (DataField field : result.getFields()) {
+        if (field.getName() != null) {
+          frame.put(prefix + field.getName(), field.getObjectValue());
+        }
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Find the results of the given keys in the cache, in the lookups being
+   * performed by other threads or by looking them up.
+   *
+   * @param keys the keys to resolve
+   *
+   * @return the results by key; keys with no result map to null
+   *
+   * @throws TransformException if a key could not be looked up
+   */
+  private Map<String, DataFrame> resolve(Collection<String> keys) throws TransformException {
+    Map<String, DataFrame> retval = new HashMap<>();
+    Map<String, Lookup> owned = new LinkedHashMap<>();
+    Map<String, Lookup> waiting = new HashMap<>();
+
+    for (String key : keys) {
+      LookupCache.Entry entry = cache.get(key);
+      if (entry != null) {
+        hits.increment();
+        retval.put(key, entry.getResult());
+      } else {
+        misses.increment();
+        Lookup lookup = new Lookup();
+        Lookup existing = inFlight.putIfAbsent(key, lookup);
+        if (existing != null) {
+          coalesced.increment();
+          waiting.put(key, existing);
+        } else {
+          owned.put(key, lookup);
+        }
+      }
+    }
+
+    if (owned.size() > 0) {
+      try {
+        fetch(owned);
+      } finally {
+        for (Map.Entry<String, Lookup> entry : owned.entrySet()) {
+          // complete anything not completed by an unexpected failure
+          entry.getValue().fail("Lookup of '" + entry.getKey() + "' did not complete");
+          inFlight.remove(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+
+    Map<String, Lookup> all = new HashMap<>(owned);
+    all.putAll(waiting);
+    for (Map.Entry<String, Lookup> entry : all.entrySet()) {
+      retval.put(entry.getKey(), entry.getValue().await(timeout));
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Send the requests for the given lookups, all at once, then complete each
+   * lookup as its response arrives.
+   */
+  private void fetch(Map<String, Lookup> lookups) {
+    List<List<String>> groups = new ArrayList<>();
+    if (StringUtil.isNotBlank(batchSource)) {
+      List<String> group = null;
+      for (String key : lookups.keySet()) {
+        if (group == null || group.size() >= batchSize) {
+          group = new ArrayList<>();
+          groups.add(group);
+        }
+        group.add(key);
+      }
+    } else {
+      for (String key : lookups.keySet()) {
+        groups.add(Collections.singletonList(key));
+      }
+    }
+
+    List<Response> responses = new ArrayList<>(groups.size());
+    List<Long> starts = new ArrayList<>(groups.size());
+    for (List<String> group : groups) {
+      starts.add(System.nanoTime());
+      responses.add(send(group));
+    }
+
+    for (int x = 0; x < groups.size(); x++) {
+      List<String> group = groups.get(x);
+      Response response = responses.get(x);
+      String error = complete(response);
+      latency.recordSince(starts.get(x));
+      if (error != null) {
+        for (String key : group) {
+          lookups.get(key).fail("Lookup of '" + key + "' failed: " + error);
+        }
+      } else if (StringUtil.isNotBlank(batchSource)) {
+        Map<String, DataFrame> results = splitResults(response);
+        for (String key : group) {
+          finish(key, lookups.get(key), results.get(key));
+        }
+      } else {
+        String key = group.get(0);
+        finish(key, lookups.get(key), firstResult(response));
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Send the request for the given keys.
+   *
+   * @return the response or null if the request could not be sent
+   */
+  private Response send(List<String> keys) {
+    Response retval = null;
+    SymbolTable symbols = new SymbolTable();
+    String url;
+    if (StringUtil.isNotBlank(batchSource)) {
+      StringBuilder b = new StringBuilder();
+      for (String key : keys) {
+        if (b.length() > 0) {
+          b.append(KEY_DELIMITER);
+        }
+        b.append(encode(key));
+      }
+      symbols.put(KEYS_SYMBOL, b.toString());
+      url = Template.resolve(batchSource, symbols);
+    } else {
+      symbols.put(KEY_SYMBOL, encode(keys.get(0)));
+      url = Template.resolve(source, symbols);
+    }
+    Log.debug("Lookup request " + url);
+
+    // the URI is read when the request is created, so only that is guarded
+    synchronized (resource) {
+      try {
+        resource.setBaseUri(url);
+        retval = resource.request();
+      } catch (URISyntaxException | InvocationException e) {
+        Log.error("Could not send lookup request '" + url + "': " + e.getMessage());
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Wait for the response to complete.
+   *
+   * @return null if the response has a result or is not found, otherwise a
+   *         description of the failure
+   */
+  private String complete(Response response) {
+    if (response == null) {
+      return "request not sent";
+    }
+    long end = System.currentTimeMillis() + timeout;
+    long remaining = timeout;
+    while (!response.isComplete() && remaining > 0 && !Thread.currentThread().isInterrupted()) {
+      response.waitForComplete((int)Math.min(remaining, Integer.MAX_VALUE));
+      remaining = end - System.currentTimeMillis();
+    }
+    if (!response.isComplete()) {
+      return "no response in " + timeout + "ms";
+    }
+    int status = response.getHttpStatusCode();
+    if ((status >= 200 && status < 300) || status == 404) {
+      return null;
+    }
+    return (status > 0) ? status + " " + response.getHttpStatusPhrase() : "no response";
+  }
+
+
+
+
+  /**
+   * @return the first frame selected from the response, null if there is none
+   */
+  private DataFrame firstResult(Response response) {
+    DataFrame result = (response.getHttpStatusCode() == 404) ? null : response.getResult();
+    if (result != null && StringUtil.isNotBlank(selector)) {
+      List<DataFrame> results = new FrameSelector(selector, CDX.DEFAULT_FRAMEPATH_NAME).select(result);
+      result = (results.size() > 0) ? results.get(0) : null;
+    }
+    return (result != null) ? DataFrameUtil.flatten(result) : null;
+  }
+
+
+
+
+  /**
+   * @return the frames selected from a bulk response by the value of their
+   *         key field
+   */
+  private Map<String, DataFrame> splitResults(Response response) {
+    Map<String, DataFrame> retval = new HashMap<>();
+    DataFrame result = (response.getHttpStatusCode() == 404) ? null : response.getResult();
+    if (result != null) {
+      for (DataFrame frame : new FrameSelector(selector, CDX.DEFAULT_FRAMEPATH_NAME).select(result)) {
+        DataFrame flattened = DataFrameUtil.flatten(frame);
+        DataField field = flattened.getField(batchKey);
+        if (field != null && field.getStringValue() != null && !retval.containsKey(field.getStringValue())) {
+          retval.put(field.getStringValue(), flattened);
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Cache the result of the key and hand it to all the threads waiting for it.
+   */
+  private void finish(String key, Lookup lookup, DataFrame result) {
+    cache.put(key, result);
+    lookup.complete(result);
+  }
+
+
+
+
+  private static String encode(String key) {
+    try {
+      return URLEncoder.encode(key, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      return key;
+    }
+  }
+
+
+
+
+  /**
+   * The result of one key, shared by all the threads looking it up.
+   */
+  private static class Lookup {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile DataFrame result = null;
+    private volatile String error = null;
+
+
+
+
+    /**
+     * Set the result if the lookup has not already completed.
+     */
+    synchronized void complete(DataFrame frame) {
+      if (done.getCount() > 0) {
+        result = frame;
+        done.countDown();
+      }
+    }
+
+
+
+
+    /**
+     * Fail the lookup if it has not already completed.
+     */
+    synchronized void fail(String message) {
+      if (done.getCount() > 0) {
+        error = message;
+        done.countDown();
+      }
+    }
+
+
+
+
+    DataFrame await(long timeout) throws TransformException {
+      try {
+        if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+          throw new TransformException("Lookup did not complete in " + timeout + "ms");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TransformException("Interrupted waiting for lookup");
+      }
+      if (error != null) {
+        throw new TransformException(error);
+      }
+      return result;
+    }
+  }
 
 }
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.web;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import coyote.dx.metric.Gauge;
+import coyote.dx.metric.Histogram;
+import coyote.dx.metric.MetricRegistry;
+
+
+/**
+ * The HTTP client shared by all the resource workers in this runtime.
+ *
+ * <p>All requests are sent through one pool of connections so connections to
+ * a host are reused across requests, resources and jobs. The pool is limited
+ * in total and for each host. Requests are run on a bounded set of threads;
+ * when all the threads are busy and the queue of waiting requests is full,
+ * the request runs in the calling thread, slowing the caller down instead of
+ * creating more threads.</p>
+ *
+ * <p>The size of the connection pool and the number of active requests are
+ * published as gauges and the time taken by each request is recorded in a
+ * histogram for each host in the default {@link MetricRegistry}.</p>
+ */
+public class HttpClientService {
+
+  public static final String LEASED = "coyote_http_pool_leased";
+  public static final String AVAILABLE = "coyote_http_pool_available";
+  public static final String PENDING = "coyote_http_pool_pending";
+  public static final String ACTIVE = "coyote_http_requests_active";
+  public static final String QUEUED = "coyote_http_requests_queued";
+  public static final String LATENCY = "coyote_http_request_seconds";
+
+  /** The default number of connections to all hosts */
+  public static final int DEFAULT_MAX_TOTAL = 200;
+
+  /** The default number of connections to any one host */
+  public static final int DEFAULT_MAX_PER_HOST = 20;
+
+  /** The default number of threads sending requests */
+  public static final int DEFAULT_THREADS = 20;
+
+  /** The number of requests which may wait for a thread */
+  private static final int QUEUE_SIZE = 1000;
+
+  /** How long connections stay idle in the pool before they are closed */
+  private static final long IDLE_TIMEOUT = 15 * 60 * 1000L;
+
+  /** How long to keep a connection alive if the server does not say */
+  private static final long KEEP_ALIVE = 600 * 1000L;
+
+  private static final String HOST = "host";
+
+  private static volatile HttpClientService instance = null;
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient client;
+  private final ThreadPoolExecutor executor;
+
+
+
+
+  private HttpClientService() {
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(DEFAULT_MAX_TOTAL);
+    connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_PER_HOST);
+
+    client = HttpClientBuilder.create().setConnectionManager(connectionManager).setKeepAliveStrategy(new KeepAliveStrategy()).evictExpiredConnections().evictIdleConnections(IDLE_TIMEOUT, TimeUnit.MILLISECONDS).build();
+
+    executor = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+
+
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread retval = new Thread(runnable, "HttpClient-" + count.incrementAndGet());
+        retval.setDaemon(true);
+        return retval;
+      }
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+
+    MetricRegistry registry = MetricRegistry.getDefault();
+    registry.gauge(LEASED, "HTTP connections in use", new Gauge() {
+      @Override
+      public double getValue() {
+        return connectionManager.getTotalStats().getLeased();
+      }
+    });
+    registry.gauge(AVAILABLE, "Idle HTTP connections in the pool", new Gauge() {
+      @Override
+      public double getValue() {
+        return connectionManager.getTotalStats().getAvailable();
+      }
+    });
+    registry.gauge(PENDING, "Requests waiting for an HTTP connection", new Gauge() {
+      @Override
+      public double getValue() {
+        return connectionManager.getTotalStats().getPending();
+      }
+    });
+    registry.gauge(ACTIVE, "HTTP requests being sent", new Gauge() {
+      @Override
+      public double getValue() {
+        return executor.getActiveCount();
+      }
+    });
+    registry.gauge(QUEUED, "HTTP requests waiting for a thread", new Gauge() {
+      @Override
+      public double getValue() {
+        return executor.getQueue().size();
+      }
+    });
+  }
+
+
+
+
+  /**
+   * @return the HTTP client service for this runtime
+   */
+  public static HttpClientService getInstance() {
+    HttpClientService retval = instance;
+    if (retval == null) {
+      synchronized (HttpClientService.class) {
+        retval = instance;
+        if (retval == null) {
+          retval = new HttpClientService();
+          instance = retval;
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * The shared client.
+   *
+   * <p>Callers must not close this client; it is shared by all the workers
+   * in the runtime. Per-request state such as credentials is to be placed in
+   * the context given to the client when executing each request.</p>
+   *
+   * @return the HTTP client shared by all the workers
+   */
+  public CloseableHttpClient getClient() {
+    return client;
+  }
+
+
+
+
+  /**
+   * Run the given request on one of the request threads.
+   *
+   * <p>If all the threads are busy and too many requests are waiting, the
+   * request is run in the calling thread.</p>
+   *
+   * @param request the request to run
+   */
+  public void execute(Runnable request) {
+    executor.execute(request);
+  }
+
+
+
+
+  /**
+   * @param target the host to which requests are sent
+   *
+   * @return the histogram recording the time taken by requests to the host
+   */
+  public Histogram getLatency(HttpHost target) {
+    return MetricRegistry.getDefault().histogram(LATENCY, "Time taken by HTTP requests", HOST, target.toHostString());
+  }
+
+
+
+
+  /**
+   * @return the statistics of all the connections in the pool
+   */
+  public PoolStats getStats() {
+    return connectionManager.getTotalStats();
+  }
+
+
+
+
+  /**
+   * @param max the maximum number of connections to all hosts
+   */
+  public void setMaxTotal(int max) {
+    if (max > 0) {
+      connectionManager.setMaxTotal(max);
+    }
+  }
+
+
+
+
+  /**
+   * @return the maximum number of connections to all hosts
+   */
+  public int getMaxTotal() {
+    return connectionManager.getMaxTotal();
+  }
+
+
+
+
+  /**
+   * @param max the maximum number of connections to any one host which does
+   *        not have its own limit
+   */
+  public void setMaxPerHost(int max) {
+    if (max > 0) {
+      connectionManager.setDefaultMaxPerRoute(max);
+    }
+  }
+
+
+
+
+  /**
+   * @param target the host to limit
+   * @param max the maximum number of connections to the given host
+   */
+  public void setMaxPerHost(HttpHost target, int max) {
+    if (target != null && max > 0) {
+      connectionManager.setMaxPerRoute(new HttpRoute(target), max);
+    }
+  }
+
+
+
+
+  /**
+   * @param target the host
+   *
+   * @return the maximum number of connections to the given host
+   */
+  public int getMaxPerHost(HttpHost target) {
+    return connectionManager.getMaxPerRoute(new HttpRoute(target));
+  }
+
+
+
+
+  /**
+   * @param threads the number of threads sending requests
+   */
+  public synchronized void setThreads(int threads) {
+    if (threads > 0) {
+      // order matters, the core size may never exceed the maximum
+      if (threads > executor.getMaximumPoolSize()) {
+        executor.setMaximumPoolSize(threads);
+        executor.setCorePoolSize(threads);
+      } else {
+        executor.setCorePoolSize(threads);
+        executor.setMaximumPoolSize(threads);
+      }
+    }
+  }
+
+
+
+
+  /**
+   * @return the number of threads sending requests
+   */
+  public int getThreads() {
+    return executor.getMaximumPoolSize();
+  }
+
+
+
+
+  /**
+   * Honor the keep-alive timeout sent by the server, keeping connections for
+   * 10 minutes if the server does not send one.
+   */
+  private static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+    @Override
+    public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+      final HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+      while (it.hasNext()) {
+        final HeaderElement he = it.nextElement();
+        final String param = he.getName();
+        final String value = he.getValue();
+        if ((value != null) && param.equalsIgnoreCase("timeout")) {
+          try {
+            return Long.parseLong(value) * 1000;
+          } catch (final NumberFormatException ignore) {}
+        }
+      }
+      return KEEP_ALIVE;
+    }
+  }
+
+}
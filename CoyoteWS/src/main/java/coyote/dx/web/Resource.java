@@ -16,7 +16,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import coyote.commons.StringUtil;
 import coyote.dx.web.auth.AuthenticationException;
@@ -38,8 +40,8 @@ public class Resource implements Closeable {
   /** optional decorators which enrich the requests before they are submitted */
   private final List<RequestDecorator> requestDecorators = new ArrayList<RequestDecorator>();
 
-  /** The worker which handles the specific protocol for the resource  */
-  private volatile ResourceWorker worker;
+  /** The workers which handle the specific protocols for the resource, reused for each request */
+  private final Map<ExchangeType, ResourceWorker> workers = new EnumMap<ExchangeType, ResourceWorker>(ExchangeType.class);
 
   /** The default request parameters (can be overridden on the request) */
   private final Parameters defaultParameters;
@@ -166,6 +168,9 @@ public class Resource implements Closeable {
    * @param uri the baseurl to set
    */
   public void setBaseUri(URI uri) {
+    if (!sameHost(baseuri, uri)) {
+      clearWorkers();
+    }
     this.baseuri = uri;
   }
 
@@ -180,7 +185,20 @@ public class Resource implements Closeable {
    * @throws URISyntaxException if the given string is not a valid URI
    */
   public void setBaseUri(String uri) throws URISyntaxException {
-    baseuri = new URI(uri).normalize();
+    setBaseUri(new URI(uri).normalize());
+  }
+
+
+
+
+  /**
+   * @return true if both URIs connect to the same scheme, host and port
+   */
+  private static boolean sameHost(URI uri, URI other) {
+    if (uri == null || other == null) {
+      return uri == other;
+    }
+    return StringUtil.equalsIgnoreCase(uri.getScheme(), other.getScheme()) && StringUtil.equalsIgnoreCase(uri.getHost(), other.getHost()) && uri.getPort() == other.getPort();
   }
 
 
@@ -209,8 +227,26 @@ public class Resource implements Closeable {
    */
   @Override
   public void close() throws IOException {
-    if (worker != null) {
-      worker.close();
+    clearWorkers();
+  }
+
+
+
+
+  /**
+   * Close and discard the workers so new ones are created for the current 
+   * settings of this resource.
+   */
+  private void clearWorkers() {
+    synchronized (workers) {
+      for (ResourceWorker worker : workers.values()) {
+        try {
+          worker.close();
+        } catch (IOException ignore) {
+          // workers do not hold connections, nothing to clean up
+        }
+      }
+      workers.clear();
     }
   }
 
@@ -374,6 +410,9 @@ public class Resource implements Closeable {
   /**
    * Return the ResourceWorker for the exchange type in the given parameters.
    * 
+   * <p>Workers are created once for each exchange type and reused for all 
+   * the requests to this resource until its host or authenticator changes.
+   * 
    * @param params The parameters containing the exchange type
    * 
    * @return ResourceWorker for the exchange type in the given parameters or 
@@ -383,7 +422,16 @@ public class Resource implements Closeable {
    */
   private ResourceWorker getWorker(Parameters params) {
     if (params != null && params.getExchangeType() != null) {
-      return params.getExchangeType().getWorker(this);
+      synchronized (workers) {
+        ResourceWorker retval = workers.get(params.getExchangeType());
+        if (retval == null) {
+          retval = params.getExchangeType().getWorker(this);
+          if (retval != null) {
+            workers.put(params.getExchangeType(), retval);
+          }
+        }
+        return retval;
+      }
     } else {
       return getWorker(defaultParameters);
     }
@@ -418,6 +466,8 @@ public class Resource implements Closeable {
    * @param auth The Authenticator to set.
    */
   public void setAuthenticator(Authenticator auth) {
+    // workers capture the credentials when they are created
+    clearWorkers();
     if (auth == null) {
       authenticator = new NullAuthenticator();
     } else {
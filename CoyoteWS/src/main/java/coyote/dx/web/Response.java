@@ -88,8 +88,13 @@ public class Response {
 
 
 
-  public synchronized void setComplete( boolean flag ) {
-    complete = flag;
+  public void setComplete( boolean flag ) {
+    synchronized( this ) {
+      complete = flag;
+    }
+    synchronized( lock ) {
+      lock.notifyAll();
+    }
   }
 
 
@@ -585,22 +590,26 @@ public class Response {
 
   /**
    * Wait for the response to complete for the given number of milliseconds
+   * 
+   * <p>The calling thread sleeps until the response is marked complete or the 
+   * time-out expires.
+   * 
    * @param timeout number of milliseconds to wait for the response to be completed.
    */
   public void waitForComplete( int timeout ) {
-    if ( !isComplete() ) {
-      final long tout = System.currentTimeMillis() + timeout;
-      while ( tout > System.currentTimeMillis() ) {
-        synchronized( lock ) {
-          try {
-            lock.wait( 10 );
-          } catch ( final Throwable t ) {}
-        }
-        if ( isComplete() ) {
+    final long tout = System.currentTimeMillis() + timeout;
+    synchronized( lock ) {
+      long remaining = timeout;
+      while ( !isComplete() && remaining > 0 ) {
+        try {
+          lock.wait( remaining );
+        } catch ( final InterruptedException e ) {
+          Thread.currentThread().interrupt();
           break;
         }
+        remaining = tout - System.currentTimeMillis();
       }
-    }   
+    }
   }
 
 }
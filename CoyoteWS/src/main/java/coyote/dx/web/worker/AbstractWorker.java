@@ -8,6 +8,8 @@ import coyote.commons.network.MimeType;
 import coyote.commons.network.http.Method;
 import coyote.dataframe.marshal.JSONMarshaler;
 import coyote.dataframe.marshal.XMLMarshaler;
+import coyote.dx.metric.Histogram;
+import coyote.dx.web.HttpClientService;
 import coyote.dx.web.InvocationException;
 import coyote.dx.web.Parameters;
 import coyote.dx.web.Resource;
@@ -22,26 +24,30 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
 import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.apache.http.message.BasicHeaderElementIterator;
-import org.apache.http.protocol.HTTP;
-import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.util.concurrent.TimeUnit;
 
 
 /**
  * This is the base class for all workers.
+ *
+ * <p>Workers send their requests with the client shared by all workers in
+ * the runtime (see {@link HttpClientService}) so connections are pooled
+ * across resources and requests are run on a bounded set of threads.</p>
+ *
+ * <p>Each request runs with its own client context, but the credentials,
+ * authentication cache and cookies are shared by all the requests of the
+ * worker so an authenticated session is reused instead of being challenged
+ * on every request.</p>
  */
 public abstract class AbstractWorker implements ResourceWorker {
     protected static final String RESULT_FRAME = "result";
@@ -52,9 +58,10 @@ public abstract class AbstractWorker implements ResourceWorker {
     protected static final Logger log = LoggerFactory.getLogger(AbstractWorker.class);
     protected Resource resource;
 
-    // This is the persistent http client we will use to send all our requests
+    // This is the shared http client we will use to send all our requests
     protected CloseableHttpClient httpClient;
-    // Create a context in which we will execute our request
+    // The context holding the credentials, authentication cache and cookies
+    // shared by each request; all of them are thread-safe
     protected final HttpClientContext localContext = HttpClientContext.create();
 
     // HTTP Client configuration settings
@@ -72,43 +79,10 @@ public abstract class AbstractWorker implements ResourceWorker {
     public AbstractWorker(final Resource resource) {
         this.resource = resource;
 
-        // This lays open several components of the underlying HTTP client library
-        // so as to allow configuration of many different aspects of the connection
-        // process
-
-        // Define and configure the Connection Manager
-        final PoolingHttpClientConnectionManager connMgr = new PoolingHttpClientConnectionManager();
-        connMgr.closeIdleConnections(15, TimeUnit.MINUTES);
-
-        // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
-        // our own keep-alive strategy
-        final ConnectionKeepAliveStrategy myStrategy = new ConnectionKeepAliveStrategy() {
-            @Override
-            public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
-                // Honor 'keep-alive' header
-                final HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
-                while (it.hasNext()) {
-                    final HeaderElement he = it.nextElement();
-                    final String param = he.getName();
-                    final String value = he.getValue();
-                    if ((value != null) && param.equalsIgnoreCase("timeout")) {
-                        try {
-                            return Long.parseLong(value) * 1000;
-                        } catch (final NumberFormatException ignore) {
-                        }
-                    }
-                }
-                // HttpHost target = (HttpHost)context.getAttribute( HttpClientContext.HTTP_TARGET_HOST );
-                // we could also check for other parameters such as hostname and return
-                // a different value for each server or domain.
-                // for right now just keep it at 10 minutes (600 seconds) for long queries
-                return 600 * 1000;
-            }
-        };
-        // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
-
-        // Define and configure the client
-        httpClient = HttpClientBuilder.create().setConnectionManager(connMgr).setKeepAliveStrategy(myStrategy).build();
+        // all workers share one client and its pool of connections
+        httpClient = HttpClientService.getInstance().getClient();
+        localContext.setAuthCache(new BasicAuthCache());
+        localContext.setCookieStore(new BasicCookieStore());
 
         // Setup our HTTP fixtures
         target = new HttpHost(resource.getHost(), resource.getPort(), resource.getScheme());
@@ -155,16 +129,13 @@ public abstract class AbstractWorker implements ResourceWorker {
     }
 
 
+    /**
+     * The HTTP client is shared with all the other workers, so it is not
+     * closed; its idle connections are closed by the client service.
+     */
     @Override
     public void close() throws IOException {
-        log.debug("Closing Worker...");
-        try {
-            httpClient.close();
-        } catch (final IOException e) {
-            log.warn(e.getMessage());
-        } finally {
-            log.debug("...Worker closed");
-        }
+        log.debug("Worker closed");
     }
 
 
@@ -302,9 +273,8 @@ public abstract class AbstractWorker implements ResourceWorker {
 
         setRequestHeaders(request, params);
 
-        // execute the request in a separate thread
-        final Thread thread = new Thread(new RequestRunner(request, retval, params));
-        thread.start();
+        // execute the request on one of the shared request threads
+        HttpClientService.getInstance().execute(new RequestRunner(request, retval, params));
 
         // return the results of processing the request
         return retval;
@@ -364,7 +334,17 @@ public abstract class AbstractWorker implements ResourceWorker {
             response.transactionStart();
             response.requestStart();
 
-            try (CloseableHttpResponse httpResponse = httpClient.execute(target, request, localContext)) {
+            // each request gets its own context as requests may run concurrently
+            // but shares the authentication and cookie state of the worker
+            final HttpClientContext context = HttpClientContext.create();
+            context.setCredentialsProvider(localContext.getCredentialsProvider());
+            context.setAuthCache(localContext.getAuthCache());
+            context.setCookieStore(localContext.getCookieStore());
+
+            final Histogram latency = HttpClientService.getInstance().getLatency(target);
+            final long start = System.nanoTime();
+            try (CloseableHttpResponse httpResponse = httpClient.execute(target, request, context)) {
+                latency.recordSince(start);
                 response.requestEnd();
 
                 final int status = httpResponse.getStatusLine().getStatusCode();
@@ -401,9 +381,11 @@ public abstract class AbstractWorker implements ResourceWorker {
                 }
 
             } catch (final ClientProtocolException e1) {
+                latency.recordSince(start);
                 response.requestEnd();
                 log.error(e1.getMessage());
             } catch (final IOException e1) {
+                latency.recordSince(start);
                 response.requestEnd();
                 log.error(e1.getMessage());
             } finally {
@@ -202,6 +202,8 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
 
           resource.setAuthenticator(authenticator);
 
+          CWS.configHttpClient(getConfiguration().getSection(CWS.HTTP_CLIENT), resource);
+
           // Now look for Request Decorators 
           for (DataField field : getConfiguration().getFields()) {
             if (field.getName() != null && field.getName().equalsIgnoreCase(CWS.DECORATOR)) {
@@ -284,6 +286,10 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
         } catch (AuthenticationException e) {
           context.setError("The Writer could not authenticate the resource: " + e.getMessage());
           context.setState("Authentication Error");
+        } catch (ConfigurationException e) {
+          context.setError("The Writer could not configure the HTTP client: " + e.getMessage());
+          context.setState("Configuration Error");
+          return;
         }
       } else {
         Log.debug("Using resource set in the transform context");
@@ -374,9 +380,14 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
           System.err.println("Operation failed");
           rowCounter--; // FIXME: hack!
           break;
+        } else if (Thread.currentThread().isInterrupted()) {
+          // the job is being stopped, the frame may or may not have been written
+          Log.warn("Interrupted waiting for the response from " + resource.getFullURI());
+          super.context.setError("The Writer was interrupted waiting for the web service response");
+          return bytesWritten;
         } else {
           // wait for the results to arrive
-          Thread.sleep(100);
+          lastResponse.waitForComplete(100);
         }
       }
 
@@ -415,9 +426,6 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
     } catch (InvocationException e) {
       // TODO Auto-generated catch block
       e.printStackTrace();
-    } catch (InterruptedException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
     } finally {
       if (Log.isLogging(Log.DEBUG_EVENTS)) {
         Log.debug("Performance Metric: Write " + lastResponse.getOperationTime());
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import coyote.commons.NetUtil;
+import coyote.commons.network.http.HTTPD;
+import coyote.commons.network.http.HTTPSession;
+import coyote.commons.network.http.Response;
+import coyote.commons.network.http.Status;
+import coyote.commons.template.SymbolTable;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.loader.cfg.Config;
+
+
+/**
+ *
+ */
+public class WebServiceReaderTest {
+
+  private static PageServer server = null;
+  private static int port = 54341;
+
+
+
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    port = NetUtil.getNextAvailablePort(port);
+    server = new PageServer(port);
+    server.start(HTTPD.SOCKET_READ_TIMEOUT, true);
+  }
+
+
+
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    server.stop();
+  }
+
+
+
+
+  @Before
+  public void setUp() {
+    server.reset();
+  }
+
+
+
+
+  /**
+   * Pages requested ahead are returned in page order even when a later page
+   * arrives first.
+   */
+  @Test
+  public void prefetchOrder() throws Exception {
+    server.records = 8;
+    server.slowPage = 0;
+    WebServiceReader reader = createReader(new DataFrame().set("Step", 3).set("Prefetch", 2));
+
+    List<DataFrame> frames = readAll(reader);
+    assertEquals(8, frames.size());
+    for (int x = 0; x < frames.size(); x++) {
+      assertEquals(x, frames.get(x).getAsInt("id"));
+    }
+    reader.close();
+  }
+
+
+
+
+  /**
+   * The first page with fewer records than the step is the last page.
+   */
+  @Test
+  public void shortPage() throws Exception {
+    server.records = 8;
+    WebServiceReader reader = createReader(new DataFrame().set("Step", 3));
+
+    assertEquals(8, readAll(reader).size());
+    assertEquals(Arrays.asList("0", "3", "6"), server.requests);
+    reader.close();
+  }
+
+
+
+
+  /**
+   * When the last page is full, the total stops the requests at the last
+   * page instead of requesting an empty page past it.
+   */
+  @Test
+  public void exactTotal() throws Exception {
+    server.records = 9;
+    WebServiceReader reader = createReader(new DataFrame().set("Step", 3).set("Total", "total"));
+
+    List<DataFrame> frames = readAll(reader);
+    assertEquals(9, frames.size());
+    assertEquals(8, frames.get(8).getAsInt("id"));
+    assertEquals(Arrays.asList("0", "3", "6"), server.requests);
+    reader.close();
+  }
+
+
+
+
+  /**
+   * Without prefetch, each page is requested only when it is needed.
+   */
+  @Test
+  public void noPrefetch() throws Exception {
+    server.records = 8;
+    WebServiceReader reader = createReader(new DataFrame().set("Step", 3).set("Prefetch", 0));
+
+    TransactionContext context = new TransactionContext(reader.getContext());
+    assertEquals(0, reader.read(context).getAsInt("id"));
+    assertEquals(Arrays.asList("0"), server.requests);
+
+    List<DataFrame> frames = readAll(reader);
+    assertEquals(7, frames.size());
+    assertEquals(1, frames.get(0).getAsInt("id"));
+    assertEquals(7, frames.get(6).getAsInt("id"));
+    assertEquals(Arrays.asList("0", "3", "6"), server.requests);
+    reader.close();
+  }
+
+
+
+
+  private static WebServiceReader createReader(DataFrame pagination) throws Exception {
+    Config cfg = new Config();
+    cfg.put("source", "http://localhost:" + port + "/items?start=[#page.start#]&size=[#page.size#]");
+    cfg.put("Selector", "items.*");
+    cfg.put("Protocol", new DataFrame().set("ExchangeType", "JSON_HTTP").set("Method", "GET"));
+    cfg.put("Pagination", pagination);
+
+    TransformContext context = new TransformContext();
+    context.setSymbols(new SymbolTable());
+    WebServiceReader retval = new WebServiceReader();
+    retval.setConfiguration(cfg);
+    retval.open(context);
+    assertFalse(context.getErrorMessage(), context.isInError());
+    return retval;
+  }
+
+
+
+
+  private static List<DataFrame> readAll(WebServiceReader reader) {
+    List<DataFrame> retval = new ArrayList<>();
+    TransactionContext context = null;
+    while (!reader.eof()) {
+      context = new TransactionContext(reader.getContext());
+      DataFrame frame = reader.read(context);
+      if (frame != null) {
+        retval.add(frame);
+      }
+    }
+    assertTrue(context == null || context.isLastFrame());
+    return retval;
+  }
+
+
+
+
+  /**
+   * Serves a number of records a page at a time, recording the start of each
+   * page requested.
+   */
+  private static class PageServer extends HTTPD {
+    final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    volatile int records = 0;
+    volatile int slowPage = -1;
+
+
+
+
+    PageServer(final int port) {
+      super(port);
+    }
+
+
+
+
+    void reset() {
+      requests.clear();
+      records = 0;
+      slowPage = -1;
+    }
+
+
+
+
+    @Override
+    public Response serve(final HTTPSession session) {
+      int start = Integer.parseInt(session.getParms().get("start"));
+      int size = Integer.parseInt(session.getParms().get("size"));
+      requests.add(Integer.toString(start));
+
+      // make a page arrive after the pages requested behind it
+      if (start == slowPage) {
+        try {
+          Thread.sleep(500);
+        } catch (InterruptedException ignore) {}
+      }
+
+      StringBuilder b = new StringBuilder("{\"total\":");
+      b.append(records).append(",\"items\":[");
+      for (int x = start; x < Math.min(start + size, records); x++) {
+        if (x > start) {
+          b.append(",");
+        }
+        b.append("{\"id\":").append(x).append("}");
+      }
+      b.append("]}");
+      return Response.createFixedLengthResponse(Status.OK, "application/json", b.toString());
+    }
+  }
+
+}
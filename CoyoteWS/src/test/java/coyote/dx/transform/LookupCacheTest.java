@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+
+
+/**
+ *
+ */
+public class LookupCacheTest {
+
+  @Test
+  public void leastRecentlyUsed() {
+    LookupCache cache = new LookupCache(2, 60000, 60000);
+    DataFrame one = new DataFrame();
+    DataFrame two = new DataFrame();
+    cache.put("one", one);
+    cache.put("two", two);
+    assertSame(one, cache.get("one").getResult());
+
+    // two is the least recently used
+    cache.put("three", new DataFrame());
+    assertEquals(2, cache.size());
+    assertNull(cache.get("two"));
+    assertNotNull(cache.get("one"));
+    assertNotNull(cache.get("three"));
+  }
+
+
+
+
+  @Test
+  public void negative() {
+    LookupCache cache = new LookupCache(10, 60000, 60000);
+    cache.put("missing", null);
+    LookupCache.Entry entry = cache.get("missing");
+    assertNotNull(entry);
+    assertNull(entry.getResult());
+
+    // missing results are not cached without a negative time to live
+    cache = new LookupCache(10, 60000, 0);
+    cache.put("missing", null);
+    assertNull(cache.get("missing"));
+  }
+
+
+
+
+  @Test
+  public void expiry() throws Exception {
+    LookupCache cache = new LookupCache(10, 1, 60000);
+    cache.put("key", new DataFrame());
+    Thread.sleep(10);
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+  }
+
+
+
+
+  @Test
+  public void hitRatio() {
+    LookupCache cache = new LookupCache(10, 60000, 60000);
+    assertEquals(0, cache.getHitRatio(), 0);
+    cache.put("key", new DataFrame());
+    cache.get("key");
+    cache.get("key");
+    cache.get("key");
+    cache.get("other");
+    assertEquals(0.75, cache.getHitRatio(), 0.0001);
+  }
+
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2020 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ */
+package coyote.dx.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import coyote.commons.NetUtil;
+import coyote.commons.network.http.HTTPD;
+import coyote.commons.network.http.HTTPSession;
+import coyote.commons.network.http.Response;
+import coyote.commons.network.http.Status;
+import coyote.commons.template.SymbolTable;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransformContext;
+import coyote.loader.cfg.Config;
+
+
+/**
+ *
+ */
+public class WebServiceLookupTest {
+
+  private static LookupServer server = null;
+  private static int port = 54331;
+
+
+
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    port = NetUtil.getNextAvailablePort(port);
+    server = new LookupServer(port);
+    server.start(HTTPD.SOCKET_READ_TIMEOUT, true);
+  }
+
+
+
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    server.stop();
+  }
+
+
+
+
+  @Before
+  public void setUp() {
+    server.reset();
+  }
+
+
+
+
+  /**
+   * The fields of the selected result are added to the frame with the prefix
+   * and the fields already in the frame are kept.
+   */
+  @Test
+  public void prefix() throws Exception {
+    Config cfg = createConfig("prefix");
+    cfg.put("Prefix", "user.");
+
+    try (WebServiceLookup lookup = createLookup(cfg)) {
+      DataFrame frame = lookup.process(new DataFrame().set("userId", "alice").set("Order", "1"));
+      assertEquals("alice", frame.getAsString("userId"));
+      assertEquals("1", frame.getAsString("Order"));
+      assertEquals("alice", frame.getAsString("user.id"));
+      assertEquals("Name alice", frame.getAsString("user.name"));
+      assertFalse(frame.contains("name"));
+
+      // the second lookup of the key is taken from the cache
+      frame = lookup.process(new DataFrame().set("userId", "alice"));
+      assertEquals("Name alice", frame.getAsString("user.name"));
+      assertEquals(1, server.singles.get());
+    }
+  }
+
+
+
+
+  /**
+   * A 404 leaves the frame unchanged and is cached for the negative time to
+   * live.
+   */
+  @Test
+  public void notFound() throws Exception {
+    try (WebServiceLookup lookup = createLookup(createConfig("notFound"))) {
+      DataFrame frame = lookup.process(new DataFrame().set("userId", "missing"));
+      assertEquals(1, frame.getFieldCount());
+      lookup.process(new DataFrame().set("userId", "missing"));
+      assertEquals(1, server.singles.get());
+    }
+
+    Config cfg = createConfig("notCached");
+    cfg.put("NegativeTtl", 0);
+    try (WebServiceLookup lookup = createLookup(cfg)) {
+      lookup.process(new DataFrame().set("userId", "missing"));
+      lookup.process(new DataFrame().set("userId", "missing"));
+      assertEquals(3, server.singles.get());
+    }
+  }
+
+
+
+
+  /**
+   * Threads looking up the same key at the same time share one request.
+   */
+  @Test
+  public void coalesce() throws Exception {
+    final int threads = 4;
+    server.delay = 500;
+    try (final WebServiceLookup lookup = createLookup(createConfig("coalesce"))) {
+      final CountDownLatch start = new CountDownLatch(1);
+      final CountDownLatch done = new CountDownLatch(threads);
+      final List<DataFrame> results = Collections.synchronizedList(new ArrayList<DataFrame>());
+      for (int x = 0; x < threads; x++) {
+        new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              results.add(lookup.process(new DataFrame().set("userId", "bob")));
+            } catch (Exception e) {
+              e.printStackTrace();
+            } finally {
+              done.countDown();
+            }
+          }
+        }).start();
+      }
+      start.countDown();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+
+      assertEquals(1, server.singles.get());
+      assertEquals(threads, results.size());
+      for (DataFrame frame : results) {
+        assertEquals("Name bob", frame.getAsString("name"));
+      }
+    }
+  }
+
+
+
+
+  /**
+   * The keys of a batch are split into bulk requests of the batch size and
+   * the results matched to the frames by the batch key.
+   */
+  @Test
+  public void batch() throws Exception {
+    Config cfg = createConfig("batch");
+    cfg.put("BatchSource", "http://localhost:" + port + "/users?ids=[#lookup.keys#]");
+    cfg.put("Selector", "users.*");
+    cfg.put("BatchKey", "id");
+    cfg.put("BatchSize", 2);
+
+    try (WebServiceLookup lookup = createLookup(cfg)) {
+      List<DataFrame> frames = new ArrayList<>();
+      frames.add(new DataFrame().set("userId", "a"));
+      frames.add(new DataFrame().set("userId", "b"));
+      frames.add(new DataFrame().set("userId", "c"));
+      frames.add(new DataFrame().set("userId", "a"));
+      frames.add(new DataFrame().set("userId", "missing"));
+      List<DataFrame> results = lookup.processBatch(frames);
+
+      assertEquals(5, results.size());
+      assertEquals("Name a", results.get(0).getAsString("name"));
+      assertEquals("Name b", results.get(1).getAsString("name"));
+      assertEquals("Name c", results.get(2).getAsString("name"));
+      assertEquals("Name a", results.get(3).getAsString("name"));
+      assertFalse(results.get(4).contains("name"));
+
+      // four unique keys in batches of two
+      assertEquals(0, server.singles.get());
+      assertEquals(2, server.bulks.size());
+      assertEquals("a,b", server.bulks.get(0));
+      assertEquals("c,missing", server.bulks.get(1));
+
+      // all the keys, including the missing one, are now cached
+      lookup.processBatch(frames);
+      assertEquals(2, server.bulks.size());
+    }
+  }
+
+
+
+
+  private static Config createConfig(String name) {
+    Config retval = new Config();
+    retval.put("field", "userId");
+    retval.put("name", name);
+    retval.put("source", "http://localhost:" + port + "/users/[#lookup.key#]");
+    retval.put("Selector", "user");
+    retval.put("Protocol", new DataFrame().set("ExchangeType", "JSON_HTTP").set("Method", "GET"));
+    return retval;
+  }
+
+
+
+
+  private static WebServiceLookup createLookup(Config cfg) throws Exception {
+    TransformContext context = new TransformContext();
+    context.setSymbols(new SymbolTable());
+    WebServiceLookup retval = new WebServiceLookup();
+    retval.setConfiguration(cfg);
+    retval.open(context);
+    assertFalse(context.getErrorMessage(), context.isInError());
+    return retval;
+  }
+
+
+
+
+  /**
+   * Serves users by identifier, one at a time or in bulk, counting the
+   * requests.
+   */
+  private static class LookupServer extends HTTPD {
+    final AtomicInteger singles = new AtomicInteger();
+    final List<String> bulks = Collections.synchronizedList(new ArrayList<String>());
+    volatile long delay = 0;
+
+
+
+
+    LookupServer(final int port) {
+      super(port);
+    }
+
+
+
+
+    void reset() {
+      singles.set(0);
+      bulks.clear();
+      delay = 0;
+    }
+
+
+
+
+    @Override
+    public Response serve(final HTTPSession session) {
+      if (delay > 0) {
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException ignore) {}
+      }
+
+      String uri = session.getUri();
+      if (uri.startsWith("/users/")) {
+        singles.incrementAndGet();
+        String id = uri.substring("/users/".length());
+        if ("missing".equals(id)) {
+          return Response.createFixedLengthResponse(Status.NOT_FOUND, "application/json", "{}");
+        }
+        return Response.createFixedLengthResponse(Status.OK, "application/json", "{\"user\":" + user(id) + "}");
+      }
+
+      String ids = session.getParms().get("ids");
+      bulks.add(ids);
+      StringBuilder b = new StringBuilder("{\"users\":[");
+      boolean first = true;
+      for (String id : ids.split(",")) {
+        if (!"missing".equals(id)) {
+          if (!first) {
+            b.append(",");
+          }
+          b.append(user(id));
+          first = false;
+        }
+      }
+      b.append("]}");
+      return Response.createFixedLengthResponse(Status.OK, "application/json", b.toString());
+    }
+
+
+
+
+    private static String user(String id) {
+      return "{\"id\":\"" + id + "\",\"name\":\"Name " + id + "\"}";
+    }
+  }
+
+}